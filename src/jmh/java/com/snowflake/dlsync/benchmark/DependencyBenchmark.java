@@ -0,0 +1,54 @@
+package com.snowflake.dlsync.benchmark;
+
+import com.snowflake.dlsync.dependency.DependencyExtractor;
+import com.snowflake.dlsync.dependency.DependencyGraph;
+import com.snowflake.dlsync.models.Config;
+import com.snowflake.dlsync.models.Script;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DependencyBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int scriptCount;
+
+    @Param({"512", "16384"})
+    public int bodyLength;
+
+    private List<Script> scripts;
+    private DependencyExtractor dependencyExtractor;
+    private DependencyGraph dependencyGraph;
+
+    @Setup
+    public void setUp() {
+        scripts = SyntheticScripts.viewScripts(scriptCount, bodyLength, 1);
+        dependencyExtractor = new DependencyExtractor();
+        dependencyExtractor.addScripts(scripts);
+        dependencyGraph = new DependencyGraph(new DependencyExtractor(), new Config());
+        dependencyGraph.addNodes(scripts);
+    }
+
+    /**
+     * Extracts the dependencies of every script, one operation covers all scripts.
+     */
+    @Benchmark
+    public void extractScriptDependencies(Blackhole blackhole) {
+        for(Script script: scripts) {
+            blackhole.consume(dependencyExtractor.extractScriptDependencies(script));
+        }
+    }
+
+    @Benchmark
+    public List<Script> topologicalSort() {
+        return dependencyGraph.topologicalSort();
+    }
+}
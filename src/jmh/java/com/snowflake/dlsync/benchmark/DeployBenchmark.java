@@ -0,0 +1,156 @@
+package com.snowflake.dlsync.benchmark;
+
+import com.snowflake.dlsync.ChangeManager;
+import com.snowflake.dlsync.ConfigManager;
+import com.snowflake.dlsync.dependency.DependencyExtractor;
+import com.snowflake.dlsync.dependency.DependencyGraph;
+import com.snowflake.dlsync.doa.RecordedConnection;
+import com.snowflake.dlsync.doa.ScriptFileCache;
+import com.snowflake.dlsync.doa.ScriptHistorySnapshot;
+import com.snowflake.dlsync.doa.ScriptRepo;
+import com.snowflake.dlsync.doa.ScriptSource;
+import com.snowflake.dlsync.doa.SessionPool;
+import com.snowflake.dlsync.metrics.MetricsExporter;
+import com.snowflake.dlsync.parser.ParameterInjector;
+import org.apache.commons.cli.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Runs the deploy, verify, test and rollback flows end to end against a generated script root and a {@link StubSnowflake},
+ * and prints the wall-clock time and the number of round trips of every phase. Each phase uses a new change manager,
+ * the same as separate runs of the command line tool, while the stub keeps its state between phases.
+ * The per phase metrics of every command are written to the .dlsync/metrics directory of the script root.
+ * e.g. gradle deployBenchmark -PbenchmarkArgs="--views-per-schema 100 --ddl-latency 20"
+ */
+public class DeployBenchmark {
+    private static final String METADATA_DATABASE = "BENCH_ADMIN";
+    private static final String METADATA_SCHEMA = "DLSYNC";
+
+    @FunctionalInterface
+    private interface Phase {
+        Object run(ChangeManager changeManager) throws Exception;
+    }
+
+    private final Path scriptRoot;
+    private final StubSnowflake snowflake;
+    private final List<String> report = new ArrayList<>();
+
+    public DeployBenchmark(Path scriptRoot, StubSnowflake snowflake) {
+        this.scriptRoot = scriptRoot;
+        this.snowflake = snowflake;
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLine commandLine = buildCommandOptions(args);
+        Path scriptRoot = commandLine.hasOption("script-root") ? Paths.get(commandLine.getOptionValue("script-root")) : Files.createTempDirectory("dlsync-bench");
+        SyntheticRepoGenerator generator = new SyntheticRepoGenerator(scriptRoot)
+                .databases(intOption(commandLine, "databases", 2))
+                .schemasPerDatabase(intOption(commandLine, "schemas", 5))
+                .viewsPerSchema(intOption(commandLine, "views-per-schema", 20))
+                .tablesPerSchema(intOption(commandLine, "tables-per-schema", 4))
+                .versionsPerTable(intOption(commandLine, "versions", 10))
+                .parallelism(intOption(commandLine, "parallelism", 4));
+        int scripts = generator.generate();
+        StubSnowflake snowflake = new StubSnowflake(METADATA_DATABASE, METADATA_SCHEMA, intOption(commandLine, "metadata-latency", 5), intOption(commandLine, "ddl-latency", 10));
+        System.out.printf("Generated %d script files in %s%n", scripts, scriptRoot);
+
+        DeployBenchmark benchmark = new DeployBenchmark(scriptRoot, snowflake);
+        benchmark.runPhase("deploy (initial)", changeManager -> {
+            changeManager.deploy(false);
+            return snowflake.getScriptHistorySize() + " scripts deployed";
+        });
+        benchmark.runPhase("deploy (no change)", changeManager -> {
+            changeManager.deploy(false);
+            return "";
+        });
+        int modified = generator.modifyViews(10);
+        benchmark.runPhase("plan", changeManager -> changeManager.plan().size() + " scripts planned");
+        benchmark.runPhase("deploy (changed views)", changeManager -> {
+            changeManager.deploy(false);
+            return modified + " views changed";
+        });
+        int replanned = generator.modifyViews(10);
+        Path planFile = scriptRoot.resolve(".dlsync").resolve("deployment-plan.json.gz");
+        benchmark.runPhase("write plan", changeManager -> changeManager.writePlan(planFile).getScripts().size() + " scripts in plan");
+        benchmark.runPhase("deploy (from plan)", changeManager -> {
+            changeManager.deploy(false, planFile);
+            return replanned + " views changed";
+        });
+        benchmark.runPhase("verify", changeManager -> changeManager.verify() ? "verified" : "verify failed");
+        benchmark.runPhase("test", changeManager -> {
+            changeManager.test();
+            return "";
+        });
+        int removed = generator.removeLastTableVersions();
+        benchmark.runPhase("rollback", changeManager -> {
+            changeManager.rollback();
+            return removed + " migrations removed";
+        });
+        benchmark.printReport();
+    }
+
+    private static CommandLine buildCommandOptions(String[] args) throws ParseException {
+        Options options = new Options();
+        options.addOption(new Option("r", "script-root", true, "directory to generate the scripts in, a temporary directory by default"));
+        options.addOption(new Option(null, "databases", true, "number of databases"));
+        options.addOption(new Option(null, "schemas", true, "number of schemas per database"));
+        options.addOption(new Option(null, "views-per-schema", true, "number of views per schema"));
+        options.addOption(new Option(null, "tables-per-schema", true, "number of tables per schema"));
+        options.addOption(new Option(null, "versions", true, "number of migration versions per table"));
+        options.addOption(new Option(null, "parallelism", true, "parallelism written to config.yaml"));
+        options.addOption(new Option(null, "metadata-latency", true, "latency of a metadata round trip in milliseconds"));
+        options.addOption(new Option(null, "ddl-latency", true, "latency of a DDL round trip in milliseconds"));
+        return new DefaultParser().parse(options, args);
+    }
+
+    private static int intOption(CommandLine commandLine, String option, int defaultValue) {
+        return commandLine.hasOption(option) ? Integer.parseInt(commandLine.getOptionValue(option)) : defaultValue;
+    }
+
+    private ChangeManager createChangeManager() throws Exception {
+        ConfigManager configManager = new ConfigManager(scriptRoot.toString(), SyntheticRepoGenerator.PROFILE);
+        configManager.init();
+        Properties connectionProperties = new Properties();
+        connectionProperties.put("db", METADATA_DATABASE);
+        connectionProperties.put("schema", METADATA_SCHEMA);
+        SessionPool sessionPool = new SessionPool(configManager.getConfig().getParallelism(), () -> RecordedConnection.wrap(snowflake.connect()));
+        ScriptFileCache scriptFileCache = new ScriptFileCache(Paths.get(configManager.getScriptRoot(), ".dlsync", "script-cache.json"));
+        ScriptSource scriptSource = new ScriptSource(configManager.getScriptRoot(), scriptFileCache);
+        ScriptHistorySnapshot historySnapshot = ScriptHistorySnapshot.forTarget(Paths.get(configManager.getScriptRoot(), ".dlsync", "snapshot"), connectionProperties);
+        ScriptRepo scriptRepo = new ScriptRepo(sessionPool, connectionProperties, configManager.getConfig().getMetadataBatchSize(), null, historySnapshot);
+        ParameterInjector parameterInjector = new ParameterInjector(configManager.getScriptParameters());
+        DependencyGraph dependencyGraph = new DependencyGraph(new DependencyExtractor(), configManager.getConfig());
+        MetricsExporter metricsExporter = new MetricsExporter(Paths.get(configManager.getScriptRoot(), ".dlsync", "metrics"));
+        return new ChangeManager(configManager.getConfig(), scriptSource, scriptRepo, dependencyGraph, parameterInjector, null, metricsExporter);
+    }
+
+    private void runPhase(String name, Phase phase) throws Exception {
+        long metadataRoundTrips = snowflake.getMetadataRoundTrips();
+        long ddlRoundTrips = snowflake.getDdlRoundTrips();
+        long start = System.nanoTime();
+        ChangeManager changeManager = createChangeManager();
+        Object result;
+        try {
+            result = phase.run(changeManager);
+        } finally {
+            changeManager.close();
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        report.add(String.format("%-24s %10d %12d %10d   %s", name, elapsedMillis,
+                snowflake.getMetadataRoundTrips() - metadataRoundTrips, snowflake.getDdlRoundTrips() - ddlRoundTrips, result));
+    }
+
+    private void printReport() {
+        System.out.printf("%-24s %10s %12s %10s%n", "phase", "wall ms", "metadata rt", "ddl rt");
+        report.forEach(System.out::println);
+        System.out.printf("connections opened: %d, script events written: %d%n", snowflake.getConnections(), snowflake.getScriptEvents());
+        System.out.printf("phase metrics of the last run of every command are in %s%n", scriptRoot.resolve(".dlsync").resolve("metrics"));
+    }
+}
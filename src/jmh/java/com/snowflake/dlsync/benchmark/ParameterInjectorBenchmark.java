@@ -0,0 +1,69 @@
+package com.snowflake.dlsync.benchmark;
+
+import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import com.snowflake.dlsync.parser.ParameterInjector;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParameterInjectorBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int scriptCount;
+
+    @Param({"10", "200"})
+    public int parameterCount;
+
+    private ParameterInjector parameterInjector;
+    private List<Script> scripts;
+    private List<String> contents;
+
+    @Setup
+    public void setUp() {
+        Properties parameters = new Properties();
+        for(int i = 0; i < parameterCount; i++) {
+            parameters.setProperty("PARAM_" + i, "value_" + i);
+        }
+        parameterInjector = new ParameterInjector(parameters);
+        Random random = new Random(1);
+        scripts = new ArrayList<>(scriptCount);
+        contents = new ArrayList<>(scriptCount);
+        for(int i = 0; i < scriptCount; i++) {
+            StringBuilder content = new StringBuilder("CREATE OR REPLACE VIEW ${PARAM_0}.").append(SyntheticScripts.schemaName(i)).append('.').append(SyntheticScripts.viewName(i)).append(" AS\n");
+            content.append(SyntheticScripts.sqlBody(512, random));
+            for(int j = 0; j < 5; j++) {
+                content.append("\n  AND NAME <> '${PARAM_").append(random.nextInt(parameterCount)).append("}'");
+            }
+            content.append(';');
+            contents.add(content.toString());
+            scripts.add(ScriptFactory.getSchemaScript("${PARAM_0}", SyntheticScripts.schemaName(i), ScriptObjectType.VIEWS, SyntheticScripts.viewName(i), content.toString()));
+        }
+    }
+
+    /**
+     * Injects the parameters of every script, one operation covers all scripts.
+     */
+    @Benchmark
+    public int injectParameters() {
+        int length = 0;
+        for(int i = 0; i < scripts.size(); i++) {
+            Script script = scripts.get(i);
+            script.setContent(contents.get(i));
+            parameterInjector.injectParameters(script);
+            length += script.getContent().length();
+        }
+        return length;
+    }
+}
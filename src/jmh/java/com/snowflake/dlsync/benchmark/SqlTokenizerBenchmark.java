@@ -0,0 +1,63 @@
+package com.snowflake.dlsync.benchmark;
+
+import com.snowflake.dlsync.models.Migration;
+import com.snowflake.dlsync.models.SchemaScript;
+import com.snowflake.dlsync.parser.SqlTokenizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlTokenizerBenchmark {
+
+    /**
+     * Length of the script content in characters, from a small view to a multi-MB migration file.
+     */
+    @Param({"1024", "65536", "4194304"})
+    public int contentLength;
+
+    private String sql;
+    private String migrationContent;
+    private String ddl;
+
+    @Setup
+    public void setUp() {
+        sql = SyntheticScripts.sqlBody(contentLength, new Random(1)) + " FROM " + SyntheticScripts.fullViewName(1) + " JOIN SCHEMA_1.VIEW_1 V ON V.ID = ID;";
+        int versions = Math.max(1, contentLength / 1024);
+        migrationContent = SyntheticScripts.migrationContent(versions, 1024, 2);
+        ddl = SyntheticScripts.schemaDdl(versions, 1024, 3);
+    }
+
+    @Benchmark
+    public String removeSqlComments() {
+        return SqlTokenizer.removeSqlComments(sql);
+    }
+
+    @Benchmark
+    public String removeSqlStringLiterals() {
+        return SqlTokenizer.removeSqlStringLiterals(sql);
+    }
+
+    @Benchmark
+    public Set<String> getFullIdentifiers() {
+        return SqlTokenizer.getFullIdentifiers("VIEW_1", sql);
+    }
+
+    @Benchmark
+    public List<Migration> parseMigrationScripts() {
+        return SqlTokenizer.parseMigrationScripts(migrationContent);
+    }
+
+    @Benchmark
+    public List<SchemaScript> parseDdlScripts() {
+        return SqlTokenizer.parseDdlScripts(ddl, SyntheticScripts.DATABASE, "SCHEMA_0");
+    }
+}
@@ -0,0 +1,534 @@
+package com.snowflake.dlsync.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for a Snowflake account, reached through JDBC proxies. It keeps the DlSync metadata tables in memory,
+ * records the objects created by deployed scripts so GET_DDL and INFORMATION_SCHEMA queries can be answered, and sleeps
+ * for a configurable latency on every round trip.
+ * Only the statements issued by ScriptRepo and ScriptMetadataWriter are understood; any other statement is treated as a
+ * user DDL statement that succeeds and returns no rows.
+ */
+public class StubSnowflake {
+    private static final Pattern CREATE_OBJECT = Pattern.compile("^\\s*CREATE\\s+(?:OR\\s+REPLACE\\s+)?(?:SECURE\\s+|TRANSIENT\\s+|HYBRID\\s+)?(VIEW|TABLE|FUNCTION|PROCEDURE|FILE\\s+FORMAT|SEQUENCE|STAGE|STREAM|TASK)\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?([\\w$\"]+)\\.([\\w$\"]+)\\.([\\w$\"]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATE_PREFIX = Pattern.compile("^\\s*CREATE\\s+(?:OR\\s+REPLACE\\s+)?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern QUOTED_VALUE = Pattern.compile("'([^']*)'");
+    private static final Pattern GET_DDL = Pattern.compile("GET_DDL\\('SCHEMA',\\s*'([^.']+)\\.([^']+)'", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FROM_DATABASE = Pattern.compile("FROM\\s+([\\w$]+)\\.INFORMATION_SCHEMA", Pattern.CASE_INSENSITIVE);
+
+    private final long metadataLatencyMillis;
+    private final long ddlLatencyMillis;
+    private final String database;
+    private final String schema;
+    private final AtomicLong metadataRoundTrips = new AtomicLong();
+    private final AtomicLong ddlRoundTrips = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+
+    private boolean metadataTablesCreated;
+    private final List<Map<String, Object>> changeSyncs = new ArrayList<>();
+    private final Map<String, Map<String, Object>> scriptHistory = new LinkedHashMap<>();
+    private long scriptEvents;
+    private final List<Map<String, Object>> verifyStates = new ArrayList<>();
+    private final Map<String, Map<String, Map<String, DeployedObject>>> deployedObjects = new ConcurrentHashMap<>();
+
+    public StubSnowflake(String database, String schema, long metadataLatencyMillis, long ddlLatencyMillis) {
+        this.database = database.toUpperCase();
+        this.schema = schema.toUpperCase();
+        this.metadataLatencyMillis = metadataLatencyMillis;
+        this.ddlLatencyMillis = ddlLatencyMillis;
+    }
+
+    public Connection connect() {
+        connections.incrementAndGet();
+        return proxy(Connection.class, new ConnectionHandler());
+    }
+
+    public long getMetadataRoundTrips() {
+        return metadataRoundTrips.get();
+    }
+
+    public long getDdlRoundTrips() {
+        return ddlRoundTrips.get();
+    }
+
+    public long getConnections() {
+        return connections.get();
+    }
+
+    public synchronized long getScriptEvents() {
+        return scriptEvents;
+    }
+
+    public synchronized int getScriptHistorySize() {
+        return scriptHistory.size();
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(StubSnowflake.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if(type == boolean.class) {
+            return false;
+        }
+        if(type == int.class || type == long.class || type == short.class || type == byte.class) {
+            return type == long.class ? (Object) 0L : (Object) 0;
+        }
+        if(type == double.class || type == float.class) {
+            return 0.0;
+        }
+        return null;
+    }
+
+    private static boolean isMetadataStatement(String sql) {
+        String upper = sql.toUpperCase();
+        return upper.contains("DL_SYNC_") || upper.contains("INFORMATION_SCHEMA") || upper.contains("GET_DDL(") || upper.contains("CURRENT_DATABASE()") || upper.trim().startsWith("SHOW ");
+    }
+
+    private void roundTrip(String sql) {
+        boolean metadata = isMetadataStatement(sql);
+        (metadata ? metadataRoundTrips : ddlRoundTrips).incrementAndGet();
+        long latency = metadata ? metadataLatencyMillis : ddlLatencyMillis;
+        if(latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Result of one statement, either rows or an update count.
+     */
+    private static class Result {
+        private final List<String> columns;
+        private final List<Object[]> rows;
+        private final int updateCount;
+
+        private Result(List<String> columns, List<Object[]> rows) {
+            this.columns = columns;
+            this.rows = rows;
+            this.updateCount = -1;
+        }
+
+        private Result(int updateCount) {
+            this.columns = List.of();
+            this.rows = List.of();
+            this.updateCount = updateCount;
+        }
+
+        private static Result empty() {
+            return new Result(List.of(), List.of());
+        }
+    }
+
+    private static class DeployedObject {
+        private final String type;
+        private final String ddl;
+        private final Timestamp lastAltered;
+
+        private DeployedObject(String type, String ddl) {
+            this.type = type;
+            this.ddl = ddl;
+            this.lastAltered = new Timestamp(System.currentTimeMillis());
+        }
+    }
+
+    private Result execute(String sql, List<Object> binds) throws SQLException {
+        roundTrip(sql);
+        String upper = sql.trim().toUpperCase();
+        if(!isMetadataStatement(sql)) {
+            recordDeployedObject(sql);
+            return upper.startsWith("SELECT") || upper.startsWith("WITH") || upper.startsWith("SHOW") ? Result.empty() : new Result(0);
+        }
+        synchronized (this) {
+            return executeMetadata(sql, upper, binds);
+        }
+    }
+
+    private void recordDeployedObject(String sql) {
+        Matcher matcher = CREATE_OBJECT.matcher(sql);
+        if(!matcher.find()) {
+            return;
+        }
+        String type = matcher.group(1).toUpperCase().replaceAll("\\s+", " ");
+        String ddl = CREATE_PREFIX.matcher(sql.trim()).replaceFirst("create or replace ");
+        deployedObjects.computeIfAbsent(matcher.group(2).toUpperCase(), db -> new ConcurrentHashMap<>())
+                .computeIfAbsent(matcher.group(3).toUpperCase(), s -> new ConcurrentHashMap<>())
+                .put(matcher.group(4).toUpperCase(), new DeployedObject(type, ddl));
+    }
+
+    private Result executeMetadata(String sql, String upper, List<Object> binds) throws SQLException {
+        if(upper.startsWith("SELECT CURRENT_DATABASE()")) {
+            return rows(List.of("CURRENT_DATABASE()", "CURRENT_SCHEMA()"), new Object[]{database, schema});
+        }
+        if(upper.contains("GET_DDL(")) {
+            Matcher matcher = GET_DDL.matcher(sql);
+            if(!matcher.find()) {
+                throw new SQLException("Unsupported GET_DDL call: " + sql);
+            }
+            return rows(List.of("DDL"), new Object[]{getSchemaDdl(matcher.group(1).toUpperCase(), matcher.group(2).toUpperCase())});
+        }
+        if(upper.contains("INFORMATION_SCHEMA.SCHEMATA")) {
+            return getSchemata(upper);
+        }
+        if(upper.contains("INFORMATION_SCHEMA.TABLES")) {
+            return getLastAlteredTimes(upper);
+        }
+        if(upper.startsWith("SHOW ")) {
+            return Result.empty();
+        }
+        if(upper.contains("DL_SYNC_SCRIPT ")) {
+            throw new SQLException("Object does not exist: DL_SYNC_SCRIPT");
+        }
+        if(upper.startsWith("CREATE OR REPLACE TABLE") || upper.startsWith("CREATE TABLE IF NOT EXISTS")) {
+            if(upper.contains("DL_SYNC_CHANGE_SYNC")) {
+                metadataTablesCreated = true;
+            }
+            return new Result(0);
+        }
+        if(upper.startsWith("ALTER TABLE")) {
+            return new Result(0);
+        }
+        if(upper.contains("DL_SYNC_CHANGE_SYNC")) {
+            return executeChangeSync(upper, binds);
+        }
+        if(upper.contains("DL_SYNC_SCRIPT_HISTORY")) {
+            return executeScriptHistory(sql, upper, binds);
+        }
+        if(upper.contains("DL_SYNC_SCRIPT_EVENT")) {
+            scriptEvents += binds.size() / 10;
+            return new Result(binds.size() / 10);
+        }
+        if(upper.contains("DL_SYNC_VERIFY_STATE")) {
+            return executeVerifyState(upper, binds);
+        }
+        return upper.startsWith("SELECT") ? Result.empty() : new Result(0);
+    }
+
+    private Result executeChangeSync(String upper, List<Object> binds) throws SQLException {
+        if(!metadataTablesCreated) {
+            throw new SQLException("Object does not exist: DL_SYNC_CHANGE_SYNC");
+        }
+        if(upper.startsWith("SELECT COUNT(1)")) {
+            return rows(List.of("COUNT(1)"), new Object[]{(long) changeSyncs.size()});
+        }
+        if(upper.startsWith("SELECT STATUS, COMMIT_ID")) {
+            for(int i = changeSyncs.size() - 1; i >= 0; i--) {
+                Map<String, Object> changeSync = changeSyncs.get(i);
+                if("DEPLOY".equals(changeSync.get("CHANGE_TYPE")) || "ROLLBACK".equals(changeSync.get("CHANGE_TYPE"))) {
+                    return rows(List.of("STATUS", "COMMIT_ID"), new Object[]{changeSync.get("STATUS"), changeSync.get("COMMIT_ID")});
+                }
+            }
+            return Result.empty();
+        }
+        if(upper.startsWith("INSERT")) {
+            Map<String, Object> changeSync = new HashMap<>();
+            changeSync.put("ID", binds.get(0));
+            changeSync.put("CHANGE_TYPE", binds.get(1));
+            changeSync.put("STATUS", binds.get(2));
+            changeSyncs.add(changeSync);
+            return new Result(1);
+        }
+        if(upper.startsWith("UPDATE")) {
+            for(Map<String, Object> changeSync: changeSyncs) {
+                if(Objects.equals(String.valueOf(changeSync.get("ID")), String.valueOf(binds.get(5)))) {
+                    changeSync.put("CHANGE_TYPE", binds.get(0));
+                    changeSync.put("STATUS", binds.get(1));
+                    changeSync.put("COMMIT_ID", binds.get(4));
+                    return new Result(1);
+                }
+            }
+            return new Result(0);
+        }
+        return rows(List.of("ID"));
+    }
+
+    private Result executeScriptHistory(String sql, String upper, List<Object> binds) {
+        List<String> columns = List.of("SCRIPT_ID", "OBJECT_NAME", "OBJECT_TYPE", "ROLLBACK_SCRIPT", "SCRIPT_HASH", "DEPLOYED_HASH", "CHANGE_SYNC_ID");
+        if(upper.startsWith("MERGE")) {
+            for(int i = 0; i + columns.size() <= binds.size(); i += columns.size()) {
+                Map<String, Object> row = new HashMap<>();
+                for(int column = 0; column < columns.size(); column++) {
+                    row.put(columns.get(column), binds.get(i + column));
+                }
+                scriptHistory.put((String) row.get("SCRIPT_ID"), row);
+            }
+            return new Result(binds.size() / columns.size());
+        }
+        if(upper.startsWith("DELETE")) {
+            binds.forEach(scriptHistory::remove);
+            return new Result(binds.size());
+        }
+        Set<String> ids = null;
+        int where = upper.indexOf(" WHERE SCRIPT_ID IN ");
+        if(where >= 0) {
+            ids = new HashSet<>();
+            Matcher matcher = QUOTED_VALUE.matcher(sql.substring(where));
+            while(matcher.find()) {
+                ids.add(matcher.group(1));
+            }
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for(Map<String, Object> row: scriptHistory.values()) {
+            if(ids == null || ids.contains(row.get("SCRIPT_ID"))) {
+                rows.add(columns.stream().map(row::get).toArray());
+            }
+        }
+        return new Result(columns, rows);
+    }
+
+    private Result executeVerifyState(String upper, List<Object> binds) {
+        List<String> columns = List.of("DATABASE_NAME", "SCHEMA_NAME", "OBJECT_NAME", "OBJECT_TYPE", "SCRIPT_ID", "SOURCE_HASH", "DDL_HASH", "LAST_ALTERED", "CHANGE_SYNC_ID");
+        if(upper.startsWith("INSERT")) {
+            Map<String, Object> row = new HashMap<>();
+            for(int column = 0; column < columns.size(); column++) {
+                row.put(columns.get(column), binds.get(column));
+            }
+            verifyStates.add(row);
+            return new Result(1);
+        }
+        Set<Object> databases = new HashSet<>(binds);
+        if(upper.startsWith("DELETE")) {
+            verifyStates.removeIf(row -> databases.contains(row.get("DATABASE_NAME")));
+            return new Result(0);
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for(Map<String, Object> row: verifyStates) {
+            if(databases.contains(row.get("DATABASE_NAME"))) {
+                rows.add(columns.stream().map(row::get).toArray());
+            }
+        }
+        return new Result(columns, rows);
+    }
+
+    private String getSchemaDdl(String database, String schema) {
+        StringBuilder ddl = new StringBuilder("create or replace schema ").append(schema).append(";\n");
+        Map<String, DeployedObject> objects = deployedObjects.getOrDefault(database, Map.of()).getOrDefault(schema, Map.of());
+        for(DeployedObject object: new TreeMap<>(objects).values()) {
+            ddl.append('\n').append(object.ddl.endsWith(";") ? object.ddl : object.ddl + ";");
+        }
+        return ddl.toString();
+    }
+
+    private Result getSchemata(String upper) {
+        Matcher matcher = FROM_DATABASE.matcher(upper);
+        String database = matcher.find() ? matcher.group(1) : this.database;
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{"INFORMATION_SCHEMA"});
+        rows.add(new Object[]{"PUBLIC"});
+        for(String schema: new TreeSet<>(deployedObjects.getOrDefault(database, Map.of()).keySet())) {
+            rows.add(new Object[]{schema});
+        }
+        return new Result(List.of("SCHEMA_NAME"), rows);
+    }
+
+    private Result getLastAlteredTimes(String upper) {
+        Matcher matcher = FROM_DATABASE.matcher(upper);
+        String database = matcher.find() ? matcher.group(1) : this.database;
+        List<Object[]> rows = new ArrayList<>();
+        deployedObjects.getOrDefault(database, Map.of()).forEach((schema, objects) -> objects.forEach((name, object) -> {
+            if(object.type.equals("VIEW")) {
+                rows.add(new Object[]{"VIEWS", schema, name, object.lastAltered});
+            }
+            else if(object.type.equals("FUNCTION") || object.type.equals("PROCEDURE")) {
+                rows.add(new Object[]{object.type + "S", schema, name, object.lastAltered});
+            }
+        }));
+        return new Result(List.of("OBJECT_TYPE", "SCHEMA_NAME", "OBJECT_NAME", "LAST_ALTERED"), rows);
+    }
+
+    private static Result rows(List<String> columns, Object[]... rows) {
+        return new Result(columns, Arrays.asList(rows));
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private boolean autoCommit = true;
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "createStatement":
+                    return StubSnowflake.proxy(Statement.class, new StatementHandler(null));
+                case "prepareStatement":
+                    return StubSnowflake.proxy(PreparedStatement.class, new StatementHandler((String) args[0]));
+                case "getAutoCommit":
+                    return autoCommit;
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    return null;
+                case "close":
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "isValid":
+                    return !closed;
+                case "commit":
+                case "rollback":
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "StubSnowflakeConnection";
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+        private final String preparedSql;
+        private final TreeMap<Integer, Object> binds = new TreeMap<>();
+        private final List<List<Object>> batches = new ArrayList<>();
+        private Result lastResult;
+
+        private StatementHandler(String preparedSql) {
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if(name.startsWith("set") && args != null && args.length == 2 && args[0] instanceof Integer) {
+                binds.put((Integer) args[0], args[1]);
+                return null;
+            }
+            switch (name) {
+                case "executeQuery":
+                    lastResult = execute(args == null ? preparedSql : (String) args[0], currentBinds());
+                    return resultSet(lastResult);
+                case "executeUpdate":
+                    lastResult = execute(args == null ? preparedSql : (String) args[0], currentBinds());
+                    return Math.max(0, lastResult.updateCount);
+                case "execute":
+                    lastResult = execute(args == null ? preparedSql : (String) args[0], currentBinds());
+                    return lastResult.updateCount < 0;
+                case "getResultSet":
+                    return lastResult == null ? null : resultSet(lastResult);
+                case "getUpdateCount":
+                    return lastResult == null ? -1 : lastResult.updateCount;
+                case "addBatch":
+                    batches.add(currentBinds());
+                    binds.clear();
+                    return null;
+                case "executeBatch":
+                    int[] counts = new int[batches.size()];
+                    // One round trip sends the whole batch, the rows are applied one by one.
+                    roundTrip(preparedSql);
+                    synchronized (StubSnowflake.this) {
+                        for(int i = 0; i < batches.size(); i++) {
+                            String upper = preparedSql.trim().toUpperCase();
+                            counts[i] = Math.max(0, executeMetadata(preparedSql, upper, batches.get(i)).updateCount);
+                        }
+                    }
+                    batches.clear();
+                    return counts;
+                case "clearParameters":
+                    binds.clear();
+                    return null;
+                case "close":
+                case "setFetchSize":
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "StubSnowflakeStatement";
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        }
+
+        private List<Object> currentBinds() {
+            return new ArrayList<>(binds.values());
+        }
+    }
+
+    private static ResultSet resultSet(Result result) {
+        return proxy(ResultSet.class, new ResultSetHandler(result));
+    }
+
+    private static class ResultSetHandler implements InvocationHandler {
+        private final Result result;
+        private int row = -1;
+        private boolean wasNull;
+
+        private ResultSetHandler(Result result) {
+            this.result = result;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if(name.equals("next")) {
+                return ++row < result.rows.size();
+            }
+            if(name.equals("wasNull")) {
+                return wasNull;
+            }
+            if(name.equals("close")) {
+                return null;
+            }
+            if(name.startsWith("get") && args != null && args.length == 1) {
+                Object value = getValue(args[0]);
+                wasNull = value == null;
+                return convert(value, method.getReturnType());
+            }
+            if(name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if(name.equals("equals")) {
+                return proxy == args[0];
+            }
+            return defaultValue(method.getReturnType());
+        }
+
+        private Object getValue(Object column) throws SQLException {
+            if(row < 0 || row >= result.rows.size()) {
+                throw new SQLException("No current row.");
+            }
+            int index;
+            if(column instanceof Integer) {
+                index = (Integer) column - 1;
+            }
+            else {
+                index = result.columns.indexOf(((String) column).toUpperCase());
+            }
+            if(index < 0 || index >= result.columns.size()) {
+                throw new SQLException("Unknown column: " + column);
+            }
+            return result.rows.get(row)[index];
+        }
+
+        private static Object convert(Object value, Class<?> type) throws InvocationTargetException {
+            if(value == null) {
+                return defaultValue(type);
+            }
+            if(type == String.class) {
+                return String.valueOf(value);
+            }
+            if(type == long.class) {
+                return ((Number) value).longValue();
+            }
+            if(type == int.class) {
+                return ((Number) value).intValue();
+            }
+            return value;
+        }
+    }
+}
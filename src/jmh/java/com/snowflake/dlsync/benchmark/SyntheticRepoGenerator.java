@@ -0,0 +1,219 @@
+package com.snowflake.dlsync.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Writes a deterministic script root: account objects, databases with schemas holding views that depend on each other,
+ * tables with many migration versions, unit tests for some of the views, a config file and a parameter profile.
+ * Database names are parametrized, the profile maps every database to a name with the profile as suffix.
+ */
+public class SyntheticRepoGenerator {
+    public static final String PROFILE = "bench";
+    private static final Pattern LAST_VERSION = Pattern.compile("(?s)\n---version: \\d+, author: bench\n[^\n]*\n---rollback: [^\n]*\n---verify: [^\n]*\n$");
+
+    private final Path scriptRoot;
+    private int databases = 2;
+    private int schemasPerDatabase = 5;
+    private int viewsPerSchema = 20;
+    private int tablesPerSchema = 4;
+    private int versionsPerTable = 10;
+    private int bodyLength = 400;
+    private int testEvery = 5;
+    private int parallelism = 4;
+    private long seed = 42;
+
+    public SyntheticRepoGenerator(Path scriptRoot) {
+        this.scriptRoot = scriptRoot;
+    }
+
+    public SyntheticRepoGenerator databases(int databases) {
+        this.databases = databases;
+        return this;
+    }
+
+    public SyntheticRepoGenerator schemasPerDatabase(int schemasPerDatabase) {
+        this.schemasPerDatabase = schemasPerDatabase;
+        return this;
+    }
+
+    public SyntheticRepoGenerator viewsPerSchema(int viewsPerSchema) {
+        this.viewsPerSchema = viewsPerSchema;
+        return this;
+    }
+
+    public SyntheticRepoGenerator tablesPerSchema(int tablesPerSchema) {
+        this.tablesPerSchema = tablesPerSchema;
+        return this;
+    }
+
+    public SyntheticRepoGenerator versionsPerTable(int versionsPerTable) {
+        this.versionsPerTable = versionsPerTable;
+        return this;
+    }
+
+    public SyntheticRepoGenerator bodyLength(int bodyLength) {
+        this.bodyLength = bodyLength;
+        return this;
+    }
+
+    public SyntheticRepoGenerator parallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public SyntheticRepoGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public static String databaseParameter(int database) {
+        return "BENCH_DB_" + database;
+    }
+
+    public static String databaseName(int database) {
+        return databaseParameter(database) + "_" + PROFILE.toUpperCase();
+    }
+
+    /**
+     * @return the number of script files written under the main directory.
+     */
+    public int generate() throws IOException {
+        Random random = new Random(seed);
+        int files = 0;
+        StringBuilder parameters = new StringBuilder();
+        for(int database = 0; database < databases; database++) {
+            parameters.append(databaseParameter(database)).append('=').append(databaseName(database)).append('\n');
+            write("main/ACCOUNT/DATABASES/" + databaseParameter(database) + ".SQL", "---version: 0, author: bench\nCREATE DATABASE IF NOT EXISTS ${" + databaseParameter(database) + "};\n---rollback: DROP DATABASE IF EXISTS ${" + databaseParameter(database) + "};\n");
+            files++;
+            files += generateDatabase(database, random);
+        }
+        parameters.append("BENCH_WH=BENCH_WH_").append(PROFILE.toUpperCase()).append('\n');
+        write("main/ACCOUNT/WAREHOUSES/BENCH_WH.SQL", "CREATE OR REPLACE WAREHOUSE ${BENCH_WH} WAREHOUSE_SIZE = 'XSMALL' AUTO_SUSPEND = 60;");
+        write("main/ACCOUNT/ROLES/BENCH_ROLE.SQL", "---version: 0, author: bench\nCREATE ROLE IF NOT EXISTS BENCH_ROLE;\n---rollback: DROP ROLE IF EXISTS BENCH_ROLE;\n");
+        files += 2;
+        write("parameter-" + PROFILE + ".properties", parameters.toString());
+        write("config.yaml", "version: 1.0\nparallelism: " + parallelism + "\nmetadataBatchSize: 50\n");
+        return files;
+    }
+
+    private int generateDatabase(int database, Random random) throws IOException {
+        int files = 0;
+        String databaseParameter = databaseParameter(database);
+        String databaseReference = "${" + databaseParameter + "}";
+        int views = schemasPerDatabase * viewsPerSchema;
+        for(int view = 0; view < views; view++) {
+            String schema = schemaName(view);
+            String name = "VIEW_" + view;
+            write("main/" + databaseParameter + "/" + schema + "/VIEWS/" + name + ".SQL", viewContent(databaseReference, view, random));
+            files++;
+            if(view % testEvery == 0) {
+                write("test/" + databaseParameter + "/" + schema + "/VIEWS/" + name + "_TEST.SQL",
+                        "WITH MOCK_DATA AS (SELECT 1 AS ID), EXPECTED_DATA AS (SELECT 1 AS ID)\nSELECT * FROM " + databaseReference + "." + schema + "." + name + ";");
+            }
+        }
+        for(int schema = 0; schema < schemasPerDatabase; schema++) {
+            for(int table = 0; table < tablesPerSchema; table++) {
+                String fullName = databaseReference + ".SCHEMA_" + schema + ".TABLE_" + table;
+                write("main/" + databaseParameter + "/SCHEMA_" + schema + "/TABLES/TABLE_" + table + ".SQL", tableContent(fullName, random));
+                files++;
+            }
+        }
+        return files;
+    }
+
+    private String schemaName(int view) {
+        return "SCHEMA_" + (view % schemasPerDatabase);
+    }
+
+    /**
+     * A view selects from a table of its schema or from up to three views with a lower number, which gives dependency chains across schemas.
+     */
+    private String viewContent(String databaseReference, int view, Random random) {
+        StringBuilder content = new StringBuilder();
+        content.append("CREATE OR REPLACE VIEW ").append(databaseReference).append('.').append(schemaName(view)).append(".VIEW_").append(view).append(" AS\n");
+        content.append(SyntheticScripts.sqlBody(bodyLength, random)).append("\nFROM ");
+        if(view < schemasPerDatabase || tablesPerSchema == 0) {
+            content.append(databaseReference).append('.').append(schemaName(view)).append(".TABLE_0 T0");
+            return content.append(';').toString();
+        }
+        content.append(databaseReference).append('.').append(schemaName(view - 1)).append(".VIEW_").append(view - 1).append(" T0");
+        int joins = random.nextInt(3);
+        for(int i = 1; i <= joins; i++) {
+            int dependency = random.nextInt(view);
+            content.append("\nJOIN ").append(databaseReference).append('.').append(schemaName(dependency)).append(".VIEW_").append(dependency)
+                    .append(" T").append(i).append(" ON T").append(i).append(".ID = T0.ID");
+        }
+        return content.append(';').toString();
+    }
+
+    private String tableContent(String fullName, Random random) {
+        StringBuilder content = new StringBuilder();
+        content.append("---version: 0, author: bench\n");
+        content.append("CREATE TABLE ").append(fullName).append(" (ID NUMBER, NAME VARCHAR);\n");
+        content.append("---rollback: DROP TABLE IF EXISTS ").append(fullName).append(";\n");
+        content.append("---verify: SELECT * FROM ").append(fullName).append(" LIMIT 1;\n");
+        for(int version = 1; version < versionsPerTable; version++) {
+            content.append("---version: ").append(version).append(", author: bench\n");
+            content.append("INSERT INTO ").append(fullName).append(" SELECT ").append(version).append(", 'row ").append(random.nextInt(1000)).append("';\n");
+            content.append("---rollback: DELETE FROM ").append(fullName).append(" WHERE ID = ").append(version).append(";\n");
+            content.append("---verify: SELECT 1/COUNT(*) FROM ").append(fullName).append(" WHERE ID = ").append(version).append(";\n");
+        }
+        return content.toString();
+    }
+
+    /**
+     * Rewrites every n-th view with a new body, the views keep their dependencies.
+     * @return the number of views changed.
+     */
+    public int modifyViews(int every) throws IOException {
+        List<Path> views = scriptFiles("VIEWS");
+        int modified = 0;
+        for(int i = 0; i < views.size(); i += every) {
+            Path view = views.get(i);
+            String content = Files.readString(view);
+            Files.writeString(view, content.replaceFirst(" AS\nSELECT ID", " AS\nSELECT ID, CURRENT_TIMESTAMP() AS MODIFIED_TS"));
+            modified++;
+        }
+        return modified;
+    }
+
+    /**
+     * Removes the last migration version of every table, so a rollback has one version per table to roll back.
+     * @return the number of versions removed.
+     */
+    public int removeLastTableVersions() throws IOException {
+        int removed = 0;
+        for(Path table: scriptFiles("TABLES")) {
+            String content = Files.readString(table);
+            Matcher matcher = LAST_VERSION.matcher(content);
+            if(matcher.find()) {
+                Files.writeString(table, content.substring(0, matcher.start() + 1));
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private List<Path> scriptFiles(String objectType) throws IOException {
+        try (Stream<Path> files = Files.walk(scriptRoot.resolve("main"))) {
+            return files.filter(file -> file.getParent().getFileName().toString().equals(objectType))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private void write(String relativePath, String content) throws IOException {
+        Path file = scriptRoot.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
@@ -0,0 +1,120 @@
+package com.snowflake.dlsync.benchmark;
+
+import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic scripts for the benchmarks. Views reference up to three views with a lower number, so the scripts always form a DAG.
+ */
+public final class SyntheticScripts {
+    public static final String DATABASE = "BENCH_DB";
+    private static final int SCHEMA_COUNT = 50;
+
+    private SyntheticScripts() {
+    }
+
+    public static String schemaName(int index) {
+        return "SCHEMA_" + (index % SCHEMA_COUNT);
+    }
+
+    public static String viewName(int index) {
+        return "VIEW_" + index;
+    }
+
+    public static String fullViewName(int index) {
+        return DATABASE + "." + schemaName(index) + "." + viewName(index);
+    }
+
+    /**
+     * A query of at least the given length with line comments, block comments and string literals.
+     */
+    public static String sqlBody(int length, Random random) {
+        StringBuilder body = new StringBuilder(length + 256);
+        body.append("SELECT ID");
+        int column = 0;
+        while(body.length() < length) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    body.append("\n    -- column ").append(column).append(" is derived from the source\n");
+                    break;
+                case 1:
+                    body.append(" /* ").append(column).append(" ; not a statement end */");
+                    break;
+                case 2:
+                    body.append(", 'literal ''").append(column).append("'' -- not a comment' AS TEXT_").append(column);
+                    break;
+                default:
+                    body.append(", COALESCE(AMOUNT_").append(column).append(", 0) * ").append(random.nextInt(100)).append(" AS AMOUNT_").append(column);
+                    break;
+            }
+            column++;
+        }
+        return body.toString();
+    }
+
+    public static String viewContent(int index, int bodyLength, Random random) {
+        StringBuilder content = new StringBuilder();
+        content.append("CREATE OR REPLACE VIEW ").append(fullViewName(index)).append(" AS\n");
+        content.append(sqlBody(bodyLength, random)).append("\nFROM ");
+        if(index == 0) {
+            content.append(DATABASE).append(".RAW.SOURCE_TABLE");
+        }
+        else {
+            content.append(fullViewName(random.nextInt(index))).append(" T0");
+            int joins = random.nextInt(3);
+            for(int i = 1; i <= joins; i++) {
+                int dependency = random.nextInt(index);
+                String name = dependency % SCHEMA_COUNT == index % SCHEMA_COUNT ? viewName(dependency) : schemaName(dependency) + "." + viewName(dependency);
+                content.append("\nJOIN ").append(name).append(" T").append(i).append(" ON T").append(i).append(".ID = T0.ID");
+            }
+        }
+        return content.append(";").toString();
+    }
+
+    public static List<Script> viewScripts(int count, int bodyLength, long seed) {
+        Random random = new Random(seed);
+        List<Script> scripts = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            scripts.add(ScriptFactory.getSchemaScript(DATABASE, schemaName(i), ScriptObjectType.VIEWS, viewName(i), viewContent(i, bodyLength, random)));
+        }
+        return scripts;
+    }
+
+    public static String migrationContent(int versions, int bodyLength, long seed) {
+        Random random = new Random(seed);
+        StringBuilder content = new StringBuilder();
+        content.append("---version: 0, author: bench\n");
+        content.append("CREATE TABLE ").append(DATABASE).append(".SCHEMA_0.TABLE_0 (ID NUMBER);\n");
+        content.append("---rollback: DROP TABLE IF EXISTS ").append(DATABASE).append(".SCHEMA_0.TABLE_0;\n");
+        for(int version = 1; version < versions; version++) {
+            content.append("---version: ").append(version).append(", author: bench\n");
+            content.append("INSERT INTO ").append(DATABASE).append(".SCHEMA_0.TABLE_0 ").append(sqlBody(bodyLength, random)).append(" FROM DUAL;\n");
+            content.append("---rollback: DELETE FROM ").append(DATABASE).append(".SCHEMA_0.TABLE_0 WHERE ID = ").append(version).append(";\n");
+            content.append("---verify: SELECT COUNT(*) FROM ").append(DATABASE).append(".SCHEMA_0.TABLE_0;\n");
+        }
+        return content.toString();
+    }
+
+    /**
+     * The output of GET_DDL for a schema holding the given number of views and tables.
+     */
+    public static String schemaDdl(int objects, int bodyLength, long seed) {
+        Random random = new Random(seed);
+        StringBuilder ddl = new StringBuilder("create or replace schema SCHEMA_0;\n");
+        for(int i = 0; i < objects; i++) {
+            ddl.append('\n');
+            if(i % 4 == 0) {
+                ddl.append("create or replace TABLE ").append(DATABASE).append(".SCHEMA_0.TABLE_").append(i).append(" (\n\tID NUMBER(38,0),\n\tNAME VARCHAR(16777216)\n);");
+            }
+            else {
+                ddl.append("create or replace view ").append(DATABASE).append(".SCHEMA_0.").append(viewName(i)).append("(\n\tID\n) as\n").append(sqlBody(bodyLength, random)).append("\nFROM ").append(DATABASE).append(".SCHEMA_0.TABLE_0;");
+            }
+        }
+        return ddl.toString();
+    }
+}
@@ -1,16 +1,33 @@
 package com.snowflake.dlsync;
 
 import com.snowflake.dlsync.dependency.DependencyGraph;
+import com.snowflake.dlsync.dependency.DependencyOverrideIndex;
+import com.snowflake.dlsync.dependency.DeploymentScheduler;
+import com.snowflake.dlsync.doa.DeploymentPlanFile;
+import com.snowflake.dlsync.doa.GitChangeDetector;
+import com.snowflake.dlsync.doa.ScriptFileWriter;
+import com.snowflake.dlsync.doa.ScriptHistorySnapshot;
 import com.snowflake.dlsync.doa.ScriptRepo;
 import com.snowflake.dlsync.doa.ScriptSource;
+import com.snowflake.dlsync.metrics.MetricsExporter;
+import com.snowflake.dlsync.metrics.MetricsRegistry;
+import com.snowflake.dlsync.metrics.PhaseSummary;
 import com.snowflake.dlsync.models.*;
 import com.snowflake.dlsync.parser.ParameterInjector;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -21,13 +38,26 @@ public class ChangeManager {
     private ScriptRepo scriptRepo;
     private DependencyGraph dependencyGraph;
     private ParameterInjector parameterInjector;
+    private GitChangeDetector gitChangeDetector;
+    private MetricsExporter metricsExporter;
+    private long commandStartMillis;
 
     public ChangeManager(Config config, ScriptSource scriptSource, ScriptRepo scriptRepo, DependencyGraph dependencyGraph, ParameterInjector parameterInjector) {
+        this(config, scriptSource, scriptRepo, dependencyGraph, parameterInjector, null);
+    }
+
+    public ChangeManager(Config config, ScriptSource scriptSource, ScriptRepo scriptRepo, DependencyGraph dependencyGraph, ParameterInjector parameterInjector, GitChangeDetector gitChangeDetector) {
+        this(config, scriptSource, scriptRepo, dependencyGraph, parameterInjector, gitChangeDetector, null);
+    }
+
+    public ChangeManager(Config config, ScriptSource scriptSource, ScriptRepo scriptRepo, DependencyGraph dependencyGraph, ParameterInjector parameterInjector, GitChangeDetector gitChangeDetector, MetricsExporter metricsExporter) {
         this.config= config;
         this.scriptSource = scriptSource;
         this.scriptRepo = scriptRepo;
         this.dependencyGraph = dependencyGraph;
         this.parameterInjector = parameterInjector;
+        this.gitChangeDetector = gitChangeDetector;
+        this.metricsExporter = metricsExporter;
     }
 
     private void validateScript(Script script) {
@@ -37,58 +67,154 @@ public class ChangeManager {
         }
     }
     public void deploy(boolean onlyHashes) throws SQLException, IOException, NoSuchAlgorithmException {
+        deploy(onlyHashes, null);
+    }
+
+    /**
+     * @param planFile a deployment plan written by the plan command to deploy from instead of the script files, or null.
+     */
+    public void deploy(boolean onlyHashes, Path planFile) throws SQLException, IOException, NoSuchAlgorithmException {
+        if(planFile != null) {
+            deployPlan(onlyHashes, planFile);
+            return;
+        }
         log.info("Started Deploying {}", onlyHashes?"Only Hashes":"scripts");
         startSync(ChangeType.DEPLOY);
         scriptRepo.loadScriptHash();
-        List<Script> changedScripts = scriptSource.getAllScripts()
+        String commitId = getCleanHeadCommit();
+        List<Script> changedScripts = getDeployCandidates()
                 .stream()
                 .filter(script -> !config.isScriptExcluded(script))
                 .filter(script -> scriptRepo.isScriptChanged(script))
                 .collect(Collectors.toList());
         dependencyGraph.addNodes(changedScripts);
         List<Script> sequencedScript = dependencyGraph.topologicalSort();
+        deploySequencedScripts(sequencedScript, dependencyGraph.getDagGraph(), onlyHashes, commitId);
+    }
+
+    /**
+     * Deploys the changed scripts of a deployment plan. The scripts, their order and dependencies come from the plan,
+     * so the script files are not read and dependencies are not extracted. Only the parameters of the profile and the script history are applied.
+     */
+    private void deployPlan(boolean onlyHashes, Path planFile) throws SQLException, IOException {
+        log.info("Started Deploying {} from plan {}", onlyHashes?"Only Hashes":"scripts", planFile);
+        startSync(ChangeType.DEPLOY);
+        DeploymentPlan plan = new DeploymentPlanFile(planFile).load();
+        scriptRepo.loadScriptHash();
+        List<Script> scripts = DeploymentPlanFile.toScripts(plan);
+        List<Script> sequencedScript = new ArrayList<>();
+        Map<Script, Set<Script>> dagGraph = new HashMap<>();
+        Set<Script> changedScripts = new HashSet<>();
+        for(int i = 0; i < scripts.size(); i++) {
+            Script script = scripts.get(i);
+            if(config.isScriptExcluded(script) || !scriptRepo.isScriptChanged(script)) {
+                continue;
+            }
+            sequencedScript.add(script);
+            changedScripts.add(script);
+            List<Integer> dependencies = plan.getScripts().get(i).getDependencies();
+            if(dependencies == null) {
+                continue;
+            }
+            for(int dependency: dependencies) {
+                Script dependencyScript = scripts.get(dependency);
+                if(changedScripts.contains(dependencyScript)) {
+                    dagGraph.computeIfAbsent(dependencyScript, key -> new HashSet<>()).add(script);
+                }
+            }
+        }
+        log.info("Plan of commit {} has {} scripts, {} of them changed.", plan.getCommitId(), scripts.size(), sequencedScript.size());
+        deploySequencedScripts(sequencedScript, dagGraph, onlyHashes, plan.getCommitId());
+    }
+
+    private void deploySequencedScripts(List<Script> sequencedScript, Map<Script, Set<Script>> dagGraph, boolean onlyHashes, String commitId) throws SQLException {
         log.info("Deploying {} change scripts to db.", sequencedScript.size());
-        
+
         int size = sequencedScript.size();
-        int index = 1;
-        int failedCount = 0; 
-        List<String> failedScripts = new ArrayList<>(); 
-        
-        for(Script script: sequencedScript) {
-            log.info("{} of {}: Deploying object: {}", index++, size, script);
-            
-            try {  
+        AtomicInteger index = new AtomicInteger(1);
+        DeploymentScheduler scheduler = new DeploymentScheduler(config.getParallelism(), config.isContinueOnFailure());
+        Map<String, Long> durations = config.getParallelism() > 1 && size > 1 ? scriptRepo.loadScriptDurations() : Collections.emptyMap();
+        DeploymentScheduler.Result result = scheduler.execute(sequencedScript, dagGraph, script -> {
+            log.info("{} of {}: Deploying object: {}", index.getAndIncrement(), size, script);
+            try {
                 parameterInjector.injectParameters(script);
                 validateScript(script);
                 scriptRepo.createScriptObject(script, onlyHashes);
             }
             catch (Exception e) {
-                failedCount++;
-                failedScripts.add(script.getId()); 
                 log.error("Failed to deploy script {}: {}", script.getId(), e.getMessage());
-                
-                if (!config.isContinueOnFailure()) {
-                    // throw the error as normal
-                    throw e;
-                }
-                // Continue-on-failure: log error but continue loop, useful for bigger projects
+                throw e;
+            }
+        }, durations);
+
+        if (!config.isContinueOnFailure() && result.getFirstFailure() != null) {
+            // throw the error as normal
+            Exception error = result.getFirstFailure();
+            if (error instanceof SQLException) {
+                throw (SQLException) error;
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
             }
+            throw new RuntimeException(error);
         }
+        int failedCount = result.getFailedScripts().size();
         if (failedCount > 0) {
             String errorMsg = String.format("Deployment completed with %d failures", failedCount);
+            if (!result.getSkippedScripts().isEmpty()) {
+                errorMsg += String.format(" and %d skipped dependent scripts", result.getSkippedScripts().size());
+            }
             log.error(errorMsg);
-            log.error("Failed scripts: {}", String.join(", ", failedScripts));
+            log.error("Failed scripts: {}", result.getFailedScripts().keySet().stream().map(Script::getId).collect(Collectors.joining(", ")));
+            if (!result.getSkippedScripts().isEmpty()) {
+                log.error("Skipped scripts: {}", result.getSkippedScripts().stream().map(Script::getId).collect(Collectors.joining(", ")));
+            }
             endSyncError(ChangeType.DEPLOY, errorMsg);
             throw new RuntimeException(errorMsg);
         }
         else {
-            endSyncSuccess(ChangeType.DEPLOY, (long)sequencedScript.size());
+            endSyncSuccess(ChangeType.DEPLOY, (long)sequencedScript.size(), commitId);
+        }
+    }
+
+    /**
+     * Reads only the script files changed since the commit of the last successful deploy or rollback when it is known,
+     * otherwise reads all script files.
+     */
+    private List<Script> getDeployCandidates() throws SQLException, IOException {
+        return getDeployCandidates(gitChangeDetector == null ? null : scriptRepo.getLastSyncedCommit());
+    }
+
+    private List<Script> getDeployCandidates(String lastCommit) throws IOException {
+        if(gitChangeDetector != null && lastCommit != null) {
+            Set<Path> changedFiles = gitChangeDetector.getChangedFiles(lastCommit);
+            if(changedFiles != null) {
+                log.info("Reading {} script files changed since commit {}.", changedFiles.size(), lastCommit);
+                return scriptSource.getScripts(changedFiles);
+            }
         }
+        return scriptSource.getAllScripts();
+    }
+
+    /**
+     * @return the current commit if the script root has no uncommitted changes, otherwise null so that the next deploy scans all scripts.
+     */
+    private String getCleanHeadCommit() {
+        if(gitChangeDetector == null) {
+            return null;
+        }
+        String commitId = gitChangeDetector.getHeadCommit();
+        if(commitId != null && !gitChangeDetector.isClean()) {
+            log.info("Script root has uncommitted changes, commit {} will not be recorded.", commitId);
+            return null;
+        }
+        return commitId;
     }
 
     public void rollback() throws SQLException, IOException {
         log.info("Starting ROLLBACK scripts.");
         startSync(ChangeType.ROLLBACK);
+        String commitId = getCleanHeadCommit();
         Set<String> deployedScriptIds = new HashSet<>(scriptRepo.loadScriptHash());
         scriptSource.getAllScripts().forEach(script -> deployedScriptIds.remove(script.getId()));
         List<MigrationScript> migrations = scriptRepo.getDeployedMigrationScripts(deployedScriptIds);
@@ -121,10 +247,17 @@ public class ChangeManager {
             }
 
         }
-        endSyncSuccess(ChangeType.ROLLBACK, 0L);
+        endSyncSuccess(ChangeType.ROLLBACK, 0L, commitId);
     }
 
     public boolean verify() throws IOException, NoSuchAlgorithmException, SQLException{
+        return verify(false);
+    }
+
+    /**
+     * @param full compare every database object, instead of skipping the schemas with no object altered since the last verify.
+     */
+    public boolean verify(boolean full) throws IOException, NoSuchAlgorithmException, SQLException{
         log.info("Started verify scripts.");
         startSync(ChangeType.VERIFY);
         scriptRepo.loadDeployedHash();
@@ -133,30 +266,11 @@ public class ChangeManager {
                 .filter(script -> !config.isScriptExcluded(script))
                 .collect(Collectors.toSet());
 
-        List<String> schemaNames = scriptRepo.getAllSchemasInDatabase(scriptRepo.getDatabaseName());
-        for(String schema: schemaNames) {
-            List<SchemaScript> declarativeScripts = scriptRepo.getAllScriptsInSchema(schema)
-                    .stream()
-                    .filter(script -> !script.isMigration())
-                    .filter(script -> !config.isScriptExcluded(script))
-                    .collect(Collectors.toList());
-
-            for(SchemaScript script: declarativeScripts) {
-                parameterInjector.parametrizeScript(script, true);
-                Script sourceScript = sourceScripts.stream().filter(s -> s.equals(script)).findFirst().orElse(null);
-                if(sourceScript == null) {
-                    log.error("Script [{}] is not found in source.", script);
-                    failedCount++;
-                    continue;
-                }
-                if (!scriptRepo.compareScript(script, sourceScript)) {
-                    failedCount++;
-                    log.error("Script verification failed for {}. The source script is different from db object [{}] ", script, script.getContent());
-                } else {
-                    log.info("Verified Script {} is correct.", script);
-                }
-            }
+        Map<Script, Script> sourceScriptIndex = new HashMap<>();
+        for(Script script: sourceScripts) {
+            sourceScriptIndex.putIfAbsent(script, script);
         }
+        failedCount += verifyDeclarativeScripts(sourceScriptIndex, getSourceDatabases(sourceScripts), full);
 
         Map<String, List<MigrationScript>> groupedMigrationScripts = sourceScripts.stream()
                 .filter(script -> script instanceof MigrationScript)
@@ -188,6 +302,179 @@ public class ChangeManager {
         return true;
     }
 
+    private Set<String> getSourceDatabases(Set<Script> sourceScripts) {
+        Set<String> databases = sourceScripts.stream()
+                .map(script -> script instanceof MigrationScript ? ((MigrationScript) script).getParentScript() : script)
+                .filter(script -> script instanceof SchemaScript)
+                .map(script -> ((SchemaScript) script).getDatabaseName())
+                .collect(Collectors.toSet());
+        databases = parameterInjector.injectParameters(databases).stream().map(String::toUpperCase).collect(Collectors.toCollection(TreeSet::new));
+        if(databases.isEmpty()) {
+            databases.add(scriptRepo.getDatabaseName());
+        }
+        return databases;
+    }
+
+    private int verifyDeclarativeScripts(Map<Script, Script> sourceScriptIndex, Set<String> databases, boolean full) throws SQLException, IOException {
+        Map<String, Script> sourceScriptsById = new HashMap<>();
+        sourceScriptIndex.keySet().forEach(script -> sourceScriptsById.put(script.getId(), script));
+        Map<String, Map<String, VerifyState>> previousStates = new HashMap<>();
+        for(VerifyState state: scriptRepo.loadVerifyState(databases)) {
+            previousStates.computeIfAbsent(state.getDatabaseName() + "." + state.getSchemaName(), key -> new HashMap<>())
+                    .put(ScriptRepo.getVerifyStateKey(state.getObjectType(), state.getSchemaName(), state.getObjectName()), state);
+        }
+
+        List<VerifyState> verifiedStates = Collections.synchronizedList(new ArrayList<>());
+        List<String[]> schemas = new ArrayList<>();
+        Map<String, Map<String, Timestamp>> lastAlteredTimes = new HashMap<>();
+        for(String database: databases) {
+            Map<String, Timestamp> databaseLastAltered = scriptRepo.getLastAlteredTimes(database);
+            lastAlteredTimes.put(database, databaseLastAltered);
+            Set<String> untrackedObjects = null;
+            boolean untrackedObjectsListed = false;
+            for(String schema: scriptRepo.getAllSchemasInDatabase(database)) {
+                Map<String, VerifyState> schemaStates = previousStates.getOrDefault(database + "." + schema, Collections.emptyMap());
+                if(!full && !schemaStates.isEmpty()) {
+                    if(!untrackedObjectsListed) {
+                        untrackedObjects = scriptRepo.getUntrackedObjects(database);
+                        untrackedObjectsListed = true;
+                    }
+                    if(isSchemaUnchanged(schema, schemaStates, databaseLastAltered, untrackedObjects, sourceScriptsById)) {
+                        log.info("No object in schema {}.{} changed since the last verify, skipping it.", database, schema);
+                        verifiedStates.addAll(schemaStates.values());
+                        continue;
+                    }
+                }
+                schemas.add(new String[]{database, schema});
+            }
+        }
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for(String[] schema: schemas) {
+            Map<String, VerifyState> schemaStates = full ? Collections.emptyMap() : previousStates.getOrDefault(schema[0] + "." + schema[1], Collections.emptyMap());
+            Map<String, Timestamp> databaseLastAltered = lastAlteredTimes.get(schema[0]);
+            tasks.add(() -> verifySchema(sourceScriptIndex, schema[0], schema[1], schemaStates, databaseLastAltered, verifiedStates));
+        }
+        int failedCount = runConcurrently(tasks);
+        try {
+            scriptRepo.saveVerifyState(databases, verifiedStates);
+        } catch (SQLException e) {
+            log.warn("Unable to save verify state, the next verify will compare all objects again: {}", e.getMessage());
+        }
+        return failedCount;
+    }
+
+    /**
+     * Runs the tasks on a pool sized by the configured parallelism.
+     * @return the sum of the task results.
+     */
+    private int runConcurrently(List<Callable<Integer>> tasks) throws SQLException, IOException {
+        if(tasks.isEmpty()) {
+            return 0;
+        }
+        int parallelism = config == null ? 1 : config.getParallelism();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, tasks.size())));
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for(Callable<Integer> task: tasks) {
+                results.add(executor.submit(task));
+            }
+            int total = 0;
+            for(Future<Integer> result: results) {
+                total += result.get();
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for concurrent tasks.", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A schema is unchanged if it has the same objects as at the last verify, none of them was altered since,
+     * and the source scripts they were verified against did not change. Objects without a LAST_ALTERED timestamp are listed by name,
+     * a schema that has any of them is always compared, and so is every schema when they could not be listed.
+     */
+    private boolean isSchemaUnchanged(String schema, Map<String, VerifyState> schemaStates, Map<String, Timestamp> lastAlteredTimes, Set<String> untrackedObjects, Map<String, Script> sourceScriptsById) {
+        if(schemaStates.isEmpty() || untrackedObjects == null) {
+            return false;
+        }
+        String schemaPrefix = schema.toUpperCase() + ".";
+        Set<String> currentObjects = Stream.concat(lastAlteredTimes.keySet().stream(), untrackedObjects.stream())
+                .filter(key -> key.startsWith(schemaPrefix, key.indexOf(':') + 1))
+                .collect(Collectors.toSet());
+        if(!currentObjects.equals(schemaStates.keySet())) {
+            return false;
+        }
+        for(Map.Entry<String, VerifyState> entry: schemaStates.entrySet()) {
+            VerifyState state = entry.getValue();
+            Timestamp lastAltered = lastAlteredTimes.get(entry.getKey());
+            if(state.getLastAltered() == null || lastAltered == null || lastAltered.after(state.getLastAltered())) {
+                return false;
+            }
+            Script sourceScript = sourceScriptsById.get(state.getScriptId());
+            if(sourceScript == null || !sourceScript.getHash().equals(state.getSourceHash())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int verifySchema(Map<Script, Script> sourceScriptIndex, String database, String schema, Map<String, VerifyState> previousStates, Map<String, Timestamp> lastAlteredTimes, List<VerifyState> verifiedStates) throws SQLException {
+        int failedCount = 0;
+        List<SchemaScript> declarativeScripts = scriptRepo.getAllScriptsInSchema(database, schema)
+                .stream()
+                .filter(script -> !script.isMigration())
+                .filter(script -> !config.isScriptExcluded(script))
+                .collect(Collectors.toList());
+
+        for(SchemaScript script: declarativeScripts) {
+            String stateKey = ScriptRepo.getVerifyStateKey(script.getObjectType().toString(), schema, script.getObjectName());
+            parameterInjector.parametrizeScript(script, true);
+            Script sourceScript = sourceScriptIndex.get(script);
+            if(sourceScript == null) {
+                log.error("Script [{}] is not found in source.", script);
+                failedCount++;
+                continue;
+            }
+            String ddlHash = Util.getMd5Hash(script.getContent());
+            VerifyState previousState = previousStates.get(stateKey);
+            if(previousState != null && ddlHash.equals(previousState.getDdlHash()) && sourceScript.getHash().equals(previousState.getSourceHash())) {
+                log.info("Verified Script {} is unchanged since the last verify.", script);
+            }
+            else if (!scriptRepo.compareScript(script, sourceScript)) {
+                failedCount++;
+                log.error("Script verification failed for {}. The source script is different from db object [{}] ", script, script.getContent());
+                continue;
+            } else {
+                log.info("Verified Script {} is correct.", script);
+            }
+            VerifyState state = new VerifyState();
+            state.setDatabaseName(database);
+            state.setSchemaName(schema);
+            state.setObjectName(script.getObjectName());
+            state.setObjectType(script.getObjectType().toString());
+            state.setScriptId(sourceScript.getId());
+            state.setSourceHash(sourceScript.getHash());
+            state.setDdlHash(ddlHash);
+            state.setLastAltered(lastAlteredTimes.get(stateKey));
+            verifiedStates.add(state);
+        }
+        return failedCount;
+    }
+
     public void createAllScriptsFromDB(String targetSchemas) throws SQLException, IOException {
         log.info("Started create scripts.");
         startSync(ChangeType.CREATE_SCRIPT);
@@ -203,42 +490,88 @@ public class ChangeManager {
         else {
             schemaNames = scriptRepo.getAllSchemasInDatabase(scriptRepo.getDatabaseName());
         }
-        int count = 0;
-        for(String schema: schemaNames) {
-            List<SchemaScript> scripts = scriptRepo.getAllScriptsInSchema(schema);
-            for(SchemaScript script: scripts) {
-                count++;
-                if(configTables.contains(script.getFullObjectName())) {
-                    scriptRepo.addConfig(script);
-                }
-                parameterInjector.parametrizeScript(script, false);
+        String database = scriptRepo.getDatabaseName();
+        int count;
+        try (ScriptFileWriter scriptFileWriter = new ScriptFileWriter()) {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for(String schema: schemaNames) {
+                tasks.add(() -> createSchemaScripts(database, schema, configTables, scriptFileWriter));
             }
-            scriptSource.createSchemaScriptFiles(scripts);
+            count = runConcurrently(tasks);
         }
         endSyncSuccess(ChangeType.CREATE_SCRIPT, (long)count);
 
     }
 
+    private int createSchemaScripts(String database, String schema, Set<String> configTables, ScriptFileWriter scriptFileWriter) throws SQLException, IOException {
+        List<SchemaScript> scripts = scriptRepo.getAllScriptsInSchema(database, schema);
+        List<SchemaScript> scriptsWithoutData = new ArrayList<>();
+        for(SchemaScript script: scripts) {
+            parameterInjector.parametrizeScript(script, false);
+            if(configTables.contains(script.getFullObjectName())) {
+                scriptSource.createScriptFile(scriptSource.getSchemaScriptPath(script), writer -> {
+                    writer.write(script.getContent());
+                    scriptRepo.exportConfigData(script, writer, parameterInjector::parametrize);
+                });
+            }
+            else {
+                scriptsWithoutData.add(script);
+            }
+        }
+        scriptSource.createSchemaScriptFiles(scriptsWithoutData, scriptFileWriter);
+        return scripts.size();
+    }
+
     public void createLineage() throws IOException, SQLException {
         log.info("Started Lineage graph.");
         startSync(ChangeType.CREATE_LINEAGE);
         List<Script> scripts = scriptSource.getAllScripts();
-        dependencyGraph.addNodes(scripts);
-        List<ScriptDependency> manualDependencies = config.getDependencyOverride()
-                .stream()
-                .flatMap(dependencyOverride -> {
-                    Script script = scripts.stream().filter(s -> s.getFullObjectName().equals(dependencyOverride.getScript())).findFirst().get();
-                    List<Script> dependencies = dependencyOverride.getDependencies()
-                            .stream()
-                            .map(dependencyName -> scripts.stream().filter(s -> s.getFullObjectName().equals(dependencyName)).findFirst().get())
-                            .collect(Collectors.toList());
-                    return dependencies.stream().map(dependency -> new ScriptDependency(script, dependency));
-                })
+        Map<String, Script> scriptsById = new LinkedHashMap<>();
+        scripts.forEach(script -> scriptsById.putIfAbsent(script.getId(), script));
+        Map<String, LineageState> previousStates = scriptRepo.loadLineageState().stream()
+                .collect(Collectors.toMap(LineageState::getScriptId, state -> state, (first, second) -> first));
+
+        // Adding or removing a script can change how the references of unchanged scripts resolve.
+        boolean rebuild = !previousStates.keySet().equals(scriptsById.keySet());
+        List<Script> changedScripts = scriptsById.values().stream()
+                .filter(script -> rebuild || !Objects.equals(script.getHash(), previousStates.get(script.getId()).getScriptHash()))
                 .collect(Collectors.toList());
+        log.info("Extracting dependencies of {} out of {} scripts.", changedScripts.size(), scriptsById.size());
+        Map<Script, Set<Script>> extractedDependencies = dependencyGraph.extractDependencies(scripts, changedScripts);
+
+        DependencyOverrideIndex overrideIndex = dependencyGraph.getDependencyOverrideIndex(scripts);
+        List<LineageState> states = new ArrayList<>();
+        Set<ScriptDependency> dependencyList = new LinkedHashSet<>();
+        for(Script script: scriptsById.values()) {
+            Set<Script> dependencies = extractedDependencies.get(script);
+            if(dependencies == null) {
+                dependencies = previousStates.get(script.getId()).getDependencies().stream()
+                        .map(scriptsById::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet());
+            }
+            LineageState state = new LineageState();
+            state.setScriptId(script.getId());
+            state.setScriptHash(script.getHash());
+            state.setDependencies(dependencies.stream().map(Script::getId).sorted().collect(Collectors.toList()));
+            states.add(state);
 
-        List<ScriptDependency> dependencyList = dependencyGraph.getDependencyList();
-        dependencyList.addAll(manualDependencies);
-        scriptRepo.insertDependencyList(dependencyList);
+            Set<Script> allDependencies = new HashSet<>(dependencies);
+            allDependencies.addAll(overrideIndex.getDependencies(script));
+            for(Script dependency: allDependencies) {
+                //Remove self dependency for migration scripts
+                if(!dependency.getFullObjectName().equals(script.getFullObjectName())) {
+                    dependencyList.add(new ScriptDependency(script, dependency));
+                }
+            }
+        }
+
+        // Without a previous state the lineage table may hold rows of earlier full inserts, so it is rewritten.
+        boolean replaceAll = previousStates.isEmpty();
+        Set<ScriptDependency> existing = replaceAll ? Set.of() : scriptRepo.getDependencyLineage();
+        List<ScriptDependency> removed = existing.stream().filter(dependency -> !dependencyList.contains(dependency)).collect(Collectors.toList());
+        List<ScriptDependency> added = dependencyList.stream().filter(dependency -> !existing.contains(dependency)).collect(Collectors.toList());
+        scriptRepo.updateDependencyLineage(removed, added, states, replaceAll);
         endSyncSuccess(ChangeType.CREATE_LINEAGE, (long)dependencyList.size());
     }
 
@@ -271,16 +604,136 @@ public class ChangeManager {
         endSyncSuccess(ChangeType.TEST, (long)size);
     }
 
+    /**
+     * Logs the objects whose statements took the most time across the latest deploys. It only reads the metadata tables, so it is not recorded as a change sync.
+     */
+    public List<ObjectExecutionTime> slowestObjects(int changeSyncs, int limit) throws SQLException {
+        log.info("Reading the {} slowest objects of the last {} deploys.", limit, changeSyncs);
+        List<ObjectExecutionTime> objects = scriptRepo.getSlowestObjects(changeSyncs, limit);
+        int rank = 1;
+        for(ObjectExecutionTime object: objects) {
+            log.info("{}. {} [{}]: {} executions, total {} ms, max {} ms, compilation {} ms, queued {} ms, warehouse execution {} ms, slowest query id {}", rank++,
+                    object.getObjectName(), object.getObjectType(), object.getExecutions(), object.getTotalMs(), object.getMaxMs(),
+                    Objects.toString(object.getCompilationMs(), "-"), Objects.toString(object.getQueuedMs(), "-"), Objects.toString(object.getWarehouseExecutionMs(), "-"),
+                    Objects.toString(object.getSlowestQueryId(), "-"));
+        }
+        return objects;
+    }
+
+    /**
+     * Lists the scripts a deploy would run, in deploy order with their dependency level, by comparing the script files against the
+     * script history snapshot saved by the last successful deploy or rollback. It does not connect to Snowflake and is not recorded as a change sync.
+     */
+    public List<PlannedScript> plan() throws IOException {
+        log.info("Planning deploy from the script history snapshot.");
+        MetricsRegistry.getGlobal().reset();
+        commandStartMillis = System.currentTimeMillis();
+        ScriptHistorySnapshot.Snapshot snapshot = scriptRepo.loadScriptHashSnapshot();
+        List<Script> changedScripts = getDeployCandidates(snapshot.getCommitId())
+                .stream()
+                .filter(script -> !config.isScriptExcluded(script))
+                .filter(script -> scriptRepo.isScriptChanged(script))
+                .collect(Collectors.toList());
+        dependencyGraph.addNodes(changedScripts);
+        List<Script> sequencedScript = dependencyGraph.topologicalSort();
+        sequencedScript.forEach(this::validateScript);
+        Map<Script, Integer> levels = dependencyGraph.getLevels(sequencedScript);
+
+        List<PlannedScript> plan = new ArrayList<>();
+        int levelCount = 0;
+        for(Script script: sequencedScript) {
+            PlannedScript plannedScript = new PlannedScript();
+            plannedScript.setScriptId(script.getId());
+            plannedScript.setObjectName(script.getFullObjectName());
+            plannedScript.setObjectType(script.getObjectType().toString());
+            plannedScript.setLevel(levels.get(script));
+            plannedScript.setPreviouslyDeployed(scriptRepo.isScriptPreviouslyDeployed(script));
+            plannedScript.setHash(script.getHash());
+            plan.add(plannedScript);
+            levelCount = Math.max(levelCount, plannedScript.getLevel() + 1);
+            log.info("{} of {}: level {}, {} {}", plan.size(), sequencedScript.size(), plannedScript.getLevel(), plannedScript.isPreviouslyDeployed() ? "change" : "create", script);
+        }
+        log.info("Deploy would run {} scripts in {} dependency levels.", plan.size(), levelCount);
+        reportMetrics(ChangeType.PLAN, Status.SUCCESS);
+        return plan;
+    }
+
+    /**
+     * Writes the deployment plan of all scripts, in deploy order with their dependencies and levels, to be deployed to every environment with deploy --plan.
+     * Scripts are compared with the script history of each environment when the plan is deployed. It does not connect to Snowflake.
+     */
+    public DeploymentPlan writePlan(Path planFile) throws IOException {
+        log.info("Creating the deployment plan of all scripts.");
+        MetricsRegistry.getGlobal().reset();
+        commandStartMillis = System.currentTimeMillis();
+        String commitId = getCleanHeadCommit();
+        List<Script> scripts = scriptSource.getAllScripts();
+        dependencyGraph.addNodes(scripts);
+        List<Script> sequencedScript = dependencyGraph.topologicalSort();
+        Map<Script, Integer> levels = dependencyGraph.getLevels(sequencedScript);
+        DeploymentPlan plan = DeploymentPlanFile.createPlan(sequencedScript, levels, dependencyGraph.getDagGraph(), commitId);
+        new DeploymentPlanFile(planFile).save(plan);
+        int levelCount = levels.values().stream().mapToInt(level -> level + 1).max().orElse(0);
+        log.info("Wrote the deployment plan of {} scripts in {} dependency levels to {}.", plan.getScripts().size(), levelCount, planFile);
+        reportMetrics(ChangeType.PLAN, Status.SUCCESS);
+        return plan;
+    }
+
     public void startSync(ChangeType changeType) throws SQLException {
+        MetricsRegistry.getGlobal().reset();
+        commandStartMillis = System.currentTimeMillis();
         scriptRepo.insertChangeSync(changeType, Status.IN_PROGRESS, changeType.toString() + " started.");
     }
 
     public void endSyncError(ChangeType changeType, String message) throws SQLException {
-        scriptRepo.updateChangeSync(changeType, Status.ERROR, message, null);
+        try {
+            scriptRepo.updateChangeSync(changeType, Status.ERROR, message, null);
+        } finally {
+            reportMetrics(changeType, Status.ERROR);
+        }
     }
 
     public void endSyncSuccess(ChangeType changeType, Long changeCount) throws SQLException {
-        scriptRepo.updateChangeSync(changeType, Status.SUCCESS, "Successfully completed " + changeType.toString() , changeCount);
+        endSyncSuccess(changeType, changeCount, null);
+    }
+
+    public void endSyncSuccess(ChangeType changeType, Long changeCount, String commitId) throws SQLException {
+        try {
+            scriptRepo.updateChangeSync(changeType, Status.SUCCESS, "Successfully completed " + changeType.toString() , changeCount, commitId);
+            if(changeType == ChangeType.DEPLOY || changeType == ChangeType.ROLLBACK) {
+                scriptRepo.saveScriptHashSnapshot(commitId);
+            }
+        } finally {
+            reportMetrics(changeType, Status.SUCCESS);
+        }
+    }
+
+    /**
+     * Closes the Snowflake sessions and the metadata journal of the command, called once the command has ended.
+     */
+    public void close() {
+        scriptRepo.close();
+    }
+
+    /**
+     * Logs the time spent in every phase of the command and exports the metrics. Failing to export does not fail the command.
+     */
+    private void reportMetrics(ChangeType changeType, Status status) {
+        MetricsRegistry registry = MetricsRegistry.getGlobal();
+        for(PhaseSummary phase: registry.summarize()) {
+            log.info("Phase {}: {} times, total {} ms, p50 {} ms, p99 {} ms, max {} ms, {} bytes.", phase.getPhase(), phase.getCount(),
+                    String.format("%.1f", phase.getTotalMillis()), String.format("%.3f", phase.getP50Millis()), String.format("%.3f", phase.getP99Millis()),
+                    String.format("%.3f", phase.getMaxMillis()), phase.getBytes());
+        }
+        if(metricsExporter == null) {
+            return;
+        }
+        try {
+            long startMillis = commandStartMillis == 0 ? System.currentTimeMillis() : commandStartMillis;
+            metricsExporter.export(metricsExporter.createReport(changeType.toString(), status.toString(), startMillis, System.currentTimeMillis(), registry));
+        } catch (IOException e) {
+            log.warn("Unable to write metrics of {}: {}", changeType, e.getMessage());
+        }
     }
 
 
@@ -2,16 +2,25 @@ package com.snowflake.dlsync;
 
 import com.snowflake.dlsync.dependency.DependencyExtractor;
 import com.snowflake.dlsync.dependency.DependencyGraph;
+import com.snowflake.dlsync.doa.GitChangeDetector;
+import com.snowflake.dlsync.doa.MetadataJournal;
+import com.snowflake.dlsync.doa.RecordedConnection;
+import com.snowflake.dlsync.doa.ScriptFileCache;
+import com.snowflake.dlsync.doa.ScriptHistorySnapshot;
 import com.snowflake.dlsync.doa.ScriptRepo;
 import com.snowflake.dlsync.doa.ScriptSource;
+import com.snowflake.dlsync.doa.SessionPool;
+import com.snowflake.dlsync.metrics.MetricsExporter;
 import com.snowflake.dlsync.parser.ParameterInjector;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Properties;
+import java.util.Set;
 
 @Slf4j
 public class ChangeMangerFactory {
@@ -27,19 +36,25 @@ public class ChangeMangerFactory {
 
     public static ChangeManager createChangeManger(ConfigManager configManager) throws IOException, SQLException {
         configManager.init();
+        Properties connectionProperties = configManager.getConfig().getConnection();
 
-        // Create connection
-        Connection connection = createConnection(configManager.getConfig().getConnection());
+        // The connection is opened on the first metadata or DDL statement
+        SessionPool sessionPool = new SessionPool(configManager.getConfig().getParallelism(), () -> createConnection(connectionProperties));
 
         // Create dependencies
-        ScriptSource scriptSource = new ScriptSource(configManager.getScriptRoot());
-        ScriptRepo scriptRepo = new ScriptRepo(connection, configManager.getConfig().getConnection());
-        scriptRepo.init();
+        ScriptFileCache scriptFileCache = new ScriptFileCache(Paths.get(configManager.getScriptRoot(), ".dlsync", "script-cache.json"));
+        ScriptSource scriptSource = new ScriptSource(configManager.getScriptRoot(), scriptFileCache);
+        MetadataJournal metadataJournal = MetadataJournal.forTarget(Paths.get(configManager.getScriptRoot(), ".dlsync", "journal"), connectionProperties);
+        ScriptHistorySnapshot historySnapshot = ScriptHistorySnapshot.forTarget(Paths.get(configManager.getScriptRoot(), ".dlsync", "snapshot"), connectionProperties);
+        ScriptRepo scriptRepo = new ScriptRepo(sessionPool, connectionProperties, configManager.getConfig().getMetadataBatchSize(), metadataJournal, historySnapshot);
         ParameterInjector parameterInjector = new ParameterInjector(configManager.getScriptParameters());
         DependencyExtractor dependencyExtractor = new DependencyExtractor();
         DependencyGraph dependencyGraph = new DependencyGraph(dependencyExtractor, configManager.getConfig());
 
-        return new ChangeManager(configManager.getConfig(), scriptSource, scriptRepo, dependencyGraph, parameterInjector);
+        GitChangeDetector gitChangeDetector = new GitChangeDetector(Paths.get(configManager.getScriptRoot()), Set.of(ConfigManager.CONFIG_FILE_NAME));
+        MetricsExporter metricsExporter = new MetricsExporter(Paths.get(configManager.getScriptRoot(), ".dlsync", "metrics"));
+
+        return new ChangeManager(configManager.getConfig(), scriptSource, scriptRepo, dependencyGraph, parameterInjector, gitChangeDetector, metricsExporter);
     }
 
     /**
@@ -56,7 +71,7 @@ public class ChangeMangerFactory {
 
 
         try {
-            return DriverManager.getConnection(jdbcUrl, connectionProperties);
+            return RecordedConnection.wrap(DriverManager.getConnection(jdbcUrl, connectionProperties));
         } catch (SQLException e) {
             log.error("Failed to create Snowflake connection: {}", e.getMessage());
             throw new SQLException("Unable to connect to Snowflake. Please check your account and connection properties.", e);
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.cli.*;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.util.Arrays;
@@ -19,6 +20,7 @@ public class Main {
         ChangeType changeType = null;
         boolean onlyHashes = false;
         List<String> schemas = null;
+        int exitCode = 0;
         try {
             changeType = getChangeType(args);
             CommandLine commandLine = buildCommandOptions(args);
@@ -29,7 +31,7 @@ public class Main {
             changeManager = ChangeMangerFactory.createChangeManger(scriptRoot, profile);
             switch (changeType) {
                 case DEPLOY:
-                    changeManager.deploy(onlyHashes);
+                    changeManager.deploy(onlyHashes, commandLine.hasOption("plan") ? Paths.get(commandLine.getOptionValue("plan")) : null);
                     log.info("DLsync Changes deployed successfully.");
                     break;
                 case ROLLBACK:
@@ -37,7 +39,7 @@ public class Main {
                     log.info("DLsync Changes rollback successfully.");
                     break;
                 case VERIFY:
-                    if(changeManager.verify()) {
+                    if(changeManager.verify(commandLine.hasOption("full"))) {
                         log.info("DLsync Changes verified successfully.");
                     }
                     else {
@@ -56,6 +58,18 @@ public class Main {
                     changeManager.test();
                     log.info("DLsync successfully tested.");
                     break;
+                case PLAN:
+                    if(commandLine.hasOption("output")) {
+                        changeManager.writePlan(Paths.get(commandLine.getOptionValue("output")));
+                    }
+                    else {
+                        changeManager.plan();
+                    }
+                    log.info("DLsync plan created successfully.");
+                    break;
+                case SLOWEST_OBJECTS:
+                    changeManager.slowestObjects(Integer.parseInt(commandLine.getOptionValue("change-syncs", "10")), Integer.parseInt(commandLine.getOptionValue("limit", "20")));
+                    break;
                 default:
                     log.error("Change type not specified as an argument.");
             }
@@ -64,27 +78,34 @@ public class Main {
             e.printStackTrace();
             log.error("Error: {} ", e);
             changeManager.endSyncError(changeType, e.getMessage());
-            System.exit(2);
+            exitCode = 2;
         } catch (SQLException e) {
             e.printStackTrace();
             log.error("Error: {} ", e);
             changeManager.endSyncError(changeType, e.getMessage());
-            System.exit(3);
+            exitCode = 3;
         } catch (NoSuchAlgorithmException e) {
             e.printStackTrace();
             log.error("Error: {} ", e);
             changeManager.endSyncError(changeType, e.getMessage());
-            System.exit(4);
+            exitCode = 4;
         } catch (ParseException e) {
             log.error("Error: {} ", e);
             changeManager.endSyncError(changeType, e.getMessage());
-            System.exit(5);
+            exitCode = 5;
         }
         catch (Exception e) {
             e.printStackTrace();
             log.error("Error: {}", e.getMessage());
             changeManager.endSyncError(changeType, e.getMessage());
-            System.exit(1111);
+            exitCode = 1111;
+        } finally {
+            if(changeManager != null) {
+                changeManager.close();
+            }
+        }
+        if(exitCode != 0) {
+            System.exit(exitCode);
         }
     }
 
@@ -100,17 +121,27 @@ public class Main {
             options.addOption(profile);
             Option targetSchemas = new Option("t", "target-schemas", true, "Comma separated list of schemas to use");
             options.addOption(targetSchemas);
+            Option full = new Option("f", "full", false, "Verify all objects, including the ones not altered since the last verify");
+            options.addOption(full);
+            Option changeSyncs = new Option("c", "change-syncs", true, "Number of latest deploys to read execution times from, 10 by default");
+            options.addOption(changeSyncs);
+            Option limit = new Option("l", "limit", true, "Number of slowest objects to report, 20 by default");
+            options.addOption(limit);
+            Option output = new Option(null, "output", true, "File to write the deployment plan of all scripts to, for deploy --plan");
+            options.addOption(output);
+            Option plan = new Option(null, "plan", true, "Deployment plan file written by plan --output to deploy instead of the script files");
+            options.addOption(plan);
             CommandLine commandLine = new DefaultParser().parse(options, argsWithoutCommand);
             return commandLine;
         } catch (ParseException e) {
-            new HelpFormatter().printHelp("dlsync [deploy|rollback|verify|create-script|create-lineage] [options]", "options:", options, "");
+            new HelpFormatter().printHelp("dlsync [deploy|rollback|verify|create-script|create-lineage|test|slowest-objects|plan] [options]", "options:", options, "");
             throw e;
         }
 
     }
 
     public static ChangeType getChangeType(String[] args) {
-        return args.length >= 1 ? ChangeType.valueOf(args[0].toUpperCase()) : ChangeType.VERIFY;
+        return args.length >= 1 ? ChangeType.valueOf(args[0].toUpperCase().replace('-', '_')) : ChangeType.VERIFY;
     }
 
 
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 @Slf4j
 public class ScriptFactory {
@@ -17,6 +18,14 @@ public class ScriptFactory {
         return new SchemaScript(scriptPath, databaseName, schemaName, objectName, objectType, content);
     }
 
+    public static AccountScript getAccountScript(String scriptPath, ScriptObjectType objectType, String objectName, String hash, Supplier<String> contentLoader) {
+        return new AccountScript(scriptPath, objectName, objectType, hash, contentLoader);
+    }
+
+    public static SchemaScript getSchemaScript(String scriptPath, String databaseName, String schemaName, ScriptObjectType objectType, String objectName, String hash, Supplier<String> contentLoader) {
+        return new SchemaScript(scriptPath, databaseName, schemaName, objectName, objectType, hash, contentLoader);
+    }
+
     public static SchemaScript getSchemaScript(String databaseName, String schemaName, ScriptObjectType objectType, String objectName, String content) {
         return getSchemaScript(null, databaseName, schemaName, objectType, objectName, content);
     }
@@ -25,6 +34,10 @@ public class ScriptFactory {
         return new MigrationScript(parentScript, content, version, author, rollback, verify);
     }
 
+    public static MigrationScript getMigrationScript(Script parentScript, String hash, Supplier<String> contentLoader, Long version, String author, String rollback, String verify) {
+        return new MigrationScript(parentScript, hash, contentLoader, version, author, rollback, verify);
+    }
+
     public static MigrationScript getSchemaMigrationScript(String databaseName, String schemaName, ScriptObjectType objectType, String objectName, String content, Long version, String author, String rollback, String verify) {
         SchemaScript schemaScript = getSchemaScript(databaseName, schemaName, objectType, objectName, content);
         return new MigrationScript(schemaScript, content, version, author, rollback, verify);
@@ -3,6 +3,12 @@ package com.snowflake.dlsync;
 import lombok.extern.slf4j.Slf4j;
 import net.snowflake.client.jdbc.internal.org.bouncycastle.util.encoders.Hex;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -16,4 +22,32 @@ public class Util {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Writes the file to a temporary file in the same directory that is then moved over it, so the file is never left half written.
+     * File systems without atomic moves get a plain replace instead.
+     */
+    public static <E extends Exception> void writeAtomically(Path file, OutputWriter<E> outputWriter) throws IOException, E {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, "." + file.getFileName(), ".tmp");
+        try {
+            try(OutputStream output = Files.newOutputStream(tempFile)) {
+                outputWriter.write(output);
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                log.debug("Atomic move is not supported for {}, replacing it: {}", file, e.getMessage());
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @FunctionalInterface
+    public interface OutputWriter<E extends Exception> {
+        void write(OutputStream output) throws IOException, E;
+    }
 }
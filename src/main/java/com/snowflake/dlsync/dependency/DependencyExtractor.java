@@ -6,8 +6,10 @@ import com.snowflake.dlsync.parser.SqlTokenizer;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -23,26 +25,43 @@ public class DependencyExtractor {
 
     private static final String DEPENDENCY_START_REGEX = "([()\\[\\],\\.\\s\\\"])";
     private static final String DEPENDENCY_END_REGEX = "([()\\[\\],\\.\\s\\'\\\";])";
-    private List<Script> scripts = new ArrayList<>();
+    private final Map<String, List<Script>> scriptsByName = new HashMap<>();
+    private final Map<String, List<Script>> multiTokenScriptsByName = new HashMap<>();
+    private final Map<String, List<Script>> scriptsByFullName = new HashMap<>();
     public DependencyExtractor() {
         log.debug("Dependency extractor started.");
     }
 
 
     public void addScripts(List<? extends Script> scripts) {
-        this.scripts.addAll(scripts);
+        for(Script script: scripts) {
+            String objectName = script.getObjectName();
+            if(SqlTokenizer.isIdentifierToken(objectName)) {
+                scriptsByName.computeIfAbsent(objectName, name -> new ArrayList<>()).add(script);
+            }
+            else {
+                multiTokenScriptsByName.computeIfAbsent(objectName, name -> new ArrayList<>()).add(script);
+            }
+            scriptsByFullName.computeIfAbsent(script.getFullObjectName(), name -> new ArrayList<>()).add(script);
+        }
     }
 
     public Set<Script> extractScriptDependencies(Script script) {
         Set<Script> dependencies = new HashSet<>();
-        dependencies = scripts.parallelStream()
-                .filter(s -> !s.getFullObjectName().equals(script.getFullObjectName()))
-                .filter(s -> isDependencyOf(s, script))
-                .collect(Collectors.toSet());
+        String content = SqlTokenizer.removeSqlCommentsAndLiterals(script.getContent());
+        for(String token: SqlTokenizer.getIdentifierTokens(content)) {
+            List<Script> candidates = scriptsByName.get(token);
+            if(candidates != null) {
+                addReferencedScripts(token, candidates, script, content, dependencies);
+            }
+        }
+        for(Map.Entry<String, List<Script>> entry: multiTokenScriptsByName.entrySet()) {
+            addReferencedScripts(entry.getKey(), entry.getValue(), script, content, dependencies);
+        }
         if(script instanceof MigrationScript) {
             MigrationScript migrationScript = (MigrationScript)script;
-            Set<Script> versionDependencies  = scripts.stream()
-                    .filter(s -> s.getFullObjectName().equals(script.getFullObjectName()) && s.getObjectType().equals(script.getObjectType()))
+            Set<Script> versionDependencies  = scriptsByFullName.getOrDefault(script.getFullObjectName(), List.of()).stream()
+                    .filter(s -> s.getObjectType().equals(script.getObjectType()) && s instanceof MigrationScript)
                     .map(s -> (MigrationScript) s)
                     .filter(s -> s.getVersion() <  migrationScript.getVersion()).collect(Collectors.toSet());
             dependencies.addAll(versionDependencies);
@@ -52,21 +71,24 @@ public class DependencyExtractor {
         return dependencies;
     }
 
-    private boolean isDependencyOf(Script dependency, Script target) {
-        if(dependency.getObjectName().equals(target.getObjectName())) {
-            log.debug("Found same object name with different schema: {}, {}", dependency, target);
-        }
-        Set<String> fullIdentifiers = SqlTokenizer.getFullIdentifiers(dependency.getObjectName(), target.getContent());
-        if(fullIdentifiers.isEmpty()) {
-            return false;
-        }
-        for(String identifier: fullIdentifiers) {
-            String fullObjectName = target.resolveObjectReference(identifier);
-            if (fullObjectName.equals(dependency.getFullObjectName())) {
-                return true;
+    private void addReferencedScripts(String name, List<Script> candidates, Script target, String sanitizedContent, Set<Script> dependencies) {
+        Set<String> referencedObjects = null;
+        for(Script candidate: candidates) {
+            if(candidate.getFullObjectName().equals(target.getFullObjectName())) {
+                continue;
+            }
+            if(candidate.getObjectName().equals(target.getObjectName())) {
+                log.debug("Found same object name with different schema: {}, {}", candidate, target);
+            }
+            if(referencedObjects == null) {
+                referencedObjects = SqlTokenizer.findFullIdentifiers(name, sanitizedContent).stream()
+                        .map(target::resolveObjectReference)
+                        .collect(Collectors.toSet());
+            }
+            if(referencedObjects.contains(candidate.getFullObjectName())) {
+                dependencies.add(candidate);
             }
         }
-        return false;
     }
 
 }
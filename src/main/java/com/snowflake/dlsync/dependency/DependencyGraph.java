@@ -1,121 +1,254 @@
 package com.snowflake.dlsync.dependency;
 
+import com.snowflake.dlsync.metrics.FlightEvents;
+import com.snowflake.dlsync.metrics.MetricsRegistry;
+import com.snowflake.dlsync.metrics.Phase;
 import com.snowflake.dlsync.models.*;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
+/**
+ * Dependency graph of scripts. Every script gets a dense integer index when it is first seen, the edges from a dependency to its
+ * dependents are kept as int arrays and compressed into a sparse row adjacency for sorting.
+ */
 @Slf4j
 public class DependencyGraph {
+    private static final int INITIAL_CAPACITY = 64;
     private DependencyExtractor dependencyExtractor;
     private Config config;
-    private Map<Script, Set<Script>> dagGraph;
-    private Map<Script, Integer> inDegree;
-    private Stack<Script> zeroInDegreeScripts = new Stack<>();
+    private final Map<Script, Integer> scriptIndex = new HashMap<>();
+    private final List<Script> scripts = new ArrayList<>();
+    private boolean[] added = new boolean[INITIAL_CAPACITY];
+    private int[] inDegree = new int[INITIAL_CAPACITY];
+    private int addedCount;
+    private int[] zeroInDegreeScripts = new int[INITIAL_CAPACITY];
+    private int zeroInDegreeCount;
+    private int[] edgeDependencies = new int[INITIAL_CAPACITY];
+    private int[] edgeDependents = new int[INITIAL_CAPACITY];
+    private int edgeCount;
+    private int[] dependentOffsets;
+    private int[] dependents;
+    private DependencyOverrideIndex dependencyOverrideIndex;
     public DependencyGraph(DependencyExtractor dependencyExtractor, Config config) {
         this.dependencyExtractor = dependencyExtractor;
         this.config = config;
-        dagGraph = new HashMap<>();
-        inDegree = new HashMap<>();
+        this.dependencyOverrideIndex = new DependencyOverrideIndex(config == null ? null : config.getDependencyOverride());
     }
 
     public void addNodes(List<? extends Script> nodes) {
         log.info("Building dependency graph of {} scripts.", nodes.size());
+        long start = System.nanoTime();
+        FlightEvents.GraphBuild graphBuildEvent = new FlightEvents.GraphBuild();
+        graphBuildEvent.begin();
         dependencyExtractor.addScripts(nodes);
+        DependencyOverrideIndex overrideIndex = getDependencyOverrideIndex(nodes);
         for(Script script: nodes) {
+            int node = indexOf(script);
+            if(added[node]) {
+                log.debug("Script {} is already in the dependency graph.", script);
+                continue;
+            }
+            FlightEvents.DependencyExtraction extractionEvent = new FlightEvents.DependencyExtraction();
+            extractionEvent.begin();
             Set<Script> scriptDependencies = dependencyExtractor.extractScriptDependencies(script);
-            List<Script> manualOverride = getDependencyOverride(script, nodes);
+            extractionEvent.commitFor(script, script.getContent().length());
+            List<Script> manualOverride = overrideIndex.getDependencies(script);
             scriptDependencies.addAll(manualOverride);
             for(Script dependency: scriptDependencies) {
-                dagGraph.computeIfAbsent(dependency, k -> new HashSet<>()).add(script);
+                addEdge(indexOf(dependency), node);
             }
 
-            inDegree.put(script, scriptDependencies.size());
+            added[node] = true;
+            addedCount++;
+            inDegree[node] = scriptDependencies.size();
             if(scriptDependencies.size() == 0) {
-                zeroInDegreeScripts.push(script);
+                if(zeroInDegreeCount == zeroInDegreeScripts.length) {
+                    zeroInDegreeScripts = Arrays.copyOf(zeroInDegreeScripts, zeroInDegreeCount * 2);
+                }
+                zeroInDegreeScripts[zeroInDegreeCount++] = node;
             }
         }
-        log.debug("Using the following dependency graph: {}", dagGraph);
+        dependentOffsets = null;
+        MetricsRegistry.getGlobal().record(Phase.GRAPH_BUILD, start, 0);
+        graphBuildEvent.commitFor(nodes.size());
+        log.debug("Dependency graph has {} scripts and {} edges.", addedCount, edgeCount);
+    }
+
+    private int indexOf(Script script) {
+        Integer index = scriptIndex.get(script);
+        if(index != null) {
+            return index;
+        }
+        int node = scripts.size();
+        scripts.add(script);
+        scriptIndex.put(script, node);
+        if(node == inDegree.length) {
+            inDegree = Arrays.copyOf(inDegree, node * 2);
+            added = Arrays.copyOf(added, node * 2);
+        }
+        return node;
+    }
+
+    private void addEdge(int dependency, int dependent) {
+        if(edgeCount == edgeDependencies.length) {
+            edgeDependencies = Arrays.copyOf(edgeDependencies, edgeCount * 2);
+            edgeDependents = Arrays.copyOf(edgeDependents, edgeCount * 2);
+        }
+        edgeDependencies[edgeCount] = dependency;
+        edgeDependents[edgeCount] = dependent;
+        edgeCount++;
+    }
+
+    /**
+     * Compresses the edges into dependentOffsets and dependents, the dependents of node i are dependents[dependentOffsets[i]] up to dependents[dependentOffsets[i + 1]].
+     */
+    private void buildAdjacency() {
+        if(dependentOffsets != null) {
+            return;
+        }
+        int size = scripts.size();
+        int[] offsets = new int[size + 1];
+        for(int edge = 0; edge < edgeCount; edge++) {
+            offsets[edgeDependencies[edge] + 1]++;
+        }
+        for(int node = 0; node < size; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+        int[] targets = new int[edgeCount];
+        int[] next = Arrays.copyOf(offsets, size);
+        for(int edge = 0; edge < edgeCount; edge++) {
+            targets[next[edgeDependencies[edge]]++] = edgeDependents[edge];
+        }
+        dependents = targets;
+        dependentOffsets = offsets;
+    }
+
+    /**
+     * Extracts the dependencies of the given scripts only, all the nodes are used to resolve the references.
+     * Dependency overrides are not included.
+     */
+    public Map<Script, Set<Script>> extractDependencies(List<? extends Script> nodes, Collection<? extends Script> scripts) {
+        dependencyExtractor.addScripts(nodes);
+        Map<Script, Set<Script>> dependencies = new HashMap<>();
+        for(Script script: scripts) {
+            dependencies.put(script, dependencyExtractor.extractScriptDependencies(script));
+        }
+        return dependencies;
     }
 
     public List<Script> topologicalSort() {
         log.info("Sorting scripts based on dependency ...");
-        List<Script> sortedScript = new ArrayList<>(inDegree.size());
-        while(!zeroInDegreeScripts.isEmpty()) {
-            Script currentScript = zeroInDegreeScripts.pop();
-            sortedScript.add(currentScript);
-            log.debug("{} script edges {} ", currentScript, dagGraph.get(currentScript));
-            if(dagGraph.get(currentScript) == null) {
-                continue;
-            }
-            for(Script edge: dagGraph.get(currentScript)) {
-                int before = inDegree.get(edge);
-                inDegree.put(edge, inDegree.get(edge) - 1);
-                if (inDegree.get(edge) == 0) {
-                    zeroInDegreeScripts.push(edge);
+        long start = System.nanoTime();
+        buildAdjacency();
+        int[] remainingDependencies = Arrays.copyOf(inDegree, scripts.size());
+        int[] stack = new int[scripts.size()];
+        int top = 0;
+        for(int i = 0; i < zeroInDegreeCount; i++) {
+            stack[top++] = zeroInDegreeScripts[i];
+        }
+        List<Script> sortedScript = new ArrayList<>(addedCount);
+        while(top > 0) {
+            int node = stack[--top];
+            sortedScript.add(scripts.get(node));
+            for(int edge = dependentOffsets[node]; edge < dependentOffsets[node + 1]; edge++) {
+                int dependent = dependents[edge];
+                if(--remainingDependencies[dependent] == 0) {
+                    stack[top++] = dependent;
                 }
             }
         }
-        if(inDegree.size() != sortedScript.size()) {
-            log.error("DAG graph Error, input script size({}) is different than sequenced script size({})", inDegree.size(), sortedScript.size());
-            for(Script script: inDegree.keySet()) {
-                if(!sortedScript.contains(script)) {
+        if(addedCount != sortedScript.size()) {
+            log.error("DAG graph Error, input script size({}) is different than sequenced script size({})", addedCount, sortedScript.size());
+            for(int node = 0; node < scripts.size(); node++) {
+                if(added[node] && remainingDependencies[node] > 0) {
+                    Script script = scripts.get(node);
                     log.warn("Dependencies for {} are: {}", script, dependencyExtractor.extractScriptDependencies(script));
                 }
             }
             throw new RuntimeException("Sorting Error, Cyclic dependency detected. sorted script size is missing some scripts.");
         }
+        MetricsRegistry.getGlobal().record(Phase.SORT, start, 0);
         log.info("Sorted scripts: {}", sortedScript);
         return sortedScript;
     }
 
+    /**
+     * @param sortedScripts the scripts in the order returned by {@link #topologicalSort()}.
+     * @return the level of every script, 0 for scripts without dependencies in the graph, otherwise one more than the highest level of their dependencies.
+     * Scripts on the same level do not depend on each other.
+     */
+    public Map<Script, Integer> getLevels(List<Script> sortedScripts) {
+        buildAdjacency();
+        int[] levels = new int[scripts.size()];
+        Map<Script, Integer> scriptLevels = new LinkedHashMap<>();
+        for(Script script: sortedScripts) {
+            int node = scriptIndex.get(script);
+            scriptLevels.put(script, levels[node]);
+            for(int edge = dependentOffsets[node]; edge < dependentOffsets[node + 1]; edge++) {
+                int dependent = dependents[edge];
+                levels[dependent] = Math.max(levels[dependent], levels[node] + 1);
+            }
+        }
+        return scriptLevels;
+    }
+
     public void printDependencyGraph() {
-        for(Script node: dagGraph.keySet()) {
-            System.out.println("Script: " + node.getFullObjectName() + " depends on -> " + dagGraph.get(node).stream().map(s -> s.getFullObjectName()).collect(Collectors.toList()));
+        buildAdjacency();
+        for(int node = 0; node < scripts.size(); node++) {
+            if(dependentOffsets[node] == dependentOffsets[node + 1]) {
+                continue;
+            }
+            List<String> dependentNames = new ArrayList<>();
+            for(int edge = dependentOffsets[node]; edge < dependentOffsets[node + 1]; edge++) {
+                dependentNames.add(scripts.get(dependents[edge]).getFullObjectName());
+            }
+            System.out.println("Script: " + scripts.get(node).getFullObjectName() + " depends on -> " + dependentNames);
         }
     }
 
     public List<ScriptDependency> getDependencyList() {
+        buildAdjacency();
         Set<ScriptDependency> dependencyList = new HashSet<>();
-        for(Script dependency: dagGraph.keySet()) {
-            for(Script node: dagGraph.get(dependency)) {
+        for(int node = 0; node < scripts.size(); node++) {
+            Script dependency = scripts.get(node);
+            for(int edge = dependentOffsets[node]; edge < dependentOffsets[node + 1]; edge++) {
+                Script dependent = scripts.get(dependents[edge]);
                 //Remove self dependency for migration scripts
-                if(node.getFullObjectName().equals(dependency.getFullObjectName())) {
+                if(dependent.getFullObjectName().equals(dependency.getFullObjectName())) {
                     continue;
                 }
-                ScriptDependency scriptDependency = new ScriptDependency(node, dependency);
-                dependencyList.add(scriptDependency);
+                dependencyList.add(new ScriptDependency(dependent, dependency));
             }
         }
         return new ArrayList<>(dependencyList);
     }
 
+    /**
+     * @return the dependents of every script that has any, keyed by the script.
+     */
     public Map<Script, Set<Script>> getDagGraph() {
+        buildAdjacency();
+        Map<Script, Set<Script>> dagGraph = new HashMap<>();
+        for(int node = 0; node < scripts.size(); node++) {
+            if(dependentOffsets[node] == dependentOffsets[node + 1]) {
+                continue;
+            }
+            Set<Script> nodeDependents = new HashSet<>();
+            for(int edge = dependentOffsets[node]; edge < dependentOffsets[node + 1]; edge++) {
+                nodeDependents.add(scripts.get(dependents[edge]));
+            }
+            dagGraph.put(scripts.get(node), nodeDependents);
+        }
         return dagGraph;
     }
 
     public List<Script> getDependencyOverride(Script script, List<? extends Script> nodes) {
-        if(config == null) {
-            return new ArrayList<>();
-        }
-        List<DependencyOverride> overrides = config.getDependencyOverride();
-        if(overrides == null || overrides.size() == 0) {
-            return new ArrayList<>();
-        }
-
-        List<Script> scriptsDependencyOverrides = overrides.stream()
-                .filter(dependencyOverride -> dependencyOverride.getScript().equals(script.getFullObjectName()))
-                .flatMap(dependencyOverride -> dependencyOverride.getDependencies().stream())
-                .map(dependencyName -> findScriptByName(nodes, dependencyName))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toList());
-
-        return scriptsDependencyOverrides;
+        return getDependencyOverrideIndex(nodes).getDependencies(script);
     }
 
-    private Optional<? extends Script> findScriptByName(List<? extends Script> allScripts, String fullObjectName) {
-        return allScripts.parallelStream().filter(script -> script.getFullObjectName().equals(fullObjectName)).findFirst();
+    public DependencyOverrideIndex getDependencyOverrideIndex(List<? extends Script> nodes) {
+        dependencyOverrideIndex.resolve(nodes);
+        return dependencyOverrideIndex;
     }
 }
@@ -0,0 +1,80 @@
+package com.snowflake.dlsync.dependency;
+
+import com.snowflake.dlsync.models.DependencyOverride;
+import com.snowflake.dlsync.models.Script;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+
+/**
+ * The dependency overrides of the config compiled into a map from the full object name of a script to the full object names of its
+ * override dependencies, resolved against the scripts by name.
+ * Names that do not match any script are collected and reported together instead of failing.
+ */
+@Slf4j
+public class DependencyOverrideIndex {
+    private final Map<String, Set<String>> overridesByScript = new HashMap<>();
+    private Map<String, List<Script>> resolvedOverrides = new HashMap<>();
+    private Set<String> unresolvedNames = new TreeSet<>();
+    private List<? extends Script> resolvedNodes;
+
+    public DependencyOverrideIndex(List<DependencyOverride> overrides) {
+        if(overrides == null) {
+            return;
+        }
+        for(DependencyOverride override: overrides) {
+            if(override.getScript() == null || override.getDependencies() == null) {
+                continue;
+            }
+            overridesByScript.computeIfAbsent(override.getScript(), name -> new LinkedHashSet<>()).addAll(override.getDependencies());
+        }
+    }
+
+    /**
+     * Resolves the override names against the given scripts, a script name shared by several scripts resolves to the first one.
+     * Resolving the same list again is a no-op.
+     */
+    public synchronized void resolve(List<? extends Script> nodes) {
+        if(nodes == resolvedNodes) {
+            return;
+        }
+        Map<String, List<Script>> overrides = new HashMap<>();
+        Set<String> unresolved = new TreeSet<>();
+        if(!overridesByScript.isEmpty()) {
+            Map<String, Script> scriptsByName = new HashMap<>();
+            for(Script script: nodes) {
+                scriptsByName.putIfAbsent(script.getFullObjectName(), script);
+            }
+            for(Map.Entry<String, Set<String>> entry: overridesByScript.entrySet()) {
+                if(!scriptsByName.containsKey(entry.getKey())) {
+                    unresolved.add(entry.getKey());
+                }
+                List<Script> dependencies = new ArrayList<>();
+                for(String dependencyName: entry.getValue()) {
+                    Script dependency = scriptsByName.get(dependencyName);
+                    if(dependency == null) {
+                        unresolved.add(dependencyName);
+                    }
+                    else {
+                        dependencies.add(dependency);
+                    }
+                }
+                overrides.put(entry.getKey(), dependencies);
+            }
+        }
+        if(!unresolved.isEmpty()) {
+            log.warn("Ignoring {} dependency override names that do not match any script: {}", unresolved.size(), unresolved);
+        }
+        resolvedOverrides = overrides;
+        unresolvedNames = unresolved;
+        resolvedNodes = nodes;
+    }
+
+    public List<Script> getDependencies(Script script) {
+        return resolvedOverrides.getOrDefault(script.getFullObjectName(), List.of());
+    }
+
+    public Set<String> getUnresolvedNames() {
+        return Collections.unmodifiableSet(unresolvedNames);
+    }
+}
@@ -0,0 +1,218 @@
+package com.snowflake.dlsync.dependency;
+
+import com.snowflake.dlsync.models.Script;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs sorted scripts as a wavefront: a script is started as soon as all of its dependencies have been deployed,
+ * with at most parallelism scripts running at the same time. Dependents of a failed script are never started.
+ * With more than one session the ready script with the longest chain of remaining work through its dependents is started first,
+ * sequential runs keep the sorted order.
+ */
+@Slf4j
+public class DeploymentScheduler {
+    private final int parallelism;
+    private final boolean continueOnFailure;
+
+    public DeploymentScheduler(int parallelism, boolean continueOnFailure) {
+        this.parallelism = Math.max(1, parallelism);
+        this.continueOnFailure = continueOnFailure;
+    }
+
+    public Result execute(List<Script> sequencedScripts, Map<Script, Set<Script>> dagGraph, ScriptTask task) {
+        return execute(sequencedScripts, dagGraph, task, Collections.emptyMap());
+    }
+
+    /**
+     * @param durations historical execution time in milliseconds of the scripts keyed by script id, used to weight the chains.
+     *                  Scripts without history weigh the average of the known durations.
+     */
+    public Result execute(List<Script> sequencedScripts, Map<Script, Set<Script>> dagGraph, ScriptTask task, Map<String, Long> durations) {
+        Map<Script, Integer> order = new HashMap<>();
+        for(int i = 0; i < sequencedScripts.size(); i++) {
+            order.put(sequencedScripts.get(i), i);
+        }
+        List<List<Integer>> dependents = new ArrayList<>(sequencedScripts.size());
+        int[] pendingDependencies = new int[sequencedScripts.size()];
+        for(Script script: sequencedScripts) {
+            List<Integer> scriptDependents = new ArrayList<>();
+            Set<Script> edges = dagGraph == null ? null : dagGraph.get(script);
+            if(edges != null) {
+                for(Script dependent: edges) {
+                    Integer dependentIndex = order.get(dependent);
+                    if(dependentIndex != null) {
+                        scriptDependents.add(dependentIndex);
+                        pendingDependencies[dependentIndex]++;
+                    }
+                }
+            }
+            dependents.add(scriptDependents);
+        }
+
+        PriorityQueue<Integer> readyScripts;
+        if(parallelism > 1) {
+            long[] remainingWork = criticalPathLengths(sequencedScripts, dependents, pendingDependencies, durations);
+            readyScripts = new PriorityQueue<>(Comparator.<Integer>comparingLong(index -> remainingWork[index]).reversed().thenComparingInt(index -> index));
+        }
+        else {
+            readyScripts = new PriorityQueue<>();
+        }
+        for(int i = 0; i < pendingDependencies.length; i++) {
+            if(pendingDependencies[i] == 0) {
+                readyScripts.add(i);
+            }
+        }
+
+        ExecutorService executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+        CompletionService<Outcome> completionService = new ExecutorCompletionService<>(executor != null ? executor : Runnable::run);
+        Result result = new Result();
+        boolean[] skipped = new boolean[sequencedScripts.size()];
+        int running = 0;
+        try {
+            while(true) {
+                boolean canStart = continueOnFailure || result.firstFailure == null;
+                while(canStart && running < parallelism && !readyScripts.isEmpty()) {
+                    int index = readyScripts.poll();
+                    Script script = sequencedScripts.get(index);
+                    completionService.submit(() -> run(index, script, task));
+                    running++;
+                }
+                if(running == 0) {
+                    break;
+                }
+                Outcome outcome = completionService.take().get();
+                running--;
+                Script script = sequencedScripts.get(outcome.index);
+                if(outcome.error == null) {
+                    result.deployedScripts.add(script);
+                    for(int dependent: dependents.get(outcome.index)) {
+                        if(--pendingDependencies[dependent] == 0 && !skipped[dependent]) {
+                            readyScripts.add(dependent);
+                        }
+                    }
+                    continue;
+                }
+                result.failedScripts.put(script, outcome.error);
+                if(result.firstFailure == null) {
+                    result.firstFailure = outcome.error;
+                }
+                skipDependents(outcome.index, dependents, skipped, sequencedScripts, result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Deployment interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unexpected error while deploying scripts.", e.getCause());
+        } finally {
+            if(executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return for every script the sum of the weights along the heaviest path from the script to the end of the graph, including the script itself.
+     */
+    static long[] criticalPathLengths(List<Script> sequencedScripts, List<List<Integer>> dependents, int[] pendingDependencies, Map<String, Long> durations) {
+        int size = sequencedScripts.size();
+        long[] weights = new long[size];
+        long knownTotal = 0;
+        int known = 0;
+        for(int i = 0; i < size; i++) {
+            Long duration = durations.get(sequencedScripts.get(i).getId());
+            if(duration != null) {
+                weights[i] = Math.max(1, duration);
+                knownTotal += weights[i];
+                known++;
+            }
+        }
+        long defaultWeight = known == 0 ? 1 : Math.max(1, knownTotal / known);
+        for(int i = 0; i < size; i++) {
+            if(!durations.containsKey(sequencedScripts.get(i).getId())) {
+                weights[i] = defaultWeight;
+            }
+        }
+
+        int[] topologicalOrder = new int[size];
+        int[] pending = Arrays.copyOf(pendingDependencies, size);
+        int head = 0, tail = 0;
+        for(int i = 0; i < size; i++) {
+            if(pending[i] == 0) {
+                topologicalOrder[tail++] = i;
+            }
+        }
+        while(head < tail) {
+            for(int dependent: dependents.get(topologicalOrder[head++])) {
+                if(--pending[dependent] == 0) {
+                    topologicalOrder[tail++] = dependent;
+                }
+            }
+        }
+
+        long[] lengths = new long[size];
+        for(int i = tail - 1; i >= 0; i--) {
+            int index = topologicalOrder[i];
+            long longestDependent = 0;
+            for(int dependent: dependents.get(index)) {
+                longestDependent = Math.max(longestDependent, lengths[dependent]);
+            }
+            lengths[index] = weights[index] + longestDependent;
+        }
+        if(known > 0 && tail > 0) {
+            log.info("Scheduling by historical durations of {} of {} scripts, longest dependency chain is about {} ms.", known, size, Arrays.stream(lengths).max().getAsLong());
+        }
+        return lengths;
+    }
+
+    private void skipDependents(int failedIndex, List<List<Integer>> dependents, boolean[] skipped, List<Script> sequencedScripts, Result result) {
+        Deque<Integer> queue = new ArrayDeque<>(dependents.get(failedIndex));
+        while(!queue.isEmpty()) {
+            int index = queue.poll();
+            if(skipped[index]) {
+                continue;
+            }
+            skipped[index] = true;
+            Script script = sequencedScripts.get(index);
+            log.warn("Skipping {} since one of its dependencies failed to deploy.", script.getId());
+            result.skippedScripts.add(script);
+            queue.addAll(dependents.get(index));
+        }
+    }
+
+    private Outcome run(int index, Script script, ScriptTask task) {
+        try {
+            task.run(script);
+            return new Outcome(index, null);
+        } catch (Exception e) {
+            return new Outcome(index, e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface ScriptTask {
+        void run(Script script) throws Exception;
+    }
+
+    @Getter
+    public static class Result {
+        private final List<Script> deployedScripts = new ArrayList<>();
+        private final Map<Script, Exception> failedScripts = new LinkedHashMap<>();
+        private final List<Script> skippedScripts = new ArrayList<>();
+        private Exception firstFailure;
+    }
+
+    private static class Outcome {
+        private final int index;
+        private final Exception error;
+
+        private Outcome(int index, Exception error) {
+            this.index = index;
+            this.error = error;
+        }
+    }
+}
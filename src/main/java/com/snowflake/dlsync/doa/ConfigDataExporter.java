@@ -0,0 +1,92 @@
+package com.snowflake.dlsync.doa;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.UnaryOperator;
+
+/**
+ * Writes the rows of a config table as migration versions of multi-row INSERT statements.
+ * Rows are written as they are fetched, so only one statement is held in memory at a time.
+ */
+@Slf4j
+public class ConfigDataExporter {
+    public static final int DEFAULT_ROWS_PER_STATEMENT = 1000;
+    public static final int DEFAULT_MAX_STATEMENT_LENGTH = 512 * 1024;
+    private final int rowsPerStatement;
+    private final int maxStatementLength;
+
+    public ConfigDataExporter() {
+        this(DEFAULT_ROWS_PER_STATEMENT, DEFAULT_MAX_STATEMENT_LENGTH);
+    }
+
+    public ConfigDataExporter(int rowsPerStatement, int maxStatementLength) {
+        this.rowsPerStatement = Math.max(1, rowsPerStatement);
+        this.maxStatementLength = Math.max(1, maxStatementLength);
+    }
+
+    /**
+     * @param transformer applied to each migration version before it is written, e.g. to parametrize it.
+     * @return the number of rows written.
+     */
+    public long export(ResultSet resultSet, String fullObjectName, Writer writer, UnaryOperator<String> transformer) throws SQLException, IOException {
+        int columnCount = resultSet.getMetaData().getColumnCount();
+        StringBuilder values = new StringBuilder();
+        long rowCount = 0;
+        int rowsInStatement = 0;
+        long version = 1;
+        while(resultSet.next()) {
+            if(rowsInStatement > 0) {
+                values.append(", ");
+            }
+            appendRow(values, resultSet, columnCount);
+            rowCount++;
+            rowsInStatement++;
+            if(rowsInStatement >= rowsPerStatement || values.length() >= maxStatementLength) {
+                writeVersion(writer, version++, fullObjectName, values, transformer);
+                values.setLength(0);
+                rowsInStatement = 0;
+            }
+        }
+        if(rowsInStatement > 0) {
+            writeVersion(writer, version, fullObjectName, values, transformer);
+        }
+        log.debug("Exported {} rows of {} in {} statements", rowCount, fullObjectName, rowsInStatement > 0 ? version : version - 1);
+        return rowCount;
+    }
+
+    private void appendRow(StringBuilder values, ResultSet resultSet, int columnCount) throws SQLException {
+        values.append("(");
+        for(int i = 1; i <= columnCount; i++) {
+            if(i > 1) {
+                values.append(", ");
+            }
+            Object value = resultSet.getObject(i);
+            if(value == null) {
+                values.append("null");
+            }
+            else {
+                values.append("'").append(value.toString().replace("'", "''")).append("'");
+            }
+        }
+        values.append(")");
+    }
+
+    /**
+     * Only the first version rolls back, by deleting all rows, so removing a later version does not delete the data of the others.
+     */
+    private void writeVersion(Writer writer, long version, String fullObjectName, CharSequence values, UnaryOperator<String> transformer) throws IOException {
+        StringBuilder content = new StringBuilder(values.length() + 256);
+        content.append("---version: ").append(version).append(", author: DlSync\n");
+        content.append("INSERT INTO ").append(fullObjectName).append(" values ").append(values).append(";");
+        if(version == 1) {
+            content.append("\n---rollback: DELETE FROM ").append(fullObjectName).append(";");
+        }
+        content.append("\n---verify: SELECT COUNT(*) FROM  ").append(fullObjectName).append(";");
+        writer.write("\n\n");
+        writer.write(transformer.apply(content.toString()));
+    }
+}
@@ -0,0 +1,157 @@
+package com.snowflake.dlsync.doa;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.Util;
+import com.snowflake.dlsync.models.*;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compressed JSON file of a {@link DeploymentPlan}. The plan is built once from the script files and applied to every environment,
+ * the scripts keep the raw content and hashes so parameters are injected by the deploy of each profile.
+ */
+@Slf4j
+public class DeploymentPlanFile {
+    public static final int PLAN_VERSION = 1;
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final Path planFile;
+
+    public DeploymentPlanFile(Path planFile) {
+        this.planFile = planFile;
+    }
+
+    public Path getPlanFile() {
+        return planFile;
+    }
+
+    /**
+     * @throws IOException if the file is missing, corrupted or was written by a different version.
+     */
+    public DeploymentPlan load() throws IOException {
+        DeploymentPlan plan;
+        try(InputStream input = new GZIPInputStream(Files.newInputStream(planFile))) {
+            plan = MAPPER.readValue(input, DeploymentPlan.class);
+        }
+        if(plan.getVersion() != PLAN_VERSION || plan.getScripts() == null) {
+            throw new IOException("Deployment plan " + planFile + " was written by version " + plan.getVersion() + ", expected version " + PLAN_VERSION + ". Create the plan again.");
+        }
+        log.debug("Loaded deployment plan of {} scripts from {}", plan.getScripts().size(), planFile);
+        return plan;
+    }
+
+    public void save(DeploymentPlan plan) throws IOException {
+        Util.writeAtomically(planFile, output -> {
+            try(OutputStream compressed = new GZIPOutputStream(output)) {
+                MAPPER.writeValue(compressed, plan);
+            }
+        });
+        log.debug("Saved deployment plan of {} scripts to {}", plan.getScripts().size(), planFile);
+    }
+
+    /**
+     * @param sortedScripts the scripts in deploy order.
+     * @param levels the dependency level of every script.
+     * @param dagGraph the dependents of every script that has any.
+     * @param commitId the commit the scripts were read from, null if unknown.
+     */
+    public static DeploymentPlan createPlan(List<Script> sortedScripts, Map<Script, Integer> levels, Map<Script, Set<Script>> dagGraph, String commitId) {
+        Map<Script, Integer> positions = new HashMap<>();
+        List<DeploymentPlan.Entry> entries = new ArrayList<>(sortedScripts.size());
+        for(Script script: sortedScripts) {
+            positions.put(script, entries.size());
+            entries.add(toEntry(script, levels.getOrDefault(script, 0)));
+        }
+        for(Map.Entry<Script, Set<Script>> dependency: dagGraph.entrySet()) {
+            Integer dependencyPosition = positions.get(dependency.getKey());
+            if(dependencyPosition == null) {
+                continue;
+            }
+            for(Script dependent: dependency.getValue()) {
+                Integer dependentPosition = positions.get(dependent);
+                if(dependentPosition != null && !dependentPosition.equals(dependencyPosition)) {
+                    DeploymentPlan.Entry entry = entries.get(dependentPosition);
+                    if(entry.getDependencies() == null) {
+                        entry.setDependencies(new ArrayList<>());
+                    }
+                    entry.getDependencies().add(dependencyPosition);
+                }
+            }
+        }
+        entries.stream().filter(entry -> entry.getDependencies() != null).forEach(entry -> Collections.sort(entry.getDependencies()));
+        DeploymentPlan plan = new DeploymentPlan();
+        plan.setVersion(PLAN_VERSION);
+        plan.setCreatedAt(System.currentTimeMillis());
+        plan.setCommitId(commitId);
+        plan.setScripts(entries);
+        return plan;
+    }
+
+    private static DeploymentPlan.Entry toEntry(Script script, int level) {
+        DeploymentPlan.Entry entry = new DeploymentPlan.Entry();
+        Script fileScript = script instanceof MigrationScript ? ((MigrationScript) script).getParentScript() : script;
+        entry.setScriptPath(script.getScriptPath());
+        if(fileScript instanceof SchemaScript) {
+            entry.setDatabaseName(((SchemaScript) fileScript).getDatabaseName());
+            entry.setSchemaName(((SchemaScript) fileScript).getSchemaName());
+        }
+        entry.setObjectName(script.getObjectName());
+        entry.setObjectType(script.getObjectType().name());
+        entry.setHash(script.getHash());
+        entry.setContent(script.getContent());
+        if(script instanceof MigrationScript) {
+            MigrationScript migration = (MigrationScript) script;
+            entry.setVersion(migration.getVersion());
+            entry.setAuthor(migration.getAuthor());
+            entry.setRollback(migration.getRollback());
+            entry.setVerify(migration.getVerify());
+        }
+        entry.setLevel(level);
+        return entry;
+    }
+
+    /**
+     * @return the scripts of the plan in deploy order. Versions of the same migration script file share their parent script.
+     */
+    public static List<Script> toScripts(DeploymentPlan plan) {
+        List<Script> scripts = new ArrayList<>(plan.getScripts().size());
+        Map<String, Script> parentScripts = new HashMap<>();
+        for(DeploymentPlan.Entry entry: plan.getScripts()) {
+            if(entry.getVersion() == null) {
+                scripts.add(toFileScript(entry, entry.getHash(), entry.getContent()));
+                continue;
+            }
+            String parentKey = entry.getScriptPath() + "|" + entry.getDatabaseName() + "." + entry.getSchemaName() + "." + entry.getObjectName();
+            Script parentScript = parentScripts.computeIfAbsent(parentKey, key -> {
+                Script parent = toFileScript(entry, null, "");
+                parent.setMigrations(new ArrayList<>());
+                return parent;
+            });
+            String content = entry.getContent();
+            MigrationScript migration = ScriptFactory.getMigrationScript(parentScript, entry.getHash(), () -> content, entry.getVersion(), entry.getAuthor(), entry.getRollback(), entry.getVerify());
+            parentScript.getMigrations().add(migration);
+            scripts.add(migration);
+        }
+        return scripts;
+    }
+
+    private static Script toFileScript(DeploymentPlan.Entry entry, String hash, String content) {
+        ScriptObjectType objectType = ScriptObjectType.valueOf(entry.getObjectType());
+        if(entry.getDatabaseName() == null) {
+            return ScriptFactory.getAccountScript(entry.getScriptPath(), objectType, entry.getObjectName(), hash, () -> content);
+        }
+        return ScriptFactory.getSchemaScript(entry.getScriptPath(), entry.getDatabaseName(), entry.getSchemaName(), objectType, entry.getObjectName(), hash, () -> content);
+    }
+}
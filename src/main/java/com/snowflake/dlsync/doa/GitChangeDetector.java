@@ -0,0 +1,117 @@
+package com.snowflake.dlsync.doa;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the script files changed since a previously deployed commit using the git repository containing the script root.
+ */
+@Slf4j
+public class GitChangeDetector {
+    private static final long GIT_TIMEOUT_SECONDS = 60;
+    private static final String LOCAL_STATE_EXCLUDE = ":(exclude).dlsync";
+    private final Path scriptRoot;
+    private final Set<String> fullScanFiles;
+
+    public GitChangeDetector(Path scriptRoot, Set<String> fullScanFiles) {
+        this.scriptRoot = scriptRoot.toAbsolutePath().normalize();
+        this.fullScanFiles = fullScanFiles;
+    }
+
+    /**
+     * @return the commit checked out in the script root, or null if the script root is not inside a git repository.
+     */
+    public String getHeadCommit() {
+        List<String> output = git("rev-parse", "--verify", "HEAD");
+        return output == null || output.isEmpty() ? null : output.get(0).trim();
+    }
+
+    /**
+     * @return true if there are no uncommitted or untracked changes under the script root.
+     */
+    public boolean isClean() {
+        List<String> output = git("status", "--porcelain", "--untracked-files=all", "--", ".", LOCAL_STATE_EXCLUDE);
+        return output != null && output.isEmpty();
+    }
+
+    /**
+     * Lists the files under the script root that differ between the given commit and the working tree, including untracked files.
+     * @return the changed files, or null if the changes can not be determined and all scripts must be scanned.
+     */
+    public Set<Path> getChangedFiles(String sinceCommit) {
+        if(sinceCommit == null) {
+            return null;
+        }
+        if(git("merge-base", "--is-ancestor", sinceCommit, "HEAD") == null) {
+            log.info("Last deployed commit {} is not an ancestor of the current commit.", sinceCommit);
+            return null;
+        }
+        List<String> changed = git("diff", "--name-only", "--no-renames", "--relative", sinceCommit, "--", ".", LOCAL_STATE_EXCLUDE);
+        List<String> untracked = git("ls-files", "--others", "--exclude-standard", "--", ".", LOCAL_STATE_EXCLUDE);
+        if(changed == null || untracked == null) {
+            return null;
+        }
+        Set<Path> changedFiles = new LinkedHashSet<>();
+        for(String file: concat(changed, untracked)) {
+            if(file.isBlank()) {
+                continue;
+            }
+            if(fullScanFiles.contains(file)) {
+                log.info("{} changed since commit {}, scanning all scripts.", file, sinceCommit);
+                return null;
+            }
+            changedFiles.add(scriptRoot.resolve(file));
+        }
+        return changedFiles;
+    }
+
+    private List<String> concat(List<String> first, List<String> second) {
+        List<String> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+
+    /**
+     * Runs a git command in the script root.
+     * @return the lines written to standard output, or null if git is unavailable or the command failed.
+     */
+    private List<String> git(String... args) {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.add("-c");
+        command.add("core.quotepath=off");
+        command.addAll(Arrays.asList(args));
+        try {
+            Process process = new ProcessBuilder(command)
+                    .directory(scriptRoot.toFile())
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            String output;
+            try (InputStream inputStream = process.getInputStream()) {
+                output = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            if(!process.waitFor(GIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                log.warn("Git command {} timed out.", command);
+                return null;
+            }
+            if(process.exitValue() != 0) {
+                log.debug("Git command {} exited with {}", command, process.exitValue());
+                return null;
+            }
+            return output.isEmpty() ? new ArrayList<>() : Arrays.asList(output.split("\n"));
+        } catch (IOException e) {
+            log.debug("Unable to run git: {}", e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
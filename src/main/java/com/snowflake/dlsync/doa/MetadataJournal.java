@@ -0,0 +1,132 @@
+package com.snowflake.dlsync.doa;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.snowflake.dlsync.models.ScriptEvent;
+import com.snowflake.dlsync.models.ScriptHistory;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Local append-only journal of metadata records that have not been flushed to the metadata tables yet.
+ * Every record is forced to disk before the call returns, and the journal is truncated after a successful flush.
+ */
+@Slf4j
+public class MetadataJournal {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final Path journalFile;
+    private FileChannel channel;
+
+    public MetadataJournal(Path journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * One journal per metadata schema, so records of one environment are never replayed into another.
+     */
+    public static MetadataJournal forTarget(Path journalDirectory, Properties connectionProperties) {
+        String target = String.format("%s.%s.%s", connectionProperties.getProperty("account"), connectionProperties.getProperty("db"), connectionProperties.getProperty("schema"));
+        String fileName = target.replaceAll("[^a-zA-Z0-9_.-]", "_").toLowerCase() + ".jsonl";
+        return new MetadataJournal(journalDirectory.resolve(fileName));
+    }
+
+    public Path getJournalFile() {
+        return journalFile;
+    }
+
+    public synchronized void append(Entry entry) throws IOException {
+        if(channel == null) {
+            Files.createDirectories(journalFile.toAbsolutePath().getParent());
+            channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        byte[] line = (MAPPER.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    public synchronized List<Entry> readEntries() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if(!Files.exists(journalFile)) {
+            return entries;
+        }
+        for(String line: Files.readAllLines(journalFile, StandardCharsets.UTF_8)) {
+            if(line.isBlank()) {
+                continue;
+            }
+            try {
+                entries.add(MAPPER.readValue(line, Entry.class));
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable metadata journal record in {}: {}", journalFile, e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    public synchronized void clear() throws IOException {
+        if(channel != null) {
+            channel.truncate(0);
+            channel.force(false);
+        }
+        else if(Files.exists(journalFile)) {
+            Files.write(journalFile, new byte[0]);
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if(channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    public enum Type {
+        HISTORY, HISTORY_DELETE, EVENT
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Entry {
+        private Type type;
+        private ScriptHistory history;
+        private ScriptEvent event;
+
+        public static Entry history(ScriptHistory history) {
+            Entry entry = new Entry();
+            entry.setType(Type.HISTORY);
+            entry.setHistory(history);
+            return entry;
+        }
+
+        public static Entry historyDelete(ScriptHistory history) {
+            Entry entry = new Entry();
+            entry.setType(Type.HISTORY_DELETE);
+            entry.setHistory(history);
+            return entry;
+        }
+
+        public static Entry event(ScriptEvent event) {
+            Entry entry = new Entry();
+            entry.setType(Type.EVENT);
+            entry.setEvent(event);
+            return entry;
+        }
+    }
+}
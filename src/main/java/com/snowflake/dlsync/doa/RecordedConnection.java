@@ -0,0 +1,106 @@
+package com.snowflake.dlsync.doa;
+
+import com.snowflake.dlsync.metrics.FlightEvents;
+import lombok.extern.slf4j.Slf4j;
+import net.snowflake.client.jdbc.SnowflakeStatement;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+
+/**
+ * Wraps a connection so every statement executed on it is recorded as a {@link FlightEvents.JdbcStatement} event.
+ * The connection is only wrapped when a flight recording with the event enabled is already running, for example with -XX:StartFlightRecording,
+ * otherwise the driver connection is used as is.
+ */
+@Slf4j
+public class RecordedConnection {
+
+    private RecordedConnection() {
+    }
+
+    public static Connection wrap(Connection connection) {
+        if(connection == null || !FlightEvents.isStatementRecordingEnabled()) {
+            return connection;
+        }
+        log.debug("Recording JDBC statements as flight recorder events.");
+        return (Connection) Proxy.newProxyInstance(RecordedConnection.class.getClassLoader(), new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        private ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = RecordedConnection.invoke(connection, method, args);
+            if(result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                String preparedSql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return Proxy.newProxyInstance(RecordedConnection.class.getClassLoader(), new Class<?>[]{method.getReturnType()}, new StatementHandler((Statement) result, preparedSql));
+            }
+            return result;
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String preparedSql;
+        private int batchSize;
+        private String lastBatchSql;
+
+        private StatementHandler(Statement statement, String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if(name.equals("addBatch")) {
+                batchSize++;
+                if(args != null && args.length == 1) {
+                    lastBatchSql = (String) args[0];
+                }
+            }
+            else if(name.equals("clearBatch")) {
+                batchSize = 0;
+            }
+            if(!name.startsWith("execute")) {
+                return RecordedConnection.invoke(statement, method, args);
+            }
+            FlightEvents.JdbcStatement event = new FlightEvents.JdbcStatement();
+            event.begin();
+            try {
+                return RecordedConnection.invoke(statement, method, args);
+            } finally {
+                boolean batch = name.equals("executeBatch") || name.equals("executeLargeBatch");
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : (preparedSql != null ? preparedSql : lastBatchSql);
+                event.commitFor(sql, batch ? batchSize : 1, event.shouldCommit() ? getQueryId() : null);
+                if(batch) {
+                    batchSize = 0;
+                }
+            }
+        }
+
+        private String getQueryId() {
+            try {
+                return statement.isWrapperFor(SnowflakeStatement.class) ? statement.unwrap(SnowflakeStatement.class).getQueryID() : null;
+            } catch (SQLException e) {
+                return null;
+            }
+        }
+    }
+}
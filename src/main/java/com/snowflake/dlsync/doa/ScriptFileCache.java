@@ -0,0 +1,153 @@
+package com.snowflake.dlsync.doa;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.snowflake.dlsync.Util;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fingerprints of script files from the previous run, keyed by file path.
+ * A file whose size and modification time are unchanged is not read again, its hash and parsed identity are taken from the cache.
+ */
+@Slf4j
+public class ScriptFileCache {
+    private static final int CACHE_VERSION = 1;
+    /**
+     * Files modified this close to the time the cache was saved may have changed again within the same timestamp tick.
+     */
+    private static final long RACY_WINDOW_MILLIS = 2000;
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final Path cacheFile;
+    private final Map<String, Entry> cachedEntries = new ConcurrentHashMap<>();
+    private final Map<String, Entry> currentEntries = new ConcurrentHashMap<>();
+    private long savedAt;
+    private volatile boolean dirty;
+
+    public ScriptFileCache(Path cacheFile) {
+        this.cacheFile = cacheFile;
+        load();
+    }
+
+    private void load() {
+        if(!Files.exists(cacheFile)) {
+            return;
+        }
+        try {
+            CacheFile file = MAPPER.readValue(cacheFile.toFile(), CacheFile.class);
+            if(file.getVersion() != CACHE_VERSION || file.getEntries() == null) {
+                log.info("Ignoring script cache {} written by a different version.", cacheFile);
+                return;
+            }
+            savedAt = file.getSavedAt();
+            cachedEntries.putAll(file.getEntries());
+            log.debug("Loaded {} entries from script cache {}", cachedEntries.size(), cacheFile);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable script cache {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    public Entry lookup(String path, BasicFileAttributes attributes) {
+        Entry entry = cachedEntries.get(path);
+        if(entry == null || entry.getSize() != attributes.size() || entry.getModifiedTime() != attributes.lastModifiedTime().toMillis()) {
+            return null;
+        }
+        if(entry.getModifiedTime() >= savedAt - RACY_WINDOW_MILLIS) {
+            log.debug("Script {} was modified too close to the last cache save, reading it again.", path);
+            return null;
+        }
+        currentEntries.put(path, entry);
+        return entry;
+    }
+
+    public void put(String path, BasicFileAttributes attributes, Entry entry) {
+        entry.setSize(attributes.size());
+        entry.setModifiedTime(attributes.lastModifiedTime().toMillis());
+        currentEntries.put(path, entry);
+        dirty = true;
+    }
+
+    /**
+     * Writes the entries of the files seen since the cache was loaded, so deleted files are dropped from the cache.
+     */
+    public synchronized void save() {
+        if(!dirty && currentEntries.keySet().equals(cachedEntries.keySet())) {
+            return;
+        }
+        write(new HashMap<>(currentEntries));
+    }
+
+    /**
+     * Writes the entries of the files seen since the cache was loaded, keeping the entries of files that were not read.
+     */
+    public synchronized void saveUpdates() {
+        if(!dirty) {
+            return;
+        }
+        Map<String, Entry> entries = new HashMap<>();
+        cachedEntries.forEach((path, entry) -> {
+            if(entry.getModifiedTime() < savedAt - RACY_WINDOW_MILLIS) {
+                entries.put(path, entry);
+            }
+        });
+        entries.putAll(currentEntries);
+        write(entries);
+    }
+
+    private void write(Map<String, Entry> entries) {
+        CacheFile file = new CacheFile();
+        file.setVersion(CACHE_VERSION);
+        file.setSavedAt(System.currentTimeMillis());
+        file.setEntries(entries);
+        try {
+            Util.writeAtomically(cacheFile, output -> MAPPER.writeValue(output, file));
+            savedAt = file.getSavedAt();
+            cachedEntries.clear();
+            cachedEntries.putAll(entries);
+            dirty = false;
+            log.debug("Saved {} entries to script cache {}", entries.size(), cacheFile);
+        } catch (IOException e) {
+            log.warn("Unable to save script cache {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    @Data
+    public static class CacheFile {
+        private int version;
+        private long savedAt;
+        private Map<String, Entry> entries;
+    }
+
+    @Data
+    public static class Entry {
+        private long size;
+        private long modifiedTime;
+        private String hash;
+        private String objectType;
+        private String databaseName;
+        private String schemaName;
+        private String objectName;
+        private List<MigrationEntry> migrations;
+    }
+
+    @Data
+    public static class MigrationEntry {
+        private Long version;
+        private String author;
+        private String rollback;
+        private String verify;
+        private String hash;
+    }
+}
@@ -0,0 +1,120 @@
+package com.snowflake.dlsync.doa;
+
+import com.snowflake.dlsync.Util;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes script files on a background thread. Submitting blocks while the queue is full, so producers can not run ahead of the disk.
+ * Every file is written as UTF-8 to a temporary file that is then moved over the target, so a script file is never left half written.
+ */
+@Slf4j
+public class ScriptFileWriter implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    private static final FileWrite END_OF_QUEUE = new FileWrite(null, null);
+    private final BlockingQueue<FileWrite> queue;
+    private final Thread writerThread;
+    private volatile IOException failure;
+    private int writtenCount;
+
+    public ScriptFileWriter() {
+        this(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public ScriptFileWriter(int queueCapacity) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.writerThread = new Thread(this::run, "dlsync-script-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public void submit(Path file, String content) throws IOException {
+        checkFailure();
+        try {
+            queue.put(new FileWrite(file, content));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while queueing script file " + file, e);
+        }
+    }
+
+    private void run() {
+        while(true) {
+            FileWrite fileWrite;
+            try {
+                fileWrite = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if(fileWrite == END_OF_QUEUE) {
+                return;
+            }
+            if(failure != null) {
+                continue;
+            }
+            try {
+                writeAtomically(fileWrite.file, writer -> writer.write(fileWrite.content));
+                writtenCount++;
+            } catch (IOException | SQLException e) {
+                log.error("Error in writing script file {}: {}", fileWrite.file, e.getMessage());
+                failure = e instanceof IOException ? (IOException) e : new IOException(e);
+            }
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Waits until all submitted files are written.
+     * @throws IOException if any of the files could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            queue.put(END_OF_QUEUE);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writerThread.interrupt();
+            throw new IOException("Interrupted while writing script files.", e);
+        }
+        log.debug("Written {} script files", writtenCount);
+        checkFailure();
+    }
+
+    public static void writeAtomically(Path file, ContentWriter contentWriter) throws IOException, SQLException {
+        Util.writeAtomically(file, output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            contentWriter.write(writer);
+            writer.flush();
+        });
+    }
+
+    @FunctionalInterface
+    public interface ContentWriter {
+        void write(Writer writer) throws IOException, SQLException;
+    }
+
+    private static class FileWrite {
+        private final Path file;
+        private final String content;
+
+        FileWrite(Path file, String content) {
+            this.file = file;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.snowflake.dlsync.doa;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.snowflake.dlsync.Util;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Local copy of the script hashes in the script history table and the commit recorded by the last successful deploy or rollback.
+ * The plan command compares the script files against it without connecting to Snowflake.
+ */
+@Slf4j
+public class ScriptHistorySnapshot {
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final Path snapshotFile;
+
+    public ScriptHistorySnapshot(Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * One snapshot per metadata schema, so a plan never compares against the history of another environment.
+     */
+    public static ScriptHistorySnapshot forTarget(Path snapshotDirectory, Properties connectionProperties) {
+        String target = String.format("%s.%s.%s", connectionProperties.getProperty("account"), connectionProperties.getProperty("db"), connectionProperties.getProperty("schema"));
+        String fileName = target.replaceAll("[^a-zA-Z0-9_.-]", "_").toLowerCase() + ".json";
+        return new ScriptHistorySnapshot(snapshotDirectory.resolve(fileName));
+    }
+
+    public Path getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * @return the snapshot saved by the last run.
+     * @throws IOException if there is no snapshot or it was written by a different version.
+     */
+    public Snapshot load() throws IOException {
+        if(!Files.exists(snapshotFile)) {
+            throw new IOException("No script history snapshot found at " + snapshotFile + ". Run a deploy or rollback to create it.");
+        }
+        Snapshot snapshot = MAPPER.readValue(snapshotFile.toFile(), Snapshot.class);
+        if(snapshot.getVersion() != SNAPSHOT_VERSION || snapshot.getScriptHashes() == null) {
+            throw new IOException("Script history snapshot " + snapshotFile + " was written by a different version. Run a deploy or rollback to replace it.");
+        }
+        log.debug("Loaded {} script hashes from snapshot {}", snapshot.getScriptHashes().size(), snapshotFile);
+        return snapshot;
+    }
+
+    public void save(Map<String, String> scriptHashes, String commitId) throws IOException {
+        Snapshot snapshot = new Snapshot();
+        snapshot.setVersion(SNAPSHOT_VERSION);
+        snapshot.setSavedAt(System.currentTimeMillis());
+        snapshot.setCommitId(commitId);
+        snapshot.setScriptHashes(scriptHashes);
+        Util.writeAtomically(snapshotFile, output -> MAPPER.writeValue(output, snapshot));
+        log.debug("Saved {} script hashes to snapshot {}", scriptHashes.size(), snapshotFile);
+    }
+
+    @Data
+    public static class Snapshot {
+        private int version;
+        private long savedAt;
+        private String commitId;
+        private Map<String, String> scriptHashes;
+    }
+}
@@ -0,0 +1,312 @@
+package com.snowflake.dlsync.doa;
+
+import com.snowflake.dlsync.Util;
+import com.snowflake.dlsync.metrics.MetricsRegistry;
+import com.snowflake.dlsync.metrics.Phase;
+import com.snowflake.dlsync.models.MigrationScript;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptEvent;
+import com.snowflake.dlsync.models.ScriptHistory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Buffers script history and script event rows and writes them to the metadata tables in multi-row statements.
+ * Buffered rows are flushed every batchSize events, and whenever flush is called.
+ * Rows that are not flushed yet are kept in the journal, and recover replays them on the next run.
+ * Without a journal every record is written immediately.
+ */
+@Slf4j
+public class ScriptMetadataWriter {
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+    private final SessionPool sessionPool;
+    private final String historyTable;
+    private final String eventTable;
+    private final int batchSize;
+    private final MetadataJournal journal;
+    private final Map<String, MetadataJournal.Entry> pendingHistory = new LinkedHashMap<>();
+    private final List<ScriptEvent> pendingEvents = new ArrayList<>();
+
+    public ScriptMetadataWriter(SessionPool sessionPool, String historyTable, String eventTable, int batchSize, MetadataJournal journal) {
+        this.sessionPool = sessionPool;
+        this.historyTable = historyTable;
+        this.eventTable = eventTable;
+        this.batchSize = Math.max(1, batchSize);
+        this.journal = journal;
+    }
+
+    public synchronized void recordDeployment(Script script, Long changeSyncId) throws SQLException {
+        recordDeployment(script, changeSyncId, null, null);
+    }
+
+    /**
+     * @param executionMs client side duration of the statement that deployed the script, null if nothing was executed.
+     * @param queryId Snowflake query id of that statement, null if the driver did not return one.
+     */
+    public synchronized void recordDeployment(Script script, Long changeSyncId, Long executionMs, String queryId) throws SQLException {
+        ScriptHistory history = new ScriptHistory();
+        history.setScriptId(script.getId());
+        history.setObjectName(script.getFullObjectName());
+        history.setObjectType(script.getObjectType().toString());
+        if(script instanceof MigrationScript) {
+            history.setRollbackScript(((MigrationScript) script).getRollback());
+        }
+        history.setScriptHash(script.getHash());
+        history.setDeployedHash(Util.getMd5Hash(script.getContent()));
+        history.setChangeSyncId(changeSyncId);
+        ScriptEvent event = createEvent(script, "SUCCESS", "Successfully Deployed Object", changeSyncId, executionMs, queryId);
+        record(MetadataJournal.Entry.history(history), event);
+    }
+
+    public synchronized void recordRollback(MigrationScript migrationScript, Long changeSyncId) throws SQLException {
+        recordRollback(migrationScript, changeSyncId, null, null);
+    }
+
+    public synchronized void recordRollback(MigrationScript migrationScript, Long changeSyncId, Long executionMs, String queryId) throws SQLException {
+        ScriptHistory history = new ScriptHistory();
+        history.setScriptId(migrationScript.getId());
+        ScriptEvent event = createEvent(migrationScript, "SUCCESS", "Successfully Rolled-back Object", changeSyncId, executionMs, queryId);
+        record(MetadataJournal.Entry.historyDelete(history), event);
+    }
+
+    public synchronized void recordEvent(Script script, String status, String logs, Long changeSyncId) throws SQLException {
+        recordEvent(script, status, logs, changeSyncId, null, null);
+    }
+
+    public synchronized void recordEvent(Script script, String status, String logs, Long changeSyncId, Long executionMs, String queryId) throws SQLException {
+        record(null, createEvent(script, status, logs, changeSyncId, executionMs, queryId));
+    }
+
+    public synchronized void flush() throws SQLException {
+        if(pendingHistory.isEmpty() && pendingEvents.isEmpty()) {
+            return;
+        }
+        log.debug("Flushing {} script history and {} script event records.", pendingHistory.size(), pendingEvents.size());
+        write(new ArrayList<>(pendingHistory.values()), pendingEvents, false);
+        pendingHistory.clear();
+        pendingEvents.clear();
+        clearJournal();
+    }
+
+    /**
+     * Replays records left in the journal by a run that ended before flushing them.
+     * Replayed rows are merged on their keys, so records that did reach the tables are not written twice.
+     */
+    public synchronized void recover() throws SQLException {
+        if(journal == null) {
+            return;
+        }
+        List<MetadataJournal.Entry> entries;
+        try {
+            entries = journal.readEntries();
+        } catch (IOException e) {
+            log.warn("Unable to read metadata journal {}: {}", journal.getJournalFile(), e.getMessage());
+            return;
+        }
+        if(entries.isEmpty()) {
+            return;
+        }
+        log.warn("Found {} metadata records not written by a previous run, replaying them from {}", entries.size(), journal.getJournalFile());
+        Map<String, MetadataJournal.Entry> history = new LinkedHashMap<>();
+        List<ScriptEvent> events = new ArrayList<>();
+        for(MetadataJournal.Entry entry: entries) {
+            if(entry.getType() == MetadataJournal.Type.EVENT) {
+                events.add(entry.getEvent());
+            }
+            else if(entry.getHistory() != null) {
+                history.put(entry.getHistory().getScriptId(), entry);
+            }
+        }
+        write(new ArrayList<>(history.values()), events, true);
+        clearJournal();
+    }
+
+    private void record(MetadataJournal.Entry historyEntry, ScriptEvent event) throws SQLException {
+        boolean journaled = true;
+        if(historyEntry != null) {
+            pendingHistory.put(historyEntry.getHistory().getScriptId(), historyEntry);
+            journaled = appendToJournal(historyEntry);
+        }
+        pendingEvents.add(event);
+        journaled = appendToJournal(MetadataJournal.Entry.event(event)) && journaled;
+        if(pendingEvents.size() >= batchSize || !journaled) {
+            flush();
+        }
+    }
+
+    private boolean appendToJournal(MetadataJournal.Entry entry) {
+        if(journal == null) {
+            return false;
+        }
+        try {
+            journal.append(entry);
+            return true;
+        } catch (IOException e) {
+            log.warn("Unable to write metadata journal {}, flushing immediately: {}", journal.getJournalFile(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Releases the journal file. Records that are not flushed stay in the journal for the next run.
+     */
+    public synchronized void close() {
+        if(journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("Unable to close metadata journal {}: {}", journal.getJournalFile(), e.getMessage());
+        }
+    }
+
+    private void clearJournal() {
+        if(journal == null) {
+            return;
+        }
+        try {
+            journal.clear();
+        } catch (IOException e) {
+            log.warn("Unable to clear metadata journal {}: {}", journal.getJournalFile(), e.getMessage());
+        }
+    }
+
+    private ScriptEvent createEvent(Script script, String status, String logs, Long changeSyncId, Long executionMs, String queryId) {
+        ScriptEvent event = new ScriptEvent();
+        event.setId(UUID.randomUUID().toString());
+        event.setScriptId(script.getId());
+        event.setObjectName(script.getFullObjectName());
+        event.setScriptHash(script.getHash());
+        event.setStatus(status);
+        event.setLog(logs);
+        event.setChangeSyncId(changeSyncId);
+        event.setExecutionMs(executionMs);
+        event.setQueryId(queryId);
+        event.setCreatedTs(new Timestamp(System.currentTimeMillis()));
+        return event;
+    }
+
+    private void write(List<MetadataJournal.Entry> historyEntries, List<ScriptEvent> events, boolean replay) throws SQLException {
+        List<ScriptHistory> deletes = historyEntries.stream()
+                .filter(entry -> entry.getType() == MetadataJournal.Type.HISTORY_DELETE)
+                .map(MetadataJournal.Entry::getHistory)
+                .collect(Collectors.toList());
+        List<ScriptHistory> upserts = historyEntries.stream()
+                .filter(entry -> entry.getType() == MetadataJournal.Type.HISTORY)
+                .map(MetadataJournal.Entry::getHistory)
+                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        Connection session = sessionPool.acquire();
+        try {
+            boolean autoCommit = session.getAutoCommit();
+            try {
+                session.setAutoCommit(false);
+                for(List<ScriptHistory> chunk: partition(deletes)) {
+                    deleteHistory(session, chunk);
+                }
+                for(List<ScriptHistory> chunk: partition(upserts)) {
+                    mergeHistory(session, chunk);
+                }
+                for(List<ScriptEvent> chunk: partition(events)) {
+                    insertEvents(session, chunk, replay);
+                }
+                session.commit();
+                MetricsRegistry.getGlobal().record(Phase.METADATA_WRITE, start, 0);
+            }
+            catch (SQLException e) {
+                session.rollback();
+                log.error("Error {}, while writing script history and events.", e.getMessage());
+                throw e;
+            }
+            finally {
+                session.setAutoCommit(autoCommit);
+            }
+        }
+        finally {
+            sessionPool.release(session);
+        }
+    }
+
+    private void deleteHistory(Connection session, List<ScriptHistory> rows) throws SQLException {
+        String deleteSql = "DELETE FROM " + historyTable + " WHERE SCRIPT_ID IN (" + placeholders(rows.size(), "?") + ");";
+        PreparedStatement statement = session.prepareStatement(deleteSql);
+        int index = 1;
+        for(ScriptHistory row: rows) {
+            statement.setString(index++, row.getScriptId());
+        }
+        log.debug("Deleting {} script history rows with the following SQL: {}", rows.size(), deleteSql);
+        statement.executeUpdate();
+    }
+
+    private void mergeHistory(Connection session, List<ScriptHistory> rows) throws SQLException {
+        String mergeSql = "MERGE INTO " + historyTable + " AS target USING (SELECT column1 AS SCRIPT_ID, column2 AS OBJECT_NAME, column3 AS OBJECT_TYPE, column4 AS ROLLBACK_SCRIPT, column5 AS SCRIPT_HASH, column6 AS DEPLOYED_HASH, column7 AS CHANGE_SYNC_ID FROM VALUES "
+                + placeholders(rows.size(), "(?, ?, ?, ?, ?, ?, ?)") + ") AS source ON target.SCRIPT_ID = source.SCRIPT_ID"
+                + " WHEN MATCHED THEN UPDATE SET ROLLBACK_SCRIPT=source.ROLLBACK_SCRIPT, SCRIPT_HASH=source.SCRIPT_HASH, DEPLOYED_HASH=source.DEPLOYED_HASH, CHANGE_SYNC_ID=source.CHANGE_SYNC_ID, UPDATED_BY=current_user, UPDATED_TS=current_timestamp"
+                + " WHEN NOT MATCHED THEN INSERT (SCRIPT_ID, OBJECT_NAME, OBJECT_TYPE, ROLLBACK_SCRIPT, SCRIPT_HASH, DEPLOYED_HASH, CHANGE_SYNC_ID, CREATED_BY, CREATED_TS, UPDATED_BY, UPDATED_TS)"
+                + " VALUES (source.SCRIPT_ID, source.OBJECT_NAME, source.OBJECT_TYPE, source.ROLLBACK_SCRIPT, source.SCRIPT_HASH, source.DEPLOYED_HASH, source.CHANGE_SYNC_ID, current_user, current_timestamp, current_user, current_timestamp);";
+        PreparedStatement statement = session.prepareStatement(mergeSql);
+        int index = 1;
+        for(ScriptHistory row: rows) {
+            statement.setString(index++, row.getScriptId());
+            statement.setString(index++, row.getObjectName());
+            statement.setString(index++, row.getObjectType());
+            statement.setString(index++, row.getRollbackScript());
+            statement.setString(index++, row.getScriptHash());
+            statement.setString(index++, row.getDeployedHash());
+            statement.setObject(index++, row.getChangeSyncId());
+        }
+        log.debug("Updating {} script hashes with the following SQL: {}", rows.size(), mergeSql);
+        statement.executeUpdate();
+    }
+
+    private void insertEvents(Connection session, List<ScriptEvent> rows, boolean replay) throws SQLException {
+        String source = "SELECT column1 AS ID, column2 AS SCRIPT_ID, column3 AS OBJECT_NAME, column4 AS SCRIPT_HASH, column5 AS STATUS, column6 AS LOG, column7 AS CHANGE_SYNC_ID, TO_TIMESTAMP_LTZ(column8, 3) AS CREATED_TS, column9 AS EXECUTION_MS, column10 AS QUERY_ID FROM VALUES "
+                + placeholders(rows.size(), "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        String columns = "(ID, SCRIPT_ID, OBJECT_NAME, SCRIPT_HASH, STATUS, LOG, CHANGE_SYNC_ID, CREATED_BY, CREATED_TS, EXECUTION_MS, QUERY_ID)";
+        String insertSql;
+        if(replay) {
+            insertSql = "MERGE INTO " + eventTable + " AS target USING (" + source + ") AS source ON target.ID = source.ID"
+                    + " WHEN NOT MATCHED THEN INSERT " + columns
+                    + " VALUES (source.ID, source.SCRIPT_ID, source.OBJECT_NAME, source.SCRIPT_HASH, source.STATUS, source.LOG, source.CHANGE_SYNC_ID, current_user, source.CREATED_TS, source.EXECUTION_MS, source.QUERY_ID);";
+        }
+        else {
+            insertSql = "INSERT INTO " + eventTable + " " + columns + " SELECT ID, SCRIPT_ID, OBJECT_NAME, SCRIPT_HASH, STATUS, LOG, CHANGE_SYNC_ID, current_user, CREATED_TS, EXECUTION_MS, QUERY_ID FROM (" + source + ");";
+        }
+        PreparedStatement statement = session.prepareStatement(insertSql);
+        int index = 1;
+        for(ScriptEvent row: rows) {
+            statement.setString(index++, row.getId());
+            statement.setString(index++, row.getScriptId());
+            statement.setString(index++, row.getObjectName());
+            statement.setString(index++, row.getScriptHash());
+            statement.setString(index++, row.getStatus());
+            statement.setString(index++, row.getLog());
+            statement.setObject(index++, row.getChangeSyncId());
+            statement.setLong(index++, row.getCreatedTs().getTime());
+            statement.setObject(index++, row.getExecutionMs());
+            statement.setString(index++, row.getQueryId());
+        }
+        log.debug("Creating {} script events with the following SQL: {}", rows.size(), insertSql);
+        statement.executeUpdate();
+    }
+
+    private static String placeholders(int rows, String row) {
+        return String.join(", ", Collections.nCopies(rows, row));
+    }
+
+    private static <T> List<List<T>> partition(List<T> rows) {
+        List<List<T>> chunks = new ArrayList<>();
+        for(int start = 0; start < rows.size(); start += MAX_ROWS_PER_STATEMENT) {
+            chunks.add(rows.subList(start, Math.min(rows.size(), start + MAX_ROWS_PER_STATEMENT)));
+        }
+        return chunks;
+    }
+}
@@ -1,38 +1,110 @@
 package com.snowflake.dlsync.doa;
 
 import com.snowflake.dlsync.ScriptFactory;
-import com.snowflake.dlsync.Util;
 import com.snowflake.dlsync.dependency.DependencyExtractor;
+import com.snowflake.dlsync.metrics.FlightEvents;
+import com.snowflake.dlsync.metrics.MetricsRegistry;
+import com.snowflake.dlsync.metrics.Phase;
 import com.snowflake.dlsync.models.*;
 import com.snowflake.dlsync.parser.SqlTokenizer;
 import lombok.extern.slf4j.Slf4j;
+import net.snowflake.client.jdbc.SnowflakeSQLException;
+import net.snowflake.client.jdbc.SnowflakeStatement;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 @Slf4j
 public class ScriptRepo {
     private Properties connectionProperties;
     private Connection connection;
-    private Map<String, String> scriptHash = new HashMap<>();
-    private Long changeSyncId;
+    private SessionPool sessionPool;
+    private volatile boolean initialized;
+    private volatile boolean historyChanged;
+    private ScriptHistorySnapshot historySnapshot;
+    private Map<String, String> scriptHash = new ConcurrentHashMap<>();
+    private volatile Long changeSyncId;
+    private ScriptMetadataWriter metadataWriter;
 
     public final String CHANGE_SYNC_TABLE_NAME = "DL_SYNC_CHANGE_SYNC";
     public final String SCRIPT_HISTORY_TABLE_NAME = "DL_SYNC_SCRIPT_HISTORY";
     public final String SCRIPT_EVENT_TABLE_NAME = "DL_SYNC_SCRIPT_EVENT";
     public final String DEPENDENCY_LINEAGE_TABLE_NAME = "DL_SYNC_DEPENDENCY_LINEAGE";
+    public final String VERIFY_STATE_TABLE_NAME = "DL_SYNC_VERIFY_STATE";
+    public final String LINEAGE_STATE_TABLE_NAME = "DL_SYNC_LINEAGE_STATE";
+    /**
+     * Declarative object types whose LAST_ALTERED timestamp is available from INFORMATION_SCHEMA.
+     */
+    public static final Set<ScriptObjectType> LAST_ALTERED_OBJECT_TYPES = Collections.unmodifiableSet(EnumSet.of(ScriptObjectType.VIEWS, ScriptObjectType.FUNCTIONS, ScriptObjectType.PROCEDURES, ScriptObjectType.FILE_FORMATS, ScriptObjectType.PIPES));
+    /**
+     * Declarative schema object types without a LAST_ALTERED timestamp, verify lists them by name instead.
+     */
+    public static final Set<ScriptObjectType> UNTRACKED_OBJECT_TYPES = Collections.unmodifiableSet(Arrays.stream(ScriptObjectType.values())
+            .filter(type -> type.getLevel() == ScriptObjectType.ObjectLevel.SCHEMA && !type.isMigration() && !LAST_ALTERED_OBJECT_TYPES.contains(type))
+            .collect(Collectors.toCollection(() -> EnumSet.noneOf(ScriptObjectType.class))));
+    private static final int VERIFY_STATE_BATCH_SIZE = 1000;
+    private static final int LINEAGE_BATCH_SIZE = 1000;
+    private static final String LINEAGE_DEPENDENCY_SEPARATOR = "\n";
+    private static final int CONFIG_DATA_FETCH_SIZE = 10000;
+    private static final int SCRIPT_DURATION_CHANGE_SYNCS = 10;
+    /**
+     * Hash kept for scripts in the history without a hash, the hash map does not take null values. It never equals a script hash.
+     */
+    private static final String MISSING_HASH = "";
+    private ConfigDataExporter configDataExporter = new ConfigDataExporter();
 
 
     public ScriptRepo(Connection connection, Properties connectionProperties) {
-        this.connection = connection;
+        this(new SessionPool(connection), connectionProperties);
+    }
+
+    public ScriptRepo(SessionPool sessionPool, Properties connectionProperties) {
+        this(sessionPool, connectionProperties, 1, null);
+    }
+
+    public ScriptRepo(SessionPool sessionPool, Properties connectionProperties, int metadataBatchSize, MetadataJournal metadataJournal) {
+        this(sessionPool, connectionProperties, metadataBatchSize, metadataJournal, null);
+    }
+
+    public ScriptRepo(SessionPool sessionPool, Properties connectionProperties, int metadataBatchSize, MetadataJournal metadataJournal, ScriptHistorySnapshot historySnapshot) {
+        this.sessionPool = sessionPool;
         this.connectionProperties = connectionProperties;
+        this.historySnapshot = historySnapshot;
+        this.metadataWriter = new ScriptMetadataWriter(sessionPool, getFullyQualifiedTableName(SCRIPT_HISTORY_TABLE_NAME), getFullyQualifiedTableName(SCRIPT_EVENT_TABLE_NAME), metadataBatchSize, metadataJournal);
         log.debug("Repo initialized with connection and properties");
     }
 
-    public void init() throws SQLException {
+    /**
+     * Opens the primary session and checks the dlsync tables. Runs once, on the first use of the repo if it is not called before,
+     * so commands that never read or write the metadata do not connect to Snowflake.
+     */
+    public synchronized void init() throws SQLException {
+        if(initialized) {
+            return;
+        }
+        connection = sessionPool.getPrimary();
         initScriptTables();
+        metadataWriter.recover();
+        initialized = true;
+    }
+
+    private Connection connection() throws SQLException {
+        if(!initialized) {
+            init();
+        }
+        return connection;
+    }
+
+    private Connection acquireSession() throws SQLException {
+        if(!initialized) {
+            init();
+        }
+        return sessionPool.acquire();
     }
 
     private void initScriptTables() throws SQLException {
@@ -46,13 +118,15 @@ public class ScriptRepo {
             Statement statement = connection.createStatement();
             statement.executeQuery(query);
             updateOldTableNames();
+            addCommitIdColumn();
+            addEventTimingColumns();
         } catch (SQLException e) {
             log.info("Running for the first time. Creating required tables.");
-            String createChangeSyncSql = "CREATE OR REPLACE TABLE " + getFullyQualifiedTableName(CHANGE_SYNC_TABLE_NAME) + " (ID integer PRIMARY KEY, CHANGE_TYPE varchar, STATUS varchar, LOG varchar, CHANGE_COUNT integer, START_TIME timestamp, END_TIME timestamp);";
+            String createChangeSyncSql = "CREATE OR REPLACE TABLE " + getFullyQualifiedTableName(CHANGE_SYNC_TABLE_NAME) + " (ID integer PRIMARY KEY, CHANGE_TYPE varchar, STATUS varchar, LOG varchar, CHANGE_COUNT integer, START_TIME timestamp, END_TIME timestamp, COMMIT_ID varchar);";
 
             String createSqlHash = "CREATE OR REPLACE TABLE " + getFullyQualifiedTableName(SCRIPT_HISTORY_TABLE_NAME) + " (SCRIPT_ID VARCHAR, OBJECT_NAME varchar, OBJECT_TYPE varchar, ROLLBACK_SCRIPT varchar, SCRIPT_HASH varchar, DEPLOYED_HASH varchar, CHANGE_SYNC_ID integer, CREATED_BY varchar, CREATED_TS timestamp, UPDATED_BY varchar, UPDATED_TS timestamp, FOREIGN KEY (CHANGE_SYNC_ID) REFERENCES " + getFullyQualifiedTableName(CHANGE_SYNC_TABLE_NAME) + "(ID));";
 
-            String createSqlEvent = "CREATE OR REPLACE TABLE " + getFullyQualifiedTableName(SCRIPT_EVENT_TABLE_NAME) + " (ID VARCHAR, SCRIPT_ID VARCHAR, OBJECT_NAME varchar, SCRIPT_HASH varchar, STATUS varchar, LOG varchar, CHANGE_SYNC_ID integer, CREATED_BY varchar, CREATED_TS timestamp, FOREIGN KEY (CHANGE_SYNC_ID) REFERENCES " + getFullyQualifiedTableName(CHANGE_SYNC_TABLE_NAME) + "(ID));";
+            String createSqlEvent = "CREATE OR REPLACE TABLE " + getFullyQualifiedTableName(SCRIPT_EVENT_TABLE_NAME) + " (ID VARCHAR, SCRIPT_ID VARCHAR, OBJECT_NAME varchar, SCRIPT_HASH varchar, STATUS varchar, LOG varchar, CHANGE_SYNC_ID integer, CREATED_BY varchar, CREATED_TS timestamp, EXECUTION_MS integer, QUERY_ID varchar, FOREIGN KEY (CHANGE_SYNC_ID) REFERENCES " + getFullyQualifiedTableName(CHANGE_SYNC_TABLE_NAME) + "(ID));";
             log.debug("create hash table sql: {}", createSqlHash);
             log.debug("create event table sql: {}", createSqlEvent);
             Statement statement = connection.createStatement();
@@ -76,30 +150,104 @@ public class ScriptRepo {
         }
     }
 
+    private void addCommitIdColumn() {
+        try {
+            String alterSql = "ALTER TABLE IF EXISTS " + getFullyQualifiedTableName(CHANGE_SYNC_TABLE_NAME) + " ADD COLUMN IF NOT EXISTS COMMIT_ID varchar;";
+            connection.createStatement().executeUpdate(alterSql);
+        } catch (SQLException e) {
+            log.warn("Unable to add COMMIT_ID column to {}: {}", CHANGE_SYNC_TABLE_NAME, e.getMessage());
+        }
+    }
+
+    private void addEventTimingColumns() {
+        try {
+            String alterSql = "ALTER TABLE IF EXISTS " + getFullyQualifiedTableName(SCRIPT_EVENT_TABLE_NAME) + " ADD COLUMN IF NOT EXISTS EXECUTION_MS integer, QUERY_ID varchar;";
+            connection.createStatement().executeUpdate(alterSql);
+        } catch (SQLException e) {
+            log.warn("Unable to add EXECUTION_MS and QUERY_ID columns to {}: {}", SCRIPT_EVENT_TABLE_NAME, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the commit recorded by the latest deploy or rollback, or null if it did not succeed or did not record a commit.
+     */
+    public String getLastSyncedCommit() throws SQLException {
+        String query = "SELECT STATUS, COMMIT_ID FROM " + getFullyQualifiedTableName(CHANGE_SYNC_TABLE_NAME) + " WHERE CHANGE_TYPE IN ('" + ChangeType.DEPLOY + "', '" + ChangeType.ROLLBACK + "') ORDER BY ID DESC LIMIT 1;";
+        log.debug("Loading last synced commit with sql: {}", query);
+        ResultSet resultSet = connection().createStatement().executeQuery(query);
+        if(resultSet.next() && Status.SUCCESS.toString().equals(resultSet.getString("STATUS"))) {
+            return resultSet.getString("COMMIT_ID");
+        }
+        return null;
+    }
+
     public Set<String> loadScriptHash() throws SQLException {
+        long start = System.nanoTime();
+        scriptHash.putAll(readScriptHash());
+        MetricsRegistry.getGlobal().record(Phase.HASH_LOAD, start, 0);
+        log.debug("Script hash loaded: {}", scriptHash);
+        return  scriptHash.keySet();
+
+    }
+
+    private Map<String, String> readScriptHash() throws SQLException {
         String hashQuery =  "SELECT * FROM " + getFullyQualifiedTableName(SCRIPT_HISTORY_TABLE_NAME) + ";";
         log.debug("Loading hash with sql: {}", hashQuery);
-        Statement statement = connection.createStatement();
+        Map<String, String> hashes = new HashMap<>();
+        Statement statement = connection().createStatement();
         ResultSet resultSet = statement.executeQuery(hashQuery);
         while (resultSet.next()) {
             String id = resultSet.getString("SCRIPT_ID");
-            scriptHash.put(id, resultSet.getString("SCRIPT_HASH"));
+            hashes.put(id, Objects.requireNonNullElse(resultSet.getString("SCRIPT_HASH"), MISSING_HASH));
         }
-        log.debug("Script hash loaded: {}", scriptHash);
-        return  scriptHash.keySet();
+        return hashes;
+    }
 
+    /**
+     * Loads the script hashes from the snapshot saved by the last deploy or rollback instead of the script history table, without connecting to Snowflake.
+     * @return the snapshot, with the commit recorded by the run that saved it.
+     */
+    public ScriptHistorySnapshot.Snapshot loadScriptHashSnapshot() throws IOException {
+        if(historySnapshot == null) {
+            throw new IOException("No script history snapshot is configured.");
+        }
+        long start = System.nanoTime();
+        ScriptHistorySnapshot.Snapshot snapshot = historySnapshot.load();
+        scriptHash.putAll(snapshot.getScriptHashes());
+        MetricsRegistry.getGlobal().record(Phase.HASH_LOAD, start, 0);
+        log.info("Loaded {} script hashes from the snapshot saved at {}.", snapshot.getScriptHashes().size(), new Timestamp(snapshot.getSavedAt()));
+        return snapshot;
+    }
+
+    /**
+     * Saves the script hashes of the script history table to the snapshot. The hashes loaded at the start of the command are saved as they are,
+     * unless the command wrote to the script history, then they are read again. Failing to save does not fail the command.
+     */
+    public void saveScriptHashSnapshot(String commitId) {
+        if(historySnapshot == null) {
+            return;
+        }
+        try {
+            Map<String, String> hashes = historyChanged ? readScriptHash() : new HashMap<>(scriptHash);
+            historySnapshot.save(hashes, commitId);
+            log.debug("Saved the script history snapshot to {}", historySnapshot.getSnapshotFile());
+        } catch (SQLException | IOException e) {
+            log.warn("Unable to save the script history snapshot {}: {}", historySnapshot.getSnapshotFile(), e.getMessage());
+        }
     }
 
     public Set<String> loadDeployedHash() throws SQLException {
         String hashColumn = "DEPLOYED_HASH";
         String hashQuery =  "SELECT * FROM " + getFullyQualifiedTableName(SCRIPT_HISTORY_TABLE_NAME) + ";";
         log.debug("Loading hash with sql: {}", hashQuery);
-        Statement statement = connection.createStatement();
+        long start = System.nanoTime();
+        Statement statement = connection().createStatement();
         ResultSet resultSet = statement.executeQuery(hashQuery);
         while (resultSet.next()) {
             String id = resultSet.getString("SCRIPT_ID");
-            scriptHash.put(id, resultSet.getString(hashColumn));
+            scriptHash.put(id, Objects.requireNonNullElse(resultSet.getString(hashColumn), MISSING_HASH));
         }
+        MetricsRegistry.getGlobal().record(Phase.HASH_LOAD, start, 0);
         log.debug("Script deployed hash loaded: {}", scriptHash);
         return  scriptHash.keySet();
 
@@ -107,13 +255,13 @@ public class ScriptRepo {
 
     public Long insertChangeSync(ChangeType changeType, Status status, String logMessage) throws SQLException {
         String queryGetId = "SELECT count(1) FROM " + getFullyQualifiedTableName(CHANGE_SYNC_TABLE_NAME) + ";";
-        ResultSet rs = connection.createStatement().executeQuery(queryGetId);
+        ResultSet rs = connection().createStatement().executeQuery(queryGetId);
         if(rs.next()) {
             changeSyncId =  rs.getLong(1) + 1;
         }
 
         String insertSql = "INSERT INTO " + getFullyQualifiedTableName(CHANGE_SYNC_TABLE_NAME) + " (ID, CHANGE_TYPE, STATUS, LOG, START_TIME) VALUES(?, ?, ?, ?, CURRENT_TIMESTAMP);";
-        PreparedStatement statement = connection.prepareStatement(insertSql);
+        PreparedStatement statement = connection().prepareStatement(insertSql);
         statement.setLong(1, changeSyncId);
         statement.setString(2, changeType.toString());
         statement.setString(3, status.toString());
@@ -125,73 +273,43 @@ public class ScriptRepo {
     }
 
     public void updateChangeSync(ChangeType changeType, Status status, String logMessage, Long changeCount) throws SQLException {
-        String updateSql = "UPDATE " + getFullyQualifiedTableName(CHANGE_SYNC_TABLE_NAME) + " SET CHANGE_TYPE=?, STATUS=?, LOG=?, CHANGE_COUNT=?, END_TIME=CURRENT_TIMESTAMP WHERE ID = ? ;";
-        PreparedStatement statement = connection.prepareStatement(updateSql);
+        updateChangeSync(changeType, status, logMessage, changeCount, null);
+    }
+
+    public void updateChangeSync(ChangeType changeType, Status status, String logMessage, Long changeCount, String commitId) throws SQLException {
+        if(changeSyncId == null) {
+            log.debug("No change sync was started, nothing to update for {}.", changeType);
+            return;
+        }
+        SQLException flushError = null;
+        try {
+            metadataWriter.flush();
+        } catch (SQLException e) {
+            log.error("Error {}, while writing script history. Unwritten records are kept in the local journal.", e.getMessage());
+            flushError = e;
+            status = Status.ERROR;
+            logMessage = "Error while writing script history: " + e.getMessage();
+        }
+        String updateSql = "UPDATE " + getFullyQualifiedTableName(CHANGE_SYNC_TABLE_NAME) + " SET CHANGE_TYPE=?, STATUS=?, LOG=?, CHANGE_COUNT=?, COMMIT_ID=?, END_TIME=CURRENT_TIMESTAMP WHERE ID = ? ;";
+        PreparedStatement statement = connection().prepareStatement(updateSql);
         statement.setString(1, changeType.toString());
         statement.setString(2, status.toString());
         statement.setString(3, logMessage);
         statement.setObject(4, changeCount);
-        statement.setLong(5, changeSyncId);
+        statement.setString(5, status == Status.SUCCESS ? commitId : null);
+        statement.setLong(6, changeSyncId);
         log.debug("Creating script event with the following SQL: {}", updateSql);
         statement.executeUpdate();
+        if(flushError != null) {
+            throw flushError;
+        }
     }
-    private boolean updateScriptHash(Script script) throws SQLException {
-        String rollback = null;
-        if(script instanceof MigrationScript) {
-            MigrationScript migrationScript = (MigrationScript)script;
-            rollback = migrationScript.getRollback();
-        }
-        PreparedStatement statement;
-        String deployedHash = Util.getMd5Hash(script.getContent());
-        log.debug("Updating script hash of object {}", script.getId());
-        if(scriptHash.containsKey(script.getId())) {
-            String updateSql = "UPDATE " + getFullyQualifiedTableName(SCRIPT_HISTORY_TABLE_NAME) + " SET ROLLBACK_SCRIPT=?, SCRIPT_HASH=?, DEPLOYED_HASH=?, CHANGE_SYNC_ID=?, updated_by=current_user, updated_ts=current_timestamp WHERE SCRIPT_ID=?;";
-            statement = connection.prepareStatement(updateSql);
-            statement.setString(1, rollback);
-            statement.setString(2, script.getHash());
-            statement.setString(3, deployedHash);
-            statement.setLong(4, changeSyncId);
-            statement.setString(5, script.getId());
-            log.debug("Updating script hash with the following SQL: {}", updateSql);
-        }
-        else {
-            String insertSql = "INSERT INTO " + getFullyQualifiedTableName(SCRIPT_HISTORY_TABLE_NAME) + " VALUES(?, ?, ?, ?, ?, ?, ?, current_user, current_timestamp, current_user, current_timestamp);";
-            statement = connection.prepareStatement(insertSql);
-            statement.setString(1, script.getId());
-            statement.setString(2, script.getFullObjectName());
-            statement.setString(3, script.getObjectType().toString());
-            statement.setString(4, rollback);
-            statement.setString(5, script.getHash());
-            statement.setString(6, deployedHash);
-            statement.setLong(7, changeSyncId);
-            log.debug("Updating script hash with the following SQL: {}", insertSql);
-        }
-
-        return statement.executeUpdate() >= 0;
-    }
-
-    private boolean insertScriptEvent(Script script, String status, String logs) throws SQLException {
-        //varchar ID, varchar OBJECT_NAME, varchar SCRIPT_HASH, varchar STATUS, varchar log, varchar created_by, varchar created_ts;
-        log.debug("Creating event for the object {} with status: {} and log: {} ", script.getObjectName(), status, logs);
-        String insertSql = "INSERT INTO " + getFullyQualifiedTableName(SCRIPT_EVENT_TABLE_NAME) + " SELECT UUID_STRING(), ?, ?, ?, ?, ?, ?, current_user, current_timestamp;";
-        PreparedStatement statement = connection.prepareStatement(insertSql);
-        statement.setString(1, script.getId());
-        statement.setObject(2, script.getFullObjectName());
-        statement.setString(3, script.getHash());
-        statement.setString(4, status);
-        statement.setString(5, logs);
-        statement.setLong(6, changeSyncId);
-        log.debug("Creating script event with the following SQL: {}", insertSql);
-        return statement.executeUpdate() > 0;
-    }
-
     public boolean isScriptPreviouslyDeployed(Script script) {
         return scriptHash.containsKey(script.getId());
     }
 
     public boolean isScriptChanged(Script script) {
-//        return true;
-        return !scriptHash.getOrDefault(script.getId(), "null").equals(script.getHash());
+        return !scriptHash.getOrDefault(script.getId(), MISSING_HASH).equals(script.getHash());
     }
 
     public boolean isScriptVersionDeployed(Script script) {
@@ -199,87 +317,93 @@ public class ScriptRepo {
     }
 
     public void createScriptObject(Script script, boolean onlyHashes) throws SQLException {
-
-        Statement statement = connection.createStatement();
-        boolean autoCommit = connection.getAutoCommit();
-        try {
-            connection.setAutoCommit(false);
-            if(!onlyHashes) {
-                statement.execute(script.getContent());
+        Long executionMs = null;
+        String queryId = null;
+        if(!onlyHashes) {
+            SQLException error = null;
+            Connection session = acquireSession();
+            long start = System.nanoTime();
+            FlightEvents.ScriptStatement event = new FlightEvents.ScriptStatement("DEPLOY");
+            event.begin();
+            try {
                 log.debug("Creating object using the SQL: {}", script.getContent());
+                Statement statement = session.createStatement();
+                statement.execute(script.getContent());
+                MetricsRegistry.getGlobal().record(Phase.DDL_EXECUTION, start, script.getContent().length());
+                event.commitFor(script, script.getContent().length());
+                executionMs = elapsedMillis(start);
+                queryId = getQueryId(statement);
+            }
+            catch (SQLException e) {
+                error = e;
+                executionMs = elapsedMillis(start);
+                queryId = getQueryId(e);
+            }
+            finally {
+                sessionPool.release(session);
+            }
+            // The event is recorded after releasing the session, writing it may need a session from the pool.
+            if(error != null) {
+                log.error("Error {}, while creating the object {} with sql {}", error.getMessage(), script.getObjectName(), script.getContent());
+                metadataWriter.recordEvent(script, "ERROR", error.getMessage(), changeSyncId, executionMs, queryId);
+                throw error;
             }
-            updateScriptHash(script);
-            insertScriptEvent(script, "SUCCESS", "Successfully Deployed Object");
-            connection.commit();
-            log.info("Successfully Deployed object: {}", script);
-        }
-        catch (SQLException e) {
-            connection.rollback();
-            log.error("Error {}, while creating the object {} with sql {}", e.getMessage(), script.getObjectName(), script.getContent());
-            insertScriptEvent(script, "ERROR", e.getMessage());
-            throw e;
-        }
-        finally {
-            connection.setAutoCommit(autoCommit);
         }
-
+        metadataWriter.recordDeployment(script, changeSyncId, executionMs, queryId);
+        historyChanged = true;
+        log.info("Successfully Deployed object: {}", script);
     }
 
     public List<SchemaScript> getAllScriptsInSchema(String schema) throws SQLException {
-        log.info("Getting all scripts in schema: {}", schema);
-        String sql = String.format("SELECT GET_DDL('SCHEMA', '%s', true)", schema);
+        return getAllScriptsInSchema(getDatabaseName(), schema);
+    }
+
+    public List<SchemaScript> getAllScriptsInSchema(String database, String schema) throws SQLException {
+        log.info("Getting all scripts in schema: {}.{}", database, schema);
+        String sql = String.format("SELECT GET_DDL('SCHEMA', '%s.%s', true)", database, schema);
         log.debug("Getting all scripts using SQL: {}", sql);
-        ResultSet resultSet = connection.createStatement().executeQuery(sql);
-        if(resultSet.next()) {
-            String ddl = resultSet.getString(1);
-            return SqlTokenizer.parseDdlScripts(ddl, getDatabaseName(), schema);
+        Connection session = acquireSession();
+        FlightEvents.ScriptStatement event = new FlightEvents.ScriptStatement("GET_DDL");
+        event.begin();
+        try {
+            ResultSet resultSet = session.createStatement().executeQuery(sql);
+            if(resultSet.next()) {
+                String ddl = resultSet.getString(1);
+                event.commitFor(database + "." + schema, ScriptObjectType.SCHEMAS, ddl == null ? 0 : ddl.length());
+                return SqlTokenizer.parseDdlScripts(ddl, database, schema);
+            }
+            else {
+                throw new RuntimeException("Error while getting ddl scripts: result set has no data");
+            }
         }
-        else {
-            throw new RuntimeException("Error while getting ddl scripts: result set has no data");
+        finally {
+            sessionPool.release(session);
         }
     }
 
 
-    public SchemaScript addConfig(SchemaScript script) throws SQLException {
-        if(script.getObjectType() == ScriptObjectType.TABLES) {
-            String additionalContent = String.format("SELECT * FROM %s", script.getFullObjectName());
-            ResultSet resultSet = connection.createStatement().executeQuery(additionalContent);
-            int count = resultSet.getMetaData().getColumnCount();
-            StringBuilder insertBuilder = new StringBuilder(String.format("INSERT INTO %s values", script.getFullObjectName()));
-            Boolean firstRow = true;
-            while(resultSet.next()) {
-                if(!firstRow) {
-                    insertBuilder.append(", ");
-                }
-                firstRow = false;
-                for(int i = 1; i <= count; i++) {
-                    if(i == 1) {
-                        insertBuilder.append("(");
-                    }
-                    else {
-                        insertBuilder.append(", ");
-                    }
-                    Object value = resultSet.getObject(i);
-                    if(value == null) {
-                        insertBuilder.append("null");
-                    }
-                    else {
-                        insertBuilder.append(String.format("'%s'", value.toString().replace("'", "''")));
-                    }
-                }
-                insertBuilder.append(")");
-
-            }
-            insertBuilder.append(";");
-            String migrationHeader = "---version: 1, author: DlSync\n";
-            String rollback = "\n---rollback: DELETE FROM " + script.getFullObjectName() + ";";
-            String verify = "\n---verify: SELECT COUNT(*) FROM  " + script.getFullObjectName() + ";";
-            String insertContent = migrationHeader + insertBuilder + rollback + verify;
-
-            String newContent = script.getContent() + "\n\n" + insertContent;
-            script.setContent(newContent);
+    /**
+     * Streams the rows of a config table to the writer as migration versions of chunked INSERT statements.
+     * @return the number of rows exported.
+     */
+    public long exportConfigData(SchemaScript script, Writer writer, UnaryOperator<String> transformer) throws SQLException, IOException {
+        if(script.getObjectType() != ScriptObjectType.TABLES) {
+            return 0;
+        }
+        String query = String.format("SELECT * FROM %s", script.getFullObjectName());
+        Connection session = acquireSession();
+        FlightEvents.ScriptStatement event = new FlightEvents.ScriptStatement("EXPORT");
+        event.begin();
+        try (Statement statement = session.createStatement()) {
+            statement.setFetchSize(CONFIG_DATA_FETCH_SIZE);
+            ResultSet resultSet = statement.executeQuery(query);
+            long rows = configDataExporter.export(resultSet, script.getFullObjectName(), writer, transformer);
+            event.commitFor(script, rows);
+            log.info("Exported {} rows of config table {}", rows, script.getFullObjectName());
+            return rows;
+        } finally {
+            sessionPool.release(session);
         }
-        return script;
     }
 
     public List<String> getAllSchemasInDatabase(String database) throws SQLException {
@@ -298,6 +422,139 @@ public class ScriptRepo {
         return schemas;
     }
 
+    /**
+     * Reads the LAST_ALTERED timestamp of every object in the database with one INFORMATION_SCHEMA query.
+     * @return the latest timestamp for each object keyed by {@link #getVerifyStateKey(String, String, String)}; overloaded functions and procedures share a key.
+     */
+    public Map<String, Timestamp> getLastAlteredTimes(String database) throws SQLException {
+        String query = String.format("SELECT 'VIEWS' AS OBJECT_TYPE, TABLE_SCHEMA AS SCHEMA_NAME, TABLE_NAME AS OBJECT_NAME, LAST_ALTERED FROM %1$s.INFORMATION_SCHEMA.TABLES WHERE TABLE_TYPE = 'VIEW' " +
+                "UNION ALL SELECT 'FUNCTIONS', FUNCTION_SCHEMA, FUNCTION_NAME, LAST_ALTERED FROM %1$s.INFORMATION_SCHEMA.FUNCTIONS " +
+                "UNION ALL SELECT 'PROCEDURES', PROCEDURE_SCHEMA, PROCEDURE_NAME, LAST_ALTERED FROM %1$s.INFORMATION_SCHEMA.PROCEDURES " +
+                "UNION ALL SELECT 'FILE_FORMATS', FILE_FORMAT_SCHEMA, FILE_FORMAT_NAME, LAST_ALTERED FROM %1$s.INFORMATION_SCHEMA.FILE_FORMATS " +
+                "UNION ALL SELECT 'PIPES', PIPE_SCHEMA, PIPE_NAME, LAST_ALTERED FROM %1$s.INFORMATION_SCHEMA.PIPES;", database);
+        log.debug("Reading last altered times using sql: {}", query);
+        Map<String, Timestamp> lastAlteredTimes = new HashMap<>();
+        ResultSet resultSet = executeQuery(query);
+        while(resultSet.next()) {
+            String key = getVerifyStateKey(resultSet.getString("OBJECT_TYPE"), resultSet.getString("SCHEMA_NAME"), resultSet.getString("OBJECT_NAME"));
+            Timestamp lastAltered = resultSet.getTimestamp("LAST_ALTERED");
+            lastAlteredTimes.merge(key, lastAltered, (first, second) -> first == null || second == null ? null : (first.after(second) ? first : second));
+        }
+        return lastAlteredTimes;
+    }
+
+    /**
+     * Lists the objects of {@link #UNTRACKED_OBJECT_TYPES} in the database with one SHOW command per type.
+     * @return the objects keyed by {@link #getVerifyStateKey(String, String, String)}, or null if a type could not be listed.
+     */
+    public Set<String> getUntrackedObjects(String database) {
+        Set<String> objects = new HashSet<>();
+        for(ScriptObjectType objectType: UNTRACKED_OBJECT_TYPES) {
+            String query = String.format("SHOW %s IN DATABASE %s;", objectType.toString().replace('_', ' '), database);
+            log.debug("Listing objects using sql: {}", query);
+            try {
+                ResultSet resultSet = executeQuery(query);
+                while(resultSet.next()) {
+                    objects.add(getVerifyStateKey(objectType.toString(), resultSet.getString("schema_name"), resultSet.getString("name")));
+                }
+            } catch (SQLException e) {
+                log.warn("Unable to list {} in database {}, all its schemas will be verified: {}", objectType, database, e.getMessage());
+                return null;
+            }
+        }
+        return objects;
+    }
+
+    public static String getVerifyStateKey(String objectType, String schema, String objectName) {
+        return String.format("%s:%s.%s", objectType, schema, objectName).toUpperCase();
+    }
+
+    public List<VerifyState> loadVerifyState(Collection<String> databases) throws SQLException {
+        String createTable = "CREATE TABLE IF NOT EXISTS " + getFullyQualifiedTableName(VERIFY_STATE_TABLE_NAME) + " (DATABASE_NAME VARCHAR, SCHEMA_NAME VARCHAR, OBJECT_NAME VARCHAR, OBJECT_TYPE VARCHAR, SCRIPT_ID VARCHAR, SOURCE_HASH VARCHAR, DDL_HASH VARCHAR, LAST_ALTERED TIMESTAMP_LTZ, CHANGE_SYNC_ID INTEGER, VERIFIED_TS TIMESTAMP);";
+        connection().createStatement().executeUpdate(createTable);
+        List<VerifyState> states = new ArrayList<>();
+        if(databases.isEmpty()) {
+            return states;
+        }
+        String query = "SELECT * FROM " + getFullyQualifiedTableName(VERIFY_STATE_TABLE_NAME) + " WHERE DATABASE_NAME IN (" + String.join(", ", Collections.nCopies(databases.size(), "?")) + ");";
+        PreparedStatement statement = connection().prepareStatement(query);
+        int index = 1;
+        for(String database: databases) {
+            statement.setString(index++, database);
+        }
+        ResultSet resultSet = statement.executeQuery();
+        while(resultSet.next()) {
+            VerifyState state = new VerifyState();
+            state.setDatabaseName(resultSet.getString("DATABASE_NAME"));
+            state.setSchemaName(resultSet.getString("SCHEMA_NAME"));
+            state.setObjectName(resultSet.getString("OBJECT_NAME"));
+            state.setObjectType(resultSet.getString("OBJECT_TYPE"));
+            state.setScriptId(resultSet.getString("SCRIPT_ID"));
+            state.setSourceHash(resultSet.getString("SOURCE_HASH"));
+            state.setDdlHash(resultSet.getString("DDL_HASH"));
+            state.setLastAltered(resultSet.getTimestamp("LAST_ALTERED"));
+            states.add(state);
+        }
+        log.debug("Loaded {} verify states for databases {}", states.size(), databases);
+        return states;
+    }
+
+    /**
+     * Replaces the verify state of the given databases in one transaction.
+     */
+    public void saveVerifyState(Collection<String> databases, List<VerifyState> states) throws SQLException {
+        if(databases.isEmpty()) {
+            return;
+        }
+        boolean autoCommit = connection().getAutoCommit();
+        try {
+            connection().setAutoCommit(false);
+            String delete = "DELETE FROM " + getFullyQualifiedTableName(VERIFY_STATE_TABLE_NAME) + " WHERE DATABASE_NAME IN (" + String.join(", ", Collections.nCopies(databases.size(), "?")) + ");";
+            PreparedStatement deleteStatement = connection().prepareStatement(delete);
+            int index = 1;
+            for(String database: databases) {
+                deleteStatement.setString(index++, database);
+            }
+            deleteStatement.executeUpdate();
+            String insert = "INSERT INTO " + getFullyQualifiedTableName(VERIFY_STATE_TABLE_NAME) + " (DATABASE_NAME, SCHEMA_NAME, OBJECT_NAME, OBJECT_TYPE, SCRIPT_ID, SOURCE_HASH, DDL_HASH, LAST_ALTERED, CHANGE_SYNC_ID, VERIFIED_TS) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP);";
+            PreparedStatement insertStatement = connection().prepareStatement(insert);
+            int batched = 0;
+            for(VerifyState state: states) {
+                insertStatement.setString(1, state.getDatabaseName());
+                insertStatement.setString(2, state.getSchemaName());
+                insertStatement.setString(3, state.getObjectName());
+                insertStatement.setString(4, state.getObjectType());
+                insertStatement.setString(5, state.getScriptId());
+                insertStatement.setString(6, state.getSourceHash());
+                insertStatement.setString(7, state.getDdlHash());
+                insertStatement.setTimestamp(8, state.getLastAltered());
+                insertStatement.setObject(9, changeSyncId);
+                insertStatement.addBatch();
+                if(++batched % VERIFY_STATE_BATCH_SIZE == 0) {
+                    insertStatement.executeBatch();
+                }
+            }
+            if(batched % VERIFY_STATE_BATCH_SIZE != 0) {
+                insertStatement.executeBatch();
+            }
+            connection().commit();
+            log.debug("Saved {} verify states for databases {}", states.size(), databases);
+        } catch (SQLException e) {
+            connection().rollback();
+            throw e;
+        } finally {
+            connection().setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Releases the metadata journal and closes the sessions opened for the command.
+     */
+    public void close() {
+        metadataWriter.close();
+        sessionPool.close();
+    }
+
     public String getDatabaseName() {
         return connectionProperties.getProperty("db");
     }
@@ -311,28 +568,120 @@ public class ScriptRepo {
     }
 
     public ResultSet executeQuery(String query) throws SQLException {
-        return connection.createStatement().executeQuery(query);
+        return connection().createStatement().executeQuery(query);
     }
 
-    public void insertDependencyList(List<ScriptDependency> dependencyList) throws SQLException {
+    private void createDependencyLineageTable() throws SQLException {
         String createTable = "CREATE TABLE IF NOT EXISTS " + getFullyQualifiedTableName(DEPENDENCY_LINEAGE_TABLE_NAME) + "(OBJECT_NAME VARCHAR, OBJECT_TYPE VARCHAR, DEPENDENCY VARCHAR, DEPENDECY_OBEJECT_TYPE VARCHAR, CHANGE_SYNC_ID VARCHAR, CREATED_BY VARCHAR, CREATED_TS TIMESTAMP);";
-        connection.createStatement().executeUpdate(createTable);
-        StringBuilder insertSql = new StringBuilder("INSERT INTO " + getFullyQualifiedTableName(DEPENDENCY_LINEAGE_TABLE_NAME) + " VALUES ");
+        connection().createStatement().executeUpdate(createTable);
+    }
 
-        for(ScriptDependency dependency: dependencyList) {
-            String values = String.format("('%s', '%s', '%s', '%s', '%s', current_user, current_timestamp),", dependency.getObjectName(), dependency.getObjectType(), dependency.getDependency(), dependency.getDependencyObjectType(), changeSyncId);
-            insertSql.append(values);
+    public List<LineageState> loadLineageState() throws SQLException {
+        String createTable = "CREATE TABLE IF NOT EXISTS " + getFullyQualifiedTableName(LINEAGE_STATE_TABLE_NAME) + " (SCRIPT_ID VARCHAR, SCRIPT_HASH VARCHAR, DEPENDENCIES VARCHAR, CHANGE_SYNC_ID INTEGER, UPDATED_TS TIMESTAMP);";
+        connection().createStatement().executeUpdate(createTable);
+        String query = "SELECT SCRIPT_ID, SCRIPT_HASH, DEPENDENCIES FROM " + getFullyQualifiedTableName(LINEAGE_STATE_TABLE_NAME) + ";";
+        List<LineageState> states = new ArrayList<>();
+        ResultSet resultSet = connection().createStatement().executeQuery(query);
+        while(resultSet.next()) {
+            LineageState state = new LineageState();
+            state.setScriptId(resultSet.getString("SCRIPT_ID"));
+            state.setScriptHash(resultSet.getString("SCRIPT_HASH"));
+            String dependencies = resultSet.getString("DEPENDENCIES");
+            state.setDependencies(dependencies == null || dependencies.isEmpty() ? new ArrayList<>() : Arrays.asList(dependencies.split(LINEAGE_DEPENDENCY_SEPARATOR)));
+            states.add(state);
         }
-        insertSql.deleteCharAt(insertSql.length() - 1);
-        log.info("inserting dag scripts using {} ", insertSql);
-        connection.createStatement().executeUpdate(insertSql.toString());
+        log.debug("Loaded {} lineage states", states.size());
+        return states;
+    }
+
+    public Set<ScriptDependency> getDependencyLineage() throws SQLException {
+        createDependencyLineageTable();
+        String query = "SELECT DISTINCT OBJECT_NAME, OBJECT_TYPE, DEPENDENCY, DEPENDECY_OBEJECT_TYPE FROM " + getFullyQualifiedTableName(DEPENDENCY_LINEAGE_TABLE_NAME) + ";";
+        Set<ScriptDependency> dependencies = new HashSet<>();
+        ResultSet resultSet = connection().createStatement().executeQuery(query);
+        while(resultSet.next()) {
+            dependencies.add(new ScriptDependency(
+                    resultSet.getString("OBJECT_NAME"),
+                    ScriptObjectType.valueOf(resultSet.getString("OBJECT_TYPE")),
+                    resultSet.getString("DEPENDENCY"),
+                    ScriptObjectType.valueOf(resultSet.getString("DEPENDECY_OBEJECT_TYPE"))
+            ));
+        }
+        return dependencies;
+    }
+
+    /**
+     * Applies the lineage changes and replaces the lineage state in one transaction, using bound statements executed in batches.
+     * @param replaceAll when true every existing lineage row is deleted before the added dependencies are inserted.
+     */
+    public void updateDependencyLineage(Collection<ScriptDependency> removed, Collection<ScriptDependency> added, List<LineageState> states, boolean replaceAll) throws SQLException {
+        createDependencyLineageTable();
+        String lineageTable = getFullyQualifiedTableName(DEPENDENCY_LINEAGE_TABLE_NAME);
+        boolean autoCommit = connection().getAutoCommit();
+        try {
+            connection().setAutoCommit(false);
+            if(replaceAll) {
+                connection().createStatement().executeUpdate("DELETE FROM " + lineageTable + ";");
+            }
+            else {
+                PreparedStatement deleteStatement = connection().prepareStatement("DELETE FROM " + lineageTable + " WHERE OBJECT_NAME = ? AND OBJECT_TYPE = ? AND DEPENDENCY = ? AND DEPENDECY_OBEJECT_TYPE = ?;");
+                executeBatches(deleteStatement, removed, (statement, dependency) -> {
+                    statement.setString(1, dependency.getObjectName());
+                    statement.setString(2, dependency.getObjectType().toString());
+                    statement.setString(3, dependency.getDependency());
+                    statement.setString(4, dependency.getDependencyObjectType().toString());
+                });
+            }
+            PreparedStatement insertStatement = connection().prepareStatement("INSERT INTO " + lineageTable + " (OBJECT_NAME, OBJECT_TYPE, DEPENDENCY, DEPENDECY_OBEJECT_TYPE, CHANGE_SYNC_ID, CREATED_BY, CREATED_TS) VALUES (?, ?, ?, ?, ?, CURRENT_USER, CURRENT_TIMESTAMP);");
+            executeBatches(insertStatement, added, (statement, dependency) -> {
+                statement.setString(1, dependency.getObjectName());
+                statement.setString(2, dependency.getObjectType().toString());
+                statement.setString(3, dependency.getDependency());
+                statement.setString(4, dependency.getDependencyObjectType().toString());
+                statement.setObject(5, changeSyncId);
+            });
+
+            connection().createStatement().executeUpdate("DELETE FROM " + getFullyQualifiedTableName(LINEAGE_STATE_TABLE_NAME) + ";");
+            PreparedStatement stateStatement = connection().prepareStatement("INSERT INTO " + getFullyQualifiedTableName(LINEAGE_STATE_TABLE_NAME) + " (SCRIPT_ID, SCRIPT_HASH, DEPENDENCIES, CHANGE_SYNC_ID, UPDATED_TS) VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP);");
+            executeBatches(stateStatement, states, (statement, state) -> {
+                statement.setString(1, state.getScriptId());
+                statement.setString(2, state.getScriptHash());
+                statement.setString(3, String.join(LINEAGE_DEPENDENCY_SEPARATOR, state.getDependencies()));
+                statement.setObject(4, changeSyncId);
+            });
+            connection().commit();
+            log.info("Updated dependency lineage, deleted {} and inserted {} dependencies.", replaceAll ? "all" : removed.size(), added.size());
+        } catch (SQLException e) {
+            connection().rollback();
+            throw e;
+        } finally {
+            connection().setAutoCommit(autoCommit);
+        }
+    }
+
+    private <T> void executeBatches(PreparedStatement statement, Collection<T> rows, StatementBinder<T> binder) throws SQLException {
+        int batched = 0;
+        for(T row: rows) {
+            binder.bind(statement, row);
+            statement.addBatch();
+            if(++batched % LINEAGE_BATCH_SIZE == 0) {
+                statement.executeBatch();
+            }
+        }
+        if(batched % LINEAGE_BATCH_SIZE != 0) {
+            statement.executeBatch();
+        }
+    }
+
+    private interface StatementBinder<T> {
+        void bind(PreparedStatement statement, T row) throws SQLException;
     }
 
     public void insertSortedScript(List<Script> sequencedScript) throws SQLException {
         DependencyExtractor dependencyExtractor = new DependencyExtractor();
         String topologicalSortedTable = getFullyQualifiedTableName("DL_SYNC_TOPOLOGICAL_SORTED");
         String createTable = "CREATE OR REPLACE TABLE " + topologicalSortedTable + "(id INT, script VARCHAR, dependency_size INT, dependencies VARCHAR);";
-        connection.createStatement().executeUpdate(createTable);
+        connection().createStatement().executeUpdate(createTable);
         StringBuilder insertSql = new StringBuilder("INSERT INTO " + topologicalSortedTable + " VALUES ");
 
         for(int i = 0; i < sequencedScript.size(); i++) {
@@ -346,7 +695,7 @@ public class ScriptRepo {
         }
         insertSql.deleteCharAt(insertSql.length() - 1);
         log.info("inserting sorted scripts using {} ", insertSql.toString());
-        connection.createStatement().executeUpdate(insertSql.toString());
+        connection().createStatement().executeUpdate(insertSql.toString());
     }
 
     public List<MigrationScript> getDeployedMigrationScripts(Set<String> ids) throws SQLException {
@@ -355,7 +704,7 @@ public class ScriptRepo {
         }
         String allIdJoined = ids.stream().map(v -> "'" + v + "'").collect(Collectors.joining(",", "(", ");"));
         String query = "SELECT * FROM " + getFullyQualifiedTableName(SCRIPT_HISTORY_TABLE_NAME) + " where SCRIPT_ID in " + allIdJoined;
-        PreparedStatement statement = connection.prepareStatement(query);
+        PreparedStatement statement = connection().prepareStatement(query);
         ResultSet rs = statement.executeQuery();
         List<MigrationScript> migrations = new ArrayList<>();
         while(rs.next()) {
@@ -381,61 +730,70 @@ public class ScriptRepo {
     }
 
     public void executeRollback(MigrationScript migrationScript) throws SQLException {
-        Statement statement = connection.createStatement();
-        boolean autoCommit = connection.getAutoCommit();
+        Statement statement = connection().createStatement();
+        boolean autoCommit = connection().getAutoCommit();
+        Long executionMs = null;
+        String queryId = null;
+        long start = System.nanoTime();
+        FlightEvents.ScriptStatement event = new FlightEvents.ScriptStatement("ROLLBACK");
+        event.begin();
         try {
-            connection.setAutoCommit(false);
+            connection().setAutoCommit(false);
             if(migrationScript.getRollback() != null && !migrationScript.getRollback().trim().equals("")) {
                 log.debug("Executing rollback using the SQL: {}", migrationScript.getRollback());
                 statement.executeUpdate(migrationScript.getRollback());
+                MetricsRegistry.getGlobal().record(Phase.DDL_EXECUTION, start, migrationScript.getRollback().length());
+                event.commitFor(migrationScript, migrationScript.getRollback().length());
+                executionMs = elapsedMillis(start);
+                queryId = getQueryId(statement);
             }
 
-            deleteScriptHash(migrationScript);
-            insertScriptEvent(migrationScript, "SUCCESS", "Successfully Rolled-back Object");
-            connection.commit();
-            log.info("Successfully Rollback object: {}", migrationScript);
+            connection().commit();
         }
         catch (SQLException e) {
-            connection.rollback();
+            connection().rollback();
+            connection().setAutoCommit(autoCommit);
             log.error("Error {}, while rollback the object {} with sql {}", e.getMessage(), migrationScript.getObjectName(), migrationScript.getRollback());
-            insertScriptEvent(migrationScript, "ERROR", e.getMessage());
+            metadataWriter.recordEvent(migrationScript, "ERROR", e.getMessage(), changeSyncId, elapsedMillis(start), getQueryId(e));
             throw e;
         }
-        finally {
-            connection.setAutoCommit(autoCommit);
-        }
+        connection().setAutoCommit(autoCommit);
+        metadataWriter.recordRollback(migrationScript, changeSyncId, executionMs, queryId);
+        historyChanged = true;
+        log.info("Successfully Rollback object: {}", migrationScript);
     }
 
     public boolean executeVerify(MigrationScript migrationScript) throws SQLException {
-        Statement statement = connection.createStatement();
-        boolean autoCommit = connection.getAutoCommit();
+        Statement statement = connection().createStatement();
+        boolean autoCommit = connection().getAutoCommit();
+        Long executionMs = null;
+        String queryId = null;
+        long start = System.nanoTime();
+        FlightEvents.ScriptStatement event = new FlightEvents.ScriptStatement("VERIFY");
+        event.begin();
         try {
-            connection.setAutoCommit(false);
+            connection().setAutoCommit(false);
             if(migrationScript.getVerify() != null && !migrationScript.getVerify().trim().equals("")) {
                 log.debug("Executing verify using the SQL: {}", migrationScript.getVerify());
                 statement.executeQuery(migrationScript.getVerify());
+                MetricsRegistry.getGlobal().record(Phase.DDL_EXECUTION, start, migrationScript.getVerify().length());
+                event.commitFor(migrationScript, migrationScript.getVerify().length());
+                executionMs = elapsedMillis(start);
+                queryId = getQueryId(statement);
             }
-            insertScriptEvent(migrationScript, "SUCCESS", "Successfully Verified Object");
-            connection.commit();
-            log.debug("Successfully Verified object: {}", migrationScript);
-            return true;
+            connection().commit();
         }
         catch (SQLException e) {
-            connection.rollback();
+            connection().rollback();
+            connection().setAutoCommit(autoCommit);
             log.error("Error {}, while verifying the object {} with sql {}", e.getMessage(), migrationScript.getObjectName(), migrationScript.getVerify());
-            insertScriptEvent(migrationScript, "ERROR", e.getMessage());
+            metadataWriter.recordEvent(migrationScript, "ERROR", e.getMessage(), changeSyncId, elapsedMillis(start), getQueryId(e));
             return false;
         }
-        finally {
-            connection.setAutoCommit(autoCommit);
-        }
-    }
-
-    private void deleteScriptHash(MigrationScript migration) throws SQLException {
-        String deleteSql = "DELETE FROM " + getFullyQualifiedTableName(SCRIPT_HISTORY_TABLE_NAME) + " WHERE SCRIPT_ID=?;";
-        PreparedStatement statement = connection.prepareStatement(deleteSql);
-        statement.setString(1, migration.getId());
-        statement.executeUpdate();
+        connection().setAutoCommit(autoCommit);
+        metadataWriter.recordEvent(migrationScript, "SUCCESS", "Successfully Verified Object", changeSyncId, executionMs, queryId);
+        log.debug("Successfully Verified object: {}", migrationScript);
+        return true;
     }
 
     public boolean verifyScript(Script script) {
@@ -453,7 +811,12 @@ public class ScriptRepo {
         List<TestResult> testResults = new ArrayList<>();
         try {
             log.debug("Running test script: {}", testScript.getObjectName());
-            ResultSet resultSet = connection.createStatement().executeQuery(testScript.getTestQuery());
+            long start = System.nanoTime();
+            FlightEvents.TestQuery event = new FlightEvents.TestQuery();
+            event.begin();
+            ResultSet resultSet = connection().createStatement().executeQuery(testScript.getTestQuery());
+            MetricsRegistry.getGlobal().record(Phase.DDL_EXECUTION, start, testScript.getTestQuery().length());
+            event.commitFor(testScript, testScript.getTestQuery().length());
             while(resultSet.next()) {
                 TestResult testResult = new TestResult(resultSet.getString(1), resultSet.getString(2));
                 testResults.add(testResult);
@@ -465,5 +828,108 @@ public class ScriptRepo {
             return testResults;
         }
     }
+
+    /**
+     * Reads the average execution time of the scripts deployed successfully by the latest deploys.
+     * @return the duration in milliseconds keyed by script id, empty if the events have no execution times.
+     */
+    public Map<String, Long> loadScriptDurations() {
+        String query = "SELECT SCRIPT_ID, AVG(EXECUTION_MS) AS EXECUTION_MS FROM " + getFullyQualifiedTableName(SCRIPT_EVENT_TABLE_NAME)
+                + " WHERE STATUS = 'SUCCESS' AND EXECUTION_MS IS NOT NULL AND CHANGE_SYNC_ID IN (SELECT ID FROM " + getFullyQualifiedTableName(CHANGE_SYNC_TABLE_NAME)
+                + " WHERE CHANGE_TYPE = '" + ChangeType.DEPLOY + "' ORDER BY ID DESC LIMIT " + SCRIPT_DURATION_CHANGE_SYNCS + ") GROUP BY SCRIPT_ID;";
+        log.debug("Loading script durations with sql: {}", query);
+        Map<String, Long> durations = new HashMap<>();
+        try {
+            ResultSet resultSet = connection().createStatement().executeQuery(query);
+            while(resultSet.next()) {
+                durations.put(resultSet.getString("SCRIPT_ID"), resultSet.getLong("EXECUTION_MS"));
+            }
+        } catch (SQLException e) {
+            log.warn("Unable to load script durations, scheduling without them: {}", e.getMessage());
+        }
+        return durations;
+    }
+
+    /**
+     * Ranks the objects by the time their deploy statements took across the latest deploys. Rollback and verify statements are not counted.
+     * Compilation, queue and warehouse execution times of the slowest statement of each object are read from the query history
+     * by query id when it is still available, the driver does not return them with the statement.
+     */
+    public List<ObjectExecutionTime> getSlowestObjects(int changeSyncs, int limit) throws SQLException {
+        String query = "SELECT e.SCRIPT_ID, ANY_VALUE(e.OBJECT_NAME) AS OBJECT_NAME, ANY_VALUE(h.OBJECT_TYPE) AS OBJECT_TYPE, COUNT(*) AS EXECUTIONS, SUM(e.EXECUTION_MS) AS TOTAL_MS, MAX(e.EXECUTION_MS) AS MAX_MS, MAX_BY(e.QUERY_ID, e.EXECUTION_MS) AS SLOWEST_QUERY_ID"
+                + " FROM " + getFullyQualifiedTableName(SCRIPT_EVENT_TABLE_NAME) + " e LEFT JOIN " + getFullyQualifiedTableName(SCRIPT_HISTORY_TABLE_NAME) + " h ON h.SCRIPT_ID = e.SCRIPT_ID"
+                + " WHERE e.EXECUTION_MS IS NOT NULL AND e.CHANGE_SYNC_ID IN (SELECT ID FROM " + getFullyQualifiedTableName(CHANGE_SYNC_TABLE_NAME)
+                + " WHERE CHANGE_TYPE = '" + ChangeType.DEPLOY + "' ORDER BY ID DESC LIMIT ?)"
+                + " GROUP BY e.SCRIPT_ID ORDER BY TOTAL_MS DESC LIMIT ?;";
+        log.debug("Reading slowest objects using sql: {}", query);
+        PreparedStatement statement = connection().prepareStatement(query);
+        statement.setInt(1, changeSyncs);
+        statement.setInt(2, limit);
+        ResultSet resultSet = statement.executeQuery();
+        List<ObjectExecutionTime> objects = new ArrayList<>();
+        while(resultSet.next()) {
+            ObjectExecutionTime object = new ObjectExecutionTime();
+            object.setScriptId(resultSet.getString("SCRIPT_ID"));
+            object.setObjectName(resultSet.getString("OBJECT_NAME"));
+            object.setObjectType(resultSet.getString("OBJECT_TYPE"));
+            object.setExecutions(resultSet.getLong("EXECUTIONS"));
+            object.setTotalMs(resultSet.getLong("TOTAL_MS"));
+            object.setMaxMs(resultSet.getLong("MAX_MS"));
+            object.setSlowestQueryId(resultSet.getString("SLOWEST_QUERY_ID"));
+            objects.add(object);
+        }
+        addQueryHistoryTimes(objects);
+        return objects;
+    }
+
+    private void addQueryHistoryTimes(List<ObjectExecutionTime> objects) {
+        Map<String, ObjectExecutionTime> byQueryId = new LinkedHashMap<>();
+        for(ObjectExecutionTime object: objects) {
+            if(object.getSlowestQueryId() != null) {
+                byQueryId.put(object.getSlowestQueryId(), object);
+            }
+        }
+        if(byQueryId.isEmpty()) {
+            return;
+        }
+        String query = "SELECT QUERY_ID, COMPILATION_TIME, QUEUED_PROVISIONING_TIME + QUEUED_REPAIR_TIME + QUEUED_OVERLOAD_TIME AS QUEUED_TIME, EXECUTION_TIME"
+                + " FROM TABLE(INFORMATION_SCHEMA.QUERY_HISTORY(RESULT_LIMIT => 10000)) WHERE QUERY_ID IN (" + String.join(", ", Collections.nCopies(byQueryId.size(), "?")) + ");";
+        log.debug("Reading query history using sql: {}", query);
+        try {
+            PreparedStatement statement = connection().prepareStatement(query);
+            int index = 1;
+            for(String queryId: byQueryId.keySet()) {
+                statement.setString(index++, queryId);
+            }
+            ResultSet resultSet = statement.executeQuery();
+            while(resultSet.next()) {
+                ObjectExecutionTime object = byQueryId.get(resultSet.getString("QUERY_ID"));
+                if(object != null) {
+                    object.setCompilationMs(resultSet.getLong("COMPILATION_TIME"));
+                    object.setQueuedMs(resultSet.getLong("QUEUED_TIME"));
+                    object.setWarehouseExecutionMs(resultSet.getLong("EXECUTION_TIME"));
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("Unable to read compilation and queue times from the query history: {}", e.getMessage());
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static String getQueryId(Statement statement) {
+        try {
+            return statement.isWrapperFor(SnowflakeStatement.class) ? statement.unwrap(SnowflakeStatement.class).getQueryID() : null;
+        } catch (SQLException e) {
+            log.debug("Unable to read the query id of the statement: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static String getQueryId(SQLException e) {
+        return e instanceof SnowflakeSQLException ? ((SnowflakeSQLException) e).getQueryId() : null;
+    }
 }
 
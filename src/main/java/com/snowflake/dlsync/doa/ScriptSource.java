@@ -1,18 +1,26 @@
 package com.snowflake.dlsync.doa;
 
 import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.Util;
+import com.snowflake.dlsync.metrics.FlightEvents;
+import com.snowflake.dlsync.metrics.MetricsRegistry;
+import com.snowflake.dlsync.metrics.Phase;
 import com.snowflake.dlsync.models.*;
 import com.snowflake.dlsync.parser.SqlTokenizer;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 public class ScriptSource {
@@ -20,172 +28,392 @@ public class ScriptSource {
     private String mainScriptDir;
     private String testScriptDir;
     private final String accountDir = "ACCOUNT";
+    private ScriptFileCache scriptFileCache;
+    private volatile ScriptIndex scriptIndex;
+    private static final int MAX_READ_THREADS = 8;
 
     public ScriptSource(String scriptRoot) {
+        this(scriptRoot, null);
+    }
+
+    public ScriptSource(String scriptRoot, ScriptFileCache scriptFileCache) {
         this.scriptRoot = scriptRoot;
-        mainScriptDir = Files.exists(Path.of(scriptRoot, "main")) ? Path.of(scriptRoot, "main").toString(): scriptRoot;
+        this.scriptFileCache = scriptFileCache;
+        mainScriptDir = Files.exists(Path.of(scriptRoot, "main")) ? Path.of(scriptRoot, "main").toString(): Path.of(scriptRoot).toString();
         testScriptDir = Path.of(scriptRoot, "test").toString();
         log.debug("Script file reader initialized with scriptRoot: {}", scriptRoot);
     }
 
-    private List<String> readDatabase() {
-        File scriptFiles = new File(mainScriptDir);
-        List<String> dbs = new ArrayList<>();
-        if(scriptFiles.exists()) {
-            File[] allDbs = scriptFiles.listFiles();
-            for(File file: allDbs) {
-                if(file.isDirectory() && !file.getName().equalsIgnoreCase(accountDir)) {
-                    dbs.add(file.getName());
-                }
+    public List<Script> getAllScripts() throws IOException {
+        return flattenMigrations(getAllFileScripts());
+    }
+
+    /**
+     * Reads only the given script files. Files outside the main script directory, deleted files and non SQL files are ignored.
+     */
+    public List<Script> getScripts(Collection<Path> files) throws IOException {
+        long scanStart = System.nanoTime();
+        Path mainScriptPath = Path.of(mainScriptDir).toAbsolutePath().normalize();
+        List<ScriptFile> scriptFiles = new ArrayList<>();
+        for(Path file: files) {
+            Path absoluteFile = file.toAbsolutePath().normalize();
+            if(!absoluteFile.startsWith(mainScriptPath) || !Files.isRegularFile(absoluteFile)) {
+                continue;
+            }
+            Path relativePath = mainScriptPath.relativize(absoluteFile);
+            if(relativePath.getName(0).toString().startsWith(".")) {
+                continue;
+            }
+            ScriptFile scriptFile = toScriptFile(Path.of(mainScriptDir).resolve(relativePath), relativePath);
+            if(scriptFile != null) {
+                scriptFiles.add(scriptFile);
             }
         }
-        else {
-            log.error("Invalid path for script provided: {}", scriptFiles.getAbsolutePath());
-            throw new RuntimeException("No valid script source path provided");
+        MetricsRegistry.getGlobal().record(Phase.SCAN, scanStart, 0);
+        List<Script> scripts = readScriptFiles(scriptFiles);
+        if(scriptFileCache != null) {
+            scriptFileCache.saveUpdates();
         }
-        return dbs;
+        return flattenMigrations(scripts);
     }
 
-    private List<String> readSchemas(String database) {
-        log.info("Reading all schema from database {}", database);
-        List<String> schemas = new ArrayList<>();
-        File dbFile = Path.of(mainScriptDir, database).toFile();
-        if(dbFile.exists()) {
-            File[] allFiles = dbFile.listFiles();
-            for(File file: allFiles) {
-                if(file.isDirectory()) {
-                    schemas.add(file.getName());
-                }
+    /**
+     * @return new script instances on every call, callers can change them without changing the indexed scripts.
+     */
+    public List<Script> getAllFileScripts() throws IOException {
+        return getScriptIndex().scripts.stream().map(this::copyScript).collect(Collectors.toList());
+    }
+
+    /**
+     * Copies an indexed script and its migrations. The copy loads its content from the indexed script, so the file is read once
+     * however many copies are made.
+     */
+    private Script copyScript(Script script) {
+        Script copy;
+        if(script instanceof SchemaScript) {
+            SchemaScript schemaScript = (SchemaScript) script;
+            copy = ScriptFactory.getSchemaScript(script.getScriptPath(), schemaScript.getDatabaseName(), schemaScript.getSchemaName(), script.getObjectType(), script.getObjectName(), script.getHash(), script::getContent);
+        }
+        else {
+            copy = ScriptFactory.getAccountScript(script.getScriptPath(), script.getObjectType(), script.getObjectName(), script.getHash(), script::getContent);
+        }
+        if(script.isMigration() && script.getMigrations() != null) {
+            List<MigrationScript> migrations = new ArrayList<>();
+            for(MigrationScript migration: script.getMigrations()) {
+                migrations.add(ScriptFactory.getMigrationScript(copy, migration.getHash(), migration::getContent, migration.getVersion(), migration.getAuthor(), migration.getRollback(), migration.getVerify()));
             }
+            copy.setMigrations(migrations);
         }
-        return schemas;
+        return copy;
     }
 
-    public List<Script> getAllScripts() throws IOException {
-        return getAllFileScripts()
-                .stream()
-                .flatMap(script -> {
-                    if (script.isMigration() && script.getMigrations() != null) {
-                        return script.getMigrations().stream();
-                    } else {
-                        return List.of(script).stream();
-                    }
-                }).collect(Collectors.toList());
+    private List<Script> flattenMigrations(List<Script> scripts) {
+        return scripts.stream()
+                .flatMap(script -> script.isMigration() && script.getMigrations() != null ? script.getMigrations().stream() : Stream.of(script))
+                .collect(Collectors.toList());
     }
 
-    public List<Script> getAllFileScripts() throws IOException {
-        List<Script> allScripts = new ArrayList<>();
-        List<AccountScript> accountScripts = getScriptsInAccount();
-        for(String database: readDatabase()) {
-            for(String schema: readSchemas(database)) {
-                allScripts.addAll(getScriptsInSchema(database, schema));
+    private ScriptIndex getScriptIndex() throws IOException {
+        ScriptIndex index = scriptIndex;
+        if(index == null) {
+            synchronized (this) {
+                if(scriptIndex == null) {
+                    scriptIndex = buildScriptIndex();
+                }
+                index = scriptIndex;
             }
         }
-        allScripts.addAll(accountScripts);
-        return allScripts;
-    }
-
-    public List<AccountScript> getScriptsInAccount() throws IOException {
-        List<AccountScript> allScripts = new ArrayList<>();
-        log.info("Reading all Account objects from {}", accountDir);
-        File accountFile = Path.of(mainScriptDir, accountDir).toFile();
-        if(!accountFile.exists()) {
-            return allScripts;
-        }
-        File[] scriptTypeDirectories = accountFile.listFiles();
-        for(File scriptType: scriptTypeDirectories) {
-            if(scriptType.isDirectory() ) {
-                File[] scriptFiles = scriptType.listFiles();
-                for(File file: scriptFiles) {
-                    if(file.getName().toLowerCase().endsWith(".sql")){
-                        AccountScript scriptFromFile = SqlTokenizer.parseAccountScript(file.getPath(), file.getName(), scriptType.getName(), Files.readString(file.toPath()));
-                        allScripts.add(scriptFromFile);
-                    }
-                    else {
-                        log.warn("Script Skipped, File not SQL: {} ", file.getName());
+        return index;
+    }
+
+    /**
+     * Walks the main and test script directories once and reads all main scripts concurrently.
+     */
+    private ScriptIndex buildScriptIndex() throws IOException {
+        Path mainScriptPath = Path.of(mainScriptDir);
+        if(!Files.isDirectory(mainScriptPath)) {
+            log.error("Invalid path for script provided: {}", mainScriptPath.toAbsolutePath());
+            throw new RuntimeException("No valid script source path provided");
+        }
+        log.info("Reading all script files from {}", mainScriptDir);
+        long scanStart = System.nanoTime();
+        long[] scannedBytes = {0};
+        List<ScriptFile> scriptFiles = new ArrayList<>();
+        Files.walkFileTree(mainScriptPath, EnumSet.noneOf(FileVisitOption.class), 4, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                if(!directory.equals(mainScriptPath) && directory.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if(attributes.isRegularFile()) {
+                    ScriptFile scriptFile = toScriptFile(file, mainScriptPath.relativize(file));
+                    if(scriptFile != null) {
+                        scriptFiles.add(scriptFile);
+                        scannedBytes[0] += attributes.size();
                     }
                 }
+                return FileVisitResult.CONTINUE;
             }
-            else {
-                log.warn("Script file found outside object type directory: {} ", scriptType.getName());
+        });
+        scriptFiles.sort(Comparator.comparing((ScriptFile scriptFile) -> scriptFile.account).thenComparing(scriptFile -> scriptFile.path));
+
+        Set<String> testFiles = new HashSet<>();
+        Path testScriptPath = Path.of(testScriptDir);
+        if(Files.isDirectory(testScriptPath)) {
+            Files.walkFileTree(testScriptPath, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    testFiles.add(file.toString());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        MetricsRegistry.getGlobal().record(Phase.SCAN, scanStart, scannedBytes[0]);
+
+        List<Script> scripts = readScriptFiles(scriptFiles);
+        if(scriptFileCache != null) {
+            scriptFileCache.save();
+        }
+        log.debug("Indexed {} script files and {} test files", scripts.size(), testFiles.size());
+        return new ScriptIndex(scripts, testFiles);
+    }
+
+    /**
+     * @return the script file for a path relative to the main script directory, or null if the path is not a script file.
+     */
+    private ScriptFile toScriptFile(Path file, Path relativePath) {
+        boolean account = relativePath.getName(0).toString().equalsIgnoreCase(accountDir);
+        int depth = relativePath.getNameCount();
+        int scriptDepth = account ? 3 : 4;
+        if(depth == scriptDepth - 1) {
+            log.warn("Script file found outside object type directory: {} ", file);
+            return null;
+        }
+        if(depth != scriptDepth) {
+            return null;
+        }
+        if(!file.getFileName().toString().toLowerCase().endsWith(".sql")) {
+            log.warn("Script Skipped, File not SQL: {} ", file.getFileName());
+            return null;
+        }
+        return new ScriptFile(file.toString(), relativePath.getName(depth - 2).toString(), account);
+    }
+
+    private List<Script> readScriptFiles(List<ScriptFile> scriptFiles) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_READ_THREADS)));
+        try {
+            return pool.submit(() -> scriptFiles.parallelStream()
+                    .map(scriptFile -> {
+                        try {
+                            File file = new File(scriptFile.path);
+                            return scriptFile.account ? (Script)readAccountScript(file, scriptFile.scriptType) : readSchemaScript(file, scriptFile.scriptType);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList())
+            ).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading script files.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
             }
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            pool.shutdown();
         }
-        return allScripts;
     }
 
-    public List<SchemaScript> getScriptsInSchema(String database, String schema) throws IOException {
-        log.info("Reading script files from schema: {}", schema);
-        List<SchemaScript> scripts = new ArrayList<>();
-        File schemaDirectory = Path.of(mainScriptDir, database, schema).toFile();
-        File[] scriptTypeDirectories = schemaDirectory.listFiles();
+    private SchemaScript readSchemaScript(File file, String scriptType) throws IOException {
+        if(scriptFileCache == null) {
+            return parseSchemaScript(file, scriptType);
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        ScriptFileCache.Entry entry = scriptFileCache.lookup(file.getPath(), attributes);
+        if(entry != null && entry.getDatabaseName() != null && scriptType.equalsIgnoreCase(entry.getObjectType())) {
+            SchemaScript schemaScript = ScriptFactory.getSchemaScript(file.getPath(), entry.getDatabaseName(), entry.getSchemaName(), ScriptObjectType.valueOf(entry.getObjectType()), entry.getObjectName(), entry.getHash(), contentLoader(file, entry.getHash()));
+            addCachedMigrations(schemaScript, file, entry);
+            return schemaScript;
+        }
+        SchemaScript schemaScript = parseSchemaScript(file, scriptType);
+        ScriptFileCache.Entry newEntry = toCacheEntry(schemaScript);
+        newEntry.setDatabaseName(schemaScript.getDatabaseName());
+        newEntry.setSchemaName(schemaScript.getSchemaName());
+        scriptFileCache.put(file.getPath(), attributes, newEntry);
+        return schemaScript;
+    }
 
-        for(File scriptType: scriptTypeDirectories) {
-            if(scriptType.isDirectory() ) {
-                File[] scriptFiles = scriptType.listFiles();
-                for(File file: scriptFiles) {
-                    if(file.getName().toLowerCase().endsWith(".sql")){
-                       SchemaScript scriptFromFile = SqlTokenizer.parseSchemaScript(file.getPath(), file.getName(), scriptType.getName(), Files.readString(file.toPath()));
-                       scripts.add(scriptFromFile);
-                    }
-                    else {
-                        log.warn("Script Skipped, File not SQL: {} ", file.getName());
-                    }
-                }
+    private AccountScript readAccountScript(File file, String scriptType) throws IOException {
+        if(scriptFileCache == null) {
+            return parseAccountScript(file, scriptType);
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        ScriptFileCache.Entry entry = scriptFileCache.lookup(file.getPath(), attributes);
+        if(entry != null && entry.getDatabaseName() == null && scriptType.equalsIgnoreCase(entry.getObjectType())) {
+            AccountScript accountScript = ScriptFactory.getAccountScript(file.getPath(), ScriptObjectType.valueOf(entry.getObjectType()), entry.getObjectName(), entry.getHash(), contentLoader(file, entry.getHash()));
+            addCachedMigrations(accountScript, file, entry);
+            return accountScript;
+        }
+        AccountScript accountScript = parseAccountScript(file, scriptType);
+        scriptFileCache.put(file.getPath(), attributes, toCacheEntry(accountScript));
+        return accountScript;
+    }
+
+    private SchemaScript parseSchemaScript(File file, String scriptType) throws IOException {
+        long start = System.nanoTime();
+        FlightEvents.ScriptParse event = new FlightEvents.ScriptParse();
+        event.begin();
+        String content = readFile(file);
+        SchemaScript schemaScript = SqlTokenizer.parseSchemaScript(file.getPath(), file.getName(), scriptType, content);
+        MetricsRegistry.getGlobal().record(Phase.PARSE, start, content.length());
+        event.commitFor(schemaScript, content.length());
+        return schemaScript;
+    }
+
+    private AccountScript parseAccountScript(File file, String scriptType) throws IOException {
+        long start = System.nanoTime();
+        FlightEvents.ScriptParse event = new FlightEvents.ScriptParse();
+        event.begin();
+        String content = readFile(file);
+        AccountScript accountScript = SqlTokenizer.parseAccountScript(file.getPath(), file.getName(), scriptType, content);
+        MetricsRegistry.getGlobal().record(Phase.PARSE, start, content.length());
+        event.commitFor(accountScript, content.length());
+        return accountScript;
+    }
+
+    private ScriptFileCache.Entry toCacheEntry(Script script) {
+        ScriptFileCache.Entry entry = new ScriptFileCache.Entry();
+        entry.setHash(script.getHash());
+        entry.setObjectType(script.getObjectType().name());
+        entry.setObjectName(script.getObjectName());
+        if(script.isMigration() && script.getMigrations() != null) {
+            List<ScriptFileCache.MigrationEntry> migrations = new ArrayList<>();
+            for(MigrationScript migrationScript: script.getMigrations()) {
+                ScriptFileCache.MigrationEntry migrationEntry = new ScriptFileCache.MigrationEntry();
+                migrationEntry.setVersion(migrationScript.getVersion());
+                migrationEntry.setAuthor(migrationScript.getAuthor());
+                migrationEntry.setRollback(migrationScript.getRollback());
+                migrationEntry.setVerify(migrationScript.getVerify());
+                migrationEntry.setHash(migrationScript.getHash());
+                migrations.add(migrationEntry);
             }
-            else {
-                log.warn("Script file found outside object type directory: {} ", scriptType.getName());
+            entry.setMigrations(migrations);
+        }
+        return entry;
+    }
+
+    private void addCachedMigrations(Script script, File file, ScriptFileCache.Entry entry) {
+        if(!script.isMigration() || entry.getMigrations() == null) {
+            return;
+        }
+        CachedMigrationFile migrationFile = new CachedMigrationFile(file, entry.getHash());
+        List<MigrationScript> migrationScripts = new ArrayList<>();
+        for(ScriptFileCache.MigrationEntry migration: entry.getMigrations()) {
+            Supplier<String> migrationLoader = () -> migrationFile.getContent(migration.getVersion());
+            migrationScripts.add(ScriptFactory.getMigrationScript(script, migration.getHash(), migrationLoader, migration.getVersion(), migration.getAuthor(), migration.getRollback(), migration.getVerify()));
+        }
+        script.setMigrations(migrationScripts);
+    }
+
+    private Supplier<String> contentLoader(File file, String hash) {
+        return () -> readContent(file, hash);
+    }
+
+    private String readContent(File file, String expectedHash) {
+        try {
+            String content = readFile(file);
+            long start = System.nanoTime();
+            String hash = Util.getMd5Hash(content.trim());
+            MetricsRegistry.getGlobal().record(Phase.HASH, start, content.length());
+            if(!hash.equals(expectedHash)) {
+                log.error("Script file {} changed while it was being processed.", file.getPath());
+                throw new RuntimeException("Script file changed during execution: " + file.getPath());
             }
+            return content;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-        return scripts;
+    }
+
+    String readFile(File file) throws IOException {
+        return Files.readString(file.toPath());
     }
 
     public List<TestScript> getTestScripts(List<Script> scripts) throws IOException {
-        List<TestScript> testScripts = scripts.stream()
-                .map(script -> {
-                    try {
-                        return getTestScript(script);
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
-                })
-                .filter(testScript -> testScript != null)
-                .collect(Collectors.toList());
+        Set<String> testFiles = getScriptIndex().testFiles;
+        List<TestScript> testScripts = new ArrayList<>();
+        for(Script script: scripts) {
+            TestScript testScript = getTestScript(script, testFiles);
+            if(testScript != null) {
+                testScripts.add(testScript);
+            }
+        }
         return testScripts;
     }
 
     public TestScript getTestScript(Script script) throws IOException {
+        return getTestScript(script, getScriptIndex().testFiles);
+    }
+
+    private TestScript getTestScript(Script script, Set<String> testFiles) throws IOException {
         String objectName = script.getObjectName() + "_TEST";
         String testScriptPath = script.getScriptPath().replace(".SQL", "_TEST.SQL");
-        testScriptPath = testScriptPath.replaceAll("^" + mainScriptDir, testScriptDir);
-        File file = Path.of(testScriptPath).toFile();
-        if(file.exists()) {
-            log.info("Test script file found: {}", file.getPath());
-            String content = Files.readString(file.toPath());
-            TestScript testScript = ScriptFactory.getTestScript(file.getPath(), objectName, content, script);
+        if(testScriptPath.startsWith(mainScriptDir)) {
+            testScriptPath = testScriptDir + testScriptPath.substring(mainScriptDir.length());
+        }
+        if(testFiles.contains(testScriptPath)) {
+            log.info("Test script file found: {}", testScriptPath);
+            String content = Files.readString(Path.of(testScriptPath));
+            TestScript testScript = ScriptFactory.getTestScript(testScriptPath, objectName, content, script);
             return testScript;
         }
         return null;
 
     }
 
-    public void createSchemaScriptFiles(List<SchemaScript> scripts) {
-        log.debug("Creating script files for the scripts: {}", scripts);
+    /**
+     * Queues the script files on the writer, they are written when the writer gets to them.
+     */
+    public void createSchemaScriptFiles(List<SchemaScript> scripts, ScriptFileWriter scriptFileWriter) throws IOException {
+        log.debug("Queueing script files for the scripts: {}", scripts);
         for(SchemaScript script: scripts) {
-            createSchemaScriptFile(script);
+            scriptFileWriter.submit(getSchemaScriptPath(script), script.getContent());
         }
+        scriptIndex = null;
+    }
+
+    public Path getSchemaScriptPath(SchemaScript script) {
+        return Path.of(mainScriptDir, script.getDatabaseName(), script.getSchemaName(), script.getObjectType().toString(), script.getObjectName() + ".SQL");
+    }
+
+    public Path getAccountScriptPath(AccountScript script) {
+        return Path.of(mainScriptDir, accountDir, script.getObjectType().toString(), script.getObjectName() + ".SQL");
     }
 
     public void createSchemaScriptFile(SchemaScript script) {
+        createScriptFile(getSchemaScriptPath(script), writer -> writer.write(script.getContent()));
+    }
+
+    /**
+     * Writes a script file with the content produced by the content writer, replacing the file only once all the content is written.
+     */
+    public void createScriptFile(Path scriptFile, ScriptFileWriter.ContentWriter contentWriter) {
         try {
-            String scriptFileName = script.getObjectName() + ".SQL";
-            String scriptDirectoryPath = String.format("%s/%s/%s/%s", mainScriptDir, script.getDatabaseName(), script.getSchemaName(), script.getObjectType());
-            File directory = new File(scriptDirectoryPath);
-            directory.mkdirs();
-            FileWriter fileWriter = new FileWriter(Path.of(scriptDirectoryPath,  scriptFileName).toFile());
-            fileWriter.write(script.getContent());
-            fileWriter.close();
-            log.debug("File {} created successfully", Path.of(scriptDirectoryPath,  scriptFileName));
-        } catch (IOException e) {
+            ScriptFileWriter.writeAtomically(scriptFile, contentWriter);
+            scriptIndex = null;
+            log.debug("File {} created successfully", scriptFile);
+        } catch (IOException | SQLException e) {
             log.error("Error in creating script: {}", e.getMessage());
             throw new RuntimeException(e);
         }
@@ -199,23 +427,62 @@ public class ScriptSource {
     }
 
     public void createAccountScriptFile(AccountScript script) {
-        try {
-            String scriptFileName = script.getObjectName() + ".SQL";
-            String scriptDirectoryPath = String.format("%s/%s/%s", mainScriptDir, accountDir, script.getObjectType());
-            File directory = new File(scriptDirectoryPath);
-            directory.mkdirs();
-            FileWriter fileWriter = new FileWriter(Path.of(scriptDirectoryPath,  scriptFileName).toFile());
-            fileWriter.write(script.getContent());
-            fileWriter.close();
-            log.debug("File {} created successfully", Path.of(scriptDirectoryPath,  scriptFileName));
-        } catch (IOException e) {
-            log.error("Error in creating account script: {}", e.getMessage());
-            throw new RuntimeException(e);
-        }
+        createScriptFile(getAccountScriptPath(script), writer -> writer.write(script.getContent()));
     }
 
     private Script getScriptByName(List<Script> allScripts, String fullObjectName) {
         return allScripts.parallelStream().filter(script -> script.getFullObjectName().equals(fullObjectName)).findFirst().get();
     }
-}
 
+    private static class ScriptFile {
+        private final String path;
+        private final String scriptType;
+        private final boolean account;
+
+        private ScriptFile(String path, String scriptType, boolean account) {
+            this.path = path;
+            this.scriptType = scriptType;
+            this.account = account;
+        }
+    }
+
+    private static class ScriptIndex {
+        private final List<Script> scripts;
+        private final Set<String> testFiles;
+
+        private ScriptIndex(List<Script> scripts, Set<String> testFiles) {
+            this.scripts = scripts;
+            this.testFiles = testFiles;
+        }
+    }
+
+    /**
+     * Migration contents of a cached migration file. The file is read, checked against the cached hash and split into
+     * its versions once, on the first version that is loaded, and the other versions are looked up from it.
+     */
+    private class CachedMigrationFile {
+        private final File file;
+        private final String hash;
+        private Map<Long, String> migrations;
+
+        private CachedMigrationFile(File file, String hash) {
+            this.file = file;
+            this.hash = hash;
+        }
+
+        private synchronized String getContent(Long version) {
+            if(migrations == null) {
+                Map<Long, String> parsed = new HashMap<>();
+                for(Migration migration: SqlTokenizer.parseMigrationScripts(readContent(file, hash))) {
+                    parsed.putIfAbsent(migration.getVersion(), migration.getContent());
+                }
+                migrations = parsed;
+            }
+            String content = migrations.get(version);
+            if(content == null) {
+                throw new RuntimeException("Migration version " + version + " not found in " + file.getPath());
+            }
+            return content;
+        }
+    }
+}
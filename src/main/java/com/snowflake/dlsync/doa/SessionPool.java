@@ -0,0 +1,140 @@
+package com.snowflake.dlsync.doa;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Bounded pool of Snowflake sessions. The primary connection is always the first session handed out,
+ * additional sessions are opened lazily up to the pool size. Without a primary connection the pool opens it
+ * from the session factory on first use. Closing the pool closes every session it opened, a primary connection that was
+ * handed to the pool is left open for its owner.
+ */
+@Slf4j
+public class SessionPool {
+    private volatile Connection primary;
+    private final SessionFactory sessionFactory;
+    private final BlockingQueue<Connection> idleSessions = new LinkedBlockingQueue<>();
+    private final List<Connection> openedSessions = new ArrayList<>();
+    private int size;
+    private boolean ownsPrimary;
+
+    public SessionPool(Connection primary) {
+        this(primary, 1, null);
+    }
+
+    public SessionPool(int size, SessionFactory sessionFactory) {
+        this(null, size, sessionFactory);
+    }
+
+    public SessionPool(Connection primary, int size, SessionFactory sessionFactory) {
+        this.primary = primary;
+        this.size = Math.max(1, size);
+        this.sessionFactory = sessionFactory;
+        if(primary != null) {
+            openedSessions.add(primary);
+            idleSessions.add(primary);
+        }
+        log.debug("Session pool initialized with size {}", this.size);
+    }
+
+    public Connection getPrimary() throws SQLException {
+        Connection session = primary;
+        if(session != null) {
+            return session;
+        }
+        return openPrimary();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Connection acquire() throws SQLException {
+        if(primary == null) {
+            openPrimary();
+        }
+        Connection session = idleSessions.poll();
+        if(session != null) {
+            return session;
+        }
+        session = openSession();
+        if(session != null) {
+            return session;
+        }
+        try {
+            return idleSessions.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a free session.", e);
+        }
+    }
+
+    public void release(Connection session) {
+        idleSessions.add(session);
+    }
+
+    public synchronized void close() {
+        for(Connection session: openedSessions) {
+            if(session == primary && !ownsPrimary) {
+                continue;
+            }
+            try {
+                session.close();
+            } catch (SQLException e) {
+                log.warn("Error while closing session: {}", e.getMessage());
+            }
+        }
+        openedSessions.clear();
+        idleSessions.clear();
+        if(ownsPrimary) {
+            primary = null;
+            ownsPrimary = false;
+        }
+        else if(primary != null) {
+            openedSessions.add(primary);
+            idleSessions.add(primary);
+        }
+    }
+
+    private synchronized Connection openPrimary() throws SQLException {
+        if(primary == null) {
+            if(sessionFactory == null) {
+                throw new SQLException("Session pool has no primary connection and no session factory to open it.");
+            }
+            Connection session = sessionFactory.createSession();
+            openedSessions.add(session);
+            idleSessions.add(session);
+            primary = session;
+            ownsPrimary = true;
+            log.debug("Opened primary session");
+        }
+        return primary;
+    }
+
+    private synchronized Connection openSession() throws SQLException {
+        if(sessionFactory == null || openedSessions.size() >= size) {
+            return null;
+        }
+        try {
+            Connection session = sessionFactory.createSession();
+            openedSessions.add(session);
+            log.debug("Opened session {} of {}", openedSessions.size(), size);
+            return session;
+        } catch (SQLException e) {
+            log.warn("Unable to open additional session, continuing with {} sessions: {}", openedSessions.size(), e.getMessage());
+            size = openedSessions.size();
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    public interface SessionFactory {
+        Connection createSession() throws SQLException;
+    }
+}
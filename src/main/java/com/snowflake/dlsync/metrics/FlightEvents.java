@@ -0,0 +1,154 @@
+package com.snowflake.dlsync.metrics;
+
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder events of the DLSync hot paths, listed under the DLSync category in JMC.
+ * Callers begin an event before the work and call commitFor after it. The fields are only filled when a recording has the event enabled,
+ * so without a recording an event costs a disabled check and its allocation is removed by the JIT.
+ */
+public final class FlightEvents {
+    private static final int MAX_SQL_LENGTH = 200;
+
+    private FlightEvents() {
+    }
+
+    /**
+     * Fields of an event superclass are only recorded when they are not private.
+     */
+    @Category("DLSync")
+    public abstract static class ScriptFlightEvent extends Event {
+        @Label("Script")
+        @Description("Script id, or the object name where the id is not resolved yet")
+        protected String scriptId;
+
+        @Label("Object Type")
+        protected String objectType;
+
+        @Label("Size")
+        @DataAmount
+        protected long bytes;
+
+        public void commitFor(Script script, long bytes) {
+            if(shouldCommit()) {
+                commitFields(script.getId(), script.getObjectType(), bytes);
+            }
+        }
+
+        public void commitFor(String scriptId, ScriptObjectType objectType, long bytes) {
+            if(shouldCommit()) {
+                commitFields(scriptId, objectType, bytes);
+            }
+        }
+
+        private void commitFields(String scriptId, ScriptObjectType objectType, long bytes) {
+            this.scriptId = scriptId;
+            this.objectType = objectType == null ? null : objectType.toString();
+            this.bytes = bytes;
+            commit();
+        }
+    }
+
+    @Name("dlsync.ScriptParse")
+    @Label("Script Parse")
+    @Description("Reading and tokenizing a script file")
+    @Category("DLSync")
+    public static class ScriptParse extends ScriptFlightEvent {
+    }
+
+    @Name("dlsync.Hash")
+    @Label("Hash")
+    @Description("MD5 hash of a script content")
+    @Category("DLSync")
+    public static class Hash extends ScriptFlightEvent {
+    }
+
+    @Name("dlsync.DependencyExtraction")
+    @Label("Dependency Extraction")
+    @Description("Finding the scripts referenced by a script")
+    @Category("DLSync")
+    public static class DependencyExtraction extends ScriptFlightEvent {
+    }
+
+    @Name("dlsync.GraphBuild")
+    @Label("Graph Build")
+    @Description("Adding scripts and their dependencies to the dependency graph")
+    @Category("DLSync")
+    public static class GraphBuild extends Event {
+        @Label("Scripts")
+        private int scripts;
+
+        public void commitFor(int scripts) {
+            if(shouldCommit()) {
+                this.scripts = scripts;
+                commit();
+            }
+        }
+    }
+
+    @Name("dlsync.AntlrParse")
+    @Label("ANTLR Parse")
+    @Description("Parsing a script with the Snowflake grammar")
+    @Category("DLSync")
+    public static class AntlrParse extends ScriptFlightEvent {
+    }
+
+    @Name("dlsync.ScriptStatement")
+    @Label("Script Statement")
+    @Description("Deploy, rollback, verify or DDL read of a script")
+    @Category("DLSync")
+    public static class ScriptStatement extends ScriptFlightEvent {
+        @Label("Operation")
+        private String operation;
+
+        public ScriptStatement(String operation) {
+            this.operation = operation;
+        }
+    }
+
+    @Name("dlsync.TestQuery")
+    @Label("Test Query")
+    @Description("Execution of the generated query of a test script")
+    @Category("DLSync")
+    public static class TestQuery extends ScriptFlightEvent {
+    }
+
+    @Name("dlsync.JdbcStatement")
+    @Label("JDBC Statement")
+    @Description("A statement executed on a DLSync session")
+    @Category("DLSync")
+    public static class JdbcStatement extends Event {
+        @Label("SQL")
+        @Description("The first characters of the statement")
+        private String sql;
+
+        @Label("Size")
+        @DataAmount
+        private long bytes;
+
+        @Label("Batch Size")
+        private int batchSize;
+
+        @Label("Query Id")
+        private String queryId;
+
+        public void commitFor(String sql, int batchSize, String queryId) {
+            if(shouldCommit()) {
+                this.sql = sql == null || sql.length() <= MAX_SQL_LENGTH ? sql : sql.substring(0, MAX_SQL_LENGTH);
+                this.bytes = sql == null ? 0 : sql.length();
+                this.batchSize = batchSize;
+                this.queryId = queryId;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * @return whether a running recording has the JDBC statement event enabled.
+     */
+    public static boolean isStatementRecordingEnabled() {
+        return EventType.getEventType(JdbcStatement.class).isEnabled();
+    }
+}
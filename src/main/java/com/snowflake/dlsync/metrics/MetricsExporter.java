@@ -0,0 +1,94 @@
+package com.snowflake.dlsync.metrics;
+
+import com.snowflake.dlsync.Util;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Writes the metrics of a command as a JSON report and as a Prometheus textfile, named after the command,
+ * so the node exporter textfile collector can pick up the last run of every command from the same directory.
+ * Files are replaced atomically, a collector never reads a partial file.
+ */
+@Slf4j
+public class MetricsExporter {
+    private static final double MILLIS_PER_SECOND = 1000.0;
+    private final Path directory;
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    public MetricsExporter(Path directory) {
+        this.directory = directory;
+    }
+
+    public MetricsReport createReport(String command, String status, long startMillis, long endMillis, MetricsRegistry registry) {
+        MetricsReport report = new MetricsReport();
+        report.setCommand(command.toLowerCase(Locale.ROOT));
+        report.setStatus(status);
+        report.setStartTime(Instant.ofEpochMilli(startMillis).toString());
+        report.setDurationMillis(endMillis - startMillis);
+        report.setPhases(registry.summarize());
+        return report;
+    }
+
+    public void export(MetricsReport report) throws IOException {
+        Files.createDirectories(directory);
+        writeAtomically(directory.resolve(report.getCommand() + ".json"), objectMapper.writeValueAsString(report));
+        writeAtomically(directory.resolve(report.getCommand() + ".prom"), toPrometheus(report));
+        log.info("Wrote {} metrics to {}", report.getCommand(), directory);
+    }
+
+    static String toPrometheus(MetricsReport report) {
+        StringBuilder text = new StringBuilder();
+        String command = "command=\"" + report.getCommand() + "\"";
+        text.append("# HELP dlsync_command_duration_seconds Wall-clock time of the last run of the command.\n");
+        text.append("# TYPE dlsync_command_duration_seconds gauge\n");
+        text.append("dlsync_command_duration_seconds{").append(command).append("} ").append(format(report.getDurationMillis() / MILLIS_PER_SECOND)).append('\n');
+        text.append("# HELP dlsync_command_success Whether the last run of the command succeeded.\n");
+        text.append("# TYPE dlsync_command_success gauge\n");
+        text.append("dlsync_command_success{").append(command).append("} ").append("SUCCESS".equals(report.getStatus()) ? 1 : 0).append('\n');
+        text.append("# HELP dlsync_command_last_run_timestamp_seconds Start time of the last run of the command.\n");
+        text.append("# TYPE dlsync_command_last_run_timestamp_seconds gauge\n");
+        text.append("dlsync_command_last_run_timestamp_seconds{").append(command).append("} ").append(Instant.parse(report.getStartTime()).getEpochSecond()).append('\n');
+
+        text.append("# HELP dlsync_phase_seconds Time spent in each phase during the last run of the command.\n");
+        text.append("# TYPE dlsync_phase_seconds summary\n");
+        for(PhaseSummary phase: report.getPhases()) {
+            String labels = command + ",phase=\"" + phase.getPhase() + "\"";
+            appendQuantile(text, labels, "0.5", phase.getP50Millis());
+            appendQuantile(text, labels, "0.9", phase.getP90Millis());
+            appendQuantile(text, labels, "0.99", phase.getP99Millis());
+            text.append("dlsync_phase_seconds_sum{").append(labels).append("} ").append(format(phase.getTotalMillis() / MILLIS_PER_SECOND)).append('\n');
+            text.append("dlsync_phase_seconds_count{").append(labels).append("} ").append(phase.getCount()).append('\n');
+        }
+        text.append("# HELP dlsync_phase_max_seconds Longest single occurrence of each phase during the last run of the command.\n");
+        text.append("# TYPE dlsync_phase_max_seconds gauge\n");
+        for(PhaseSummary phase: report.getPhases()) {
+            text.append("dlsync_phase_max_seconds{").append(command).append(",phase=\"").append(phase.getPhase()).append("\"} ").append(format(phase.getMaxMillis() / MILLIS_PER_SECOND)).append('\n');
+        }
+        text.append("# HELP dlsync_phase_bytes Bytes processed by each phase during the last run of the command.\n");
+        text.append("# TYPE dlsync_phase_bytes gauge\n");
+        for(PhaseSummary phase: report.getPhases()) {
+            text.append("dlsync_phase_bytes{").append(command).append(",phase=\"").append(phase.getPhase()).append("\"} ").append(phase.getBytes()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static void appendQuantile(StringBuilder text, String labels, String quantile, double millis) {
+        text.append("dlsync_phase_seconds{").append(labels).append(",quantile=\"").append(quantile).append("\"} ").append(format(millis / MILLIS_PER_SECOND)).append('\n');
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+
+    private static void writeAtomically(Path file, String content) throws IOException {
+        Util.writeAtomically(file, output -> output.write(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,143 @@
+package com.snowflake.dlsync.metrics;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the count, duration and bytes processed of every phase. Durations are kept in a histogram with 8 buckets per
+ * power of two, so percentiles are within 12.5% of the recorded value and recording never locks.
+ * The instrumented classes record to the global registry, which the change manager resets at the start of every command.
+ */
+public class MetricsRegistry {
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final Map<Phase, PhaseRecorder> recorders = new EnumMap<>(Phase.class);
+
+    public MetricsRegistry() {
+        for(Phase phase: Phase.values()) {
+            recorders.put(phase, new PhaseRecorder());
+        }
+    }
+
+    public static MetricsRegistry getGlobal() {
+        return GLOBAL;
+    }
+
+    /**
+     * Records one occurrence of the phase that started at the given {@link System#nanoTime()}.
+     */
+    public void record(Phase phase, long startNanos, long bytes) {
+        recordDuration(phase, System.nanoTime() - startNanos, bytes);
+    }
+
+    public void recordDuration(Phase phase, long durationNanos, long bytes) {
+        recorders.get(phase).record(Math.max(0, durationNanos), bytes);
+    }
+
+    public void reset() {
+        recorders.values().forEach(PhaseRecorder::reset);
+    }
+
+    /**
+     * @return a summary of every phase that was recorded at least once, in the declaration order of the phases.
+     */
+    public List<PhaseSummary> summarize() {
+        List<PhaseSummary> summaries = new ArrayList<>();
+        for(Map.Entry<Phase, PhaseRecorder> entry: recorders.entrySet()) {
+            PhaseSummary summary = entry.getValue().summarize(entry.getKey());
+            if(summary.getCount() > 0) {
+                summaries.add(summary);
+            }
+        }
+        return summaries;
+    }
+
+    static int bucketOf(long nanos) {
+        if(nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the largest value that falls into the bucket.
+     */
+    static long bucketUpperBound(int bucket) {
+        if(bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    private static class PhaseRecorder {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos, long processedBytes) {
+            count.increment();
+            totalNanos.add(nanos);
+            bytes.add(processedBytes);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            histogram.incrementAndGet(bucketOf(nanos));
+        }
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            bytes.reset();
+            maxNanos.set(0);
+            for(int i = 0; i < BUCKETS; i++) {
+                histogram.set(i, 0);
+            }
+        }
+
+        PhaseSummary summarize(Phase phase) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for(int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram.get(i);
+                total += counts[i];
+            }
+            long max = maxNanos.get();
+            PhaseSummary summary = new PhaseSummary();
+            summary.setPhase(phase.getLabel());
+            summary.setCount(total);
+            summary.setTotalMillis(totalNanos.sum() / NANOS_PER_MILLI);
+            summary.setMeanMillis(total == 0 ? 0 : summary.getTotalMillis() / total);
+            summary.setP50Millis(percentile(counts, total, 0.5, max) / NANOS_PER_MILLI);
+            summary.setP90Millis(percentile(counts, total, 0.9, max) / NANOS_PER_MILLI);
+            summary.setP99Millis(percentile(counts, total, 0.99, max) / NANOS_PER_MILLI);
+            summary.setMaxMillis(max / NANOS_PER_MILLI);
+            summary.setBytes(bytes.sum());
+            return summary;
+        }
+
+        private static long percentile(long[] counts, long total, double quantile, long max) {
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for(int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if(seen >= rank && seen > 0) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return 0;
+        }
+    }
+}
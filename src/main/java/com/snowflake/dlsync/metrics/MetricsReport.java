@@ -0,0 +1,14 @@
+package com.snowflake.dlsync.metrics;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class MetricsReport {
+    private String command;
+    private String status;
+    private String startTime;
+    private double durationMillis;
+    private List<PhaseSummary> phases;
+}
@@ -0,0 +1,26 @@
+package com.snowflake.dlsync.metrics;
+
+/**
+ * The instrumented phases of a dlsync command. Phases can nest, e.g. parsing a script also hashes it.
+ */
+public enum Phase {
+    SCAN("scan"),
+    PARSE("parse"),
+    HASH("hash"),
+    HASH_LOAD("hash_load"),
+    GRAPH_BUILD("graph_build"),
+    SORT("sort"),
+    PARAMETER_INJECTION("parameter_injection"),
+    DDL_EXECUTION("ddl_execution"),
+    METADATA_WRITE("metadata_write");
+
+    private final String label;
+
+    Phase(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
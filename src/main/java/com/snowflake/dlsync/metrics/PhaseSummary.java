@@ -0,0 +1,16 @@
+package com.snowflake.dlsync.metrics;
+
+import lombok.Data;
+
+@Data
+public class PhaseSummary {
+    private String phase;
+    private long count;
+    private double totalMillis;
+    private double meanMillis;
+    private double p50Millis;
+    private double p90Millis;
+    private double p99Millis;
+    private double maxMillis;
+    private long bytes;
+}
@@ -1,7 +1,7 @@
 package com.snowflake.dlsync.models;
 
 import java.util.List;
-import java.util.Objects;
+import java.util.function.Supplier;
 
 public class AccountScript extends Script {
 
@@ -13,6 +13,10 @@ public class AccountScript extends Script {
         super(scriptPath, objectName, objectType, content, migrations);
     }
 
+    public AccountScript(String scriptPath, String objectName, ScriptObjectType objectType, String hash, Supplier<String> contentLoader) {
+        super(scriptPath, objectName, objectType, hash, contentLoader);
+    }
+
     @Override
     public String getId() {
         return getFullObjectName();
@@ -35,9 +39,4 @@ public class AccountScript extends Script {
         if (!super.equals(o)) return false;
         return true;
     }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(super.hashCode());
-    }
 }
@@ -1,5 +1,5 @@
 package com.snowflake.dlsync.models;
 
 public enum ChangeType {
-    DEPLOY, VERIFY, ROLLBACK, CREATE_SCRIPT, CREATE_LINEAGE, TEST
+    DEPLOY, VERIFY, ROLLBACK, CREATE_SCRIPT, CREATE_LINEAGE, TEST, SLOWEST_OBJECTS, PLAN
 };
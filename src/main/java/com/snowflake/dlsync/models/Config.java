@@ -9,6 +9,8 @@ import java.util.Properties;
 public class Config {
     private String version;
     private Boolean continueOnFailure;
+    private Integer parallelism;
+    private Integer metadataBatchSize;
     private List<String> scriptExclusion;
     private List<DependencyOverride> dependencyOverride;
     private List<String> configTables;
@@ -25,4 +27,12 @@ public class Config {
     public boolean isContinueOnFailure() {
         return continueOnFailure != null && continueOnFailure;
     }
+
+    public int getParallelism() {
+        return parallelism == null || parallelism < 1 ? 1 : parallelism;
+    }
+
+    public int getMetadataBatchSize() {
+        return metadataBatchSize == null || metadataBatchSize < 1 ? 50 : metadataBatchSize;
+    }
 }
\ No newline at end of file
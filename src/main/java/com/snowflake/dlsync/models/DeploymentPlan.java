@@ -0,0 +1,36 @@
+package com.snowflake.dlsync.models;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * All scripts of a script root in deploy order, with their hashes, contents and dependencies, so a deploy can apply them without reading or parsing the script files.
+ */
+@Data
+public class DeploymentPlan {
+    private int version;
+    private long createdAt;
+    private String commitId;
+    private List<Entry> scripts;
+
+    @Data
+    public static class Entry {
+        private String scriptPath;
+        private String databaseName;
+        private String schemaName;
+        private String objectName;
+        private String objectType;
+        private String hash;
+        private String content;
+        private Long version;
+        private String author;
+        private String rollback;
+        private String verify;
+        private int level;
+        /**
+         * Positions of the scripts this script depends on, in the scripts of the plan.
+         */
+        private List<Integer> dependencies;
+    }
+}
@@ -0,0 +1,12 @@
+package com.snowflake.dlsync.models;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class LineageState {
+    private String scriptId;
+    private String scriptHash;
+    private List<String> dependencies;
+}
@@ -1,5 +1,7 @@
 package com.snowflake.dlsync.models;
 
+import java.util.function.Supplier;
+
 public class MigrationScript extends Script {
 
     private Script parentScript;
@@ -7,6 +9,8 @@ public class MigrationScript extends Script {
     private String author;
     private String rollback;
     private String verify;
+    private volatile String id;
+    private volatile String idParentName;
 
     public MigrationScript(Script parentScript, String content, Long version, String author, String rollback, String verify) {
         super(parentScript.getScriptPath(), parentScript.getObjectName(), parentScript.getObjectType(), content);
@@ -17,10 +21,27 @@ public class MigrationScript extends Script {
         this.verify = verify;
     }
 
+    public MigrationScript(Script parentScript, String hash, Supplier<String> contentLoader, Long version, String author, String rollback, String verify) {
+        super(parentScript.getScriptPath(), parentScript.getObjectName(), parentScript.getObjectType(), hash, contentLoader);
+        this.parentScript = parentScript;
+        this.version = version;
+        this.author = author;
+        this.rollback = rollback;
+        this.verify = verify;
+    }
 
     @Override
     public String getId() {
-        return String.format("%s:%s", parentScript.getFullObjectName(), version);
+        String parentName = parentScript.getFullObjectName();
+        // The parent caches its name, a different instance means the parent was renamed.
+        boolean sameParent = idParentName == parentName;
+        String cachedId = id;
+        if(cachedId == null || !sameParent) {
+            cachedId = parentName + ":" + version;
+            id = cachedId;
+            idParentName = parentName;
+        }
+        return cachedId;
     }
 
     @Override
@@ -43,6 +64,7 @@ public class MigrationScript extends Script {
 
     public void setVersion(Long version) {
         this.version = version;
+        this.id = null;
     }
 
     public String getAuthor() {
@@ -0,0 +1,17 @@
+package com.snowflake.dlsync.models;
+
+import lombok.Data;
+
+@Data
+public class ObjectExecutionTime {
+    private String scriptId;
+    private String objectName;
+    private String objectType;
+    private long executions;
+    private long totalMs;
+    private long maxMs;
+    private String slowestQueryId;
+    private Long compilationMs;
+    private Long queuedMs;
+    private Long warehouseExecutionMs;
+}
@@ -0,0 +1,13 @@
+package com.snowflake.dlsync.models;
+
+import lombok.Data;
+
+@Data
+public class PlannedScript {
+    private String scriptId;
+    private String objectName;
+    private String objectType;
+    private int level;
+    private boolean previouslyDeployed;
+    private String hash;
+}
@@ -3,12 +3,13 @@ package com.snowflake.dlsync.models;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
-import java.util.Objects;
+import java.util.function.Supplier;
 
 @Slf4j
 public class SchemaScript extends Script {
     private String databaseName;
     private String schemaName;
+    private volatile String fullObjectName;
 
     public SchemaScript(String scriptPath, String databaseName, String schemaName, String objectName, ScriptObjectType objectType, String content) {
         super(scriptPath, objectName, objectType, content);
@@ -22,6 +23,12 @@ public class SchemaScript extends Script {
         this.schemaName = schemaName.toUpperCase();
     }
 
+    public SchemaScript(String scriptPath, String databaseName, String schemaName, String objectName, ScriptObjectType objectType, String hash, Supplier<String> contentLoader) {
+        super(scriptPath, objectName, objectType, hash, contentLoader);
+        this.databaseName = databaseName.toUpperCase();
+        this.schemaName = schemaName.toUpperCase();
+    }
+
     @Override
     public String getId() {
         return getFullObjectName();
@@ -29,7 +36,17 @@ public class SchemaScript extends Script {
 
     @Override
     public String getFullObjectName() {
-        return String.format("%s.%s.%s", databaseName, schemaName, getObjectName());
+        String name = fullObjectName;
+        if(name == null) {
+            name = databaseName + "." + schemaName + "." + getObjectName();
+            fullObjectName = name;
+        }
+        return name;
+    }
+
+    @Override
+    protected void identityChanged() {
+        fullObjectName = null;
     }
 
     @Override
@@ -57,6 +74,7 @@ public class SchemaScript extends Script {
 
     public void setDatabaseName(String databaseName) {
         this.databaseName = databaseName.toUpperCase();
+        identityChanged();
     }
 
     public String getSchemaName() {
@@ -65,11 +83,7 @@ public class SchemaScript extends Script {
 
     public void setSchemaName(String schemaName) {
         this.schemaName = schemaName.toUpperCase();
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(super.hashCode(), databaseName, schemaName);
+        identityChanged();
     }
 
 }
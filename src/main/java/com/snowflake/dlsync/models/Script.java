@@ -1,15 +1,20 @@
 package com.snowflake.dlsync.models;
 
 import com.snowflake.dlsync.Util;
+import com.snowflake.dlsync.metrics.FlightEvents;
+import com.snowflake.dlsync.metrics.MetricsRegistry;
+import com.snowflake.dlsync.metrics.Phase;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 public abstract class Script {
     private String scriptPath;
     private String objectName;
     private ScriptObjectType objectType;
-    private String content;
+    private volatile String content;
+    private Supplier<String> contentLoader;
     private String hash;
     private List<MigrationScript> migrations;
 
@@ -18,7 +23,23 @@ public abstract class Script {
         this.objectName = objectName.toUpperCase();
         this.objectType = objectType;
         this.content = content.trim();
-        this.hash = hash = Util.getMd5Hash(this.content);
+        long start = System.nanoTime();
+        FlightEvents.Hash event = new FlightEvents.Hash();
+        event.begin();
+        this.hash = Util.getMd5Hash(this.content);
+        MetricsRegistry.getGlobal().record(Phase.HASH, start, this.content.length());
+        event.commitFor(this.objectName, objectType, this.content.length());
+    }
+
+    /**
+     * Creates a script with an already known hash. The content is only loaded when it is first used.
+     */
+    public Script(String scriptPath, String objectName, ScriptObjectType objectType, String hash, Supplier<String> contentLoader) {
+        this.scriptPath = scriptPath;
+        this.objectName = objectName.toUpperCase();
+        this.objectType = objectType;
+        this.hash = hash;
+        this.contentLoader = contentLoader;
     }
 
     public Script(String scriptPath, String objectName, ScriptObjectType objectType, String content, List<MigrationScript> migrations) {
@@ -36,22 +57,38 @@ public abstract class Script {
 
     public void setObjectName(String objectName) {
         this.objectName = objectName.toUpperCase();
+        identityChanged();
     }
 
     public ScriptObjectType getObjectType() {
         return objectType;
     }
 
+    /**
+     * Called when a name that is part of the id or the full object name changes, so cached names can be dropped.
+     */
+    protected void identityChanged() {
+    }
+
     public void setObjectType(ScriptObjectType objectType) {
         this.objectType = objectType;
     }
 
     public String getContent() {
+        if(content == null && contentLoader != null) {
+            synchronized (this) {
+                if(content == null) {
+                    content = contentLoader.get().trim();
+                    contentLoader = null;
+                }
+            }
+        }
         return content;
     }
 
     public void setContent(String content) {
         this.content = content.trim();
+        this.contentLoader = null;
     }
 
     public List<MigrationScript> getMigrations() {
@@ -92,7 +129,7 @@ public abstract class Script {
 
     @Override
     public int hashCode() {
-        return Objects.hash(getId());
+        return getId().hashCode();
     }
 
     @Override
@@ -21,16 +21,24 @@ public class ScriptDependency {
         this.dependencyObjectType = dependency.getObjectType();
     }
 
+    public ScriptDependency(String objectName, ScriptObjectType objectType, String dependency, ScriptObjectType dependencyObjectType) {
+        this.objectName = objectName;
+        this.objectType = objectType;
+        this.dependency = dependency;
+        this.dependencyObjectType = dependencyObjectType;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ScriptDependency scriptDependency = (ScriptDependency) o;
-        return Objects.equals(getObjectName(), scriptDependency.getObjectName()) && Objects.equals(getDependency(), scriptDependency.getDependency());
+        return Objects.equals(getObjectName(), scriptDependency.getObjectName()) && getObjectType() == scriptDependency.getObjectType()
+                && Objects.equals(getDependency(), scriptDependency.getDependency()) && getDependencyObjectType() == scriptDependency.getDependencyObjectType();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getObjectName(), getDependency());
+        return Objects.hash(getObjectName(), getObjectType(), getDependency(), getDependencyObjectType());
     }
 }
@@ -1,7 +1,10 @@
 package com.snowflake.dlsync.models;
 
-import java.sql.Date;
+import lombok.Data;
 
+import java.sql.Timestamp;
+
+@Data
 public class ScriptEvent {
     private String id;
     private String scriptId;
@@ -10,6 +13,8 @@ public class ScriptEvent {
     private String status;
     private String log;
     private Long changeSyncId;
+    private Long executionMs;
+    private String queryId;
     private String createdBy;
-    private Date createdTs;
+    private Timestamp createdTs;
 }
@@ -0,0 +1,17 @@
+package com.snowflake.dlsync.models;
+
+import lombok.Data;
+
+import java.sql.Timestamp;
+
+@Data
+public class VerifyState {
+    private String databaseName;
+    private String schemaName;
+    private String objectName;
+    private String objectType;
+    private String scriptId;
+    private String sourceHash;
+    private String ddlHash;
+    private Timestamp lastAltered;
+}
@@ -9,7 +9,7 @@ import lombok.extern.slf4j.Slf4j;
 public class FunctionScriptParser extends ScriptParser {
     private boolean isSql = false;
     public FunctionScriptParser(Script script) {
-        super(script.getContent());
+        super(script.getContent(), script.getId(), script.getObjectType());
     }
 
     public boolean isSql() {
@@ -45,7 +45,7 @@ public class FunctionScriptParser extends ScriptParser {
 
     @Override
     public void exitSnowflake_file(SnowflakeParser.Snowflake_fileContext ctx) {
-        ScriptParser scriptParser = new ScriptParser(mainQuery);
+        ScriptParser scriptParser = new ScriptParser(mainQuery, getScriptId(), getObjectType());
         scriptParser.parse();
         objectReferences.addAll(scriptParser.getObjectReferences());
     }
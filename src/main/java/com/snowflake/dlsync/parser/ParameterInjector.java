@@ -1,11 +1,15 @@
 package com.snowflake.dlsync.parser;
 
+import com.snowflake.dlsync.metrics.MetricsRegistry;
+import com.snowflake.dlsync.metrics.Phase;
 import com.snowflake.dlsync.models.MigrationScript;
 import com.snowflake.dlsync.models.SchemaScript;
 import com.snowflake.dlsync.models.Script;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -15,21 +19,107 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ParameterInjector {
     private static final String PARAMETER_FORMAT = "${%s}";
-    private static final String PARAMETRIZATION_START_REGEX = "([(),\\.\\s\\'\\\"@])";
-    private static final String PARAMETRIZATION_END_REGEX = "([(),;\\.\\s\\'\\\"])";
+
+    private static final String PLACEHOLDER_START = "${";
+    private static final char PLACEHOLDER_END = '}';
 
 
     private Properties parameters;
+    private Map<String, String> placeholderValues;
+    private boolean sequentialInjection;
+    private ParameterValueMatcher valueMatcher;
 
     public ParameterInjector(Properties parameters) {
         log.debug("Parameter injector initialized with parameters: {}", parameters);
         this.parameters = parameters;
+        initPlaceholderValues();
+        initValueMatcher();
+    }
+
+    private void initValueMatcher() {
+        valueMatcher = new ParameterValueMatcher();
+        List<String> parameterKeys = parameters.stringPropertyNames().stream().sorted().collect(Collectors.toList());
+        for(String parameter: parameterKeys) {
+            valueMatcher.add(parameters.getProperty(parameter), String.format(PARAMETER_FORMAT, parameter));
+        }
+        valueMatcher.build();
+    }
+
+    /**
+     * Placeholders are matched case-insensitively for ASCII letters only, and when two parameter names differ only in case the first one
+     * in iteration order wins, the same as the sequential replacement. If a name or value contains placeholder characters,
+     * replacements can interact with each other, so those parameters are injected with the sequential replacement.
+     */
+    private void initPlaceholderValues() {
+        placeholderValues = new HashMap<>();
+        sequentialInjection = false;
+        for(String parameter: parameters.stringPropertyNames()) {
+            String value = parameters.getProperty(parameter);
+            if(containsPlaceholderCharacters(parameter) || containsPlaceholderCharacters(value)) {
+                log.debug("Parameter {} contains placeholder characters, using sequential parameter injection.", parameter);
+                sequentialInjection = true;
+            }
+            placeholderValues.putIfAbsent(toAsciiLowerCase(parameter), value);
+        }
+    }
+
+    private static boolean containsPlaceholderCharacters(String value) {
+        return value.indexOf('$') >= 0 || value.indexOf('{') >= 0 || value.indexOf('}') >= 0;
+    }
+
+    private static String toAsciiLowerCase(String value) {
+        char[] characters = null;
+        for(int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            if(character >= 'A' && character <= 'Z') {
+                if(characters == null) {
+                    characters = value.toCharArray();
+                }
+                characters[i] = (char)(character + ('a' - 'A'));
+            }
+        }
+        return characters == null ? value : new String(characters);
     }
 
     private String injectParameters(String content) {
         if(content == null) {
             return null;
         }
+        if(sequentialInjection) {
+            return injectParametersSequentially(content);
+        }
+        int start = content.indexOf(PLACEHOLDER_START);
+        StringBuilder injected = null;
+        int copied = 0;
+        while(start >= 0) {
+            int end = content.indexOf(PLACEHOLDER_END, start + PLACEHOLDER_START.length());
+            if(end < 0) {
+                break;
+            }
+            String name = content.substring(start + PLACEHOLDER_START.length(), end);
+            if(name.contains(PLACEHOLDER_START)) {
+                // A placeholder nested in another one, e.g. ${${env}_db}, the sequential replacement can resolve the outer one after the inner one.
+                return injectParametersSequentially(content);
+            }
+            String value = placeholderValues.get(toAsciiLowerCase(name));
+            if(value == null) {
+                start = content.indexOf(PLACEHOLDER_START, start + 1);
+                continue;
+            }
+            if(injected == null) {
+                injected = new StringBuilder(content.length() + 64);
+            }
+            injected.append(content, copied, start).append(value);
+            copied = end + 1;
+            start = content.indexOf(PLACEHOLDER_START, copied);
+        }
+        if(injected == null) {
+            return content;
+        }
+        return injected.append(content, copied, content.length()).toString();
+    }
+
+    private String injectParametersSequentially(String content) {
         for(String parameter: parameters.stringPropertyNames()) {
             String parameterPlaceholder = String.format(PARAMETER_FORMAT, parameter);
             String regex = "(?i)" + Pattern.quote(parameterPlaceholder);
@@ -41,13 +131,16 @@ public class ParameterInjector {
 
     public void injectParameters(Script script) {
         log.debug("Injecting parameter for: {}", script.getObjectName());
+        long start = System.nanoTime();
         String injectedScript = injectParameters(script.getContent());
         script.setContent(injectedScript);
+        MetricsRegistry.getGlobal().record(Phase.PARAMETER_INJECTION, start, injectedScript.length());
         log.debug("Script for {} after parameter injected: {}", script.getObjectName(), injectedScript);
     }
 
     public void injectParametersAll(MigrationScript migration) {
         log.debug("Injecting parameter for: {}", migration.getObjectName());
+        long start = System.nanoTime();
         String injectedContent = injectParameters(migration.getContent());
         String injectedRollback = injectParameters(migration.getRollback());
         String injectedVerify = injectParameters(migration.getVerify());
@@ -55,6 +148,7 @@ public class ParameterInjector {
         migration.setContent(injectedContent);
         migration.setRollback(injectedRollback);
         migration.setVerify(injectedVerify);
+        MetricsRegistry.getGlobal().record(Phase.PARAMETER_INJECTION, start, injectedContent.length());
         log.debug("Migration for {} after parameter injected: {}", migration.getObjectName(), migration);
     }
 
@@ -63,21 +157,23 @@ public class ParameterInjector {
 
     public void parametrizeScript(Script script, boolean parametrizeObjectName){
         log.debug("Parametrizing script: {}", script.getObjectName());
-        String parametrizedScript = script.getContent();
-        List<String> parameterKeys = parameters.stringPropertyNames().stream().sorted().collect(Collectors.toList());
-        for(String parameter: parameterKeys) {
-            String parameterPlaceholder = String.format(PARAMETER_FORMAT, parameter);
-            String regex = PARAMETRIZATION_START_REGEX + "(?i)" + Pattern.quote(parameters.getProperty(parameter)) + PARAMETRIZATION_END_REGEX;
-            String replacement = "$1" + Matcher.quoteReplacement(parameterPlaceholder) + "$2";
-            parametrizedScript = parametrizedScript.replaceAll(regex, replacement);
-        }
+        long start = System.nanoTime();
+        String parametrizedScript = parametrize(script.getContent());
         script.setContent(parametrizedScript);
+        MetricsRegistry.getGlobal().record(Phase.PARAMETER_INJECTION, start, parametrizedScript.length());
         if(parametrizeObjectName) {
             parameterizeObjectName(script);
         }
         log.debug("Script for {} after parameterized: {}", script.getObjectName(), parametrizedScript);
     }
 
+    /**
+     * Replaces the parameter values in the content with their placeholders.
+     */
+    public String parametrize(String content) {
+        return valueMatcher.replace(content, true);
+    }
+
     public void parameterizeObjectName(Script script) {
 //        String objectName = script.getObjectName();
 
@@ -87,16 +183,8 @@ public class ParameterInjector {
             schemaName = ((SchemaScript) script).getSchemaName();
             databaseName = ((SchemaScript) script).getDatabaseName();
         }
-
-        List<String> parameterKeys = parameters.stringPropertyNames().stream().sorted().collect(Collectors.toList());
-        for(String parameter: parameterKeys) {
-            String parameterPlaceholder = String.format(PARAMETER_FORMAT, parameter);
-            String regex = "(?i)" + Pattern.quote(parameters.getProperty(parameter));
-            String replacement = Matcher.quoteReplacement(parameterPlaceholder);
-//            objectName = objectName.replaceAll(regex, replacement);
-            schemaName = schemaName.replaceAll(regex, replacement);
-            databaseName = databaseName.replaceAll(regex, replacement);
-        }
+        schemaName = valueMatcher.replace(schemaName, false);
+        databaseName = valueMatcher.replace(databaseName, false);
 
         String oldName = script.getFullObjectName();
 //        script.setObjectName(objectName);
@@ -109,15 +197,7 @@ public class ParameterInjector {
     }
 
     public Set<String> injectParameters(Set<String> configs) {
-        return configs.stream().map(config -> {
-            for(String parameter: parameters.stringPropertyNames()) {
-                String parameterPlaceholder = String.format(PARAMETER_FORMAT, parameter);
-                String regex = "(?i)" + Pattern.quote(parameterPlaceholder);
-                String replacement =  Matcher.quoteReplacement(parameters.getProperty(parameter));
-                config = config.replaceAll(regex, replacement);
-            }
-            return config;
-        }).collect(Collectors.toSet());
+        return configs.stream().map(this::injectParameters).collect(Collectors.toSet());
     }
 
 }
@@ -0,0 +1,141 @@
+package com.snowflake.dlsync.parser;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton over parameter values used to replace every value with its placeholder in a single pass.
+ * Values are matched ignoring the case of ASCII letters. When matches overlap the leftmost one wins, then the longest one,
+ * and a value shared by several parameters is replaced by the placeholder it was first added with.
+ */
+class ParameterValueMatcher {
+    private final Node root = new Node(0);
+    private boolean built;
+
+    public void add(String value, String placeholder) {
+        if(value == null || value.isEmpty()) {
+            return;
+        }
+        Node node = root;
+        for(int i = 0; i < value.length(); i++) {
+            char character = foldCase(value.charAt(i));
+            Node next = node.children.get(character);
+            if(next == null) {
+                next = new Node(node.depth + 1);
+                node.children.put(character, next);
+            }
+            node = next;
+        }
+        if(node.placeholder == null) {
+            node.placeholder = placeholder;
+        }
+        built = false;
+    }
+
+    /**
+     * Computes the failure links. Must be called after the last value is added when the matcher is shared between threads.
+     */
+    public void build() {
+        Queue<Node> queue = new ArrayDeque<>();
+        root.fail = root;
+        root.output = null;
+        for(Node child: root.children.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while(!queue.isEmpty()) {
+            Node node = queue.poll();
+            node.output = node.fail.placeholder != null ? node.fail : node.fail.output;
+            for(Map.Entry<Character, Node> entry: node.children.entrySet()) {
+                Node child = entry.getValue();
+                Node fail = node.fail;
+                while(fail != root && !fail.children.containsKey(entry.getKey())) {
+                    fail = fail.fail;
+                }
+                Node failTarget = fail.children.get(entry.getKey());
+                child.fail = failTarget != null && failTarget != child ? failTarget : root;
+                queue.add(child);
+            }
+        }
+        built = true;
+    }
+
+    /**
+     * @param matchBoundaries when true a value is only replaced if it is preceded by a character of the parametrization start class
+     *                        and followed by a character of the parametrization end class.
+     */
+    public String replace(String text, boolean matchBoundaries) {
+        if(text == null || root.children.isEmpty()) {
+            return text;
+        }
+        if(!built) {
+            build();
+        }
+        Node[] matches = null;
+        Node node = root;
+        for(int i = 0; i < text.length(); i++) {
+            char character = foldCase(text.charAt(i));
+            while(node != root && !node.children.containsKey(character)) {
+                node = node.fail;
+            }
+            node = node.children.getOrDefault(character, root);
+            Node match = node.placeholder != null ? node : node.output;
+            for(; match != null; match = match.output) {
+                int start = i - match.depth + 1;
+                if(matchBoundaries && !(start > 0 && isStartBoundary(text.charAt(start - 1)) && i + 1 < text.length() && isEndBoundary(text.charAt(i + 1)))) {
+                    continue;
+                }
+                if(matches == null) {
+                    matches = new Node[text.length()];
+                }
+                if(matches[start] == null || matches[start].depth < match.depth) {
+                    matches[start] = match;
+                }
+            }
+        }
+        if(matches == null) {
+            return text;
+        }
+        StringBuilder replaced = new StringBuilder(text.length() + 32);
+        int i = 0;
+        while(i < text.length()) {
+            if(matches[i] != null) {
+                replaced.append(matches[i].placeholder);
+                i += matches[i].depth;
+            } else {
+                replaced.append(text.charAt(i++));
+            }
+        }
+        return replaced.toString();
+    }
+
+    private static char foldCase(char character) {
+        return character >= 'A' && character <= 'Z' ? (char)(character + ('a' - 'A')) : character;
+    }
+
+    private static boolean isWhitespace(char character) {
+        return character == ' ' || character == '\t' || character == '\n' || character == 0x0B || character == '\f' || character == '\r';
+    }
+
+    private static boolean isStartBoundary(char character) {
+        return isWhitespace(character) || "(),.'\"@".indexOf(character) >= 0;
+    }
+
+    private static boolean isEndBoundary(char character) {
+        return isWhitespace(character) || "(),;.'\"".indexOf(character) >= 0;
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private final int depth;
+        private Node fail;
+        private Node output;
+        private String placeholder;
+
+        Node(int depth) {
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.snowflake.dlsync.parser;
+
+import com.snowflake.dlsync.Util;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import com.snowflake.dlsync.parser.antlr.SnowflakeLexer;
+import lombok.extern.slf4j.Slf4j;
+import org.antlr.v4.runtime.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Compares scripts on a canonical form built from the Snowflake lexer tokens, so whitespace, comments,
+ * keyword and unquoted identifier casing do not count as differences.
+ * The canonical form of each content is cached by its hash.
+ */
+@Slf4j
+public class ScriptComparator {
+    private static final int MAX_CACHE_SIZE = 10000;
+    private static final Pattern SIMPLE_QUOTED_IDENTIFIER = Pattern.compile("\"[A-Z_][A-Z0-9_$]*\"");
+    private static final Pattern PLAIN_WORD = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final char TOKEN_SEPARATOR = ' ';
+    private final Map<String, String> canonicalHashes = new ConcurrentHashMap<>();
+
+    enum Strategy {
+        /** Only the code between the quotes of the function or procedure body. */
+        BODY,
+        /** The query after the AS of the view definition. */
+        VIEW,
+        /** The options after the object name, in any order. */
+        OPTIONS,
+        /** The whole statement. */
+        STATEMENT
+    }
+
+    static Strategy getStrategy(ScriptObjectType objectType) {
+        switch (objectType) {
+            case FUNCTIONS:
+            case PROCEDURES:
+                return Strategy.BODY;
+            case VIEWS:
+                return Strategy.VIEW;
+            case FILE_FORMATS:
+                return Strategy.OPTIONS;
+            default:
+                return Strategy.STATEMENT;
+        }
+    }
+
+    public boolean compare(Script script1, Script script2) {
+        String hash1 = getCanonicalHash(script1.getObjectType(), script1.getContent());
+        String hash2 = getCanonicalHash(script2.getObjectType(), script2.getContent());
+        if(hash1 == null || hash2 == null) {
+            log.debug("Unable to tokenize {} for comparison, comparing with regex.", script1);
+            return SqlTokenizer.compareScriptsByRegex(script1, script2);
+        }
+        return hash1.equals(hash2);
+    }
+
+    /**
+     * @return the hash of the canonical form of the content, or null if the content can not be tokenized.
+     */
+    String getCanonicalHash(ScriptObjectType objectType, String content) {
+        String key = objectType + ":" + Util.getMd5Hash(content);
+        String hash = canonicalHashes.get(key);
+        if(hash == null) {
+            String canonical = getCanonicalForm(getStrategy(objectType), content);
+            if(canonical == null) {
+                return null;
+            }
+            hash = Util.getMd5Hash(canonical);
+            if(canonicalHashes.size() >= MAX_CACHE_SIZE) {
+                canonicalHashes.clear();
+            }
+            canonicalHashes.put(key, hash);
+        }
+        return hash;
+    }
+
+    static String getCanonicalForm(Strategy strategy, String content) {
+        List<Token> tokens = tokenize(content);
+        if(tokens == null) {
+            return null;
+        }
+        while(!tokens.isEmpty() && tokens.get(tokens.size() - 1).getType() == SnowflakeLexer.SEMI) {
+            tokens.remove(tokens.size() - 1);
+        }
+        switch (strategy) {
+            case BODY:
+                String body = getBody(tokens);
+                if(body != null) {
+                    return body;
+                }
+                break;
+            case VIEW:
+                int queryStart = findTopLevel(tokens, SnowflakeLexer.AS, SnowflakeLexer.VIEW);
+                if(queryStart >= 0) {
+                    return join(tokens.subList(queryStart + 1, tokens.size()));
+                }
+                break;
+            case OPTIONS:
+                String options = getOptions(tokens);
+                if(options != null) {
+                    return options;
+                }
+                break;
+            default:
+                break;
+        }
+        return join(tokens);
+    }
+
+    /**
+     * @return the visible tokens of the content, or null if the lexer found characters it could not recognize.
+     */
+    private static List<Token> tokenize(String content) {
+        SnowflakeLexer lexer = new SnowflakeLexer(CharStreams.fromString(content));
+        boolean[] failed = {false};
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+                failed[0] = true;
+            }
+        });
+        List<Token> tokens = new ArrayList<>();
+        for(Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+            if(token.getChannel() == Token.DEFAULT_CHANNEL) {
+                tokens.add(token);
+            }
+        }
+        return failed[0] ? null : tokens;
+    }
+
+    /**
+     * @return the index of the first token of the given type at parenthesis depth zero after the first token of the anchor type, or -1.
+     */
+    private static int findTopLevel(List<Token> tokens, int type, int anchorType) {
+        int depth = 0;
+        boolean anchored = false;
+        for(int i = 0; i < tokens.size(); i++) {
+            int tokenType = tokens.get(i).getType();
+            if(tokenType == SnowflakeLexer.LR_BRACKET) {
+                depth++;
+            }
+            else if(tokenType == SnowflakeLexer.RR_BRACKET) {
+                depth--;
+            }
+            else if(tokenType == anchorType) {
+                anchored = true;
+            }
+            else if(anchored && depth == 0 && tokenType == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the content of the last quoted or dollar quoted string following an AS, or null if there is none.
+     */
+    private static String getBody(List<Token> tokens) {
+        for(int i = tokens.size() - 1; i > 0; i--) {
+            Token token = tokens.get(i);
+            if(tokens.get(i - 1).getType() != SnowflakeLexer.AS) {
+                continue;
+            }
+            if(token.getType() == SnowflakeLexer.DBL_DOLLAR) {
+                String text = token.getText();
+                return text.substring(2, text.length() - 2).trim();
+            }
+            if(token.getType() == SnowflakeLexer.STRING) {
+                return unquote(token.getText()).trim();
+            }
+        }
+        return null;
+    }
+
+    private static String unquote(String text) {
+        return text.substring(1, text.length() - 1).replace("''", "'").replace("\\'", "'");
+    }
+
+    /**
+     * Options are KEY = VALUE pairs following the object name, the value may be a parenthesized list.
+     */
+    private static String getOptions(List<Token> tokens) {
+        Map<String, String> options = new TreeMap<>();
+        int i = 0;
+        while(i < tokens.size() && tokens.get(i).getType() != SnowflakeLexer.EQ) {
+            i++;
+        }
+        if(i >= tokens.size() || i < 1) {
+            return null;
+        }
+        String header = join(tokens.subList(0, i - 1));
+        while(i < tokens.size()) {
+            if(tokens.get(i).getType() != SnowflakeLexer.EQ || i < 1) {
+                return null;
+            }
+            String key = normalize(tokens.get(i - 1));
+            int valueStart = ++i;
+            int depth = 0;
+            while(i < tokens.size()) {
+                int type = tokens.get(i).getType();
+                if(type == SnowflakeLexer.LR_BRACKET) {
+                    depth++;
+                }
+                else if(type == SnowflakeLexer.RR_BRACKET) {
+                    depth--;
+                }
+                if(depth == 0 && i + 1 < tokens.size() && tokens.get(i + 1).getType() == SnowflakeLexer.EQ && i > valueStart) {
+                    break;
+                }
+                i++;
+            }
+            int valueEnd = i < tokens.size() ? i : tokens.size();
+            List<Token> value = tokens.subList(valueStart, valueEnd);
+            if(!value.isEmpty() && value.get(value.size() - 1).getType() == SnowflakeLexer.COMMA) {
+                value = value.subList(0, value.size() - 1);
+            }
+            options.put(key, normalizeOptionValue(value));
+            i = valueEnd + 1;
+        }
+        return header + TOKEN_SEPARATOR + options;
+    }
+
+    /**
+     * A single quoted value that is a plain word is the same as the unquoted word, e.g. TYPE = 'CSV' and TYPE = csv.
+     */
+    private static String normalizeOptionValue(List<Token> value) {
+        String quoted = value.size() == 1 ? value.get(0).getText() : "";
+        if(quoted.length() >= 2 && quoted.startsWith("'") && quoted.endsWith("'")) {
+            String text = unquote(quoted);
+            if(PLAIN_WORD.matcher(text).matches()) {
+                return text.toUpperCase();
+            }
+        }
+        return join(value);
+    }
+
+    private static String join(List<Token> tokens) {
+        StringBuilder canonical = new StringBuilder();
+        for(Token token: tokens) {
+            if(canonical.length() > 0) {
+                canonical.append(TOKEN_SEPARATOR);
+            }
+            canonical.append(normalize(token));
+        }
+        return canonical.toString();
+    }
+
+    private static String normalize(Token token) {
+        String text = token.getText();
+        if(token.getType() == SnowflakeLexer.DOUBLE_QUOTE_ID) {
+            return SIMPLE_QUOTED_IDENTIFIER.matcher(text).matches() ? text.substring(1, text.length() - 1) : text;
+        }
+        if(text.startsWith("'") || text.startsWith("$$") || token.getType() == SnowflakeLexer.FILE_PATH) {
+            return text;
+        }
+        return text.toUpperCase();
+    }
+}
@@ -1,5 +1,7 @@
 package com.snowflake.dlsync.parser;
 
+import com.snowflake.dlsync.metrics.FlightEvents;
+import com.snowflake.dlsync.models.ScriptObjectType;
 import com.snowflake.dlsync.parser.antlr.SnowflakeLexer;
 import com.snowflake.dlsync.parser.antlr.SnowflakeParser;
 import com.snowflake.dlsync.parser.antlr.SnowflakeParserBaseListener;
@@ -17,17 +19,28 @@ public class ScriptParser extends SnowflakeParserBaseListener {
     protected String objectName;
     protected String mainQuery;
     protected Set<String> objectReferences = new HashSet<>();
+    private final String scriptId;
+    private final ScriptObjectType objectType;
     public ScriptParser(String content) {
+        this(content, null, null);
+    }
+
+    public ScriptParser(String content, String scriptId, ScriptObjectType objectType) {
         this.content = content;
+        this.scriptId = scriptId;
+        this.objectType = objectType;
     }
 
     public void parse() {
+        FlightEvents.AntlrParse event = new FlightEvents.AntlrParse();
+        event.begin();
         SnowflakeLexer lexer = new SnowflakeLexer(CharStreams.fromString(content));
         CommonTokenStream tokens = new CommonTokenStream(lexer);
         SnowflakeParser parser = new SnowflakeParser(tokens);
         ParseTree tree = parser.snowflake_file();
         ParseTreeWalker walker = new ParseTreeWalker();
         walker.walk(this, tree);
+        event.commitFor(scriptId, objectType, content.length());
     }
 
     @Override
@@ -50,4 +63,12 @@ public class ScriptParser extends SnowflakeParserBaseListener {
     public Set<String> getObjectReferences() {
         return objectReferences;
     }
+
+    public String getScriptId() {
+        return scriptId;
+    }
+
+    public ScriptObjectType getObjectType() {
+        return objectType;
+    }
 }
@@ -5,6 +5,7 @@ import com.snowflake.dlsync.models.*;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -13,6 +14,7 @@ public class SqlTokenizer {
     private static final String TOKEN_START_REGEX = "(?:[@=()\\[\\],\\.\\s\\\"\\'])";
     private static final String TOKEN_END_REGEX = "(?:[=()\\[\\],\\.\\s\\\"\\';]|$)";
     private static final char[] TOKENS = {'.', ',', ';', '"', '\'', '[', ']', '(', ')'};
+    private static final String TOKEN_DELIMITERS = "@=()[],.;\"' \t\n\u000B\f\r";
     private static  final String MIGRATION_HEADER = "(\\s*---\\s*(?i)version\\s*:\\s*(?<version>\\d+)\\s*)(,\\s*(?i)author\\s*:\\s*(?<author>\\w+)\\s*)?";
     private static  final String VERSION_REGEX = "(?:^|\n)(--- *(?i)version *: *(?<version>\\d+) *)";
     private static final String AUTHOR_REGEX = "(, *(?i)author *: *(?<author>\\w+) *)?\n";
@@ -25,11 +27,18 @@ public class SqlTokenizer {
     private static final String DDL_REGEX = buildDdlRegex();
 
     private static final String STRING_LITERAL_REGEX = "(?<!as\\s{1,5})'([^'\\\\]*(?:\\\\.[^'\\\\]*)*(?:''[^'\\\\]*)*)'";
+    private static final Pattern STRING_LITERAL_PATTERN = Pattern.compile(STRING_LITERAL_REGEX, Pattern.CASE_INSENSITIVE);
+    private static final Map<String, Pattern> IDENTIFIER_PATTERNS = new ConcurrentHashMap<>();
 
     private static final String VIEW_BODY_REGEX = "(CREATE\\s+OR\\s+REPLACE\\s+VIEW\\s+)(?<name>[\\w.${}]+)(\\s*\\([^\\)]+\\))?\\s+AS\\s+(?<body>[\\s\\S]+)$";
     private static final String FUNCTION_BODY_REGEX = "(CREATE\\s+OR\\s+REPLACE\\s+FUNCTION\\s+)(?<name>[\\w.${}]+)(?:[\\s\\S]*?AS\\s+('|\\$\\$)\\s*)(?<body>[\\s\\S]+)('|\\$\\$)\\s*;$";
     private static final String PROCEDURE_BODY_REGEX = "(CREATE\\s+OR\\s+REPLACE\\s+PROCEDURE\\s+)(?<name>[\\w.${}]+)(?:[\\s\\S]*?AS\\s+('|\\$\\$)\\s*)(?<body>[\\s\\S]+)('|\\$\\$)\\s*;$";
     private static final String FILE_FORMAT_BODY_REGEX = "(CREATE\\s+OR\\s+REPLACE\\s+FILE FORMAT\\s+)(?<body>[\\w.${}]+)([\\s\\S]+)$";
+    private static final Pattern VIEW_BODY_PATTERN = Pattern.compile(VIEW_BODY_REGEX, Pattern.CASE_INSENSITIVE);
+    private static final Pattern FUNCTION_BODY_PATTERN = Pattern.compile(FUNCTION_BODY_REGEX, Pattern.CASE_INSENSITIVE);
+    private static final Pattern PROCEDURE_BODY_PATTERN = Pattern.compile(PROCEDURE_BODY_REGEX, Pattern.CASE_INSENSITIVE);
+    private static final Pattern FILE_FORMAT_BODY_PATTERN = Pattern.compile(FILE_FORMAT_BODY_REGEX, Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHOLE_BODY_PATTERN = Pattern.compile("(?<body>[\\s\\S]+)$");
 
     /**
      * Dynamically builds DDL_REGEX pattern from ScriptObjectType enum values
@@ -218,7 +227,11 @@ public class SqlTokenizer {
     }
 
     public static String removeSqlStringLiterals(String sql) {
-        return Pattern.compile(STRING_LITERAL_REGEX, Pattern.CASE_INSENSITIVE).matcher(sql).replaceAll("''");
+        return STRING_LITERAL_PATTERN.matcher(sql).replaceAll("''");
+    }
+
+    public static String removeSqlCommentsAndLiterals(String sql) {
+        return removeSqlStringLiterals(removeSqlComments(sql));
     }
 
     public static String getFirstFullIdentifier(String name, String content) {
@@ -242,11 +255,17 @@ public class SqlTokenizer {
     }
 
     public static Set<String> getFullIdentifiers(String name, String content) {
+        return findFullIdentifiers(name, removeSqlCommentsAndLiterals(content));
+    }
+
+    /**
+     * Same as getFullIdentifiers, but expects content already stripped of comments and string literals.
+     * The compiled pattern is cached per name, so callers scanning many scripts for the same name only pay for it once.
+     */
+    public static Set<String> findFullIdentifiers(String name, String sanitizedContent) {
         Set<String> fullIdentifiers = new HashSet<>();
-        content = removeSqlComments(content);
-        content = removeSqlStringLiterals(content);
-        String regex = TOKEN_START_REGEX +  IDENTIFIER_REGEX + "(\"?" + Pattern.quote(name) + "\"?)" + TOKEN_END_REGEX;
-        Matcher matcher = Pattern.compile(regex).matcher(content);
+        Pattern pattern = IDENTIFIER_PATTERNS.computeIfAbsent(name, key -> Pattern.compile(TOKEN_START_REGEX +  IDENTIFIER_REGEX + "(\"?" + Pattern.quote(key) + "\"?)" + TOKEN_END_REGEX));
+        Matcher matcher = pattern.matcher(sanitizedContent);
         while(matcher.find()) {
             String fullIdentifier = name;
             String schema = matcher.group(2);
@@ -263,6 +282,40 @@ public class SqlTokenizer {
         return fullIdentifiers;
     }
 
+    /**
+     * Splits sanitized content on the identifier boundary characters and returns every token in upper case.
+     * Any name matched by findFullIdentifiers is bounded by these characters, so it always shows up here as a whole token.
+     */
+    public static Set<String> getIdentifierTokens(String sanitizedContent) {
+        Set<String> tokens = new HashSet<>();
+        int start = -1;
+        for(int index = 0; index <= sanitizedContent.length(); index++) {
+            boolean delimiter = index == sanitizedContent.length() || TOKEN_DELIMITERS.indexOf(sanitizedContent.charAt(index)) >= 0;
+            if(delimiter) {
+                if(start >= 0) {
+                    tokens.add(sanitizedContent.substring(start, index).toUpperCase());
+                    start = -1;
+                }
+            }
+            else if(start < 0) {
+                start = index;
+            }
+        }
+        return tokens;
+    }
+
+    public static boolean isIdentifierToken(String name) {
+        if(name == null || name.isEmpty()) {
+            return false;
+        }
+        for(int index = 0; index < name.length(); index++) {
+            if(TOKEN_DELIMITERS.indexOf(name.charAt(index)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static List<SchemaScript> parseDdlScripts(String ddl, String database, String schema) {
         Matcher matcher = Pattern.compile(DDL_REGEX, Pattern.CASE_INSENSITIVE).matcher(ddl);
         List<SchemaScript> scripts = new ArrayList<>();
@@ -361,25 +414,39 @@ public class SqlTokenizer {
 //    }
 
     public static boolean compareScripts(Script script1, Script script2) {
+        return ScriptComparatorHolder.SCRIPT_COMPARATOR.compare(script1, script2);
+    }
+
+    /**
+     * Loads the comparator, and with it the ANTLR runtime and the generated lexer, only when scripts are compared.
+     */
+    private static class ScriptComparatorHolder {
+        private static final ScriptComparator SCRIPT_COMPARATOR = new ScriptComparator();
+    }
+
+    /**
+     * Compares the body of the scripts extracted with a regex per object type. Used when the scripts can not be tokenized.
+     */
+    public static boolean compareScriptsByRegex(Script script1, Script script2) {
         String content1 = removeSqlComments(script1.getContent());
         String content2 = removeSqlComments(script2.getContent());
         content1 = content1.replace("''", "'");
         content2 = content2.replace("''", "'");
         Pattern pattern;
         if(script1.getObjectType().equals(ScriptObjectType.VIEWS)) {
-            pattern = Pattern.compile(VIEW_BODY_REGEX, Pattern.CASE_INSENSITIVE);
+            pattern = VIEW_BODY_PATTERN;
         }
         else if(script1.getObjectType().equals(ScriptObjectType.FUNCTIONS)) {
-            pattern = Pattern.compile(FUNCTION_BODY_REGEX, Pattern.CASE_INSENSITIVE);
+            pattern = FUNCTION_BODY_PATTERN;
         }
         else if(script1.getObjectType().equals(ScriptObjectType.PROCEDURES)) {
-            pattern = Pattern.compile(PROCEDURE_BODY_REGEX, Pattern.CASE_INSENSITIVE);
+            pattern = PROCEDURE_BODY_PATTERN;
         }
         else if(script1.getObjectType().equals(ScriptObjectType.FILE_FORMATS)) {
-            pattern = Pattern.compile(FILE_FORMAT_BODY_REGEX, Pattern.CASE_INSENSITIVE);
+            pattern = FILE_FORMAT_BODY_PATTERN;
         }
         else {
-            pattern = Pattern.compile("(?<body>[\\s\\S]+)$");
+            pattern = WHOLE_BODY_PATTERN;
         }
         Matcher viewMatcher1 = pattern.matcher(content1);
         Matcher viewMatcher2 = pattern.matcher(content2);
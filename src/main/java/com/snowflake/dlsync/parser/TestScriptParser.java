@@ -9,7 +9,7 @@ import java.util.Map;
 public class TestScriptParser extends ScriptParser {
     private Map<String, String> cteMap = new HashMap<>();
     public TestScriptParser(TestScript testScript) {
-        super(testScript.getContent());
+        super(testScript.getContent(), testScript.getId(), testScript.getObjectType());
         objectName = testScript.getObjectName();
     }
 
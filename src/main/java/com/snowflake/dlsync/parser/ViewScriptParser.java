@@ -6,7 +6,7 @@ import com.snowflake.dlsync.parser.antlr.SnowflakeParser;
 
 public class ViewScriptParser extends ScriptParser {
     public ViewScriptParser(Script script) {
-        super(script.getContent());
+        super(script.getContent(), script.getId(), script.getObjectType());
     }
 
     @Override
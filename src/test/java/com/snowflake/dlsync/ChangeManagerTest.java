@@ -1,21 +1,32 @@
 package com.snowflake.dlsync;
 
 import com.snowflake.dlsync.dependency.DependencyGraph;
+import com.snowflake.dlsync.dependency.DependencyOverrideIndex;
+import com.snowflake.dlsync.doa.DeploymentPlanFile;
+import com.snowflake.dlsync.doa.GitChangeDetector;
+import com.snowflake.dlsync.doa.ScriptHistorySnapshot;
 import com.snowflake.dlsync.doa.ScriptRepo;
 import com.snowflake.dlsync.doa.ScriptSource;
+import com.snowflake.dlsync.metrics.MetricsExporter;
 import com.snowflake.dlsync.models.*;
 import com.snowflake.dlsync.parser.ParameterInjector;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -40,6 +51,15 @@ class ChangeManagerTest {
     @Mock
     private ParameterInjector mockParameterInjector;
 
+    @Captor
+    private ArgumentCaptor<List<VerifyState>> verifyStatesCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<ScriptDependency>> dependenciesCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<LineageState>> lineageStatesCaptor;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
@@ -115,6 +135,20 @@ class ChangeManagerTest {
         verify(mockParameterInjector, never()).injectParameters(isA(Script.class));
     }
 
+    @Test
+    void deployExportsMetricsOfTheCommand(@TempDir Path metricsDirectory) throws SQLException, IOException, NoSuchAlgorithmException {
+        changeManager = new ChangeManager(mockConfig, mockScriptSource, mockScriptRepo, mockDependencyGraph, mockParameterInjector, null, new MetricsExporter(metricsDirectory));
+        SchemaScript script = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW1", "CREATE VIEW VIEW1 AS SELECT 1;");
+        when(mockScriptSource.getAllScripts()).thenReturn(List.of(script));
+        when(mockScriptRepo.isScriptChanged(any())).thenReturn(true);
+        when(mockDependencyGraph.topologicalSort()).thenReturn(List.of(script));
+
+        changeManager.deploy(false);
+
+        assertTrue(Files.readString(metricsDirectory.resolve("deploy.json")).contains("\"status\" : \"SUCCESS\""));
+        assertTrue(Files.readString(metricsDirectory.resolve("deploy.prom")).contains("dlsync_command_success{command=\"deploy\"} 1"));
+    }
+
     @Test
     void testDeployWithManyScripts() throws SQLException, IOException, NoSuchAlgorithmException {
         List<Script> allScripts = new ArrayList<>();
@@ -304,6 +338,176 @@ class ChangeManagerTest {
         verify(mockScriptRepo, times(4)).createScriptObject(any(), eq(false));
     }
 
+    @Test
+    void testDeployWithContinueOnFailureSkipsDependentsOfFailedScripts() throws SQLException, IOException, NoSuchAlgorithmException {
+        SchemaScript tableScript = ScriptFactory.getSchemaScript(
+            "TEST_DB", "TEST_SCHEMA", ScriptObjectType.TABLES,
+            "MY_TABLE", "CREATE TABLE MY_TABLE(id INT);"
+        );
+        SchemaScript viewScript = ScriptFactory.getSchemaScript(
+            "TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS,
+            "MY_VIEW", "CREATE VIEW MY_VIEW AS SELECT * FROM MY_TABLE;"
+        );
+        SchemaScript otherScript = ScriptFactory.getSchemaScript(
+            "TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS,
+            "OTHER_VIEW", "CREATE VIEW OTHER_VIEW AS SELECT 1;"
+        );
+
+        List<Script> allScripts = Arrays.asList(tableScript, viewScript, otherScript);
+        Map<Script, Set<Script>> dagGraph = new HashMap<>();
+        dagGraph.put(tableScript, new HashSet<>(Collections.singletonList(viewScript)));
+
+        when(mockConfig.isScriptExcluded(any())).thenReturn(false);
+        when(mockScriptSource.getAllScripts()).thenReturn(allScripts);
+        when(mockScriptRepo.isScriptChanged(any())).thenReturn(true);
+        when(mockDependencyGraph.topologicalSort()).thenReturn(allScripts);
+        when(mockDependencyGraph.getDagGraph()).thenReturn(dagGraph);
+        when(mockConfig.isContinueOnFailure()).thenReturn(true);
+        when(mockConfig.getParallelism()).thenReturn(2);
+
+        doThrow(new SQLException("Table creation failed")).when(mockScriptRepo).createScriptObject(eq(tableScript), eq(false));
+
+        assertThrows(RuntimeException.class, () -> {
+            changeManager.deploy(false);
+        }, "Should throw exception after attempting all scripts");
+
+        verify(mockScriptRepo).createScriptObject(eq(tableScript), eq(false));
+        verify(mockScriptRepo).createScriptObject(eq(otherScript), eq(false));
+        verify(mockScriptRepo, never()).createScriptObject(eq(viewScript), anyBoolean());
+        verify(mockScriptRepo).updateChangeSync(eq(ChangeType.DEPLOY), eq(Status.ERROR), contains("1 skipped"), isNull());
+    }
+
+    @Test
+    void testDeployReadsOnlyFilesChangedSinceLastDeployedCommit() throws SQLException, IOException, NoSuchAlgorithmException {
+        GitChangeDetector mockGitChangeDetector = mock(GitChangeDetector.class);
+        changeManager = new ChangeManager(mockConfig, mockScriptSource, mockScriptRepo, mockDependencyGraph, mockParameterInjector, mockGitChangeDetector);
+        SchemaScript viewScript = ScriptFactory.getSchemaScript(
+            "TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS,
+            "MY_VIEW", "CREATE VIEW MY_VIEW AS SELECT 1;"
+        );
+        Set<Path> changedFiles = Set.of(Path.of("main/TEST_DB/TEST_SCHEMA/VIEWS/MY_VIEW.SQL"));
+
+        when(mockGitChangeDetector.getHeadCommit()).thenReturn("new-commit");
+        when(mockGitChangeDetector.isClean()).thenReturn(true);
+        when(mockScriptRepo.getLastSyncedCommit()).thenReturn("old-commit");
+        when(mockGitChangeDetector.getChangedFiles("old-commit")).thenReturn(changedFiles);
+        when(mockScriptSource.getScripts(changedFiles)).thenReturn(List.of(viewScript));
+        when(mockScriptRepo.isScriptChanged(any())).thenReturn(true);
+        when(mockDependencyGraph.topologicalSort()).thenReturn(List.of(viewScript));
+
+        changeManager.deploy(false);
+
+        verify(mockScriptSource, never()).getAllScripts();
+        verify(mockScriptRepo).createScriptObject(viewScript, false);
+        verify(mockScriptRepo).updateChangeSync(eq(ChangeType.DEPLOY), eq(Status.SUCCESS), anyString(), eq(1L), eq("new-commit"));
+    }
+
+    @Test
+    void testDeployWithUncommittedChangesScansAllScriptsAndRecordsNoCommit() throws SQLException, IOException, NoSuchAlgorithmException {
+        GitChangeDetector mockGitChangeDetector = mock(GitChangeDetector.class);
+        changeManager = new ChangeManager(mockConfig, mockScriptSource, mockScriptRepo, mockDependencyGraph, mockParameterInjector, mockGitChangeDetector);
+
+        when(mockGitChangeDetector.getHeadCommit()).thenReturn("new-commit");
+        when(mockGitChangeDetector.isClean()).thenReturn(false);
+        when(mockScriptRepo.getLastSyncedCommit()).thenReturn(null);
+        when(mockScriptSource.getAllScripts()).thenReturn(List.of());
+        when(mockDependencyGraph.topologicalSort()).thenReturn(List.of());
+
+        changeManager.deploy(false);
+
+        verify(mockScriptSource).getAllScripts();
+        verify(mockScriptRepo).updateChangeSync(eq(ChangeType.DEPLOY), eq(Status.SUCCESS), anyString(), eq(0L), isNull());
+    }
+
+    @Test
+    void deploySavesTheScriptHistorySnapshotWithTheRecordedCommit() throws SQLException, IOException, NoSuchAlgorithmException {
+        GitChangeDetector mockGitChangeDetector = mock(GitChangeDetector.class);
+        changeManager = new ChangeManager(mockConfig, mockScriptSource, mockScriptRepo, mockDependencyGraph, mockParameterInjector, mockGitChangeDetector);
+        when(mockGitChangeDetector.getHeadCommit()).thenReturn("new-commit");
+        when(mockGitChangeDetector.isClean()).thenReturn(true);
+        when(mockScriptSource.getAllScripts()).thenReturn(List.of());
+        when(mockDependencyGraph.topologicalSort()).thenReturn(List.of());
+
+        changeManager.deploy(false);
+
+        verify(mockScriptRepo).saveScriptHashSnapshot("new-commit");
+    }
+
+    @Test
+    void planComparesAgainstTheSnapshotWithoutConnecting() throws SQLException, IOException {
+        GitChangeDetector mockGitChangeDetector = mock(GitChangeDetector.class);
+        changeManager = new ChangeManager(mockConfig, mockScriptSource, mockScriptRepo, mockDependencyGraph, mockParameterInjector, mockGitChangeDetector);
+        SchemaScript tableScript = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.TABLES, "MY_TABLE", "CREATE TABLE MY_TABLE(id INT);");
+        SchemaScript viewScript = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "MY_VIEW", "CREATE VIEW MY_VIEW AS SELECT * FROM MY_TABLE;");
+        Set<Path> changedFiles = Set.of(Path.of("main/TEST_DB/TEST_SCHEMA/VIEWS/MY_VIEW.SQL"), Path.of("main/TEST_DB/TEST_SCHEMA/TABLES/MY_TABLE.SQL"));
+        ScriptHistorySnapshot.Snapshot snapshot = new ScriptHistorySnapshot.Snapshot();
+        snapshot.setCommitId("old-commit");
+
+        when(mockScriptRepo.loadScriptHashSnapshot()).thenReturn(snapshot);
+        when(mockGitChangeDetector.getChangedFiles("old-commit")).thenReturn(changedFiles);
+        when(mockScriptSource.getScripts(changedFiles)).thenReturn(List.of(viewScript, tableScript));
+        when(mockScriptRepo.isScriptChanged(any())).thenReturn(true);
+        when(mockScriptRepo.isScriptPreviouslyDeployed(viewScript)).thenReturn(true);
+        when(mockDependencyGraph.topologicalSort()).thenReturn(List.of(tableScript, viewScript));
+        when(mockDependencyGraph.getLevels(List.of(tableScript, viewScript))).thenReturn(Map.of(tableScript, 0, viewScript, 1));
+
+        List<PlannedScript> plan = changeManager.plan();
+
+        assertEquals(2, plan.size());
+        assertEquals(tableScript.getId(), plan.get(0).getScriptId());
+        assertEquals(0, plan.get(0).getLevel());
+        assertFalse(plan.get(0).isPreviouslyDeployed());
+        assertEquals(viewScript.getId(), plan.get(1).getScriptId());
+        assertEquals(1, plan.get(1).getLevel());
+        assertTrue(plan.get(1).isPreviouslyDeployed());
+        assertEquals(viewScript.getHash(), plan.get(1).getHash());
+        verify(mockScriptSource, never()).getAllScripts();
+        verify(mockScriptRepo, never()).loadScriptHash();
+        verify(mockScriptRepo, never()).getLastSyncedCommit();
+        verify(mockScriptRepo, never()).insertChangeSync(any(), any(), any());
+    }
+
+    @Test
+    void deployFromPlanSkipsScriptFilesAndDependencyExtraction(@TempDir Path directory) throws SQLException, IOException, NoSuchAlgorithmException {
+        SchemaScript tableScript = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.TABLES, "MY_TABLE", "CREATE TABLE MY_TABLE(id INT);");
+        SchemaScript viewScript = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "MY_VIEW", "CREATE VIEW MY_VIEW AS SELECT * FROM MY_TABLE;");
+        SchemaScript otherViewScript = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "OTHER_VIEW", "CREATE VIEW OTHER_VIEW AS SELECT * FROM MY_TABLE;");
+        List<Script> sortedScripts = List.of(tableScript, viewScript, otherViewScript);
+        Map<Script, Set<Script>> dagGraph = Map.of(tableScript, Set.of(viewScript, otherViewScript));
+        Path planFile = directory.resolve("deployment-plan.json.gz");
+        new DeploymentPlanFile(planFile).save(DeploymentPlanFile.createPlan(sortedScripts, Map.of(tableScript, 0, viewScript, 1, otherViewScript, 1), dagGraph, "plan-commit"));
+
+        when(mockConfig.getParallelism()).thenReturn(1);
+        when(mockScriptRepo.isScriptChanged(any())).thenAnswer(invocation -> !((Script) invocation.getArgument(0)).getId().equals(otherViewScript.getId()));
+
+        changeManager.deploy(false, planFile);
+
+        ArgumentCaptor<Script> deployed = ArgumentCaptor.forClass(Script.class);
+        verify(mockScriptRepo, times(2)).createScriptObject(deployed.capture(), eq(false));
+        assertEquals(List.of(tableScript.getId(), viewScript.getId()), deployed.getAllValues().stream().map(Script::getId).collect(Collectors.toList()));
+        assertEquals(viewScript.getContent(), deployed.getAllValues().get(1).getContent());
+        verify(mockParameterInjector, times(2)).injectParameters(isA(Script.class));
+        verifyNoInteractions(mockScriptSource, mockDependencyGraph);
+        verify(mockScriptRepo).updateChangeSync(eq(ChangeType.DEPLOY), eq(Status.SUCCESS), anyString(), eq(2L), eq("plan-commit"));
+    }
+
+    @Test
+    void writePlanContainsAllScriptsWithoutConnecting(@TempDir Path directory) throws SQLException, IOException {
+        SchemaScript tableScript = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.TABLES, "MY_TABLE", "CREATE TABLE MY_TABLE(id INT);");
+        SchemaScript viewScript = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "MY_VIEW", "CREATE VIEW MY_VIEW AS SELECT * FROM MY_TABLE;");
+        when(mockScriptSource.getAllScripts()).thenReturn(List.of(viewScript, tableScript));
+        when(mockDependencyGraph.topologicalSort()).thenReturn(List.of(tableScript, viewScript));
+        when(mockDependencyGraph.getLevels(List.of(tableScript, viewScript))).thenReturn(Map.of(tableScript, 0, viewScript, 1));
+        when(mockDependencyGraph.getDagGraph()).thenReturn(Map.of(tableScript, Set.of(viewScript)));
+        Path planFile = directory.resolve("deployment-plan.json.gz");
+
+        DeploymentPlan plan = changeManager.writePlan(planFile);
+
+        assertEquals(plan.getScripts().size(), new DeploymentPlanFile(planFile).load().getScripts().size());
+        assertEquals(List.of(0), plan.getScripts().get(1).getDependencies());
+        verifyNoInteractions(mockScriptRepo);
+    }
+
     @Test
     void testRollbackDeployedMigrationScriptsInReverseOrder() throws SQLException, IOException {
         MigrationScript migration1 = ScriptFactory.getMigrationScript(
@@ -422,5 +626,207 @@ class ChangeManagerTest {
 
         verify(mockScriptRepo, times(1)).createScriptObject(any(), eq(false));
     }
-}
 
+    @Test
+    void verifyChecksSchemasInEverySourceDatabase() throws SQLException, IOException, NoSuchAlgorithmException {
+        SchemaScript view1 = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "CREATE VIEW VIEW1 AS SELECT 1;");
+        SchemaScript view2 = ScriptFactory.getSchemaScript("DB2", "SCHEMA2", ScriptObjectType.VIEWS, "VIEW2", "CREATE VIEW VIEW2 AS SELECT 2;");
+        SchemaScript deployedView1 = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "CREATE VIEW VIEW1 AS SELECT 1;");
+        SchemaScript deployedView2 = ScriptFactory.getSchemaScript("DB2", "SCHEMA2", ScriptObjectType.VIEWS, "VIEW2", "CREATE VIEW VIEW2 AS SELECT 2;");
+
+        when(mockConfig.isScriptExcluded(any())).thenReturn(false);
+        when(mockConfig.getParallelism()).thenReturn(4);
+        when(mockScriptSource.getAllScripts()).thenReturn(Arrays.asList(view1, view2));
+        when(mockParameterInjector.injectParameters(anySet())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mockScriptRepo.getAllSchemasInDatabase("DB1")).thenReturn(List.of("SCHEMA1"));
+        when(mockScriptRepo.getAllSchemasInDatabase("DB2")).thenReturn(List.of("SCHEMA2"));
+        when(mockScriptRepo.getAllScriptsInSchema("DB1", "SCHEMA1")).thenReturn(List.of(deployedView1));
+        when(mockScriptRepo.getAllScriptsInSchema("DB2", "SCHEMA2")).thenReturn(List.of(deployedView2));
+        when(mockScriptRepo.compareScript(any(), any())).thenReturn(true);
+
+        assertTrue(changeManager.verify());
+        verify(mockScriptRepo).compareScript(deployedView1, view1);
+        verify(mockScriptRepo).compareScript(deployedView2, view2);
+        verify(mockScriptRepo).updateChangeSync(eq(ChangeType.VERIFY), eq(Status.SUCCESS), anyString(), eq(2L), isNull());
+    }
+
+    @Test
+    void verifyFailsForObjectsMissingInSource() throws SQLException, IOException {
+        SchemaScript view1 = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "CREATE VIEW VIEW1 AS SELECT 1;");
+        SchemaScript extraView = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "EXTRA", "CREATE VIEW EXTRA AS SELECT 1;");
+
+        when(mockConfig.isScriptExcluded(any())).thenReturn(false);
+        when(mockConfig.getParallelism()).thenReturn(2);
+        when(mockScriptSource.getAllScripts()).thenReturn(List.of(view1));
+        when(mockParameterInjector.injectParameters(anySet())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mockScriptRepo.getAllSchemasInDatabase("DB1")).thenReturn(List.of("SCHEMA1"));
+        when(mockScriptRepo.getAllScriptsInSchema("DB1", "SCHEMA1")).thenReturn(List.of(extraView));
+
+        assertThrows(RuntimeException.class, () -> changeManager.verify());
+        verify(mockScriptRepo).updateChangeSync(eq(ChangeType.VERIFY), eq(Status.ERROR), anyString(), any());
+    }
+
+    private VerifyState verifyState(SchemaScript script, String ddlHash, Timestamp lastAltered) {
+        VerifyState state = new VerifyState();
+        state.setDatabaseName(script.getDatabaseName());
+        state.setSchemaName(script.getSchemaName());
+        state.setObjectName(script.getObjectName());
+        state.setObjectType(script.getObjectType().toString());
+        state.setScriptId(script.getId());
+        state.setSourceHash(script.getHash());
+        state.setDdlHash(ddlHash);
+        state.setLastAltered(lastAltered);
+        return state;
+    }
+
+    @Test
+    void verifySkipsSchemasNotAlteredSinceLastVerify() throws SQLException, IOException, NoSuchAlgorithmException {
+        SchemaScript view1 = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "CREATE VIEW VIEW1 AS SELECT 1;");
+        Timestamp verifiedAt = Timestamp.valueOf("2024-01-01 00:00:00");
+
+        when(mockConfig.isScriptExcluded(any())).thenReturn(false);
+        when(mockConfig.getParallelism()).thenReturn(1);
+        when(mockScriptSource.getAllScripts()).thenReturn(List.of(view1));
+        when(mockParameterInjector.injectParameters(anySet())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mockScriptRepo.getAllSchemasInDatabase("DB1")).thenReturn(List.of("SCHEMA1"));
+        when(mockScriptRepo.loadVerifyState(any())).thenReturn(List.of(verifyState(view1, "ddl-hash", verifiedAt)));
+        when(mockScriptRepo.getLastAlteredTimes("DB1")).thenReturn(Map.of("VIEWS:SCHEMA1.VIEW1", verifiedAt));
+
+        assertTrue(changeManager.verify());
+        verify(mockScriptRepo, never()).getAllScriptsInSchema(anyString(), anyString());
+        verify(mockScriptRepo).saveVerifyState(any(), verifyStatesCaptor.capture());
+        assertEquals(1, verifyStatesCaptor.getValue().size());
+
+        assertTrue(changeManager.verify(true));
+        verify(mockScriptRepo).getAllScriptsInSchema("DB1", "SCHEMA1");
+    }
+
+    @Test
+    void verifyComparesOnlyChangedObjectsOfAlteredSchemas() throws SQLException, IOException, NoSuchAlgorithmException {
+        SchemaScript view1 = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "CREATE VIEW VIEW1 AS SELECT 1;");
+        SchemaScript view2 = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW2", "CREATE VIEW VIEW2 AS SELECT 2;");
+        SchemaScript deployedView1 = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "CREATE VIEW VIEW1 AS SELECT 1;");
+        SchemaScript deployedView2 = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW2", "CREATE VIEW VIEW2 AS SELECT 20;");
+        Timestamp verifiedAt = Timestamp.valueOf("2024-01-01 00:00:00");
+        Timestamp alteredAt = Timestamp.valueOf("2024-01-02 00:00:00");
+
+        when(mockConfig.isScriptExcluded(any())).thenReturn(false);
+        when(mockConfig.getParallelism()).thenReturn(1);
+        when(mockScriptSource.getAllScripts()).thenReturn(List.of(view1, view2));
+        when(mockParameterInjector.injectParameters(anySet())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mockScriptRepo.getAllSchemasInDatabase("DB1")).thenReturn(List.of("SCHEMA1"));
+        when(mockScriptRepo.loadVerifyState(any())).thenReturn(List.of(
+                verifyState(view1, Util.getMd5Hash(deployedView1.getContent()), verifiedAt),
+                verifyState(view2, Util.getMd5Hash("CREATE VIEW VIEW2 AS SELECT 2;"), verifiedAt)));
+        when(mockScriptRepo.getLastAlteredTimes("DB1")).thenReturn(Map.of("VIEWS:SCHEMA1.VIEW1", verifiedAt, "VIEWS:SCHEMA1.VIEW2", alteredAt));
+        when(mockScriptRepo.getAllScriptsInSchema("DB1", "SCHEMA1")).thenReturn(List.of(deployedView1, deployedView2));
+        when(mockScriptRepo.compareScript(deployedView2, view2)).thenReturn(false);
+
+        assertThrows(RuntimeException.class, () -> changeManager.verify());
+        verify(mockScriptRepo, never()).compareScript(eq(deployedView1), any());
+        verify(mockScriptRepo).compareScript(deployedView2, view2);
+        verify(mockScriptRepo).saveVerifyState(any(), verifyStatesCaptor.capture());
+        assertEquals(List.of("VIEW1"), verifyStatesCaptor.getValue().stream().map(VerifyState::getObjectName).collect(Collectors.toList()));
+    }
+
+    @Test
+    void verifyComparesSchemasWithNewObjectsWithoutLastAltered() throws SQLException, IOException, NoSuchAlgorithmException {
+        SchemaScript view1 = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "CREATE VIEW VIEW1 AS SELECT 1;");
+        SchemaScript deployedView1 = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "CREATE VIEW VIEW1 AS SELECT 1;");
+        SchemaScript newPolicy = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.MASKING_POLICIES, "NEW_POLICY", "CREATE MASKING POLICY NEW_POLICY AS (VAL STRING) RETURNS STRING -> VAL;");
+        Timestamp verifiedAt = Timestamp.valueOf("2024-01-01 00:00:00");
+
+        when(mockConfig.isScriptExcluded(any())).thenReturn(false);
+        when(mockConfig.getParallelism()).thenReturn(1);
+        when(mockScriptSource.getAllScripts()).thenReturn(List.of(view1));
+        when(mockParameterInjector.injectParameters(anySet())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mockScriptRepo.getAllSchemasInDatabase("DB1")).thenReturn(List.of("SCHEMA1"));
+        when(mockScriptRepo.loadVerifyState(any())).thenReturn(List.of(verifyState(view1, Util.getMd5Hash(deployedView1.getContent()), verifiedAt)));
+        when(mockScriptRepo.getLastAlteredTimes("DB1")).thenReturn(Map.of("VIEWS:SCHEMA1.VIEW1", verifiedAt));
+        when(mockScriptRepo.getUntrackedObjects("DB1")).thenReturn(Set.of("MASKING_POLICIES:SCHEMA1.NEW_POLICY"));
+        when(mockScriptRepo.getAllScriptsInSchema("DB1", "SCHEMA1")).thenReturn(List.of(deployedView1, newPolicy));
+
+        assertThrows(RuntimeException.class, () -> changeManager.verify());
+        verify(mockScriptRepo).getAllScriptsInSchema("DB1", "SCHEMA1");
+        verify(mockScriptRepo).updateChangeSync(eq(ChangeType.VERIFY), eq(Status.ERROR), anyString(), any());
+    }
+
+    @Test
+    void verifyComparesAllSchemasWhenObjectsWithoutLastAlteredCannotBeListed() throws SQLException, IOException, NoSuchAlgorithmException {
+        SchemaScript view1 = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "CREATE VIEW VIEW1 AS SELECT 1;");
+        Timestamp verifiedAt = Timestamp.valueOf("2024-01-01 00:00:00");
+
+        when(mockConfig.isScriptExcluded(any())).thenReturn(false);
+        when(mockConfig.getParallelism()).thenReturn(1);
+        when(mockScriptSource.getAllScripts()).thenReturn(List.of(view1));
+        when(mockParameterInjector.injectParameters(anySet())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mockScriptRepo.getAllSchemasInDatabase("DB1")).thenReturn(List.of("SCHEMA1"));
+        when(mockScriptRepo.loadVerifyState(any())).thenReturn(List.of(verifyState(view1, "ddl-hash", verifiedAt)));
+        when(mockScriptRepo.getLastAlteredTimes("DB1")).thenReturn(Map.of("VIEWS:SCHEMA1.VIEW1", verifiedAt));
+        when(mockScriptRepo.getUntrackedObjects("DB1")).thenReturn(null);
+
+        assertTrue(changeManager.verify());
+        verify(mockScriptRepo).getAllScriptsInSchema("DB1", "SCHEMA1");
+    }
+
+    private LineageState lineageState(Script script, Script... dependencies) {
+        LineageState state = new LineageState();
+        state.setScriptId(script.getId());
+        state.setScriptHash(script.getHash());
+        state.setDependencies(Arrays.stream(dependencies).map(Script::getId).collect(Collectors.toList()));
+        return state;
+    }
+
+    @Test
+    void createLineageWithoutStateRewritesAllDependencies() throws SQLException, IOException {
+        SchemaScript table = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.TABLES, "TABLE1", "CREATE TABLE TABLE1(ID INT);");
+        SchemaScript view = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "CREATE VIEW VIEW1 AS SELECT * FROM TABLE1;");
+        List<Script> scripts = List.of(table, view);
+        when(mockScriptSource.getAllScripts()).thenReturn(scripts);
+        when(mockScriptRepo.loadLineageState()).thenReturn(List.of());
+        when(mockDependencyGraph.extractDependencies(scripts, scripts)).thenReturn(Map.of(table, Set.of(), view, Set.of(table)));
+        when(mockDependencyGraph.getDependencyOverrideIndex(any())).thenReturn(new DependencyOverrideIndex(null));
+
+        changeManager.createLineage();
+
+        verify(mockScriptRepo, never()).getDependencyLineage();
+        verify(mockScriptRepo).updateDependencyLineage(eq(List.of()), dependenciesCaptor.capture(), lineageStatesCaptor.capture(), eq(true));
+        assertEquals(List.of(new ScriptDependency(view, table)), dependenciesCaptor.getValue());
+        assertEquals(List.of(lineageState(table), lineageState(view, table)), lineageStatesCaptor.getValue());
+    }
+
+    @Test
+    void createLineageExtractsOnlyChangedScripts() throws SQLException, IOException {
+        SchemaScript table1 = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.TABLES, "TABLE1", "CREATE TABLE TABLE1(ID INT);");
+        SchemaScript table2 = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.TABLES, "TABLE2", "CREATE TABLE TABLE2(ID INT);");
+        SchemaScript view1 = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "CREATE VIEW VIEW1 AS SELECT * FROM TABLE1;");
+        SchemaScript view2 = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW2", "CREATE VIEW VIEW2 AS SELECT * FROM TABLE2;");
+        List<Script> scripts = List.of(table1, table2, view1, view2);
+        LineageState previousView2 = lineageState(view2, table1);
+        previousView2.setScriptHash("old-hash");
+        when(mockScriptSource.getAllScripts()).thenReturn(scripts);
+        when(mockScriptRepo.loadLineageState()).thenReturn(List.of(lineageState(table1), lineageState(table2), lineageState(view1, table1), previousView2));
+        when(mockScriptRepo.getDependencyLineage()).thenReturn(Set.of(new ScriptDependency(view1, table1), new ScriptDependency(view2, table1)));
+        when(mockDependencyGraph.extractDependencies(scripts, List.of(view2))).thenReturn(Map.of(view2, Set.of(table2)));
+        when(mockDependencyGraph.getDependencyOverrideIndex(any())).thenReturn(new DependencyOverrideIndex(null));
+
+        changeManager.createLineage();
+
+        verify(mockDependencyGraph).extractDependencies(scripts, List.of(view2));
+        verify(mockScriptRepo).updateDependencyLineage(eq(List.of(new ScriptDependency(view2, table1))), eq(List.of(new ScriptDependency(view2, table2))), any(), eq(false));
+    }
+
+    @Test
+    void slowestObjectsOnlyReadsTheMetadata() throws SQLException {
+        ObjectExecutionTime slowView = new ObjectExecutionTime();
+        slowView.setObjectName("DB1.SCHEMA1.VIEW1");
+        slowView.setTotalMs(9000L);
+        when(mockScriptRepo.getSlowestObjects(10, 20)).thenReturn(List.of(slowView));
+
+        List<ObjectExecutionTime> objects = changeManager.slowestObjects(10, 20);
+
+        assertEquals(List.of(slowView), objects);
+        verify(mockScriptRepo, never()).insertChangeSync(any(), any(), any());
+        verify(mockScriptRepo, never()).updateChangeSync(any(), any(), any(), any(), any());
+    }
+}
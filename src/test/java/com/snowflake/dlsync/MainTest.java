@@ -79,6 +79,14 @@ public class MainTest {
         String[] args8 = {"DEploy", "--only-hashes"};
         changeType = Main.getChangeType(args8);
         assertTrue(changeType == ChangeType.DEPLOY);
+
+        String[] args9 = {"slowest-objects", "--limit", "5"};
+        changeType = Main.getChangeType(args9);
+        assertTrue(changeType == ChangeType.SLOWEST_OBJECTS);
+
+        String[] args10 = {"create-script"};
+        changeType = Main.getChangeType(args10);
+        assertTrue(changeType == ChangeType.CREATE_SCRIPT);
     }
 
     @Test
@@ -5,13 +5,16 @@ import com.snowflake.dlsync.models.MigrationScript;
 import com.snowflake.dlsync.models.SchemaScript;
 import com.snowflake.dlsync.models.Script;
 import com.snowflake.dlsync.models.ScriptObjectType;
+import com.snowflake.dlsync.parser.SqlTokenizer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -389,4 +392,48 @@ class DependencyExtractorTest {
     }
 
 
-}
\ No newline at end of file
+
+    @Test
+    void extractScriptDependenciesMatchesPairwiseScan() {
+        List<Script> scripts = new ArrayList<>(mockScripts());
+        scripts.add(mockViewDependency("VIEW1", "TEST_SCHEMA2"));
+        scripts.add(mockUdfDependency("FUNC1", "TEST_SCHEMA"));
+        scripts.add(mockTableDependency("TABLE1", "TEST_SCHEMA"));
+        scripts.add(ScriptFactory.getSchemaMigrationScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.TABLES, "TABLE1", "ALTER TABLE TABLE1 ADD COLUMN COL2 VARCHAR;", 1L, "dlsync", "", ""));
+        scripts.add(ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW2",
+                "CREATE OR REPLACE VIEW VIEW2 AS SELECT FUNC1(COL1), 'MOCK2' AS LITERAL FROM \"TEST_SCHEMA2\".\"VIEW1\" -- JOIN MOCK3\n JOIN TEST_DB.TEST_SCHEMA.TABLE1 ON A=B;"));
+        scripts.add(ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA2", ScriptObjectType.VIEWS, "VIEW3",
+                "CREATE OR REPLACE VIEW VIEW3 AS SELECT * FROM test_schema.view2,mock1 /* VIEW1 */ WHERE X=TEST_SCHEMA.FUNC1(Y);"));
+        scripts.add(ScriptFactory.getAccountScript("", ScriptObjectType.DATABASES, "${EXAMPLE_DB}", "CREATE DATABASE ${EXAMPLE_DB};"));
+        scripts.add(ScriptFactory.getAccountScript("", ScriptObjectType.SCHEMAS, "${EXAMPLE_DB}.${MAIN_SCHEMA}", "CREATE SCHEMA ${EXAMPLE_DB}.${MAIN_SCHEMA};"));
+        scripts.add(ScriptFactory.getAccountScript("", ScriptObjectType.ROLES, "READER", "GRANT USAGE ON SCHEMA ${EXAMPLE_DB}.${MAIN_SCHEMA} TO ROLE READER;"));
+        dependencyExtractor.addScripts(scripts);
+
+        for(Script script: scripts) {
+            assertEquals(extractByPairwiseScan(script, scripts), dependencyExtractor.extractScriptDependencies(script), "Dependency extractor failed for " + script.getId());
+        }
+    }
+
+    private Set<Script> extractByPairwiseScan(Script target, List<Script> scripts) {
+        Map<String, Script> dependencies = new HashMap<>();
+        for(Script dependency: scripts) {
+            if(dependency.getFullObjectName().equals(target.getFullObjectName())) {
+                continue;
+            }
+            for(String identifier: SqlTokenizer.getFullIdentifiers(dependency.getObjectName(), target.getContent())) {
+                if(target.resolveObjectReference(identifier).equals(dependency.getFullObjectName())) {
+                    dependencies.put(dependency.getId(), dependency);
+                }
+            }
+        }
+        if(target instanceof MigrationScript) {
+            for(Script script: scripts) {
+                if(script instanceof MigrationScript && script.getFullObjectName().equals(target.getFullObjectName())
+                        && ((MigrationScript) script).getVersion() < ((MigrationScript) target).getVersion()) {
+                    dependencies.put(script.getId(), script);
+                }
+            }
+        }
+        return Set.copyOf(dependencies.values());
+    }
+}
@@ -2,6 +2,7 @@ package com.snowflake.dlsync.dependency;
 
 import com.snowflake.dlsync.ScriptFactory;
 import com.snowflake.dlsync.models.Config;
+import com.snowflake.dlsync.models.MigrationScript;
 import com.snowflake.dlsync.models.SchemaScript;
 import com.snowflake.dlsync.models.Script;
 import com.snowflake.dlsync.models.ScriptObjectType;
@@ -13,6 +14,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -79,4 +83,78 @@ class DependencyGraphTest {
 
         assertEquals(expected, actual);
     }
-}
\ No newline at end of file
+
+    @Test
+    void topologicalSortAcrossAddNodesCalls() {
+        SchemaScript view1 = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW1", "CREATE OR REPLACE VIEW VIEW1 AS SELECT * FROM TABLE1;");
+        SchemaScript view2 = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW2", "CREATE OR REPLACE VIEW VIEW2 AS SELECT * FROM VIEW1;");
+        SchemaScript view3 = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW3", "CREATE OR REPLACE VIEW VIEW3 AS SELECT * FROM VIEW2 JOIN VIEW4 ON 1=1;");
+        SchemaScript view4 = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW4", "CREATE OR REPLACE VIEW VIEW4 AS SELECT * FROM VIEW1;");
+
+        dependencyGraph.addNodes(List.of(view1, view2));
+        dependencyGraph.addNodes(List.of(view3, view4));
+        List<Script> actual = dependencyGraph.topologicalSort();
+
+        assertEquals(4, actual.size());
+        assertTrue(actual.indexOf(view1) < actual.indexOf(view2));
+        assertTrue(actual.indexOf(view2) < actual.indexOf(view3));
+        assertTrue(actual.indexOf(view4) < actual.indexOf(view3));
+        assertEquals(Set.of(view2, view4), dependencyGraph.getDagGraph().get(view1));
+        assertEquals(actual, dependencyGraph.topologicalSort(), "Sorting should not consume the graph");
+    }
+
+    @Test
+    void levelsFollowTheLongestDependencyChain() {
+        SchemaScript view1 = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW1", "CREATE OR REPLACE VIEW VIEW1 AS SELECT * FROM TABLE1;");
+        SchemaScript view2 = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW2", "CREATE OR REPLACE VIEW VIEW2 AS SELECT * FROM VIEW1;");
+        SchemaScript view3 = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW3", "CREATE OR REPLACE VIEW VIEW3 AS SELECT * FROM VIEW2 JOIN VIEW1;");
+        SchemaScript view4 = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW4", "CREATE OR REPLACE VIEW VIEW4 AS SELECT 1;");
+
+        dependencyGraph.addNodes(List.of(view3, view4, view2, view1));
+        Map<Script, Integer> levels = dependencyGraph.getLevels(dependencyGraph.topologicalSort());
+
+        assertEquals(Map.of(view1, 0, view2, 1, view3, 2, view4, 0), levels);
+    }
+
+    @Test
+    void topologicalSortLongChain() {
+        List<Script> scripts = new ArrayList<>();
+        scripts.add(ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW0", "CREATE OR REPLACE VIEW VIEW0 AS SELECT 1;"));
+        for(int i = 1; i < 2000; i++) {
+            scripts.add(ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW" + i, "CREATE OR REPLACE VIEW VIEW" + i + " AS SELECT * FROM VIEW" + (i - 1) + ";"));
+        }
+        List<Script> shuffled = new ArrayList<>(scripts);
+        Collections.shuffle(shuffled, new Random(7));
+
+        dependencyGraph.addNodes(shuffled);
+
+        assertEquals(scripts, dependencyGraph.topologicalSort());
+    }
+
+    @Test
+    void topologicalSortDetectsCycle() {
+        SchemaScript view1 = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW1", "CREATE OR REPLACE VIEW VIEW1 AS SELECT * FROM VIEW2;");
+        SchemaScript view2 = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW2", "CREATE OR REPLACE VIEW VIEW2 AS SELECT * FROM VIEW1;");
+        SchemaScript view3 = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW3", "CREATE OR REPLACE VIEW VIEW3 AS SELECT 1;");
+
+        dependencyGraph.addNodes(List.of(view1, view2, view3));
+
+        assertThrows(RuntimeException.class, () -> dependencyGraph.topologicalSort());
+    }
+
+    @Test
+    void renamedScriptChangesIdentity() {
+        SchemaScript view = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW1", "CREATE OR REPLACE VIEW VIEW1 AS SELECT 1;");
+        MigrationScript migration = new MigrationScript(view, "ALTER VIEW VIEW1 SET COMMENT = 'x';", 1L, "tester", null, null);
+        assertEquals("TEST_DB.TEST_SCHEMA.VIEW1:1", migration.getId());
+
+        view.setDatabaseName("prod_db");
+        view.setSchemaName("prod_schema");
+        view.setObjectName("view2");
+        migration.setVersion(2L);
+
+        assertEquals("PROD_DB.PROD_SCHEMA.VIEW2", view.getId());
+        assertEquals("PROD_DB.PROD_SCHEMA.VIEW2:2", migration.getId());
+        assertEquals(ScriptFactory.getSchemaScript("PROD_DB", "PROD_SCHEMA", ScriptObjectType.VIEWS, "VIEW2", "SELECT 1").hashCode(), view.hashCode());
+    }
+}
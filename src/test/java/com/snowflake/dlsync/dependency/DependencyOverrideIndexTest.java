@@ -0,0 +1,50 @@
+package com.snowflake.dlsync.dependency;
+
+import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.models.DependencyOverride;
+import com.snowflake.dlsync.models.SchemaScript;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DependencyOverrideIndexTest {
+
+    private DependencyOverride override(String script, String... dependencies) {
+        DependencyOverride override = new DependencyOverride();
+        override.setScript(script);
+        override.setDependencies(List.of(dependencies));
+        return override;
+    }
+
+    @Test
+    void resolvesOverridesAndReportsUnknownNames() {
+        SchemaScript table = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.TABLES, "TABLE1", "CREATE TABLE TABLE1(ID INT);");
+        SchemaScript view = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW1", "CREATE VIEW VIEW1 AS SELECT 1;");
+        SchemaScript function = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.FUNCTIONS, "FUNC1", "CREATE FUNCTION FUNC1() RETURNS INT AS '1';");
+        List<Script> scripts = List.of(table, view, function);
+        DependencyOverrideIndex index = new DependencyOverrideIndex(List.of(
+                override("TEST_DB.TEST_SCHEMA.VIEW1", "TEST_DB.TEST_SCHEMA.TABLE1", "TEST_DB.TEST_SCHEMA.MISSING"),
+                override("TEST_DB.TEST_SCHEMA.VIEW1", "TEST_DB.TEST_SCHEMA.FUNC1"),
+                override("TEST_DB.TEST_SCHEMA.UNKNOWN", "TEST_DB.TEST_SCHEMA.TABLE1")));
+
+        index.resolve(scripts);
+
+        assertEquals(List.of(table, function), index.getDependencies(view));
+        assertEquals(List.of(), index.getDependencies(table));
+        assertEquals(Set.of("TEST_DB.TEST_SCHEMA.MISSING", "TEST_DB.TEST_SCHEMA.UNKNOWN"), index.getUnresolvedNames());
+    }
+
+    @Test
+    void noOverrides() {
+        SchemaScript view = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW1", "CREATE VIEW VIEW1 AS SELECT 1;");
+        DependencyOverrideIndex index = new DependencyOverrideIndex(null);
+        index.resolve(List.of(view));
+        assertTrue(index.getDependencies(view).isEmpty());
+        assertTrue(index.getUnresolvedNames().isEmpty());
+    }
+}
@@ -0,0 +1,175 @@
+package com.snowflake.dlsync.dependency;
+
+import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeploymentSchedulerTest {
+
+    private Script mockScript(String name) {
+        return ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, name, "CREATE OR REPLACE VIEW " + name + " AS SELECT 1;");
+    }
+
+    private void addEdge(Map<Script, Set<Script>> dagGraph, Script dependency, Script dependent) {
+        dagGraph.computeIfAbsent(dependency, k -> new HashSet<>()).add(dependent);
+    }
+
+    @Test
+    void executeDeploysDependenciesBeforeDependents() {
+        Script table = mockScript("TABLE1");
+        Script view1 = mockScript("VIEW1");
+        Script view2 = mockScript("VIEW2");
+        Script view3 = mockScript("VIEW3");
+        Map<Script, Set<Script>> dagGraph = new HashMap<>();
+        addEdge(dagGraph, table, view1);
+        addEdge(dagGraph, table, view2);
+        addEdge(dagGraph, view1, view3);
+        addEdge(dagGraph, view2, view3);
+
+        Map<Script, Long> finished = new ConcurrentHashMap<>();
+        Map<Script, Long> started = new ConcurrentHashMap<>();
+        DeploymentScheduler scheduler = new DeploymentScheduler(4, false);
+        DeploymentScheduler.Result result = scheduler.execute(List.of(table, view1, view2, view3), dagGraph, script -> {
+            started.put(script, System.nanoTime());
+            Thread.sleep(10);
+            finished.put(script, System.nanoTime());
+        });
+
+        assertEquals(4, result.getDeployedScripts().size());
+        assertTrue(result.getFailedScripts().isEmpty());
+        assertTrue(started.get(view1) >= finished.get(table), "VIEW1 started before TABLE1 finished");
+        assertTrue(started.get(view2) >= finished.get(table), "VIEW2 started before TABLE1 finished");
+        assertTrue(started.get(view3) >= finished.get(view1), "VIEW3 started before VIEW1 finished");
+        assertTrue(started.get(view3) >= finished.get(view2), "VIEW3 started before VIEW2 finished");
+    }
+
+    @Test
+    void executeRunsIndependentScriptsConcurrently() {
+        List<Script> scripts = List.of(mockScript("VIEW1"), mockScript("VIEW2"), mockScript("VIEW3"));
+        CountDownLatch allStarted = new CountDownLatch(scripts.size());
+        DeploymentScheduler scheduler = new DeploymentScheduler(3, false);
+        DeploymentScheduler.Result result = scheduler.execute(scripts, new HashMap<>(), script -> {
+            allStarted.countDown();
+            if(!allStarted.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Scripts were not started concurrently");
+            }
+        });
+
+        assertEquals(3, result.getDeployedScripts().size());
+        assertNull(result.getFirstFailure());
+    }
+
+    @Test
+    void executeSequentiallyKeepsSortedOrder() {
+        List<Script> scripts = List.of(mockScript("VIEW1"), mockScript("VIEW2"), mockScript("VIEW3"));
+        List<Script> executed = new ArrayList<>();
+        DeploymentScheduler scheduler = new DeploymentScheduler(1, false);
+        scheduler.execute(scripts, new HashMap<>(), executed::add);
+
+        assertEquals(scripts, executed);
+    }
+
+    @Test
+    void executeSkipsDependentsOfFailedScripts() {
+        Script table = mockScript("TABLE1");
+        Script view1 = mockScript("VIEW1");
+        Script view2 = mockScript("VIEW2");
+        Script other = mockScript("OTHER");
+        Map<Script, Set<Script>> dagGraph = new HashMap<>();
+        addEdge(dagGraph, table, view1);
+        addEdge(dagGraph, view1, view2);
+
+        List<Script> executed = new CopyOnWriteArrayList<>();
+        DeploymentScheduler scheduler = new DeploymentScheduler(2, true);
+        DeploymentScheduler.Result result = scheduler.execute(List.of(table, other, view1, view2), dagGraph, script -> {
+            executed.add(script);
+            if(script.equals(table)) {
+                throw new SQLException("Table creation failed");
+            }
+        });
+
+        assertEquals(Set.of(table, other), new HashSet<>(executed));
+        assertEquals(Set.of(table), result.getFailedScripts().keySet());
+        assertEquals(List.of(view1, view2), result.getSkippedScripts());
+        assertEquals(List.of(other), result.getDeployedScripts());
+        assertInstanceOf(SQLException.class, result.getFirstFailure());
+    }
+
+    @Test
+    void executeStopsStartingScriptsAfterFailure() {
+        List<Script> scripts = List.of(mockScript("VIEW1"), mockScript("VIEW2"), mockScript("VIEW3"));
+        List<Script> executed = new ArrayList<>();
+        DeploymentScheduler scheduler = new DeploymentScheduler(1, false);
+        DeploymentScheduler.Result result = scheduler.execute(scripts, new HashMap<>(), script -> {
+            executed.add(script);
+            if(script.equals(scripts.get(1))) {
+                throw new SQLException("View creation failed");
+            }
+        });
+
+        assertEquals(scripts.subList(0, 2), executed);
+        assertEquals(Set.of(scripts.get(1)), result.getFailedScripts().keySet());
+    }
+
+    @Test
+    void executeStartsLongestChainFirstWithSeveralSessions() {
+        Script view1 = mockScript("VIEW1");
+        Script view2 = mockScript("VIEW2");
+        Script view3 = mockScript("VIEW3");
+        Script table1 = mockScript("DT1");
+        Script table2 = mockScript("DT2");
+        Map<Script, Set<Script>> dagGraph = new HashMap<>();
+        addEdge(dagGraph, table1, table2);
+        Map<String, Long> durations = Map.of(view1.getId(), 10L, view2.getId(), 10L, view3.getId(), 10L, table1.getId(), 5000L, table2.getId(), 5000L);
+
+        List<Script> started = new CopyOnWriteArrayList<>();
+        CountDownLatch firstScripts = new CountDownLatch(2);
+        DeploymentScheduler scheduler = new DeploymentScheduler(2, false);
+        DeploymentScheduler.Result result = scheduler.execute(List.of(view1, view2, view3, table1, table2), dagGraph, script -> {
+            started.add(script);
+            // Hold the first two scripts until both started, so a quick script can not start another one before the second is recorded
+            firstScripts.countDown();
+            try {
+                firstScripts.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, durations);
+
+        assertEquals(5, result.getDeployedScripts().size());
+        assertTrue(started.subList(0, 2).contains(table1), "The head of the longest chain should start first: " + started);
+        assertFalse(started.subList(0, 2).contains(view2));
+    }
+
+    @Test
+    void criticalPathLengthsWeighUnknownScriptsByAverageDuration() {
+        List<Script> scripts = List.of(mockScript("TABLE1"), mockScript("VIEW1"), mockScript("VIEW2"), mockScript("VIEW3"));
+        List<List<Integer>> dependents = List.of(List.of(1, 2), List.of(3), List.of(), List.of());
+        int[] pendingDependencies = {0, 1, 1, 1};
+        Map<String, Long> durations = Map.of(scripts.get(0).getId(), 100L, scripts.get(1).getId(), 300L, scripts.get(2).getId(), 50L);
+
+        long[] lengths = DeploymentScheduler.criticalPathLengths(scripts, dependents, pendingDependencies, durations);
+
+        assertArrayEquals(new long[]{550, 450, 50, 150}, lengths);
+    }
+
+    @Test
+    void criticalPathLengthsWithoutHistoryCountScripts() {
+        List<Script> scripts = List.of(mockScript("TABLE1"), mockScript("VIEW1"), mockScript("VIEW2"));
+        List<List<Integer>> dependents = List.of(List.of(1), List.of(2), List.of());
+
+        long[] lengths = DeploymentScheduler.criticalPathLengths(scripts, dependents, new int[]{0, 1, 1}, Map.of());
+
+        assertArrayEquals(new long[]{3, 2, 1}, lengths);
+    }
+}
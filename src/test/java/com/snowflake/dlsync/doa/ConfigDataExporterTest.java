@@ -0,0 +1,74 @@
+package com.snowflake.dlsync.doa;
+
+import com.snowflake.dlsync.models.Migration;
+import com.snowflake.dlsync.parser.SqlTokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class ConfigDataExporterTest {
+
+    private ResultSet mockRows(int rowCount) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(metaData.getColumnCount()).thenReturn(2);
+        int[] row = {0};
+        when(resultSet.next()).thenAnswer(invocation -> ++row[0] <= rowCount);
+        when(resultSet.getObject(anyInt())).thenAnswer(invocation -> {
+            int column = invocation.getArgument(0);
+            if(column == 1) {
+                return row[0];
+            }
+            return row[0] % 2 == 0 ? null : "it's TEST_DB " + row[0];
+        });
+        return resultSet;
+    }
+
+    @Test
+    void rowsAreWrittenInChunkedVersions() throws SQLException, IOException {
+        StringWriter writer = new StringWriter();
+        long rows = new ConfigDataExporter(2, 1024).export(mockRows(5), "TEST_DB.TEST_SCHEMA.CONFIG", writer, UnaryOperator.identity());
+
+        assertEquals(5, rows);
+        List<Migration> migrations = SqlTokenizer.parseMigrationScripts(writer.toString().trim());
+        assertEquals(3, migrations.size());
+        assertTrue(migrations.get(0).getContent().contains("INSERT INTO TEST_DB.TEST_SCHEMA.CONFIG values ('1', 'it''s TEST_DB 1'), ('2', null);"));
+        assertTrue(migrations.get(2).getContent().contains("INSERT INTO TEST_DB.TEST_SCHEMA.CONFIG values ('5', 'it''s TEST_DB 5');"));
+        assertEquals("DELETE FROM TEST_DB.TEST_SCHEMA.CONFIG;", migrations.get(0).getRollback());
+        assertNull(migrations.get(1).getRollback());
+        assertEquals(3L, migrations.get(2).getVersion());
+    }
+
+    @Test
+    void statementLengthLimitsChunks() throws SQLException, IOException {
+        StringWriter writer = new StringWriter();
+        new ConfigDataExporter(1000, 10).export(mockRows(3), "CONFIG", writer, UnaryOperator.identity());
+        assertEquals(3, SqlTokenizer.parseMigrationScripts(writer.toString().trim()).size());
+    }
+
+    @Test
+    void eachVersionIsTransformed() throws SQLException, IOException {
+        StringWriter writer = new StringWriter();
+        new ConfigDataExporter(1, 1024).export(mockRows(2), "TEST_DB.TEST_SCHEMA.CONFIG", writer, content -> content.replace("TEST_DB", "${db}"));
+        assertFalse(writer.toString().contains("TEST_DB"));
+        assertEquals(2, writer.toString().split("\\$\\{db\\}\\.TEST_SCHEMA\\.CONFIG values").length - 1);
+    }
+
+    @Test
+    void emptyTableWritesNothing() throws SQLException, IOException {
+        StringWriter writer = new StringWriter();
+        assertEquals(0, new ConfigDataExporter().export(mockRows(0), "CONFIG", writer, UnaryOperator.identity()));
+        assertEquals("", writer.toString());
+    }
+}
@@ -0,0 +1,69 @@
+package com.snowflake.dlsync.doa;
+
+import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.models.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeploymentPlanFileTest {
+
+    @Test
+    void savedPlanRestoresScriptsAndDependencies(@TempDir Path directory) throws IOException {
+        AccountScript role = ScriptFactory.getAccountScript("main/ACCOUNT/ROLES/APP_ROLE.SQL", ScriptObjectType.ROLES, "APP_ROLE", "CREATE OR REPLACE ROLE APP_ROLE;");
+        SchemaScript table = ScriptFactory.getSchemaScript("main/DB/SCHEMA/TABLES/ORDERS.SQL", "DB", "SCHEMA", ScriptObjectType.TABLES, "ORDERS", "---version: 1\nCREATE TABLE ORDERS(ID INT);");
+        MigrationScript tableV1 = ScriptFactory.getMigrationScript(table, "CREATE TABLE ORDERS(ID INT);", 1L, "dev", "DROP TABLE ORDERS;", "SELECT * FROM ORDERS;");
+        MigrationScript tableV2 = ScriptFactory.getMigrationScript(table, "ALTER TABLE ORDERS ADD COLUMN NAME VARCHAR;", 2L, null, null, null);
+        SchemaScript view = ScriptFactory.getSchemaScript("main/DB/SCHEMA/VIEWS/ORDER_VIEW.SQL", "DB", "SCHEMA", ScriptObjectType.VIEWS, "ORDER_VIEW", "CREATE OR REPLACE VIEW ORDER_VIEW AS SELECT * FROM ORDERS;");
+        List<Script> sortedScripts = List.of(role, tableV1, tableV2, view);
+        Map<Script, Integer> levels = Map.of(role, 0, tableV1, 0, tableV2, 1, view, 2);
+        Map<Script, Set<Script>> dagGraph = Map.of(tableV1, Set.of(tableV2, view), tableV2, Set.of(view));
+
+        DeploymentPlanFile planFile = new DeploymentPlanFile(directory.resolve("plan").resolve("deployment-plan.json.gz"));
+        planFile.save(DeploymentPlanFile.createPlan(sortedScripts, levels, dagGraph, "abc123"));
+        DeploymentPlan plan = planFile.load();
+        List<Script> scripts = DeploymentPlanFile.toScripts(plan);
+
+        assertEquals(DeploymentPlanFile.PLAN_VERSION, plan.getVersion());
+        assertEquals("abc123", plan.getCommitId());
+        assertEquals(List.of(1, 2), plan.getScripts().get(3).getDependencies());
+        assertEquals(2, plan.getScripts().get(3).getLevel());
+        assertNull(plan.getScripts().get(0).getDependencies());
+        assertEquals(4, scripts.size());
+        for(int i = 0; i < scripts.size(); i++) {
+            Script expected = sortedScripts.get(i);
+            Script actual = scripts.get(i);
+            assertEquals(expected.getClass(), actual.getClass());
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getHash(), actual.getHash());
+            assertEquals(expected.getContent(), actual.getContent());
+            assertEquals(expected.getScriptPath(), actual.getScriptPath());
+        }
+        MigrationScript restoredV1 = (MigrationScript) scripts.get(1);
+        assertEquals("DROP TABLE ORDERS;", restoredV1.getRollback());
+        assertEquals("SELECT * FROM ORDERS;", restoredV1.getVerify());
+        assertEquals("dev", restoredV1.getAuthor());
+        assertSame(restoredV1.getParentScript(), ((MigrationScript) scripts.get(2)).getParentScript());
+    }
+
+    @Test
+    void planOfAnotherVersionFailsTheLoad(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("deployment-plan.json.gz");
+        try(OutputStream output = new GZIPOutputStream(Files.newOutputStream(file))) {
+            output.write("{\"version\":99,\"scripts\":[]}".getBytes());
+        }
+
+        IOException error = assertThrows(IOException.class, () -> new DeploymentPlanFile(file).load());
+        assertTrue(error.getMessage().contains("version 99"));
+    }
+}
@@ -0,0 +1,97 @@
+package com.snowflake.dlsync.doa;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class GitChangeDetectorTest {
+
+    @TempDir
+    Path repository;
+
+    private Path scriptRoot;
+    private GitChangeDetector detector;
+
+    private boolean git(Path directory, String... args) throws IOException, InterruptedException {
+        String[] command = new String[args.length + 5];
+        command[0] = "git";
+        command[1] = "-c";
+        command[2] = "user.name=tester";
+        command[3] = "-c";
+        command[4] = "user.email=tester@example.com";
+        System.arraycopy(args, 0, command, 5, args.length);
+        Process process = new ProcessBuilder(command).directory(directory.toFile()).redirectErrorStream(true).start();
+        process.getInputStream().readAllBytes();
+        return process.waitFor() == 0;
+    }
+
+    private void writeScript(String relativePath, String content) throws IOException {
+        Path file = scriptRoot.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    @BeforeEach
+    void setUp() throws IOException, InterruptedException {
+        assumeTrue(git(repository, "init", "-q"), "git is not available");
+        scriptRoot = repository.resolve("scripts");
+        writeScript("main/TEST_DB/TEST_SCHEMA/VIEWS/VIEW1.SQL", "CREATE OR REPLACE VIEW TEST_DB.TEST_SCHEMA.VIEW1 AS SELECT 1;");
+        writeScript("main/TEST_DB/TEST_SCHEMA/VIEWS/VIEW2.SQL", "CREATE OR REPLACE VIEW TEST_DB.TEST_SCHEMA.VIEW2 AS SELECT 2;");
+        writeScript("config.yaml", "version: 1\n");
+        Files.writeString(repository.resolve("README.md"), "outside of the script root");
+        assertTrue(git(repository, "add", "-A"));
+        assertTrue(git(repository, "commit", "-q", "-m", "initial"));
+        detector = new GitChangeDetector(scriptRoot, Set.of("config.yaml"));
+    }
+
+    @Test
+    void changedFilesSinceCommit() throws IOException, InterruptedException {
+        String initialCommit = detector.getHeadCommit();
+        assertNotNull(initialCommit);
+        assertTrue(detector.isClean());
+
+        writeScript("main/TEST_DB/TEST_SCHEMA/VIEWS/VIEW1.SQL", "CREATE OR REPLACE VIEW TEST_DB.TEST_SCHEMA.VIEW1 AS SELECT 10;");
+        Files.writeString(repository.resolve("README.md"), "changed outside of the script root");
+        assertTrue(git(repository, "commit", "-q", "-a", "-m", "change view1"));
+        writeScript("main/TEST_DB/TEST_SCHEMA/VIEWS/VIEW3.SQL", "CREATE OR REPLACE VIEW TEST_DB.TEST_SCHEMA.VIEW3 AS SELECT 3;");
+
+        assertFalse(detector.isClean(), "Untracked scripts should make the script root dirty");
+        Set<Path> changedFiles = detector.getChangedFiles(initialCommit);
+        assertEquals(Set.of(scriptRoot.resolve("main/TEST_DB/TEST_SCHEMA/VIEWS/VIEW1.SQL"), scriptRoot.resolve("main/TEST_DB/TEST_SCHEMA/VIEWS/VIEW3.SQL")), changedFiles);
+    }
+
+    @Test
+    void localStateDirectoryIsIgnored() throws IOException {
+        writeScript(".dlsync/script-cache.json", "{}");
+        assertTrue(detector.isClean());
+        assertTrue(detector.getChangedFiles(detector.getHeadCommit()).isEmpty());
+    }
+
+    @Test
+    void configChangeRequiresFullScan() throws IOException {
+        String initialCommit = detector.getHeadCommit();
+        writeScript("config.yaml", "version: 2\n");
+        assertNull(detector.getChangedFiles(initialCommit));
+    }
+
+    @Test
+    void unknownCommitRequiresFullScan() {
+        assertNull(detector.getChangedFiles(null));
+        assertNull(detector.getChangedFiles("0123456789abcdef0123456789abcdef01234567"));
+    }
+
+    @Test
+    void scriptRootOutsideRepository(@TempDir Path directory) {
+        GitChangeDetector outside = new GitChangeDetector(directory, Set.of());
+        assertNull(outside.getHeadCommit());
+        assertFalse(outside.isClean());
+    }
+}
@@ -0,0 +1,149 @@
+package com.snowflake.dlsync.doa;
+
+import com.snowflake.dlsync.models.MigrationScript;
+import com.snowflake.dlsync.models.Script;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptFileCacheTest {
+
+    @TempDir
+    Path scriptRoot;
+
+    private Path viewFile;
+    private Path tableFile;
+    private Path cacheFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        viewFile = writeScript("VIEWS", "VIEW1.SQL", "CREATE OR REPLACE VIEW TEST_DB.TEST_SCHEMA.VIEW1 AS SELECT * FROM TABLE1;");
+        tableFile = writeScript("TABLES", "TABLE1.SQL", "---version: 0, author: tester\nCREATE TABLE TEST_DB.TEST_SCHEMA.TABLE1 (ID INT);\n---rollback: DROP TABLE TEST_DB.TEST_SCHEMA.TABLE1;\n" +
+                "---version: 1, author: tester\nALTER TABLE TEST_DB.TEST_SCHEMA.TABLE1 ADD COLUMN NAME VARCHAR;\n---rollback: ALTER TABLE TEST_DB.TEST_SCHEMA.TABLE1 DROP COLUMN NAME;\n");
+        cacheFile = scriptRoot.resolve(".dlsync").resolve("script-cache.json");
+    }
+
+    private Path writeScript(String type, String name, String content) throws IOException {
+        Path directory = scriptRoot.resolve("TEST_DB").resolve("TEST_SCHEMA").resolve(type);
+        Files.createDirectories(directory);
+        Path file = directory.resolve(name);
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+        return file;
+    }
+
+    private Map<String, Script> readScripts() throws IOException {
+        ScriptSource scriptSource = new ScriptSource(scriptRoot.toString(), new ScriptFileCache(cacheFile));
+        return scriptSource.getAllScripts().stream().collect(Collectors.toMap(Script::getId, Function.identity()));
+    }
+
+    @Test
+    void cachedScriptsMatchParsedScripts() throws IOException {
+        Map<String, Script> parsed = new ScriptSource(scriptRoot.toString()).getAllScripts().stream().collect(Collectors.toMap(Script::getId, Function.identity()));
+        readScripts();
+        assertTrue(Files.exists(cacheFile));
+
+        Map<String, Script> cached = readScripts();
+        assertEquals(parsed.keySet(), cached.keySet());
+        for(Script script: parsed.values()) {
+            Script cachedScript = cached.get(script.getId());
+            assertEquals(script.getHash(), cachedScript.getHash());
+            assertEquals(script.getObjectType(), cachedScript.getObjectType());
+            assertEquals(script.getContent(), cachedScript.getContent());
+            if(script instanceof MigrationScript) {
+                assertEquals(((MigrationScript) script).getRollback(), ((MigrationScript) cachedScript).getRollback());
+                assertEquals(((MigrationScript) script).getAuthor(), ((MigrationScript) cachedScript).getAuthor());
+            }
+        }
+    }
+
+    @Test
+    void unchangedFilesAreNotReadAgain() throws IOException {
+        String hash = readScripts().get("TEST_DB.TEST_SCHEMA.VIEW1").getHash();
+        FileTime modifiedTime = Files.getLastModifiedTime(viewFile);
+        Files.writeString(viewFile, "CREATE OR REPLACE VIEW TEST_DB.TEST_SCHEMA.VIEW1 AS SELECT * FROM TABLE2;");
+        Files.setLastModifiedTime(viewFile, modifiedTime);
+
+        Script cached = readScripts().get("TEST_DB.TEST_SCHEMA.VIEW1");
+        assertEquals(hash, cached.getHash(), "Hash should come from the cache when size and modification time match");
+        assertThrows(RuntimeException.class, cached::getContent, "Content that no longer matches the cached hash must not be used");
+    }
+
+    @Test
+    void cachedMigrationFileIsReadOnceForAllVersions() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for(int version = 0; version < 50; version++) {
+            content.append("---version: ").append(version).append(", author: tester\nALTER TABLE TEST_DB.TEST_SCHEMA.TABLE1 ADD COLUMN COLUMN").append(version).append(" INT;\n");
+        }
+        writeScript("TABLES", "TABLE1.SQL", content.toString());
+        Map<String, Script> parsed = readScripts();
+
+        AtomicInteger reads = new AtomicInteger();
+        ScriptSource scriptSource = new ScriptSource(scriptRoot.toString(), new ScriptFileCache(cacheFile)) {
+            @Override
+            String readFile(File file) throws IOException {
+                if(file.toPath().equals(tableFile)) {
+                    reads.incrementAndGet();
+                }
+                return super.readFile(file);
+            }
+        };
+        List<Script> migrations = scriptSource.getAllScripts().stream().filter(script -> script instanceof MigrationScript).collect(Collectors.toList());
+        assertEquals(0, reads.get(), "Cached migrations should not read the file before their content is needed");
+
+        assertEquals(50, migrations.size());
+        for(Script migration: migrations) {
+            assertEquals(parsed.get(migration.getId()).getContent(), migration.getContent());
+        }
+        assertEquals(1, reads.get(), "All versions should be loaded from a single read of the file");
+    }
+
+    @Test
+    void modifiedFilesAreParsedAgain() throws IOException {
+        Map<String, Script> before = readScripts();
+        writeScript("VIEWS", "VIEW1.SQL", "CREATE OR REPLACE VIEW TEST_DB.TEST_SCHEMA.VIEW1 AS SELECT ID FROM TABLE1;");
+        writeScript("TABLES", "TABLE1.SQL", Files.readString(tableFile) + "---version: 2, author: tester\nALTER TABLE TEST_DB.TEST_SCHEMA.TABLE1 ADD COLUMN AGE INT;\n");
+
+        Map<String, Script> after = readScripts();
+        assertNotEquals(before.get("TEST_DB.TEST_SCHEMA.VIEW1").getHash(), after.get("TEST_DB.TEST_SCHEMA.VIEW1").getHash());
+        assertTrue(after.get("TEST_DB.TEST_SCHEMA.VIEW1").getContent().contains("SELECT ID"));
+        assertTrue(after.containsKey("TEST_DB.TEST_SCHEMA.TABLE1:2"));
+    }
+
+    @Test
+    void recentlyModifiedFilesAreNotTrusted() throws IOException {
+        Files.setLastModifiedTime(viewFile, FileTime.fromMillis(System.currentTimeMillis()));
+        readScripts();
+        FileTime modifiedTime = Files.getLastModifiedTime(viewFile);
+        Files.writeString(viewFile, "CREATE OR REPLACE VIEW TEST_DB.TEST_SCHEMA.VIEW1 AS SELECT * FROM TABLE2;");
+        Files.setLastModifiedTime(viewFile, modifiedTime);
+
+        Script script = readScripts().get("TEST_DB.TEST_SCHEMA.VIEW1");
+        assertTrue(script.getContent().contains("TABLE2"));
+    }
+
+    @Test
+    void corruptCacheIsIgnored() throws IOException {
+        Files.createDirectories(cacheFile.getParent());
+        Files.writeString(cacheFile, "{\"version\": 1, \"entries\": {");
+
+        Map<String, Script> scripts = readScripts();
+        assertEquals(List.of("TEST_DB.TEST_SCHEMA.TABLE1:0", "TEST_DB.TEST_SCHEMA.TABLE1:1", "TEST_DB.TEST_SCHEMA.VIEW1"),
+                scripts.keySet().stream().sorted().collect(Collectors.toList()));
+        assertFalse(Files.readString(cacheFile).endsWith("{"), "Corrupt cache should be replaced");
+    }
+}
@@ -0,0 +1,56 @@
+package com.snowflake.dlsync.doa;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptFileWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void queuedFilesAreWrittenAsUtf8() throws IOException {
+        try (ScriptFileWriter scriptFileWriter = new ScriptFileWriter(2)) {
+            for(int i = 0; i < 20; i++) {
+                scriptFileWriter.submit(directory.resolve("SCHEMA" + (i % 3)).resolve("VIEW" + i + ".SQL"), "CREATE VIEW VIEW" + i + " AS SELECT '\u00e9t\u00e9 " + i + "';");
+            }
+        }
+        for(int i = 0; i < 20; i++) {
+            Path file = directory.resolve("SCHEMA" + (i % 3)).resolve("VIEW" + i + ".SQL");
+            assertEquals("CREATE VIEW VIEW" + i + " AS SELECT '\u00e9t\u00e9 " + i + "';", Files.readString(file, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void failedContentLeavesExistingFileUnchanged() throws IOException {
+        Path file = directory.resolve("TABLE1.SQL");
+        Files.writeString(file, "original");
+        assertThrows(SQLException.class, () -> ScriptFileWriter.writeAtomically(file, writer -> {
+            writer.write("partial");
+            throw new SQLException("export failed");
+        }));
+        assertEquals("original", Files.readString(file));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.collect(Collectors.toList()).size(), "Temporary files should be removed");
+        }
+    }
+
+    @Test
+    void writeFailureIsReportedOnClose() throws IOException {
+        Path blocker = directory.resolve("blocker");
+        Files.writeString(blocker, "not a directory");
+        ScriptFileWriter scriptFileWriter = new ScriptFileWriter();
+        scriptFileWriter.submit(blocker.resolve("VIEW1.SQL"), "CREATE VIEW VIEW1 AS SELECT 1;");
+        assertThrows(IOException.class, scriptFileWriter::close);
+    }
+}
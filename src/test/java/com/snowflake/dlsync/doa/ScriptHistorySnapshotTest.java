@@ -0,0 +1,59 @@
+package com.snowflake.dlsync.doa;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptHistorySnapshotTest {
+
+    @Test
+    void savedSnapshotIsLoadedBack(@TempDir Path directory) throws IOException {
+        ScriptHistorySnapshot historySnapshot = new ScriptHistorySnapshot(directory.resolve("snapshot").resolve("target.json"));
+
+        historySnapshot.save(Map.of("DB.SCHEMA.VIEW1", "hash1", "DB.SCHEMA.TABLE1:1", "hash2"), "abc123");
+        ScriptHistorySnapshot.Snapshot snapshot = historySnapshot.load();
+
+        assertEquals("abc123", snapshot.getCommitId());
+        assertEquals(Map.of("DB.SCHEMA.VIEW1", "hash1", "DB.SCHEMA.TABLE1:1", "hash2"), snapshot.getScriptHashes());
+        assertTrue(snapshot.getSavedAt() > 0);
+    }
+
+    @Test
+    void missingSnapshotFailsTheLoad(@TempDir Path directory) {
+        ScriptHistorySnapshot historySnapshot = new ScriptHistorySnapshot(directory.resolve("target.json"));
+
+        assertThrows(IOException.class, historySnapshot::load);
+    }
+
+    @Test
+    void snapshotOfAnotherVersionFailsTheLoad(@TempDir Path directory) throws IOException {
+        Path snapshotFile = directory.resolve("target.json");
+        Files.writeString(snapshotFile, "{\"version\":0,\"scriptHashes\":{}}");
+
+        assertThrows(IOException.class, () -> new ScriptHistorySnapshot(snapshotFile).load());
+    }
+
+    @Test
+    void everyTargetHasItsOwnSnapshot(@TempDir Path directory) {
+        Properties dev = new Properties();
+        dev.setProperty("account", "acme");
+        dev.setProperty("db", "DEV_DB");
+        dev.setProperty("schema", "DLSYNC");
+        Properties prod = new Properties();
+        prod.setProperty("account", "acme");
+        prod.setProperty("db", "PROD_DB");
+        prod.setProperty("schema", "DLSYNC");
+
+        Path devFile = ScriptHistorySnapshot.forTarget(directory, dev).getSnapshotFile();
+
+        assertEquals(directory.resolve("acme.dev_db.dlsync.json"), devFile);
+        assertNotEquals(devFile, ScriptHistorySnapshot.forTarget(directory, prod).getSnapshotFile());
+    }
+}
@@ -0,0 +1,166 @@
+package com.snowflake.dlsync.doa;
+
+import com.snowflake.dlsync.models.MigrationScript;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import com.snowflake.dlsync.models.SchemaScript;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ScriptMetadataWriterTest {
+
+    @Mock
+    private Connection mockConnection;
+
+    @Mock
+    private PreparedStatement mockPreparedStatement;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        MockitoAnnotations.openMocks(this);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
+        when(mockConnection.getAutoCommit()).thenReturn(true);
+        when(mockPreparedStatement.executeUpdate()).thenReturn(1);
+    }
+
+    private SchemaScript mockScript(String name) {
+        SchemaScript script = new SchemaScript("test/" + name + ".sql", "TEST_DB", "TEST_SCHEMA", name, ScriptObjectType.VIEWS, "CREATE OR REPLACE VIEW " + name + " AS SELECT 1;");
+        script.setHash(name + "_HASH");
+        return script;
+    }
+
+    private ScriptMetadataWriter createWriter(int batchSize, MetadataJournal journal) {
+        return new ScriptMetadataWriter(new SessionPool(mockConnection), "DB.SCHEMA.HISTORY", "DB.SCHEMA.EVENT", batchSize, journal);
+    }
+
+    @Test
+    void recordsAreWrittenInBatches() throws SQLException, IOException {
+        MetadataJournal journal = new MetadataJournal(tempDir.resolve("journal.jsonl"));
+        ScriptMetadataWriter writer = createWriter(3, journal);
+
+        writer.recordDeployment(mockScript("VIEW1"), 1L);
+        writer.recordDeployment(mockScript("VIEW2"), 1L);
+        verify(mockConnection, never()).prepareStatement(anyString());
+        assertEquals(4, journal.readEntries().size());
+
+        writer.recordDeployment(mockScript("VIEW3"), 1L);
+        ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+        verify(mockConnection, times(2)).prepareStatement(sqlCaptor.capture());
+        List<String> statements = sqlCaptor.getAllValues();
+        assertTrue(statements.get(0).startsWith("MERGE INTO DB.SCHEMA.HISTORY"));
+        assertEquals(3, statements.get(0).split("\\(\\?, \\?, \\?, \\?, \\?, \\?, \\?\\)").length - 1);
+        assertTrue(statements.get(1).startsWith("INSERT INTO DB.SCHEMA.EVENT"));
+        verify(mockConnection, times(1)).commit();
+        verify(mockConnection).setAutoCommit(true);
+        assertTrue(journal.readEntries().isEmpty(), "Journal should be cleared after a successful flush");
+    }
+
+    @Test
+    void flushWritesPendingRecords() throws SQLException {
+        ScriptMetadataWriter writer = createWriter(50, new MetadataJournal(tempDir.resolve("journal.jsonl")));
+        writer.recordEvent(mockScript("VIEW1"), "ERROR", "failed", 1L);
+        verify(mockConnection, never()).prepareStatement(anyString());
+
+        writer.flush();
+        verify(mockConnection, times(1)).prepareStatement(anyString());
+        verify(mockConnection, times(1)).commit();
+
+        writer.flush();
+        verify(mockConnection, times(1)).commit();
+    }
+
+    @Test
+    void rollbackOverridesPendingDeploymentOfSameScript() throws SQLException {
+        ScriptMetadataWriter writer = createWriter(50, new MetadataJournal(tempDir.resolve("journal.jsonl")));
+        MigrationScript migration = new MigrationScript(mockScript("T1"), "CREATE TABLE T1;", 0L, "admin", "DROP TABLE T1;", null);
+        writer.recordDeployment(migration, 1L);
+        writer.recordRollback(migration, 1L);
+        writer.flush();
+
+        ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+        verify(mockConnection, times(2)).prepareStatement(sqlCaptor.capture());
+        assertTrue(sqlCaptor.getAllValues().get(0).startsWith("DELETE FROM DB.SCHEMA.HISTORY"));
+        assertTrue(sqlCaptor.getAllValues().get(1).startsWith("INSERT INTO DB.SCHEMA.EVENT"));
+    }
+
+    @Test
+    void eventsCarryExecutionTimeAndQueryId() throws SQLException, IOException {
+        MetadataJournal journal = new MetadataJournal(tempDir.resolve("journal.jsonl"));
+        ScriptMetadataWriter writer = createWriter(50, journal);
+        writer.recordDeployment(mockScript("VIEW1"), 1L, 1250L, "01b2-query-id");
+        assertEquals(1250L, journal.readEntries().get(1).getEvent().getExecutionMs());
+        writer.flush();
+
+        ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+        verify(mockConnection, times(2)).prepareStatement(sqlCaptor.capture());
+        assertTrue(sqlCaptor.getAllValues().get(1).contains("(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"));
+        verify(mockPreparedStatement).setObject(9, 1250L);
+        verify(mockPreparedStatement).setString(10, "01b2-query-id");
+    }
+
+    @Test
+    void recordsAreWrittenImmediatelyWithoutJournal() throws SQLException {
+        ScriptMetadataWriter writer = createWriter(50, null);
+        writer.recordDeployment(mockScript("VIEW1"), 1L);
+        verify(mockConnection, times(2)).prepareStatement(anyString());
+        verify(mockConnection, times(1)).commit();
+    }
+
+    @Test
+    void failedFlushKeepsJournalForRecovery() throws SQLException, IOException {
+        MetadataJournal journal = new MetadataJournal(tempDir.resolve("journal.jsonl"));
+        ScriptMetadataWriter writer = createWriter(50, journal);
+        writer.recordDeployment(mockScript("VIEW1"), 1L);
+        writer.recordEvent(mockScript("VIEW2"), "ERROR", "failed", 1L);
+
+        when(mockPreparedStatement.executeUpdate()).thenThrow(new SQLException("connection lost"));
+        assertThrows(SQLException.class, writer::flush);
+        verify(mockConnection).rollback();
+        journal.close();
+
+        reset(mockPreparedStatement);
+        when(mockPreparedStatement.executeUpdate()).thenReturn(1);
+        MetadataJournal reopened = new MetadataJournal(tempDir.resolve("journal.jsonl"));
+        assertEquals(3, reopened.readEntries().size());
+
+        ScriptMetadataWriter recovered = createWriter(50, reopened);
+        recovered.recover();
+        ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+        verify(mockConnection, atLeastOnce()).prepareStatement(sqlCaptor.capture());
+        String eventSql = sqlCaptor.getValue();
+        assertTrue(eventSql.startsWith("MERGE INTO DB.SCHEMA.EVENT"), "Replayed events should be merged on their id");
+        assertTrue(reopened.readEntries().isEmpty());
+    }
+
+    @Test
+    void journalIgnoresUnreadableRecords() throws IOException {
+        Path journalFile = tempDir.resolve("journal.jsonl");
+        MetadataJournal journal = new MetadataJournal(journalFile);
+        ScriptMetadataWriter writer = createWriter(50, journal);
+        assertDoesNotThrow(() -> writer.recordEvent(mockScript("VIEW1"), "SUCCESS", "ok", 1L));
+        Files.writeString(journalFile, "{\"type\":\"EVENT\",\"event\":{\"id\":", StandardOpenOption.APPEND);
+
+        List<MetadataJournal.Entry> entries = journal.readEntries();
+        assertEquals(1, entries.size());
+        assertEquals("VIEW1", entries.get(0).getEvent().getObjectName().replace("TEST_DB.TEST_SCHEMA.", ""));
+    }
+}
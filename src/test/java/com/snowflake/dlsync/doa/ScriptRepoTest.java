@@ -1,14 +1,22 @@
 package com.snowflake.dlsync.doa;
 
 import com.snowflake.dlsync.models.*;
+import net.snowflake.client.jdbc.SnowflakeSQLException;
+import net.snowflake.client.jdbc.SnowflakeStatement;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.IOException;
 import java.sql.*;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -173,6 +181,203 @@ class ScriptRepoTest {
         verify(mockConnection, atLeastOnce()).commit();
     }
 
+    @Test
+    void testFailedScriptRecordsErrorEventWithSingleSession() throws SQLException {
+        SchemaScript script = new SchemaScript("test/MY_VIEW.sql", "TEST_DB", "TEST_SCHEMA", "MY_VIEW", ScriptObjectType.VIEWS, "CREATE VIEW MY_VIEW AS SELECT * FROM MISSING;");
+        script.setHash("failing_hash");
+        when(mockStatement.execute(anyString())).thenThrow(new SQLException("Object MISSING does not exist"));
+
+        SQLException error = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(SQLException.class, () -> scriptRepo.createScriptObject(script, false)));
+
+        assertEquals("Object MISSING does not exist", error.getMessage());
+        verify(mockPreparedStatement).setString(5, "ERROR");
+    }
+
+    @Test
+    void testCreateScriptObjectRecordsQueryIdAndExecutionTime() throws SQLException {
+        SchemaScript script = new SchemaScript("test/MY_VIEW.sql", "TEST_DB", "TEST_SCHEMA", "MY_VIEW", ScriptObjectType.VIEWS, "CREATE VIEW MY_VIEW AS SELECT 1;");
+        script.setHash("view_hash");
+        SnowflakeStatement snowflakeStatement = mock(SnowflakeStatement.class);
+        when(snowflakeStatement.getQueryID()).thenReturn("01b2-query-id");
+        when(mockStatement.isWrapperFor(SnowflakeStatement.class)).thenReturn(true);
+        when(mockStatement.unwrap(SnowflakeStatement.class)).thenReturn(snowflakeStatement);
+
+        scriptRepo.createScriptObject(script, false);
+
+        ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+        verify(mockConnection, atLeastOnce()).prepareStatement(sqlCaptor.capture());
+        assertTrue(sqlCaptor.getValue().contains("EXECUTION_MS, QUERY_ID"));
+        verify(mockPreparedStatement).setObject(eq(9), any(Long.class));
+        verify(mockPreparedStatement).setString(10, "01b2-query-id");
+    }
+
+    @Test
+    void testFailedScriptRecordsQueryIdOfTheError() throws SQLException {
+        SchemaScript script = new SchemaScript("test/MY_VIEW.sql", "TEST_DB", "TEST_SCHEMA", "MY_VIEW", ScriptObjectType.VIEWS, "CREATE VIEW MY_VIEW AS SELECT;");
+        script.setHash("view_hash");
+        when(mockStatement.execute(anyString())).thenThrow(new SnowflakeSQLException("01b2-failed-query", "syntax error", "42000"));
+
+        assertThrows(SQLException.class, () -> scriptRepo.createScriptObject(script, false));
+
+        verify(mockPreparedStatement).setString(5, "ERROR");
+        verify(mockPreparedStatement).setString(10, "01b2-failed-query");
+    }
+
+    @Test
+    void testGetSlowestObjectsReadsCompilationAndQueueTimesByQueryId() throws SQLException {
+        PreparedStatement eventsStatement = mock(PreparedStatement.class);
+        PreparedStatement historyStatement = mock(PreparedStatement.class);
+        ResultSet eventsResult = mock(ResultSet.class);
+        ResultSet historyResult = mock(ResultSet.class);
+        when(mockConnection.prepareStatement(contains("DL_SYNC_SCRIPT_EVENT"))).thenReturn(eventsStatement);
+        when(mockConnection.prepareStatement(contains("QUERY_HISTORY"))).thenReturn(historyStatement);
+        when(eventsStatement.executeQuery()).thenReturn(eventsResult);
+        when(historyStatement.executeQuery()).thenReturn(historyResult);
+        when(eventsResult.next()).thenReturn(true, false);
+        when(eventsResult.getString("SCRIPT_ID")).thenReturn("TEST_DB.TEST_SCHEMA.MY_VIEW");
+        when(eventsResult.getString("OBJECT_NAME")).thenReturn("TEST_DB.TEST_SCHEMA.MY_VIEW");
+        when(eventsResult.getString("OBJECT_TYPE")).thenReturn("VIEWS");
+        when(eventsResult.getLong("EXECUTIONS")).thenReturn(3L);
+        when(eventsResult.getLong("TOTAL_MS")).thenReturn(9000L);
+        when(eventsResult.getLong("MAX_MS")).thenReturn(5000L);
+        when(eventsResult.getString("SLOWEST_QUERY_ID")).thenReturn("01b2-slow");
+        when(historyResult.next()).thenReturn(true, false);
+        when(historyResult.getString("QUERY_ID")).thenReturn("01b2-slow");
+        when(historyResult.getLong("COMPILATION_TIME")).thenReturn(1200L);
+        when(historyResult.getLong("QUEUED_TIME")).thenReturn(300L);
+        when(historyResult.getLong("EXECUTION_TIME")).thenReturn(3400L);
+
+        List<ObjectExecutionTime> objects = scriptRepo.getSlowestObjects(10, 5);
+
+        verify(mockConnection).prepareStatement(contains("WHERE CHANGE_TYPE = 'DEPLOY'"));
+        verify(eventsStatement).setInt(1, 10);
+        verify(eventsStatement).setInt(2, 5);
+        verify(historyStatement).setString(1, "01b2-slow");
+        assertEquals(1, objects.size());
+        assertEquals(9000L, objects.get(0).getTotalMs());
+        assertEquals(1200L, objects.get(0).getCompilationMs());
+        assertEquals(300L, objects.get(0).getQueuedMs());
+        assertEquals(3400L, objects.get(0).getWarehouseExecutionMs());
+    }
+
+    @Test
+    void testGetSlowestObjectsWithoutQueryHistoryAccess() throws SQLException {
+        PreparedStatement eventsStatement = mock(PreparedStatement.class);
+        ResultSet eventsResult = mock(ResultSet.class);
+        when(mockConnection.prepareStatement(contains("DL_SYNC_SCRIPT_EVENT"))).thenReturn(eventsStatement);
+        when(mockConnection.prepareStatement(contains("QUERY_HISTORY"))).thenThrow(new SQLException("Insufficient privileges"));
+        when(eventsStatement.executeQuery()).thenReturn(eventsResult);
+        when(eventsResult.next()).thenReturn(true, false);
+        when(eventsResult.getString("SLOWEST_QUERY_ID")).thenReturn("01b2-slow");
+        when(eventsResult.getLong("MAX_MS")).thenReturn(5000L);
+
+        List<ObjectExecutionTime> objects = scriptRepo.getSlowestObjects(10, 5);
+
+        assertEquals(1, objects.size());
+        assertEquals(5000L, objects.get(0).getMaxMs());
+        assertNull(objects.get(0).getCompilationMs());
+    }
+
+    @Test
+    void testRepoConnectsAndChecksTablesOnFirstUse() throws SQLException {
+        AtomicInteger sessionsOpened = new AtomicInteger();
+        SessionPool sessionPool = new SessionPool(2, () -> {
+            sessionsOpened.incrementAndGet();
+            return mockConnection;
+        });
+        clearInvocations(mockStatement);
+        when(mockResultSet.next()).thenReturn(true);
+
+        ScriptRepo lazyRepo = new ScriptRepo(sessionPool, new Properties());
+        assertEquals(0, sessionsOpened.get());
+        verifyNoInteractions(mockStatement);
+
+        lazyRepo.insertChangeSync(ChangeType.DEPLOY, Status.IN_PROGRESS, "Test deployment");
+        lazyRepo.getLastSyncedCommit();
+
+        assertEquals(1, sessionsOpened.get());
+        verify(mockStatement, times(1)).executeQuery("select current_database(), current_schema();");
+    }
+
+    @Test
+    void testCloseClosesOnlySessionsOpenedByThePool() throws SQLException {
+        Connection openedSession = mock(Connection.class);
+        when(openedSession.createStatement()).thenReturn(mockStatement);
+        when(openedSession.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
+        when(mockResultSet.next()).thenReturn(true);
+        ScriptRepo pooledRepo = new ScriptRepo(new SessionPool(1, () -> openedSession), new Properties());
+        pooledRepo.insertChangeSync(ChangeType.DEPLOY, Status.IN_PROGRESS, "Test deployment");
+
+        pooledRepo.close();
+        scriptRepo.close();
+
+        verify(openedSession).close();
+        verify(mockConnection, never()).close();
+    }
+
+    @Test
+    void testUpdateChangeSyncWithoutChangeSyncDoesNotConnect() throws SQLException {
+        SessionPool sessionPool = new SessionPool(1, () -> {
+            throw new SQLException("Unable to connect");
+        });
+        ScriptRepo lazyRepo = new ScriptRepo(sessionPool, new Properties());
+
+        assertDoesNotThrow(() -> lazyRepo.updateChangeSync(ChangeType.DEPLOY, Status.ERROR, "Unable to connect", null));
+        assertThrows(SQLException.class, () -> lazyRepo.insertChangeSync(ChangeType.DEPLOY, Status.IN_PROGRESS, "Test deployment"));
+    }
+
+    @Test
+    void testSnapshotReadsTheHistoryAgainOnlyAfterItChanged() throws SQLException, IOException {
+        ScriptHistorySnapshot historySnapshot = mock(ScriptHistorySnapshot.class);
+        when(mockResultSet.next()).thenReturn(true);
+        ScriptRepo snapshotRepo = new ScriptRepo(new SessionPool(mockConnection), new Properties(), 1, null, historySnapshot);
+        snapshotRepo.insertChangeSync(ChangeType.DEPLOY, Status.IN_PROGRESS, "Test deployment");
+        clearInvocations(mockStatement);
+
+        snapshotRepo.saveScriptHashSnapshot("commit-1");
+        verify(mockStatement, never()).executeQuery(contains("DL_SYNC_SCRIPT_HISTORY"));
+        verify(historySnapshot).save(Map.of(), "commit-1");
+
+        SchemaScript script = new SchemaScript("test/MY_VIEW.sql", "TEST_DB", "TEST_SCHEMA", "MY_VIEW", ScriptObjectType.VIEWS, "CREATE OR REPLACE VIEW MY_VIEW AS SELECT 1;");
+        snapshotRepo.createScriptObject(script, true);
+        when(mockResultSet.next()).thenReturn(true, false);
+        when(mockResultSet.getString("SCRIPT_ID")).thenReturn(script.getId());
+        when(mockResultSet.getString("SCRIPT_HASH")).thenReturn(script.getHash());
+
+        snapshotRepo.saveScriptHashSnapshot("commit-2");
+        verify(historySnapshot).save(Map.of(script.getId(), script.getHash()), "commit-2");
+    }
+
+    @Test
+    void testScriptWithoutHashInHistoryIsDeployedAndChanged() throws SQLException {
+        SchemaScript script = new SchemaScript("test/MY_VIEW.sql", "TEST_DB", "TEST_SCHEMA", "MY_VIEW", ScriptObjectType.VIEWS, "CREATE OR REPLACE VIEW MY_VIEW AS SELECT 1;");
+        when(mockResultSet.next()).thenReturn(true, false);
+        when(mockResultSet.getString("SCRIPT_ID")).thenReturn(script.getId());
+        when(mockResultSet.getString("SCRIPT_HASH")).thenReturn(null);
+
+        scriptRepo.loadScriptHash();
+
+        assertTrue(scriptRepo.isScriptPreviouslyDeployed(script));
+        assertTrue(scriptRepo.isScriptChanged(script));
+    }
+
+    @Test
+    void testGetUntrackedObjectsListsEveryTypeWithShow() throws SQLException {
+        ResultSet emptyResult = mock(ResultSet.class);
+        ResultSet policies = mock(ResultSet.class);
+        when(mockStatement.executeQuery(startsWith("SHOW"))).thenReturn(emptyResult);
+        when(mockStatement.executeQuery("SHOW MASKING POLICIES IN DATABASE DB1;")).thenReturn(policies);
+        when(policies.next()).thenReturn(true, false);
+        when(policies.getString("schema_name")).thenReturn("SCHEMA1");
+        when(policies.getString("name")).thenReturn("POLICY1");
+
+        assertEquals(Set.of("MASKING_POLICIES:SCHEMA1.POLICY1"), scriptRepo.getUntrackedObjects("DB1"));
+        verify(mockStatement, times(ScriptRepo.UNTRACKED_OBJECT_TYPES.size())).executeQuery(startsWith("SHOW"));
+
+        when(mockStatement.executeQuery("SHOW TAGS IN DATABASE DB1;")).thenThrow(new SQLException("Unsupported feature"));
+        assertNull(scriptRepo.getUntrackedObjects("DB1"));
+    }
+
     private ScriptRepo createScriptRepoWithMockedConnection() throws SQLException {
         Properties props = new Properties();
         props.setProperty("account", "test_account");
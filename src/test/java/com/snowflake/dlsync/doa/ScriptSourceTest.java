@@ -0,0 +1,118 @@
+package com.snowflake.dlsync.doa;
+
+import com.snowflake.dlsync.models.MigrationScript;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.TestScript;
+import com.snowflake.dlsync.parser.ParameterInjector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptSourceTest {
+
+    @TempDir
+    Path scriptRoot;
+
+    private void writeFile(String relativePath, String content) throws IOException {
+        Path file = scriptRoot.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        for(int i = 0; i < 20; i++) {
+            writeFile("main/TEST_DB/SCHEMA" + (i % 3) + "/VIEWS/VIEW" + i + ".SQL", "CREATE OR REPLACE VIEW TEST_DB.SCHEMA" + (i % 3) + ".VIEW" + i + " AS SELECT " + i + ";");
+        }
+        writeFile("main/TEST_DB/SCHEMA0/TABLES/TABLE1.SQL", "---version: 0, author: tester\nCREATE TABLE TEST_DB.SCHEMA0.TABLE1 (ID INT);\n---version: 1, author: tester\nALTER TABLE TEST_DB.SCHEMA0.TABLE1 ADD COLUMN NAME VARCHAR;\n");
+        writeFile("main/ACCOUNT/WAREHOUSES/TEST_WH.SQL", "CREATE WAREHOUSE IF NOT EXISTS TEST_WH;");
+        writeFile("main/TEST_DB/SCHEMA0/VIEWS/README.md", "not a script");
+        writeFile("main/.dlsync/TEST_DB/SCHEMA0/VIEWS/HIDDEN.SQL", "CREATE OR REPLACE VIEW TEST_DB.SCHEMA0.HIDDEN AS SELECT 1;");
+        writeFile("test/TEST_DB/SCHEMA1/VIEWS/VIEW1_TEST.SQL", "WITH MOCK_DATA AS (SELECT 1 AS ID), EXPECTED_DATA AS (SELECT 1 AS ID) SELECT * FROM TEST_DB.SCHEMA1.VIEW1;");
+    }
+
+    @Test
+    void getAllScriptsReadsEveryScriptFile() throws IOException {
+        ScriptSource scriptSource = new ScriptSource(scriptRoot.toString());
+        List<String> ids = scriptSource.getAllScripts().stream().map(Script::getId).sorted().collect(Collectors.toList());
+
+        assertEquals(23, ids.size());
+        assertTrue(ids.contains("TEST_WH"));
+        assertTrue(ids.contains("TEST_DB.SCHEMA0.TABLE1:0"));
+        assertTrue(ids.contains("TEST_DB.SCHEMA0.TABLE1:1"));
+        assertTrue(ids.contains("TEST_DB.SCHEMA2.VIEW5"));
+        assertFalse(ids.contains("TEST_DB.SCHEMA0.HIDDEN"));
+    }
+
+    @Test
+    void getAllScriptsIsStableAcrossCalls() throws IOException {
+        ScriptSource scriptSource = new ScriptSource(scriptRoot.toString());
+        List<Script> first = scriptSource.getAllScripts();
+        List<Script> second = scriptSource.getAllScripts();
+        assertEquals(first, second);
+        assertEquals("TEST_WH", first.get(first.size() - 1).getId(), "Account scripts should be listed after schema scripts");
+    }
+
+    @Test
+    void getAllScriptsReturnsRawContentAfterInjection() throws IOException {
+        writeFile("main/TEST_DB/SCHEMA0/VIEWS/PARAM_VIEW.SQL", "CREATE OR REPLACE VIEW TEST_DB.SCHEMA0.PARAM_VIEW AS SELECT * FROM ${db}.SCHEMA0.TABLE1;");
+        writeFile("main/TEST_DB/SCHEMA0/TABLES/PARAM_TABLE.SQL", "---version: 0, author: tester\nCREATE TABLE TEST_DB.SCHEMA0.PARAM_TABLE (ID INT DEFAULT '${db}');\n---rollback: DROP TABLE ${db}.SCHEMA0.PARAM_TABLE;\n");
+        Properties parameters = new Properties();
+        parameters.put("db", "PROD_DB");
+        ParameterInjector parameterInjector = new ParameterInjector(parameters);
+        ScriptSource scriptSource = new ScriptSource(scriptRoot.toString());
+
+        for(Script script: scriptSource.getAllScripts()) {
+            if(script instanceof MigrationScript) {
+                parameterInjector.injectParametersAll((MigrationScript) script);
+            }
+            else {
+                parameterInjector.injectParameters(script);
+            }
+        }
+        Map<String, Script> scripts = scriptSource.getAllScripts().stream().collect(Collectors.toMap(Script::getId, Function.identity()));
+
+        assertEquals("CREATE OR REPLACE VIEW TEST_DB.SCHEMA0.PARAM_VIEW AS SELECT * FROM ${db}.SCHEMA0.TABLE1;", scripts.get("TEST_DB.SCHEMA0.PARAM_VIEW").getContent());
+        MigrationScript migration = (MigrationScript) scripts.get("TEST_DB.SCHEMA0.PARAM_TABLE:0");
+        assertTrue(migration.getContent().contains("DEFAULT '${db}'"));
+        assertEquals("DROP TABLE ${db}.SCHEMA0.PARAM_TABLE;", migration.getRollback());
+    }
+
+    @Test
+    void getTestScriptsFindsMatchingTestFiles() throws IOException {
+        ScriptSource scriptSource = new ScriptSource(scriptRoot.toString());
+        List<TestScript> testScripts = scriptSource.getTestScripts(scriptSource.getAllScripts());
+
+        assertEquals(1, testScripts.size());
+        assertEquals("VIEW1_TEST", testScripts.get(0).getObjectName());
+        assertEquals(scriptRoot.resolve("test/TEST_DB/SCHEMA1/VIEWS/VIEW1_TEST.SQL").toString(), testScripts.get(0).getScriptPath());
+    }
+
+    @Test
+    void getScriptsReadsOnlyGivenFiles() throws IOException {
+        ScriptSource scriptSource = new ScriptSource(scriptRoot.toString());
+        List<Script> scripts = scriptSource.getScripts(List.of(
+                scriptRoot.resolve("main/TEST_DB/SCHEMA0/VIEWS/VIEW3.SQL"),
+                scriptRoot.resolve("main/TEST_DB/SCHEMA0/VIEWS/DELETED.SQL"),
+                scriptRoot.resolve("main/TEST_DB/SCHEMA0/VIEWS/README.md")));
+
+        assertEquals(List.of("TEST_DB.SCHEMA0.VIEW3"), scripts.stream().map(Script::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void invalidScriptRootFails() {
+        ScriptSource scriptSource = new ScriptSource(scriptRoot.resolve("missing").toString());
+        assertThrows(RuntimeException.class, scriptSource::getAllScripts);
+    }
+}
@@ -0,0 +1,73 @@
+package com.snowflake.dlsync.metrics;
+
+import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.Util;
+import com.snowflake.dlsync.doa.RecordedConnection;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import com.snowflake.dlsync.parser.ViewScriptParser;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FlightEventsTest {
+
+    @Test
+    void connectionIsNotWrappedWithoutRecording() {
+        Connection connection = mock(Connection.class);
+        assertSame(connection, RecordedConnection.wrap(connection));
+    }
+
+    @Test
+    void eventsCarryScriptObjectTypeAndSize(@TempDir Path tempDir) throws Exception {
+        Path recordingFile = tempDir.resolve("dlsync.jfr");
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(statement);
+        try (Recording recording = new Recording()) {
+            recording.enable("dlsync.Hash").withoutThreshold();
+            recording.enable("dlsync.AntlrParse").withoutThreshold();
+            recording.enable("dlsync.JdbcStatement").withoutThreshold();
+            recording.start();
+
+            Script view = ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "CREATE OR REPLACE VIEW VIEW1 AS SELECT ID FROM TABLE1;");
+            new ViewScriptParser(view).parse();
+            Util.getMd5Hash("SELECT 1");
+            RecordedConnection.wrap(connection).createStatement().execute("SELECT 1");
+
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        RecordedEvent hash = findEvent(events, "dlsync.Hash", "VIEW1");
+        assertEquals("VIEWS", hash.getString("objectType"));
+        assertEquals("CREATE OR REPLACE VIEW VIEW1 AS SELECT ID FROM TABLE1;".length(), hash.getLong("bytes"));
+        assertTrue(events.stream().filter(event -> event.getEventType().getName().equals("dlsync.Hash")).allMatch(event -> event.getString("scriptId") != null),
+                "Only script contents should be recorded as hash events");
+        RecordedEvent parse = findEvent(events, "dlsync.AntlrParse", "DB1.SCHEMA1.VIEW1");
+        assertEquals("VIEWS", parse.getString("objectType"));
+        List<RecordedEvent> statements = events.stream().filter(event -> event.getEventType().getName().equals("dlsync.JdbcStatement")).collect(Collectors.toList());
+        assertEquals(1, statements.size());
+        assertEquals("SELECT 1", statements.get(0).getString("sql"));
+        verify(statement).execute("SELECT 1");
+    }
+
+    private RecordedEvent findEvent(List<RecordedEvent> events, String name, String scriptId) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(name) && scriptId.equals(event.getString("scriptId")))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No " + name + " event for " + scriptId));
+    }
+}
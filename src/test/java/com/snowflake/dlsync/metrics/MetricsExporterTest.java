@@ -0,0 +1,59 @@
+package com.snowflake.dlsync.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsExporterTest {
+
+    @TempDir
+    Path directory;
+
+    private MetricsReport createReport(MetricsExporter exporter) {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.recordDuration(Phase.PARSE, 2_000_000L, 1024);
+        registry.recordDuration(Phase.DDL_EXECUTION, 1_500_000_000L, 300);
+        return exporter.createReport("DEPLOY", "SUCCESS", 1_700_000_000_000L, 1_700_000_012_500L, registry);
+    }
+
+    @Test
+    void exportWritesJsonReport() throws IOException {
+        MetricsExporter exporter = new MetricsExporter(directory.resolve("metrics"));
+        exporter.export(createReport(exporter));
+
+        JsonNode report = new ObjectMapper().readTree(directory.resolve("metrics/deploy.json").toFile());
+        assertEquals("deploy", report.get("command").asText());
+        assertEquals("SUCCESS", report.get("status").asText());
+        assertEquals(12500, report.get("durationMillis").asDouble(), 0.001);
+        assertEquals(2, report.get("phases").size());
+        assertEquals("parse", report.get("phases").get(0).get("phase").asText());
+        assertEquals(1024, report.get("phases").get(0).get("bytes").asLong());
+    }
+
+    @Test
+    void exportWritesPrometheusTextfile() throws IOException {
+        MetricsExporter exporter = new MetricsExporter(directory);
+        exporter.export(createReport(exporter));
+
+        String text = Files.readString(directory.resolve("deploy.prom"));
+        assertTrue(text.contains("# TYPE dlsync_phase_seconds summary\n"));
+        assertTrue(text.contains("dlsync_command_duration_seconds{command=\"deploy\"} 12.500000\n"));
+        assertTrue(text.contains("dlsync_command_success{command=\"deploy\"} 1\n"));
+        assertTrue(text.contains("dlsync_command_last_run_timestamp_seconds{command=\"deploy\"} 1700000000\n"));
+        assertTrue(text.contains("dlsync_phase_seconds_count{command=\"deploy\",phase=\"ddl_execution\"} 1\n"));
+        assertTrue(text.contains("dlsync_phase_seconds_sum{command=\"deploy\",phase=\"ddl_execution\"} 1.500000\n"));
+        assertTrue(text.contains("dlsync_phase_seconds{command=\"deploy\",phase=\"parse\",quantile=\"0.99\"} 0.002000\n"));
+        assertTrue(text.contains("dlsync_phase_bytes{command=\"deploy\",phase=\"parse\"} 1024\n"));
+        assertFalse(text.contains("phase=\"sort\""), "Phases that did not run are not exported");
+        try (var files = Files.list(directory)) {
+            assertEquals(2, files.count(), "Temporary files are removed");
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.snowflake.dlsync.metrics;
+
+import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.Util;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+    @Test
+    void bucketBoundsContainTheirValues() {
+        for(long value: new long[]{0, 1, 7, 8, 9, 15, 16, 17, 1000, 123_456_789L, Long.MAX_VALUE}) {
+            int bucket = MetricsRegistry.bucketOf(value);
+            assertTrue(MetricsRegistry.bucketUpperBound(bucket) >= value, "Upper bound of the bucket of " + value);
+            assertTrue(bucket == 0 || MetricsRegistry.bucketUpperBound(bucket - 1) < value, "Previous bucket of " + value);
+        }
+    }
+
+    @Test
+    void summarizeReportsCountsPercentilesAndBytes() {
+        MetricsRegistry registry = new MetricsRegistry();
+        for(int i = 1; i <= 100; i++) {
+            registry.recordDuration(Phase.PARSE, i * 1_000_000L, 10);
+        }
+        registry.recordDuration(Phase.SORT, 5_000_000L, 0);
+
+        List<PhaseSummary> summaries = registry.summarize();
+        assertEquals(2, summaries.size(), "Only recorded phases are summarized");
+        PhaseSummary parse = summaries.get(0);
+        assertEquals("parse", parse.getPhase());
+        assertEquals(100, parse.getCount());
+        assertEquals(1000, parse.getBytes());
+        assertEquals(5050, parse.getTotalMillis(), 0.001);
+        assertEquals(50.5, parse.getMeanMillis(), 0.001);
+        assertEquals(100, parse.getMaxMillis(), 0.001);
+        assertEquals(50, parse.getP50Millis(), 50 * 0.125);
+        assertEquals(90, parse.getP90Millis(), 90 * 0.125);
+        assertEquals(99, parse.getP99Millis(), 99 * 0.125);
+        assertTrue(parse.getP99Millis() <= parse.getMaxMillis());
+        assertEquals("sort", summaries.get(1).getPhase());
+    }
+
+    @Test
+    void resetClearsAllPhases() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.record(Phase.HASH, System.nanoTime(), 32);
+        registry.reset();
+        assertTrue(registry.summarize().isEmpty());
+    }
+
+    @Test
+    void hashPhaseCountsOnlyScriptHashes() {
+        MetricsRegistry registry = MetricsRegistry.getGlobal();
+        registry.reset();
+        Util.getMd5Hash("SELECT 1");
+        assertTrue(registry.summarize().isEmpty(), "Hashes of other content should not be recorded");
+
+        ScriptFactory.getSchemaScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "CREATE OR REPLACE VIEW VIEW1 AS SELECT 1;");
+        List<PhaseSummary> summaries = registry.summarize();
+        registry.reset();
+        assertEquals(1, summaries.size());
+        assertEquals("hash", summaries.get(0).getPhase());
+        assertEquals("CREATE OR REPLACE VIEW VIEW1 AS SELECT 1;".length(), summaries.get(0).getBytes());
+    }
+
+    @Test
+    void concurrentRecordsAreAllCounted() throws InterruptedException {
+        MetricsRegistry registry = new MetricsRegistry();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for(int thread = 0; thread < 4; thread++) {
+            executor.submit(() -> {
+                for(int i = 0; i < 10_000; i++) {
+                    registry.recordDuration(Phase.DDL_EXECUTION, i, 1);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        PhaseSummary summary = registry.summarize().get(0);
+        assertEquals(40_000, summary.getCount());
+        assertEquals(40_000, summary.getBytes());
+    }
+}
@@ -8,6 +8,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -69,4 +73,156 @@ class ParameterInjectorTest {
         String expected = "${DB}.${SCHEMA1}.VIEW1";
         assertEquals(expected, actual, "parameterize object name test failed");
     }
-}
\ No newline at end of file
+
+    private String injectSequentially(Properties parameters, String content) {
+        for(String parameter: parameters.stringPropertyNames()) {
+            String regex = "(?i)" + Pattern.quote("${" + parameter + "}");
+            content = content.replaceAll(regex, Matcher.quoteReplacement(parameters.getProperty(parameter)));
+        }
+        return content;
+    }
+
+    private String inject(Properties parameters, String content) {
+        SchemaScript script = ScriptFactory.getSchemaScript("", "", ScriptObjectType.VIEWS, "VIEW1", content);
+        new ParameterInjector(parameters).injectParameters(script);
+        return script.getContent();
+    }
+
+    @Test
+    void injectParametersEdgeCases() {
+        Properties parameters = new Properties();
+        parameters.put("db", "TEST_DB");
+        parameters.put("DB", "OTHER_DB");
+        parameters.put("schema", "a$1\\b");
+        String[] contents = {
+                "${Db}.${SCHEMA}.${unknown}",
+                "${db",
+                "${${db}}",
+                "$${db}}",
+                "${}",
+                "no placeholders",
+                ""
+        };
+        for(String content: contents) {
+            assertEquals(injectSequentially(parameters, content), inject(parameters, content), "single pass injection differs for: " + content);
+        }
+    }
+
+    @Test
+    void injectParametersResolvesNestedPlaceholdersLikeSequentialInjection() {
+        String[] contents = {"select * from ${${env}_db}.public.t1", "${${ENV}_DB}.${${env}_schema}", "${pre${env}}", "${${env}"};
+        // The sequential replacement depends on the property iteration order, so try names on either side of env.
+        for(char environment = 'a'; environment <= 'z'; environment++) {
+            Properties parameters = new Properties();
+            parameters.put("env", String.valueOf(environment));
+            parameters.put(environment + "_db", "DB_" + environment);
+            parameters.put(environment + "_schema", "SCHEMA_" + environment);
+            parameters.put("pre" + environment, "PRE_" + environment);
+            for(String content: contents) {
+                assertEquals(injectSequentially(parameters, content), inject(parameters, content), "single pass injection differs for: " + content + " with " + parameters);
+            }
+        }
+    }
+
+    @Test
+    void injectParametersMatchesSequentialInjection() {
+        Random random = new Random(7);
+        String[] names = {"db", "DB", "schema", "Schema_1", "tenant", "x", "\u00df", "\u0130d"};
+        String[] values = {"TEST_DB", "", "v", "$", "{", "}", "${x}", "${", "a\\1", "\u00dcn\u00ef"};
+        String alphabet = "$${}}abdxsSDX_.'\u00df\u0130 ";
+        for(int round = 0; round < 500; round++) {
+            Properties parameters = new Properties();
+            int parameterCount = random.nextInt(5);
+            for(int i = 0; i < parameterCount; i++) {
+                parameters.put(names[random.nextInt(names.length)], values[random.nextInt(values.length)]);
+            }
+            StringBuilder content = new StringBuilder();
+            int length = random.nextInt(40);
+            for(int i = 0; i < length; i++) {
+                if(random.nextInt(4) == 0) {
+                    content.append("${").append(names[random.nextInt(names.length)]).append("}");
+                } else {
+                    content.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+            }
+            String expected = injectSequentially(parameters, content.toString());
+            assertEquals(Set.of(expected), new ParameterInjector(parameters).injectParameters(Set.of(content.toString())), "single pass injection differs for: " + content + " with " + parameters);
+            assertEquals(injectSequentially(parameters, content.toString().trim()), inject(parameters, content.toString()), "single pass injection differs for: " + content + " with " + parameters);
+        }
+    }
+
+    private String parametrize(Properties parameters, String content) {
+        SchemaScript script = ScriptFactory.getSchemaScript("", "", ScriptObjectType.VIEWS, "VIEW1", content);
+        new ParameterInjector(parameters).parametrizeScript(script, false);
+        return script.getContent();
+    }
+
+    @Test
+    void parametrizeScriptPrefersLongestValue() {
+        Properties parameters = new Properties();
+        parameters.put("db", "TEST");
+        parameters.put("full_db", "TEST_DB");
+        parameters.put("env", "DB");
+        parameters.put("schema", "test_schema");
+        String content = "select * from TEST_DB.TEST_SCHEMA.TEST join TEST.db.x on (test_db.id=x.id)";
+        String expected = "select * from ${full_db}.${schema}.${db} join ${db}.${env}.x on (${full_db}.id=x.id)";
+        assertEquals(expected, parametrize(parameters, content));
+    }
+
+    @Test
+    void parametrizeScriptRespectsBoundaries() {
+        Properties parameters = new Properties();
+        parameters.put("db", "TEST_DB");
+        parameters.put("tenant", "t1");
+        parameters.put("empty", "");
+        String content = "TEST_DB.x from @TEST_DB.TEST_DB.TEST_DB; MY_TEST_DB.t1 t1x 't1'";
+        String expected = "TEST_DB.x from @${db}.${db}.${db}; MY_TEST_DB.${tenant} t1x '${tenant}'";
+        assertEquals(expected, parametrize(parameters, content));
+    }
+
+    @Test
+    void parametrizeScriptMatchesReference() {
+        Random random = new Random(11);
+        String[] values = {"ab", "abc", "b", "bc", "AB", "c.a", "a"};
+        String alphabet = "abcABC.@;'( ";
+        for(int round = 0; round < 500; round++) {
+            Properties parameters = new Properties();
+            int parameterCount = 1 + random.nextInt(4);
+            for(int i = 0; i < parameterCount; i++) {
+                parameters.put("p" + i, values[random.nextInt(values.length)]);
+            }
+            StringBuilder content = new StringBuilder("x");
+            int length = random.nextInt(30);
+            for(int i = 0; i < length; i++) {
+                content.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            content.append("x");
+            assertEquals(parametrizeReference(parameters, content.toString()), parametrize(parameters, content.toString()), "parametrization differs for: " + content + " with " + parameters);
+        }
+    }
+
+    private String parametrizeReference(Properties parameters, String content) {
+        StringBuilder result = new StringBuilder();
+        int i = 0;
+        while(i < content.length()) {
+            String bestKey = null;
+            int bestLength = 0;
+            for(String key: new java.util.TreeSet<>(parameters.stringPropertyNames())) {
+                String value = parameters.getProperty(key);
+                int end = i + value.length();
+                if(value.length() > bestLength && i > 0 && end < content.length() && content.regionMatches(true, i, value, 0, value.length())
+                        && "(),. '\"@".indexOf(content.charAt(i - 1)) >= 0 && "(),;. '\"".indexOf(content.charAt(end)) >= 0) {
+                    bestKey = key;
+                    bestLength = value.length();
+                }
+            }
+            if(bestKey != null) {
+                result.append("${").append(bestKey).append("}");
+                i += bestLength;
+            } else {
+                result.append(content.charAt(i++));
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,80 @@
+package com.snowflake.dlsync.parser;
+
+import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.models.SchemaScript;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptComparatorTest {
+
+    private final ScriptComparator scriptComparator = new ScriptComparator();
+
+    private boolean compare(ScriptObjectType objectType, String content1, String content2) {
+        SchemaScript script1 = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", objectType, "OBJECT1", content1);
+        SchemaScript script2 = ScriptFactory.getSchemaScript("TEST_DB", "TEST_SCHEMA", objectType, "OBJECT1", content2);
+        return scriptComparator.compare(script1, script2);
+    }
+
+    @Test
+    void viewsIgnoreFormattingAndHeader() {
+        String source = "CREATE OR REPLACE VIEW ${db}.${schema}.VIEW1 AS\n-- active rows only\nSELECT id, name FROM ${db}.${schema}.TABLE1 WHERE status = 'Active';";
+        String ddl = "create or replace view ${DB}.${SCHEMA}.VIEW1 (ID, NAME) as select ID,   NAME from ${DB}.${SCHEMA}.\"TABLE1\" where STATUS = 'Active'";
+        assertTrue(compare(ScriptObjectType.VIEWS, source, ddl));
+        assertFalse(compare(ScriptObjectType.VIEWS, source, ddl.replace("'Active'", "'active'")), "String literals are case sensitive");
+        assertFalse(compare(ScriptObjectType.VIEWS, "CREATE VIEW V1 AS SELECT 'CSV' AS T;", "CREATE VIEW V1 AS SELECT 'csv' AS T;"), "Quoted keywords are string literals");
+        assertFalse(compare(ScriptObjectType.VIEWS, source, ddl.replace("\"TABLE1\"", "\"Table1\"")), "Quoted identifiers are case sensitive");
+    }
+
+    @Test
+    void functionsCompareOnlyTheBody() {
+        String source = "CREATE OR REPLACE FUNCTION ${db}.${schema}.ADD_ONE(X NUMBER)\nRETURNS NUMBER\nAS\n$$\n  x + 1\n$$;";
+        String ddl = "CREATE OR REPLACE FUNCTION ${db}.${schema}.ADD_ONE(\"X\" NUMBER(38,0))\nRETURNS NUMBER(38,0)\nLANGUAGE SQL\nAS '\n  x + 1\n'";
+        assertTrue(compare(ScriptObjectType.FUNCTIONS, source, ddl));
+        assertFalse(compare(ScriptObjectType.FUNCTIONS, source, ddl.replace("x + 1", "x + 2")));
+        assertTrue(compare(ScriptObjectType.FUNCTIONS, "CREATE FUNCTION F() RETURNS VARCHAR AS $$ 'it''s' $$;", "CREATE FUNCTION F() RETURNS VARCHAR AS ' ''it''''s'' ';"));
+    }
+
+    @Test
+    void procedureBodyKeepsWhitespace() {
+        String source = "CREATE OR REPLACE PROCEDURE P1()\nRETURNS STRING\nLANGUAGE PYTHON\nRUNTIME_VERSION = '3.10'\nHANDLER = 'run'\nEXECUTE AS CALLER\nAS $$\ndef run(session):\n    return 'ok'\n$$;";
+        assertTrue(compare(ScriptObjectType.PROCEDURES, source, source.replace("EXECUTE AS CALLER\n", "")));
+        assertFalse(compare(ScriptObjectType.PROCEDURES, source, source.replace("    return", "  return")));
+    }
+
+    @Test
+    void fileFormatOptionsInAnyOrder() {
+        String source = "CREATE OR REPLACE FILE FORMAT ${db}.${schema}.CSV_FORMAT TYPE = 'CSV' FIELD_DELIMITER = ',' SKIP_HEADER = 1 NULL_IF = ('NULL', '');";
+        String ddl = "create or replace file format ${DB}.${SCHEMA}.CSV_FORMAT\n\tSKIP_HEADER = 1\n\tTYPE = csv\n\tNULL_IF = ('NULL', '')\n\tFIELD_DELIMITER = ','\n;";
+        assertTrue(compare(ScriptObjectType.FILE_FORMATS, source, ddl));
+        assertFalse(compare(ScriptObjectType.FILE_FORMATS, source, ddl.replace("SKIP_HEADER = 1", "SKIP_HEADER = 2")));
+    }
+
+    @Test
+    void otherTypesCompareWholeStatement() {
+        String source = "CREATE OR REPLACE MASKING POLICY ${db}.${schema}.EMAIL_MASK AS (val STRING) RETURNS STRING ->\n  CASE WHEN CURRENT_ROLE() IN ('ANALYST') THEN val ELSE '*****' END;";
+        String ddl = "create or replace masking policy ${DB}.${SCHEMA}.EMAIL_MASK as (VAL string) returns string -> case when current_role() in ('ANALYST') then VAL else '*****' end";
+        assertTrue(compare(ScriptObjectType.MASKING_POLICIES, source, ddl));
+        assertFalse(compare(ScriptObjectType.MASKING_POLICIES, source, ddl.replace("'ANALYST'", "'ADMIN'")));
+    }
+
+    @Test
+    void untokenizableContentFallsBackToRegex() {
+        String content = "CREATE OR REPLACE VIEW VIEW1 AS SELECT 1 AS \u20ac;";
+        assertNull(scriptComparator.getCanonicalHash(ScriptObjectType.VIEWS, content));
+        assertTrue(compare(ScriptObjectType.VIEWS, content, content));
+        assertFalse(compare(ScriptObjectType.VIEWS, content, content.replace("1", "2")));
+    }
+
+    @Test
+    void largeBodiesAreCompared() {
+        StringBuilder query = new StringBuilder("CREATE OR REPLACE VIEW VIEW1 AS SELECT 1 AS C0");
+        for(int i = 1; i < 20000; i++) {
+            query.append(",\n  ").append(i).append(" AS C").append(i);
+        }
+        String source = query.append(";").toString();
+        assertTrue(compare(ScriptObjectType.VIEWS, source, source.toLowerCase().replace("\n  ", " ")));
+        assertFalse(compare(ScriptObjectType.VIEWS, source, source.replace("AS C19999", "AS C20000")));
+    }
+}
@@ -191,6 +191,22 @@ class SqlTokenizerTest {
 
     }
 
+    @Test
+    void getIdentifierTokensTest() {
+        String content = "select * from schema1.object_name1 join \"schema3\".\"object_name3\" on a=b,${db}.schema2.object_name2;";
+        Set<String> expected = Set.of("SELECT", "*", "FROM", "SCHEMA1", "OBJECT_NAME1", "JOIN", "SCHEMA3", "OBJECT_NAME3", "ON", "A", "B", "${DB}", "SCHEMA2", "OBJECT_NAME2");
+        assertEquals(expected, SqlTokenizer.getIdentifierTokens(content), "Test failed to split identifier tokens.");
+    }
+
+    @Test
+    void isIdentifierTokenTest() {
+        assertTrue(SqlTokenizer.isIdentifierToken("${MY_DB}"));
+        assertTrue(SqlTokenizer.isIdentifierToken("OBJECT$1"));
+        assertFalse(SqlTokenizer.isIdentifierToken("${MY_DB}.${MY_SCHEMA}"));
+        assertFalse(SqlTokenizer.isIdentifierToken("MY OBJECT"));
+        assertFalse(SqlTokenizer.isIdentifierToken(""));
+    }
+
     @Test
     void parseDdlScriptsTest() {
         String ddl = "create or replace schema schema1;\n\n" +